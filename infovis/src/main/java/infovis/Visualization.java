@@ -11,6 +11,7 @@ package infovis;
 import infovis.column.BooleanColumn;
 import infovis.column.FilterColumn;
 import infovis.table.Item;
+import infovis.utils.IntSet;
 import infovis.utils.Permutation;
 import infovis.utils.PropertyChange;
 import infovis.utils.RowIterator;
@@ -171,6 +172,17 @@ public interface Visualization extends LabeledComponent, Orientable, PropertyCha
      * @param c the Column triggering the invalidate/repaint.
      */
     void invalidate(Column c);
+
+    /**
+     * Invalidates or repaints the visual representation of the
+     * specified rows only, after the values of a column have
+     * been modified for these rows.
+     *
+     * @param c the Column triggering the invalidate/repaint.
+     * @param rows the modified rows or <code>null</code> if they are
+     * not known, in which case the whole visualization is concerned.
+     */
+    void invalidate(Column c, IntSet rows);
     
     /**
      * Invalidates the contents of the Visualization.
@@ -408,6 +408,20 @@ public abstract class BasicObjectColumn extends BasicColumn {
         return value.size();
     }
     
+    /**
+     * Exchanges the values of this column with the values of another
+     * column without notifying the listeners.
+     * 
+     * @param other the other column
+     */
+    protected void exchangeValues(BasicObjectColumn other) {
+        ArrayList tmp = value;
+        value = other.value;
+        other.value = tmp;
+        min_max_updated = false;
+        other.min_max_updated = false;
+    }
+
     /**
      * Returns the backing <code>ArrayList</code> for this column (USE WITH CARE).
      * 
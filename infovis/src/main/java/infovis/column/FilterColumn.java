@@ -10,24 +10,40 @@ package infovis.column;
 import infovis.Column;
 import infovis.Table;
 import infovis.panel.DynamicQuery;
+import infovis.utils.BitSet;
 import infovis.utils.RowFilter;
 import infovis.utils.RowIterator;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
-import java.util.BitSet;
 
 /**
- * Column managing <code>BitSet</code> s meant for filtering columns with
- * dynamic queries.
+ * Column managing the filtering state of rows controlled by dynamic
+ * queries.
+ * 
+ * <p>The column stores one bitmap per registered dynamic query,
+ * where a set bit means the query filters the row out, and keeps
+ * the union of these bitmaps up to date so that
+ * {@link #isFiltered(int)} reads a single bit and unfiltered rows can
+ * be enumerated word by word with {@link #nextUnfilteredRow(int)}.
+ * The memory used is about one bit per row and per dynamic query.
+ * 
+ * <p>For compatibility, the value of a row is still viewed as a
+ * <code>BitSet</code> of dynamic query indices, built on demand by
+ * {@link #get(int)}.
  * 
  * @author Jean-Daniel Fekete
- * @version $Revision: 1.37 $
+ * @version $Revision: 1.38 $
  */
-public class FilterColumn extends BasicObjectColumn implements RowFilter {
-    private static final long serialVersionUID = -3005283015260135478L;
+public class FilterColumn extends BasicColumn implements RowFilter {
+    private static final long serialVersionUID = 3651871046785393405L;
     private transient ArrayList dynamicQueries = new ArrayList();
+    /** One bitmap of filtered rows per dynamic query index. */
+    protected ArrayList masks = new ArrayList();
+    /** Union of all the masks. */
+    protected BitSet filtered = new BitSet();
+    protected int size;
 
     /**
      * Constructor for FilterColumn.
@@ -45,7 +61,8 @@ public class FilterColumn extends BasicObjectColumn implements RowFilter {
      * @param reserve the reserved size
      */
     public FilterColumn(String name, int reserve) {
-        super(name, reserve);
+        super(name);
+        filtered = new BitSet(reserve);
     }
 
     /**
@@ -122,7 +139,7 @@ public class FilterColumn extends BasicObjectColumn implements RowFilter {
 
     /**
      * Removes a dynamic query from the list of registered queries, also
-     * clearing the associated bit from the BitSets.
+     * clearing its bitmap.
      * 
      * @param query
      *            the dynamic query
@@ -144,35 +161,176 @@ public class FilterColumn extends BasicObjectColumn implements RowFilter {
      * Applies a <code>DynamicQuery</code> to all the values of a
      * specified <code>RowIterator</code>.
      * 
+     * <p>The bitmap of the query is rebuilt and only the rows whose
+     * state changed for this query are notified.
+     * 
      * @param query the dynamic query
      * @param iter the RowIterator
      */
     public void applyDynamicQuery(DynamicQuery query, RowIterator iter) {
         int bitIndex = findDynamicQueryIndex(query);
-        int filtered = 0;
-        int unfiltered = 0;
+        BitSet mask = new BitSet(size);
 
+        while (iter.hasNext()) {
+            int row = iter.nextRow();
+            if (query.isFiltered(row)) {
+                mask.set(row);
+            }
+        }
+        BitSet old = getMask(bitIndex);
+        setMask(bitIndex, mask.isEmpty() ? null : mask);
+        recomputeFiltered();
+        // the stored mask is left untouched
+        BitSet changed = (BitSet) mask.clone();
+        if (old != null) {
+            changed.xor(old);
+        }
+        try {
+            disableNotify();
+            if (changed.length() > size) {
+                setSize(changed.length());
+            }
+            if (! changed.isEmpty()) {
+                modified(changed);
+            }
+        } finally {
+            enableNotify();
+        }
+    }
+
+    /**
+     * Re-evaluates a <code>DynamicQuery</code> on the rows of a
+     * specified <code>RowIterator</code>, leaving the other rows
+     * untouched.
+     * 
+     * <p>Dynamic queries that know which rows may have changed
+     * since their last application, such as range queries using a
+     * {@link NumberColumnIndex}, use this method instead of
+     * {@link #applyDynamicQuery(DynamicQuery, RowIterator)} to
+     * avoid testing all the rows.
+     * 
+     * @param query the dynamic query
+     * @param iter the RowIterator over the rows to update
+     */
+    public void updateDynamicQuery(DynamicQuery query, RowIterator iter) {
+        int bitIndex = findDynamicQueryIndex(query);
         try {
             disableNotify();
-            clearBit(bitIndex);
             while (iter.hasNext()) {
                 int row = iter.nextRow();
                 if (query.isFiltered(row)) {
-                    setBit(row, bitIndex);
-                    filtered++;
+                    BitSet mask = getMask(bitIndex);
+                    if (mask == null || !mask.get(row)) {
+                        setBit(row, bitIndex);
+                    }
                 }
                 else {
-                    unfiltered++;
+                    clearBit(row, bitIndex);
                 }
             }
         } finally {
             enableNotify();
         }
-//        System.out.println(query.getClass().getName()+" Filtered="+filtered+", unfiltered="+unfiltered);
     }
 
     /**
-     * Returns the element at the specified position in this column.
+     * Returns the bitmap of rows filtered by the dynamic query at a
+     * specified index (USE WITH CARE).
+     * 
+     * @param bitIndex the dynamic query index
+     * @return the bitmap of rows filtered by the dynamic query or
+     * <code>null</code> if it filters no row.
+     */
+    public BitSet getMask(int bitIndex) {
+        if (bitIndex < 0 || bitIndex >= masks.size())
+            return null;
+        return (BitSet) masks.get(bitIndex);
+    }
+
+    protected void setMask(int bitIndex, BitSet mask) {
+        while (masks.size() <= bitIndex) {
+            masks.add(null);
+        }
+        masks.set(bitIndex, mask);
+    }
+
+    protected BitSet findMask(int bitIndex) {
+        BitSet mask = getMask(bitIndex);
+        if (mask == null) {
+            mask = new BitSet(size);
+            setMask(bitIndex, mask);
+        }
+        return mask;
+    }
+
+    protected void recomputeFiltered() {
+        filtered.clear();
+        for (int i = 0; i < masks.size(); i++) {
+            BitSet mask = (BitSet) masks.get(i);
+            if (mask != null) {
+                filtered.or((java.util.BitSet) mask);
+            }
+        }
+    }
+
+    protected void updateFiltered(int index) {
+        for (int i = 0; i < masks.size(); i++) {
+            BitSet mask = (BitSet) masks.get(i);
+            if (mask != null && mask.get(index)) {
+                filtered.set(index);
+                return;
+            }
+        }
+        filtered.clear(index);
+    }
+
+    /**
+     * Returns the bitmap of rows filtered by at least one dynamic
+     * query (USE WITH CARE).
+     * 
+     * @return the bitmap of filtered rows.
+     */
+    public BitSet getFilteredRows() {
+        return filtered;
+    }
+
+    /**
+     * Returns the number of filtered rows.
+     * @return the number of filtered rows.
+     */
+    public int getFilteredCount() {
+        return filtered.cardinality();
+    }
+
+    /**
+     * Returns the first row that is not filtered starting at
+     * a specified row, or -1 if there is none before the
+     * end of the column.
+     * 
+     * @param row the starting row
+     * @return the first unfiltered row or -1
+     */
+    public int nextUnfilteredRow(int row) {
+        int ret = filtered.nextClearBit(Math.max(0, row));
+        return ret < size ? ret : -1;
+    }
+
+    /**
+     * Returns the first filtered row starting at
+     * a specified row, or -1 if there is none.
+     * 
+     * @param row the starting row
+     * @return the first filtered row or -1
+     */
+    public int nextFilteredRow(int row) {
+        return filtered.nextSetBit(Math.max(0, row));
+    }
+
+    /**
+     * Returns the element at the specified position in this column,
+     * a <code>BitSet</code> containing the indices of the dynamic
+     * queries filtering the row.  The returned <code>BitSet</code>
+     * is a copy that can be freely modified.
      * 
      * @param index
      *            index of element to return.
@@ -180,7 +338,49 @@ public class FilterColumn extends BasicObjectColumn implements RowFilter {
      * @return the element at the specified position in this column.
      */
     public BitSet get(int index) {
-        return (BitSet) super.getObjectAt(index);
+        if (index < 0 || index >= size())
+            return null;
+        BitSet bs = new BitSet(masks.size());
+        if (filtered.get(index)) {
+            for (int i = 0; i < masks.size(); i++) {
+                BitSet mask = (BitSet) masks.get(i);
+                if (mask != null && mask.get(index)) {
+                    bs.set(i);
+                }
+            }
+        }
+        return bs;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObjectAt(int index) {
+        return get(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObjectAt(int index, Object element) {
+        assert (index >= 0);
+        java.util.BitSet bs = (java.util.BitSet) element;
+        if (index >= size) {
+            setSize(index + 1);
+        }
+        for (int i = 0; i < masks.size(); i++) {
+            BitSet mask = (BitSet) masks.get(i);
+            if (mask != null) {
+                mask.clear(index);
+            }
+        }
+        if (bs != null) {
+            for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+                findMask(i).set(index);
+            }
+        }
+        updateFiltered(index);
+        modified(index);
     }
 
     /**
@@ -192,17 +392,14 @@ public class FilterColumn extends BasicObjectColumn implements RowFilter {
      * @return true if the specified index is filtered.
      */
     public boolean isFiltered(int index) {
-        if ((index < 0) || (index >= size())) {
+        if (index < 0) {
             return false;
         }
-        BitSet bs = get(index);
-        if (bs == null)
-            return false;
-        return !bs.isEmpty();
+        return filtered.get(index);
     }
 
     /**
-     * Clears a specified bit from <code>BitSet</code> at specified index.
+     * Clears a specified bit of a specified row.
      * 
      * @param index
      *            the index.
@@ -213,52 +410,115 @@ public class FilterColumn extends BasicObjectColumn implements RowFilter {
         if (index < 0 || index >= size())
             return;
 
-        BitSet bs = get(index);
-        if (bs == null)
+        BitSet mask = getMask(bitIndex);
+        if (mask == null || !mask.get(index))
             return;
-        bs.clear(bitIndex);
-//        modified(index);
+        mask.clear(index);
+        updateFiltered(index);
         modified(index);
     }
 
     /**
-     * Clears a specified bit from all the <code>BitSet</code>s.
+     * Clears a specified bit from all the rows.
      * 
      * @param bitIndex
      *            the bit.
      */
     public final void clearBit(int bitIndex) {
-        boolean mod = false;
-        for (int index = 0; index < size(); index++) {
-            BitSet bs = get(index);
-            if (bs != null) {
-                mod = true;
-                bs.clear(bitIndex);
-            }
-        }
-        if (mod)
-            modified(bitIndex);
+        BitSet mask = getMask(bitIndex);
+        if (mask == null)
+            return;
+        setMask(bitIndex, null);
+        recomputeFiltered();
+        if (! mask.isEmpty())
+            modified(mask);
     }
 
     /**
-     * Sets a specified bit from <code>BitSet</code> at a specified index,
-     * creating the <code>BitSet</code> if required.
+     * Sets a specified bit of a specified row.
      * 
      * @param index the row
      * @param bitIndex the bit index
      */
     public final void setBit(int index, int bitIndex) {
         assert (index >= 0);
-        BitSet bs = get(index);
-        if (bs == null) {
-            bs = new BitSet(bitIndex);
-            setExtend(index, bs);
+        if (index >= size) {
+            setSize(index + 1);
         }
-        bs.set(bitIndex);
-//        modified(index);
+        findMask(bitIndex).set(index);
+        filtered.set(index);
         modified(index);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() {
+        masks.clear();
+        filtered.clear();
+        size = 0;
+        super.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setSize(int newSize) {
+        if (newSize == size) return;
+        if (newSize < size) {
+            for (int i = 0; i < masks.size(); i++) {
+                BitSet mask = (BitSet) masks.get(i);
+                if (mask != null) {
+                    mask.clear(newSize, size);
+                }
+            }
+            filtered.clear(newSize, size);
+        }
+        size = newSize;
+        modified();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int capacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void ensureCapacity(int minCapacity) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isValueUndefined(int index) {
+        return index < 0 || index >= size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setValueUndefined(int index, boolean undef) {
+        if (index < 0) return;
+        setObjectAt(index, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean hasUndefinedValue() {
+        return false;
+    }
 
     /**
      * Returns a column as a <code>FilterColumn</code> from an
@@ -339,7 +599,15 @@ public class FilterColumn extends BasicObjectColumn implements RowFilter {
         int ret = super.compare(row1, row2);
         if (ret != 0)
             return ret;
-        return compare(get(row1), get(row2));
+        for (int i = 0; i < masks.size(); i++) {
+            BitSet mask = (BitSet) masks.get(i);
+            if (mask == null) continue;
+            boolean b1 = mask.get(row1);
+            if (b1 != mask.get(row2)) {
+                return b1 ? 1 : -1;
+            }
+        }
+        return 0;
     }
     
     /**
@@ -7,6 +7,9 @@
  *****************************************************************************/
 package infovis.column;
 
+import infovis.column.event.ColumnChangeEvent;
+import infovis.utils.IntSet;
+
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -37,12 +40,21 @@ public class FunctionColumn extends DoubleColumn
         this.col = col;
         this.fn = fn;
         update();
+        col.addChangeListener(this);
     }
 
     /**
      * {@inheritDoc}
      */
     public void stateChanged(ChangeEvent e) {
+        if (e instanceof ColumnChangeEvent
+                && col.size() == size()) {
+            IntSet rows = ((ColumnChangeEvent)e).getDetail();
+            if (rows != null) {
+                update(rows);
+                return;
+            }
+        }
         update();
     }
 
@@ -66,4 +78,26 @@ public class FunctionColumn extends DoubleColumn
             enableNotify();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Recompute the values of the specified rows when
+     * they have been modified in the initial column.
+     * 
+     * @param rows the modified rows
+     */
+    public void update(IntSet rows) {
+        try {
+            disableNotify();
+            for (int i = rows.nextSet(0); i >= 0 && i < col.size(); 
+                i = rows.nextSet(i+1)) {
+                if (col.isValueUndefined(i)) {
+                    setValueUndefined(i, true);
+                } else {
+                    set(i, fn.apply(col.getDoubleAt(i)));
+                }
+            }
+        } finally {
+            enableNotify();
+        }
+    }
+}
@@ -9,9 +9,14 @@ package infovis.column;
 
 import hep.aida.IAxis;
 import hep.aida.ref.Histogram1D;
+import infovis.column.event.ColumnChangeEvent;
+import infovis.utils.BitSet;
+import infovis.utils.IntSet;
 import infovis.utils.RowComparator;
 import infovis.utils.RowIterator;
 
+import java.util.Arrays;
+
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -21,6 +26,10 @@ import cern.colt.list.IntArrayList;
  * Column computing and maintaining the histogram of a specified
  * {@link NumberColumn}.
  * 
+ * <p>When the column notifies which rows have changed and its
+ * range remains the same, only the contributions of these rows
+ * are updated in the histogram.
+ * 
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.17 $
  */
@@ -29,6 +38,11 @@ public class HistogramColumn extends IntColumn implements ChangeListener {
     protected NumberColumn    column;
     protected Histogram1D     histogram;
     private transient boolean valid;
+    /** Value of each row when it was last added to the histogram. */
+    private transient double[] rowValues;
+    private transient double  histMin;
+    private transient double  histMax;
+    private transient BitSet  dirtyRows;
     
 
     /**
@@ -80,6 +94,7 @@ public class HistogramColumn extends IntColumn implements ChangeListener {
         column = col;
         column.addChangeListener(this);
         valid = false;
+        histogram = null;
     }
 
     protected void validate() {
@@ -95,9 +110,18 @@ public class HistogramColumn extends IntColumn implements ChangeListener {
                 }
                 histogram = null;
             }
+            else if (histogram != null 
+                    && dirtyRows != null
+                    && column.getDoubleMin() == histMin
+                    && column.getDoubleMax() == histMax) {
+                updateRows(dirtyRows);
+                updateBins();
+            }
             else {
-                double min = column.getDoubleMin();
-                double max = column.getDoubleMax();
+                histMin = column.getDoubleMin();
+                histMax = column.getDoubleMax();
+                double min = histMin;
+                double max = histMax;
                 if (min == max) {
                     max = min + 1;
                 }
@@ -111,29 +135,68 @@ public class HistogramColumn extends IntColumn implements ChangeListener {
                         min,
                         max);
                 NumberColumn col = column;
+                rowValues = new double[col.size()];
+                Arrays.fill(rowValues, Double.NaN);
                 for (RowIterator i = col.iterator(); i.hasNext();) {
-                    histogram.fill(col.getDoubleAt(i.nextRow()));
-                }
-
-                IAxis axis = histogram.xAxis();
-                int prev = 0;
-                for (int i = 0; i < size(); i++) {
-                    int h = (int) histogram.binHeight(i);
-                    if (h == 0 && 
-                        column.coerce(axis.binLowerEdge(i))
-                        == column.coerce(axis.binLowerEdge(i-1))) { 
-                        super.set(i, prev);
-                    }
-                    else {
-                        super.set(i, h);
-                        prev = h;
-                    }
+                    int row = i.nextRow();
+                    double v = col.getDoubleAt(row);
+                    rowValues[row] = v;
+                    histogram.fill(v);
                 }
+                updateBins();
             }
         } finally {
+            dirtyRows = null;
             enableNotify();
         }
     }
+    
+    /**
+     * Updates the contributions of the specified rows to the histogram.
+     * @param rows the modified rows
+     */
+    protected void updateRows(IntSet rows) {
+        NumberColumn col = column;
+        int size = col.size();
+        if (rowValues.length < size) {
+            double[] v = new double[size];
+            System.arraycopy(rowValues, 0, v, 0, rowValues.length);
+            Arrays.fill(v, rowValues.length, size, Double.NaN);
+            rowValues = v;
+        }
+        for (int row = rows.nextSet(0); row >= 0; row = rows.nextSet(row+1)) {
+            if (row >= rowValues.length) break;
+            double old = rowValues[row];
+            if (!Double.isNaN(old)) {
+                histogram.fill(old, -1);
+            }
+            if (col.isValueUndefined(row)) {
+                rowValues[row] = Double.NaN;
+            }
+            else {
+                double v = col.getDoubleAt(row);
+                rowValues[row] = v;
+                histogram.fill(v);
+            }
+        }
+    }
+    
+    protected void updateBins() {
+        IAxis axis = histogram.xAxis();
+        int prev = 0;
+        for (int i = 0; i < size(); i++) {
+            int h = (int) histogram.binHeight(i);
+            if (h == 0 && 
+                column.coerce(axis.binLowerEdge(i))
+                == column.coerce(axis.binLowerEdge(i-1))) { 
+                super.set(i, prev);
+            }
+            else {
+                super.set(i, h);
+                prev = h;
+            }
+        }
+    }
 
     /**
      * {@inheritDoc}
@@ -168,6 +231,7 @@ public class HistogramColumn extends IntColumn implements ChangeListener {
                 value.setSize(newSize);
                 min_max_updated = false;
                 valid = false;
+                histogram = null;
             }
             finally {
                 enableNotify();
@@ -181,7 +245,19 @@ public class HistogramColumn extends IntColumn implements ChangeListener {
     public void stateChanged(ChangeEvent e) {
         if (e.getSource() == column) {
             valid = false;
-            histogram = null;
+            IntSet detail = null;
+            if (e instanceof ColumnChangeEvent) {
+                detail = ((ColumnChangeEvent)e).getDetail();
+            }
+            if (histogram != null && detail != null) {
+                if (dirtyRows == null) {
+                    dirtyRows = new BitSet();
+                }
+                dirtyRows.or(detail);
+            }
+            else {
+                histogram = null;
+            }
         }
     }
 
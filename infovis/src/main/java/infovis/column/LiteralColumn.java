@@ -146,6 +146,7 @@ public abstract class LiteralColumn extends BasicColumn
                 setSize(i+1);
                 if (! undef) {
                     undefined.set(i,false);
+                    modified(i);
                 }
             }
             finally {
@@ -170,10 +171,61 @@ public abstract class LiteralColumn extends BasicColumn
         } else {
             undefined.set(i,false);
         }
-        min_max_updated = false;
         modified(i);
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean modified(int i) {
+        updateMinMaxAt(i);
+        return super.modified(i);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void modified(int i, int j) {
+        int last = Math.min(j, size() - 1);
+        for (int row = i; min_max_updated && row <= last; row++) {
+            updateMinMaxAt(row);
+        }
+        super.modified(i, j);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void modified(IntSet is) {
+        for (int row = is.nextSet(0); min_max_updated && row >= 0; 
+            row = is.nextSet(row + 1)) {
+            updateMinMaxAt(row);
+        }
+        super.modified(is);
+    }
+
+    /**
+     * Maintains the min and max indexes after the value of a row
+     * has changed.  The min and max are only recomputed from scratch
+     * when the modified row held one of them.
+     * 
+     * @param row the modified row
+     */
+    protected void updateMinMaxAt(int row) {
+        if (! min_max_updated) return;
+        if (row == minIndex || row == maxIndex) {
+            min_max_updated = false;
+        }
+        else if (! isValueUndefined(row)) {
+            if (minIndex == -1 || compare(row, minIndex) < 0) {
+                minIndex = row;
+            }
+            if (maxIndex == -1 || compare(row, maxIndex) > 0) {
+                maxIndex = row;
+            }
+        }
+    }
+
     protected void set(int index) {
         disableNotify();
         setValueUndefined(index, false);
@@ -0,0 +1,138 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.column;
+
+import infovis.utils.IntSet;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * <b>MappedDoubleColumn</b> is a read-only double column backed by a
+ * <code>DoubleBuffer</code>, usually a view on a memory-mapped file.
+ * 
+ * <p>Values are read from the buffer without being copied.  Trying
+ * to change the column throws a {@link ReadOnlyColumnException}.
+ * When serialized, the column is replaced by a {@link DoubleColumn}
+ * holding a copy of its values.
+ * 
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class MappedDoubleColumn extends AbstractDoubleColumn {
+    private static final long serialVersionUID = -5318830226049917202L;
+    protected transient DoubleBuffer values;
+
+    /**
+     * Creates a MappedDoubleColumn.
+     * 
+     * @param name the column name
+     * @param values the buffer holding the values from index 0 to
+     * its limit
+     * @param undefined the set of rows with undefined values or null
+     */
+    public MappedDoubleColumn(String name, DoubleBuffer values, IntSet undefined) {
+        super(name);
+        this.values = values;
+        this.undefined = undefined;
+    }
+
+    /**
+     * Creates a MappedDoubleColumn with no undefined value.
+     * 
+     * @param name the column name
+     * @param values the buffer holding the values
+     */
+    public MappedDoubleColumn(String name, DoubleBuffer values) {
+        this(name, values, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double get(int index) {
+        return values.get(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void set(int index, double element) {
+        readonly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setExtend(int index, double element) {
+        readonly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setValueUndefined(int i, boolean undef) {
+        if (isValueUndefined(i) != undef) {
+            readonly();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        return values.limit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setSize(int newSize) {
+        if (newSize != size()) {
+            readonly();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() {
+        if (size() != 0) {
+            readonly();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int capacity() {
+        return values.capacity();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > capacity()) {
+            readonly();
+        }
+    }
+
+    protected Object writeReplace() {
+        DoubleColumn copy = new DoubleColumn(getName(), size());
+        for (int i = 0; i < size(); i++) {
+            if (isValueUndefined(i)) {
+                copy.setValueUndefined(i, true);
+            }
+            else {
+                copy.setExtend(i, get(i));
+            }
+        }
+        copy.getMetadata().addAttributes(getMetadata());
+        return copy;
+    }
+}
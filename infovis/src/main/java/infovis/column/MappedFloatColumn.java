@@ -0,0 +1,138 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.column;
+
+import infovis.utils.IntSet;
+
+import java.nio.FloatBuffer;
+
+/**
+ * <b>MappedFloatColumn</b> is a read-only float column backed by a
+ * <code>FloatBuffer</code>, usually a view on a memory-mapped file.
+ * 
+ * <p>Values are read from the buffer without being copied.  Trying
+ * to change the column throws a {@link ReadOnlyColumnException}.
+ * When serialized, the column is replaced by a {@link FloatColumn}
+ * holding a copy of its values.
+ * 
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class MappedFloatColumn extends AbstractFloatColumn {
+    private static final long serialVersionUID = 4270168215734816375L;
+    protected transient FloatBuffer values;
+
+    /**
+     * Creates a MappedFloatColumn.
+     * 
+     * @param name the column name
+     * @param values the buffer holding the values from index 0 to
+     * its limit
+     * @param undefined the set of rows with undefined values or null
+     */
+    public MappedFloatColumn(String name, FloatBuffer values, IntSet undefined) {
+        super(name);
+        this.values = values;
+        this.undefined = undefined;
+    }
+
+    /**
+     * Creates a MappedFloatColumn with no undefined value.
+     * 
+     * @param name the column name
+     * @param values the buffer holding the values
+     */
+    public MappedFloatColumn(String name, FloatBuffer values) {
+        this(name, values, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public float get(int index) {
+        return values.get(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void set(int index, float element) {
+        readonly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setExtend(int index, float element) {
+        readonly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setValueUndefined(int i, boolean undef) {
+        if (isValueUndefined(i) != undef) {
+            readonly();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        return values.limit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setSize(int newSize) {
+        if (newSize != size()) {
+            readonly();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() {
+        if (size() != 0) {
+            readonly();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int capacity() {
+        return values.capacity();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > capacity()) {
+            readonly();
+        }
+    }
+
+    protected Object writeReplace() {
+        FloatColumn copy = new FloatColumn(getName(), size());
+        for (int i = 0; i < size(); i++) {
+            if (isValueUndefined(i)) {
+                copy.setValueUndefined(i, true);
+            }
+            else {
+                copy.setExtend(i, get(i));
+            }
+        }
+        copy.getMetadata().addAttributes(getMetadata());
+        return copy;
+    }
+}
@@ -0,0 +1,291 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.column;
+
+import infovis.utils.AbstractRowIterator;
+import infovis.utils.ChangeManager;
+import infovis.utils.RowIterator;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.text.MutableAttributeSet;
+
+import cern.colt.Sorting;
+import cern.colt.function.IntComparator;
+
+/**
+ * <b>NumberColumnIndex</b> maintains the defined rows of a
+ * <code>NumberColumn</code> sorted by increasing values.
+ *
+ * <p>The index listens to its column and is lazily recomputed
+ * after the column has been modified.  It allows range queries
+ * to find the rows whose values lie in an interval with a binary
+ * search, and to enumerate the rows entering or leaving the
+ * interval when its bounds change.
+ *
+ * <p>Use {@link #get(NumberColumn)} to share the index of a column,
+ * it is kept in the column client properties.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class NumberColumnIndex implements ChangeListener {
+    /** Name of the client property holding the index. */
+    public static final String INDEX_PROPERTY = "NumberColumnIndex";
+    protected NumberColumn column;
+    protected int[]        rows;
+    protected double[]     values;
+    protected int          size;
+    protected int          version;
+    protected boolean      valid;
+
+    /**
+     * Creates an index over a specified column.
+     * @param column the column
+     */
+    public NumberColumnIndex(NumberColumn column) {
+        this.column = column;
+        column.addChangeListener(this);
+    }
+
+    /**
+     * Returns the index associated with a column, creating it if
+     * needed.
+     * @param column the column
+     * @return the index associated with the column
+     */
+    public static NumberColumnIndex get(NumberColumn column) {
+        MutableAttributeSet prop = column.getClientProperty();
+        NumberColumnIndex index =
+            (NumberColumnIndex) prop.getAttribute(INDEX_PROPERTY);
+        if (index == null) {
+            index = new NumberColumnIndex(column);
+            prop.addAttribute(INDEX_PROPERTY, index);
+        }
+        return index;
+    }
+
+    /**
+     * Removes the index associated with a column, if any.
+     * @param column the column
+     */
+    public static void remove(NumberColumn column) {
+        MutableAttributeSet prop = column.getClientProperty();
+        NumberColumnIndex index =
+            (NumberColumnIndex) prop.getAttribute(INDEX_PROPERTY);
+        if (index != null) {
+            prop.removeAttribute(INDEX_PROPERTY);
+            index.dispose();
+        }
+    }
+
+    /**
+     * Stops listening to the column.
+     */
+    public void dispose() {
+        column.removeChangeListener(this);
+        rows = null;
+        values = null;
+        valid = false;
+    }
+
+    /**
+     * Returns the indexed column.
+     * @return the indexed column
+     */
+    public NumberColumn getColumn() {
+        return column;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void stateChanged(ChangeEvent e) {
+        invalidate();
+    }
+
+    /**
+     * Marks the index as needing to be recomputed.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Returns true if the index is up to date with the column.
+     * @return true if the index is up to date with the column
+     */
+    public boolean isValid() {
+        if (column instanceof ChangeManager
+                && ((ChangeManager) column).getModCount() != 0) {
+            // modifications not notified yet
+            return false;
+        }
+        return valid;
+    }
+
+    /**
+     * Recomputes the index if needed.
+     */
+    public void validate() {
+        if (isValid()) return;
+        int n = column.size();
+        if (rows == null || rows.length < n) {
+            rows = new int[n];
+            values = new double[n];
+        }
+        size = 0;
+        for (int row = 0; row < n; row++) {
+            if (!column.isValueUndefined(row)) {
+                rows[size++] = row;
+            }
+        }
+        Sorting.mergeSort(rows, 0, size, new IntComparator() {
+            public int compare(int a, int b) {
+                return Double.compare(
+                        column.getDoubleAt(a),
+                        column.getDoubleAt(b));
+            }
+        });
+        for (int i = 0; i < size; i++) {
+            values[i] = column.getDoubleAt(rows[i]);
+        }
+        version++;
+        valid = true;
+    }
+
+    /**
+     * Returns a number incremented each time the index is
+     * recomputed.
+     * @return the version of the index
+     */
+    public int getVersion() {
+        validate();
+        return version;
+    }
+
+    /**
+     * Returns the number of indexed rows.
+     * @return the number of indexed rows
+     */
+    public int size() {
+        validate();
+        return size;
+    }
+
+    /**
+     * Returns the row at a specified position in the index.
+     * @param pos the position
+     * @return the row at the specified position
+     */
+    public int getRowAt(int pos) {
+        validate();
+        return rows[pos];
+    }
+
+    /**
+     * Returns the value at a specified position in the index.
+     * @param pos the position
+     * @return the value at the specified position
+     */
+    public double getValueAt(int pos) {
+        validate();
+        return values[pos];
+    }
+
+    /**
+     * Returns the first position whose value is greater or equal to
+     * the specified value, or the size of the index.
+     * @param v the value
+     * @return the first position whose value is greater or equal to
+     * the specified value
+     */
+    public int lowerBound(double v) {
+        validate();
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < v) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the first position whose value is strictly greater
+     * than the specified value, or the size of the index.
+     * @param v the value
+     * @return the first position whose value is greater than the
+     * specified value
+     */
+    public int upperBound(double v) {
+        validate();
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] <= v) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns an iterator over the rows stored between two
+     * positions of the index.
+     * @param from the first position
+     * @param to the position following the last position
+     * @return a RowIterator
+     */
+    public RowIterator iterator(int from, int to) {
+        validate();
+        return new PositionIterator(
+                Math.max(0, from),
+                Math.min(size, to));
+    }
+
+    class PositionIterator extends AbstractRowIterator {
+        int pos;
+        int end;
+
+        PositionIterator(int pos, int end) {
+            this.pos = pos;
+            this.end = end;
+        }
+
+        public boolean hasNext() {
+            return pos < end;
+        }
+
+        public int nextRow() {
+            return rows[pos++];
+        }
+
+        public int peekRow() {
+            return rows[pos];
+        }
+
+        public RowIterator copy() {
+            return new PositionIterator(pos, end);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "cannot remove from a NumberColumnIndex");
+        }
+    }
+}
@@ -85,11 +85,34 @@ public class PagedDoubleColumn extends ChunkedDoubleColumn {
     /**
      * {@inheritDoc}
      */
-    protected void set(int index) {
-        int c = indexToChunk(index);
-        Ref ref = (Ref)chunkRefs.get(c);
-        ref.touch();
-        super.set(index);
+    public double get(int index) {
+        Ref ref = (Ref)chunkRefs.get(indexToChunk(index));
+        ByteBuffer chunk = ref.pin();
+        try {
+            return chunk.getDouble(8*indexToCIndex(index));
+        }
+        finally {
+            ref.unpin();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>The page is pinned while it is modified so it cannot be
+     * paged out before being marked dirty.
+     */
+    public void set(int index, double value) {
+        Ref ref = (Ref)chunkRefs.get(indexToChunk(index));
+        ByteBuffer chunk = ref.pin();
+        try {
+            chunk.putDouble(8*indexToCIndex(index), value);
+            ref.touch();
+        }
+        finally {
+            ref.unpin();
+        }
+        set(index);
     }
     
 
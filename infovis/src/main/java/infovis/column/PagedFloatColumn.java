@@ -80,11 +80,34 @@ public class PagedFloatColumn extends ChunkedFloatColumn {
     /**
      * {@inheritDoc}
      */
-    protected void set(int index) {
-        int c = indexToChunk(index);
-        Ref ref = (Ref)chunkRefs.get(c);
-        ref.touch();
-        super.set(index);
+    public float get(int index) {
+        Ref ref = (Ref)chunkRefs.get(indexToChunk(index));
+        ByteBuffer chunk = ref.pin();
+        try {
+            return chunk.getFloat(4*indexToCIndex(index));
+        }
+        finally {
+            ref.unpin();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>The page is pinned while it is modified so it cannot be
+     * paged out before being marked dirty.
+     */
+    public void set(int index, float value) {
+        Ref ref = (Ref)chunkRefs.get(indexToChunk(index));
+        ByteBuffer chunk = ref.pin();
+        try {
+            chunk.putFloat(4*indexToCIndex(index), value);
+            ref.touch();
+        }
+        finally {
+            ref.unpin();
+        }
+        set(index);
     }
     
     /**
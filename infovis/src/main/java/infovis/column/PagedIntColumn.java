@@ -86,11 +86,34 @@ public class PagedIntColumn extends ChunkedIntColumn {
     /**
      * {@inheritDoc}
      */
-    protected void set(int index) {
-        int c = indexToChunk(index);
-        Ref ref = (Ref)chunkRefs.get(c);
-        ref.touch();
-        super.set(index);
+    public int get(int index) {
+        Ref ref = (Ref)chunkRefs.get(indexToChunk(index));
+        ByteBuffer chunk = ref.pin();
+        try {
+            return chunk.getInt(4*indexToCIndex(index));
+        }
+        finally {
+            ref.unpin();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>The page is pinned while it is modified so it cannot be
+     * paged out before being marked dirty.
+     */
+    public void set(int index, int value) {
+        Ref ref = (Ref)chunkRefs.get(indexToChunk(index));
+        ByteBuffer chunk = ref.pin();
+        try {
+            chunk.putInt(4*indexToCIndex(index), value);
+            ref.touch();
+        }
+        finally {
+            ref.unpin();
+        }
+        set(index);
     }
     
     /**
@@ -19,6 +19,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
 
 /**
  * Columns of shapes and RectPool management.
@@ -178,6 +179,73 @@ public class ShapeColumn extends BasicObjectColumn {
         set(index, null);
     }
 
+    /**
+     * Exchanges the shapes of this column with the shapes of
+     * another column and notifies the listeners of this column.
+     * 
+     * <p>Allows double buffering: shapes computed in a back
+     * column are made visible in one step.
+     * 
+     * @param other the other column
+     */
+    public void swap(ShapeColumn other) {
+        int oldSize = size();
+        exchangeValues(other);
+        modified(0, Math.max(oldSize, size()));
+    }
+
+    /**
+     * Replaces the shapes of this column by copies of the shapes
+     * of another column, returning the rectangles to the RectPool.
+     * 
+     * @param other the other column
+     */
+    public void copyShapes(ShapeColumn other) {
+        try {
+            disableNotify();
+            clear();
+            ensureCapacity(other.size());
+            for (int i = 0; i < other.size(); i++) {
+                add(copyShape(other.get(i)));
+            }
+        }
+        finally {
+            enableNotify();
+        }
+    }
+
+    /**
+     * Returns a copy of a shape that can be modified without
+     * changing the original, allocating rectangles from the RectPool.
+     * Immutable or unknown shapes are returned unchanged.
+     * 
+     * @param s the shape or null
+     * @return a copy of the shape or null
+     */
+    public static Shape copyShape(Shape s) {
+        if (s == null) {
+            return null;
+        }
+        if (s instanceof Rectangle2D.Float) {
+            return RectPool.copyRect((Rectangle2D) s);
+        }
+        if (s instanceof CompositeShape) {
+            CompositeShape cs = (CompositeShape) s;
+            CompositeShape ret = new CompositeShape();
+            for (int i = 0; i < cs.getShapeCount(); i++) {
+                ret.addShape(copyShape(cs.getShape(i)));
+            }
+            return ret;
+        }
+        if (s instanceof RectangularShape) {
+            return (Shape) ((RectangularShape) s).clone();
+        }
+        if (s instanceof GeneralPath) {
+            return (Shape) ((GeneralPath) s).clone();
+        }
+        return s;
+    }
+
     /**
      * Returns the ShapeColumn at the specified index in the
      * table.
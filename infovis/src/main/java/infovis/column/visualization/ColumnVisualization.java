@@ -10,6 +10,7 @@ package infovis.column.visualization;
 import infovis.Column;
 import infovis.Table;
 import infovis.Visualization;
+import infovis.column.AbstractDoubleColumn;
 import infovis.column.DoubleColumn;
 import infovis.column.IntColumn;
 import infovis.column.NumberColumn;
@@ -164,7 +165,11 @@ public class ColumnVisualization extends DefaultVisualization
     }
     
     protected void computeRulers(Rectangle2D bounds) {
+        Table rulers = getRulerTable();
         if (rulers == null) return;
+        AbstractDoubleColumn rulersSize = DoubleColumn.findColumn(rulers, "size");
+        IntColumn rulersColor = IntColumn.findColumn(rulers, "color");
+        IntColumn rulersRow = IntColumn.findColumn(rulers, "row");
         int nrows = table.getRowCount();
         Column labels = getVisualColumn(VISUAL_LABEL);
         double w;
@@ -10,6 +10,9 @@ package infovis.column.visualization;
 import infovis.Column;
 import infovis.Table;
 import infovis.Visualization;
+import infovis.column.AbstractDoubleColumn;
+import infovis.column.DoubleColumn;
+import infovis.column.IntColumn;
 import infovis.column.ObjectColumn;
 import infovis.column.StringColumn;
 import infovis.table.DefaultTable;
@@ -90,7 +93,11 @@ public class ColumnsVisualization extends ColumnVisualization {
     
     protected void computeRulers(Rectangle2D bounds) {
         super.computeRulers(bounds);
+        Table rulers = getRulerTable();
         if (rulers == null) return;
+        AbstractDoubleColumn rulersSize = DoubleColumn.findColumn(rulers, "size");
+        IntColumn rulersColor = IntColumn.findColumn(rulers, "color");
+        IntColumn rulersRow = IntColumn.findColumn(rulers, "row");
         if (visualizationColumn.size() == 0) return;
         ColumnVisualization vis = (ColumnVisualization)visualizationColumn.get(0);
         int nrows = realTable.getRowCount();
@@ -0,0 +1,374 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.graph;
+
+import infovis.Graph;
+import infovis.graph.event.GraphChangedEvent;
+import infovis.graph.event.GraphChangedListener;
+import infovis.utils.RowIterator;
+
+import javax.swing.text.MutableAttributeSet;
+
+import cern.colt.list.IntArrayList;
+
+/**
+ * <b>CompressedGraph</b> is an immutable snapshot of the topology of a
+ * {@link Graph} stored in compressed sparse row form.
+ *
+ * <p>For each vertex <code>v</code>, the outgoing edges are stored
+ * contiguously in <code>int</code> arrays from
+ * <code>getStart(v)</code> to <code>getEnd(v)</code>, along with the
+ * vertex at the other end of each edge.  Vertices and edges keep
+ * their index in the graph; removed vertices have no edges.
+ * Algorithms can then traverse the graph without allocating
+ * iterators and with good memory locality.
+ *
+ * <p>Use {@link #get(Graph)} to share the snapshot of a graph; it is
+ * kept in the graph client properties and recomputed after the graph
+ * has been modified.  A snapshot already obtained is never modified.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class CompressedGraph {
+    /** Name of the client property holding the shared snapshot. */
+    public static final String SNAPSHOT_PROPERTY = "CompressedGraph";
+    protected Graph     graph;
+    protected boolean   directed;
+    protected int[]     vertices;
+    protected int       vertexCapacity;
+    protected int       edgeCapacity;
+    protected Adjacency out;
+    protected Adjacency in;
+    protected Adjacency incident;
+
+    /**
+     * <b>Adjacency</b> holds, for each vertex, a range of edges
+     * and the vertices at the other end of these edges.
+     */
+    public static class Adjacency {
+        protected int[] offsets;
+        protected int[] edges;
+        protected int[] vertices;
+
+        protected Adjacency(int[] offsets, int[] edges, int[] vertices) {
+            this.offsets = offsets;
+            this.edges = edges;
+            this.vertices = vertices;
+        }
+
+        /**
+         * Returns the position of the first edge of a vertex.
+         * @param v the vertex
+         * @return the position of the first edge of the vertex
+         */
+        public int getStart(int v) {
+            return offsets[v];
+        }
+
+        /**
+         * Returns the position following the last edge of a vertex.
+         * @param v the vertex
+         * @return the position following the last edge of the vertex
+         */
+        public int getEnd(int v) {
+            return offsets[v+1];
+        }
+
+        /**
+         * Returns the number of edges of a vertex.
+         * @param v the vertex
+         * @return the number of edges of the vertex
+         */
+        public int getDegree(int v) {
+            return offsets[v+1] - offsets[v];
+        }
+
+        /**
+         * Returns the edge stored at a specified position.
+         * @param pos the position
+         * @return the edge stored at the position
+         */
+        public int getEdge(int pos) {
+            return edges[pos];
+        }
+
+        /**
+         * Returns the vertex at the other end of the edge stored
+         * at a specified position.
+         * @param pos the position
+         * @return the other vertex of the edge stored at the position
+         */
+        public int getVertex(int pos) {
+            return vertices[pos];
+        }
+
+        /**
+         * Returns the array of offsets, indexed by vertex.
+         * BEWARE! no copy is done and the array should only be read.
+         * @return the array of offsets
+         */
+        public int[] getOffsets() {
+            return offsets;
+        }
+
+        /**
+         * Returns the array of edges.
+         * BEWARE! no copy is done and the array should only be read.
+         * @return the array of edges
+         */
+        public int[] getEdges() {
+            return edges;
+        }
+
+        /**
+         * Returns the array of vertices at the other end of the edges.
+         * BEWARE! no copy is done and the array should only be read.
+         * @return the array of vertices
+         */
+        public int[] getVertices() {
+            return vertices;
+        }
+    }
+
+    /**
+     * Builds the snapshot of a graph.
+     * @param graph the graph
+     */
+    public CompressedGraph(Graph graph) {
+        this.graph = graph;
+        this.directed = graph.isDirected();
+        IntArrayList list = new IntArrayList(graph.getVerticesCount());
+        for (RowIterator iter = graph.vertexIterator(); iter.hasNext(); ) {
+            int v = iter.nextRow();
+            list.add(v);
+            vertexCapacity = Math.max(vertexCapacity, v+1);
+        }
+        list.trimToSize();
+        vertices = list.elements();
+        out = build(true);
+        in = build(false);
+    }
+
+    protected Adjacency build(boolean outgoing) {
+        int[] offsets = new int[vertexCapacity+1];
+        int total = 0;
+        for (int i = 0; i < vertices.length; i++) {
+            int v = vertices[i];
+            offsets[v+1] = outgoing
+                ? graph.getOutDegree(v)
+                : graph.getInDegree(v);
+            total += offsets[v+1];
+        }
+        for (int v = 0; v < vertexCapacity; v++) {
+            offsets[v+1] += offsets[v];
+        }
+        int[] edges = new int[total];
+        int[] others = new int[total];
+        RowIterator iter = null;
+        for (int i = 0; i < vertices.length; i++) {
+            int v = vertices[i];
+            int pos = offsets[v];
+            iter = outgoing
+                ? graph.outEdgeIterator(v, iter)
+                : graph.inEdgeIterator(v, iter);
+            while (iter.hasNext()) {
+                int e = iter.nextRow();
+                edges[pos] = e;
+                others[pos] = outgoing
+                    ? graph.getSecondVertex(e)
+                    : graph.getFirstVertex(e);
+                pos++;
+                edgeCapacity = Math.max(edgeCapacity, e+1);
+            }
+            assert(pos == offsets[v+1]);
+        }
+        return new Adjacency(offsets, edges, others);
+    }
+
+    /**
+     * Returns the snapshot associated with a graph, recomputing it
+     * if the graph has changed since it was last computed.
+     *
+     * <p>Graphs that do not support client properties or change
+     * notification, and proxies of another graph, get a new snapshot
+     * at each call.
+     *
+     * @param graph the graph
+     * @return the snapshot of the graph
+     */
+    public static CompressedGraph get(Graph graph) {
+        Cache cache;
+        try {
+            MutableAttributeSet prop = graph.getClientProperty();
+            cache = (Cache) prop.getAttribute(SNAPSHOT_PROPERTY);
+            if (cache != null && cache.graph != graph) {
+                // proxies share the client properties of their graph
+                return new CompressedGraph(graph);
+            }
+            if (cache == null) {
+                cache = new Cache(graph);
+                graph.addGraphChangedListener(cache);
+                prop.addAttribute(SNAPSHOT_PROPERTY, cache);
+            }
+        }
+        catch(UnsupportedOperationException e) {
+            return new CompressedGraph(graph);
+        }
+        CompressedGraph snapshot = cache.snapshot;
+        // Other listeners can be notified before the cache, but
+        // each notification reports one change of the vertex or
+        // edge count.
+        if (snapshot == null
+                || snapshot.getVerticesCount() != graph.getVerticesCount()
+                || snapshot.getEdgesCount() != graph.getEdgesCount()) {
+            snapshot = new CompressedGraph(graph);
+            cache.snapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    static class Cache implements GraphChangedListener {
+        Graph graph;
+        CompressedGraph snapshot;
+
+        Cache(Graph graph) {
+            this.graph = graph;
+        }
+
+        public void graphChanged(GraphChangedEvent e) {
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Returns the graph.
+     * @return the graph
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns true if the graph was directed.
+     * @return true if the graph was directed
+     */
+    public boolean isDirected() {
+        return directed;
+    }
+
+    /**
+     * Returns the number of vertices.
+     * @return the number of vertices
+     */
+    public int getVerticesCount() {
+        return vertices.length;
+    }
+
+    /**
+     * Returns the number of edges.
+     * @return the number of edges
+     */
+    public int getEdgesCount() {
+        return out.edges.length;
+    }
+
+    /**
+     * Returns the vertices in the order of the graph
+     * vertex iterator.
+     * BEWARE! no copy is done and the array should only be read.
+     * @return the array of vertices
+     */
+    public int[] getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Returns one more than the largest vertex index, to
+     * allocate arrays indexed by vertex.
+     * @return the vertex capacity
+     */
+    public int getVertexCapacity() {
+        return vertexCapacity;
+    }
+
+    /**
+     * Returns one more than the largest edge index, to
+     * allocate arrays indexed by edge.
+     * @return the edge capacity
+     */
+    public int getEdgeCapacity() {
+        return edgeCapacity;
+    }
+
+    /**
+     * Returns the outgoing edges of each vertex, where the other
+     * vertex is the second vertex of the edge.
+     * @return the outgoing adjacency
+     */
+    public Adjacency getOut() {
+        return out;
+    }
+
+    /**
+     * Returns the incoming edges of each vertex, where the other
+     * vertex is the first vertex of the edge.
+     * @return the incoming adjacency
+     */
+    public Adjacency getIn() {
+        return in;
+    }
+
+    /**
+     * Returns the outgoing followed by the incoming edges of each
+     * vertex, in the order of <code>Graph.edgeIterator(int)</code>.
+     * @return the incident adjacency
+     */
+    public synchronized Adjacency getIncident() {
+        if (incident == null) {
+            int[] offsets = new int[vertexCapacity+1];
+            int total = out.edges.length + in.edges.length;
+            int[] edges = new int[total];
+            int[] others = new int[total];
+            int pos = 0;
+            for (int v = 0; v < vertexCapacity; v++) {
+                offsets[v] = pos;
+                int n = out.getDegree(v);
+                System.arraycopy(out.edges, out.offsets[v], edges, pos, n);
+                System.arraycopy(out.vertices, out.offsets[v], others, pos, n);
+                pos += n;
+                n = in.getDegree(v);
+                System.arraycopy(in.edges, in.offsets[v], edges, pos, n);
+                System.arraycopy(in.vertices, in.offsets[v], others, pos, n);
+                pos += n;
+            }
+            offsets[vertexCapacity] = pos;
+            incident = new Adjacency(offsets, edges, others);
+        }
+        return incident;
+    }
+
+    /**
+     * Returns the adjacency followed by traversals: the outgoing
+     * edges for directed graphs and the incident edges otherwise.
+     * @return the adjacency followed by traversals
+     */
+    public Adjacency getSuccessors() {
+        return directed ? getOut() : getIncident();
+    }
+
+    /**
+     * Returns the adjacency followed backwards by traversals: the
+     * incoming edges for directed graphs and the incident edges
+     * otherwise.
+     * @return the adjacency followed backwards by traversals
+     */
+    public Adjacency getPredecessors() {
+        return directed ? getIn() : getIncident();
+    }
+}
@@ -14,15 +14,21 @@ import infovis.column.AbstractIntColumn;
 import infovis.column.IntColumn;
 import infovis.graph.event.GraphChangedEvent;
 import infovis.graph.event.GraphChangedListener;
+import infovis.table.DefaultDynamicTable;
 import infovis.table.DefaultTable;
 import infovis.utils.RowIterator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import javax.swing.event.EventListenerList;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.text.MutableAttributeSet;
 import javax.swing.text.SimpleAttributeSet;
 
+import cern.colt.map.OpenIntIntHashMap;
+
 /**
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.47 $
@@ -64,6 +70,12 @@ public class DefaultGraph implements Graph, TableModelListener {
     /** Name of the column containing the previous incoming edge in the edge table. */
     public static final String    PREVINEDGE_COLUMN  = "#PrevInEdge";
 
+    /** Name of the column containing the number of outgoing edges of each vertex. */
+    public static final String    OUTDEGREE_COLUMN   = "#OutDegree";
+
+    /** Name of the column containing the number of incoming edges of each vertex. */
+    public static final String    INDEGREE_COLUMN    = "#InDegree";
+
     /** The Edge table */
     protected DynamicTable        edgeTable;
     protected MutableAttributeSet metadata;
@@ -153,6 +165,19 @@ public class DefaultGraph implements Graph, TableModelListener {
     /** The previous incoming edge in the list linked from vertexLastInEdge(v) to vertexFirstInEdge(v) */ 
     protected AbstractIntColumn           prevInEdge;
 
+    /** The number of outgoing edges of each vertex. */
+    protected AbstractIntColumn           vertexOutDegree;
+
+    /** The number of incoming edges of each vertex. */
+    protected AbstractIntColumn           vertexInDegree;
+
+    /**
+     * When not null, holds for each vertex an OpenIntIntHashMap
+     * associating the second vertex of its outgoing edges to the
+     * first such edge.
+     */
+    protected ArrayList                   adjacencyIndex;
+
     protected EventListenerList   listeners;
 
     protected boolean             directed             = true;
@@ -256,6 +281,10 @@ public class DefaultGraph implements Graph, TableModelListener {
         vertexLastInEdge = factory.createVertexColumn(LASTINEDGE_COLUMN);
         vertexTable.addColumn(vertexFirstInEdge);
         vertexTable.addColumn(vertexLastInEdge);
+        vertexOutDegree = factory.createVertexColumn(OUTDEGREE_COLUMN);
+        vertexInDegree = factory.createVertexColumn(INDEGREE_COLUMN);
+        vertexTable.addColumn(vertexOutDegree);
+        vertexTable.addColumn(vertexInDegree);
       
         vertexTable.getMetadata().addAttribute(GRAPH_METADATA, this);
         vertexTable.addTableModelListener(this);
@@ -310,6 +339,9 @@ public class DefaultGraph implements Graph, TableModelListener {
         getEdgeTable().getMetadata().addAttribute(GRAPH_METADATA, this);
         getVertexTable().clear();
         getVertexTable().getMetadata().addAttribute(GRAPH_METADATA, this);
+        if (adjacencyIndex != null) {
+            adjacencyIndex.clear();
+        }
     }
 
     /**
@@ -353,6 +385,31 @@ public class DefaultGraph implements Graph, TableModelListener {
         return vertexTable.addRow(); // will trigger a notification
     }
 
+    /**
+     * Adds a specified number of vertices to the graph.
+     * 
+     * @param count the number of vertices
+     * @return the first vertex number, the vertices being numbered
+     * consecutively.
+     */
+    public int addVertices(int count) {
+        if (vertexTable instanceof DefaultDynamicTable) {
+            // triggers a single notification
+            return ((DefaultDynamicTable)vertexTable).addRows(count);
+        }
+        int first = NIL;
+        for (int i = 0; i < count; i++) {
+            int v = addVertex();
+            if (i == 0) {
+                first = v;
+            }
+            else if (v != first + i) {
+                throw new GraphException("non consecutive vertex", v, NIL);
+            }
+        }
+        return first;
+    }
+
     protected void vertexInserted(int v) {
         try {
             disableNotify();
@@ -360,6 +417,8 @@ public class DefaultGraph implements Graph, TableModelListener {
             vertexLastEdge.setExtend(v, Graph.NIL);
             vertexFirstInEdge.setExtend(v, Graph.NIL);
             vertexLastInEdge.setExtend(v, Graph.NIL);
+            vertexOutDegree.setExtend(v, 0);
+            vertexInDegree.setExtend(v, 0);
         } finally {
             enableNotify();
         }
@@ -396,6 +455,11 @@ public class DefaultGraph implements Graph, TableModelListener {
             vertexLastEdge.setValueUndefined(vertex, true);
             vertexFirstInEdge.setValueUndefined(vertex, true);
             vertexLastInEdge.setValueUndefined(vertex, true);
+            vertexOutDegree.setValueUndefined(vertex, true);
+            vertexInDegree.setValueUndefined(vertex, true);
+            if (adjacencyIndex != null && vertex < adjacencyIndex.size()) {
+                adjacencyIndex.set(vertex, null);
+            }
         } finally {
             enableNotify();
         }
@@ -484,7 +548,11 @@ public class DefaultGraph implements Graph, TableModelListener {
                     vertexLastInEdge,
                     nextInEdge,
                     prevInEdge);
-
+            addDegree(vertexOutDegree, v1, 1);
+            addDegree(vertexInDegree, v2, 1);
+            if (adjacencyIndex != null) {
+                indexEdge(edge);
+            }
         } finally {
             enableNotify();
         }
@@ -493,6 +561,158 @@ public class DefaultGraph implements Graph, TableModelListener {
         return edge;
     }
 
+    /**
+     * Adds edges in bulk between pairs of vertices.
+     * 
+     * <p>The new edges are numbered consecutively after the last edge,
+     * in the order of the arrays, and are linked in the edge lists of
+     * their vertices exactly as by successive calls to
+     * {@link #addEdge(int, int)}.  The edge rows are allocated at once,
+     * the (vertex, edge) pairs of the block are sorted by vertex and
+     * each edge list is extended in one pass, so the cost only depends
+     * on the number of edges added, with all notifications
+     * suppressed until the graph is coherent.  The
+     * <code>GRAPH_EDGE_ADDED</code> events are then sent if the graph
+     * has listeners.
+     * 
+     * @param first the first vertex of each edge
+     * @param second the second vertex of each edge
+     * @param count the number of edges
+     * @return the first new edge or NIL if count is 0.
+     */
+    public int addEdges(int[] first, int[] second, int count) {
+        if (count == 0) {
+            return NIL;
+        }
+        int[] v1 = new int[count];
+        int[] v2 = new int[count];
+        for (int i = 0; i < count; i++) {
+            int a = first[i];
+            int b = second[i];
+            checkVertex(a);
+            checkVertex(b);
+            if (! isDirected() && a > b) {
+                v1[i] = b;
+                v2[i] = a;
+            }
+            else {
+                v1[i] = a;
+                v2[i] = b;
+            }
+        }
+        DynamicTable edges = getEdgeTable();
+        if (! (edges instanceof DefaultDynamicTable)) {
+            int e0 = addEdge(v1[0], v2[0]);
+            for (int i = 1; i < count; i++) {
+                addEdge(v1[i], v2[i]);
+            }
+            return e0;
+        }
+        int e0;
+        try {
+            disableNotify(); // prevents notification before the graph is
+            // coherent
+            e0 = ((DefaultDynamicTable)edges).addRows(count);
+            int last = e0 + count - 1;
+            edgeFirstVertex.ensureCapacity(last + 1);
+            edgeSecondVertex.ensureCapacity(last + 1);
+            for (int i = 0; i < count; i++) {
+                setFirstVertex(e0 + i, v1[i]);
+                setSecondVertex(e0 + i, v2[i]);
+            }
+            long[] keys = new long[count];
+            addEdgesIn(
+                    e0, v1, count, keys,
+                    vertexFirstEdge,
+                    vertexLastEdge,
+                    nextEdge,
+                    prevEdge,
+                    vertexOutDegree);
+            addEdgesIn(
+                    e0, v2, count, keys,
+                    vertexFirstInEdge,
+                    vertexLastInEdge,
+                    nextInEdge,
+                    prevInEdge,
+                    vertexInDegree);
+            if (adjacencyIndex != null) {
+                for (int e = e0; e <= last; e++) {
+                    indexEdge(e);
+                }
+            }
+        } finally {
+            enableNotify();
+        }
+        if (listeners != null) {
+            for (int i = 0; i < count; i++) {
+                fireGraphChangedListeners(e0 + i, GraphChangedEvent.GRAPH_EDGE_ADDED);
+            }
+        }
+        return e0;
+    }
+
+    /**
+     * Appends consecutive edges to the edge lists of their vertices.
+     * 
+     * @param e0 the first edge
+     * @param vertex the vertex of each edge in the lists
+     * @param count the number of edges
+     * @param keys a work array of count longs
+     * @param first the column of first edges
+     * @param last the column of last edges
+     * @param next the column of next edges
+     * @param prev the column of previous edges or null
+     * @param degree the column of degrees
+     */
+    protected void addEdgesIn(
+            int e0,
+            int[] vertex,
+            int count,
+            long[] keys,
+            AbstractIntColumn first,
+            AbstractIntColumn last,
+            AbstractIntColumn next,
+            AbstractIntColumn prev,
+            AbstractIntColumn degree) {
+        // sorts the (vertex, index) pairs of the block only, the
+        // index keeping the edges of a vertex in their order
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long)vertex[i] << 32) | i;
+        }
+        Arrays.sort(keys, 0, count);
+        next.setExtend(e0 + count - 1, NIL);
+        if (prev != null) {
+            prev.setExtend(e0 + count - 1, NIL);
+        }
+        int start = 0;
+        while (start < count) {
+            int v = (int)(keys[start] >>> 32);
+            int end = start + 1;
+            while (end < count && (int)(keys[end] >>> 32) == v) {
+                end++;
+            }
+            int p = last.get(v);
+            int e = e0 + (int)keys[start];
+            if (p == NIL) {
+                first.set(v, e);
+            }
+            else {
+                next.set(p, e);
+            }
+            for (int j = start; j < end; j++) {
+                e = e0 + (int)keys[j];
+                next.set(e, j + 1 < end ? e0 + (int)keys[j + 1] : NIL);
+                if (prev != null) {
+                    prev.set(e, p);
+                }
+                p = e;
+            }
+            last.set(v, p);
+            addDegree(degree, v, end - start);
+            start = end;
+        }
+    }
+
     protected void addEdgeIn(
             int edge,
             int v,
@@ -515,6 +735,10 @@ public class DefaultGraph implements Graph, TableModelListener {
             prev.setExtend(edge, p);
     }
 
+    protected void addDegree(AbstractIntColumn degree, int v, int d) {
+        degree.set(v, degree.get(v) + d);
+    }
+
     /**
      * Check graph invariants for the specified vertex
      * @param vertex the vertex
@@ -597,6 +821,11 @@ public class DefaultGraph implements Graph, TableModelListener {
                 vertexLastInEdge,
                 nextInEdge,
                 prevInEdge);
+        addDegree(vertexOutDegree, v1, -1);
+        addDegree(vertexInDegree, v2, -1);
+        if (adjacencyIndex != null) {
+            unindexEdge(edge, v1, v2);
+        }
         edgeFirstVertex.setExtend(edge, NIL);
         edgeFirstVertex.setValueUndefined(edge, true);
         edgeSecondVertex.setExtend(edge, NIL);
@@ -691,7 +920,7 @@ public class DefaultGraph implements Graph, TableModelListener {
 
         for (e = getFirstEdge(vertex); 
              e != NIL && index != 0; 
-             e = getNextEdge(e))
+             e = getNextEdge(e), index--)
             ;
 
         return e;
@@ -705,7 +934,7 @@ public class DefaultGraph implements Graph, TableModelListener {
 
         for (e = vertexFirstInEdge.get(vertex); 
                 e != NIL && index != 0; 
-                e = nextInEdge.get(e))
+                e = nextInEdge.get(e), index--)
             ;
 
         return e;
@@ -786,6 +1015,13 @@ public class DefaultGraph implements Graph, TableModelListener {
                 v2 = tmp;
             }
         }
+        if (adjacencyIndex != null) {
+            OpenIntIntHashMap map = getAdjacency(v1, false);
+            if (map == null || !map.containsKey(v2)) {
+                return NIL;
+            }
+            return map.get(v2);
+        }
         for (int e = getFirstEdge(v1); e != Graph.NIL; e = getNextEdge(e)) {
             if (getSecondVertex(e) == v2) {
                 return e;
@@ -801,6 +1037,81 @@ public class DefaultGraph implements Graph, TableModelListener {
         return NIL;
     }
 
+    /**
+     * Returns true if edges are looked up by {@link #getEdge(int, int)}
+     * using a hash-based adjacency index.
+     * 
+     * @return true if the adjacency index is maintained.
+     */
+    public boolean isAdjacencyIndexed() {
+        return adjacencyIndex != null;
+    }
+
+    /**
+     * Sets whether a hash-based adjacency index is maintained to
+     * find the edge between two vertices in constant expected time
+     * instead of scanning the outgoing edges of the first vertex.
+     * 
+     * @param indexed true to maintain the index.
+     */
+    public void setAdjacencyIndexed(boolean indexed) {
+        if (indexed == isAdjacencyIndexed()) return;
+        if (! indexed) {
+            adjacencyIndex = null;
+            return;
+        }
+        adjacencyIndex = new ArrayList(vertexTable.getRowCount());
+        for (RowIterator iter = vertexIterator(); iter.hasNext(); ) {
+            int v = iter.nextRow();
+            for (int e = getFirstEdge(v); e != NIL; e = getNextEdge(e)) {
+                indexEdge(e);
+            }
+        }
+    }
+
+    protected OpenIntIntHashMap getAdjacency(int v, boolean create) {
+        if (v < adjacencyIndex.size()) {
+            OpenIntIntHashMap map = (OpenIntIntHashMap) adjacencyIndex.get(v);
+            if (map != null || !create) {
+                return map;
+            }
+        }
+        else if (! create) {
+            return null;
+        }
+        while (adjacencyIndex.size() <= v) {
+            adjacencyIndex.add(null);
+        }
+        OpenIntIntHashMap map = new OpenIntIntHashMap(4);
+        adjacencyIndex.set(v, map);
+        return map;
+    }
+
+    protected void indexEdge(int edge) {
+        int v2 = getSecondVertex(edge);
+        OpenIntIntHashMap map = getAdjacency(getFirstVertex(edge), true);
+        if (! map.containsKey(v2)) {
+            map.put(v2, edge);
+        }
+    }
+
+    protected void unindexEdge(int edge, int v1, int v2) {
+        OpenIntIntHashMap map = getAdjacency(v1, false);
+        if (map == null 
+                || !map.containsKey(v2)
+                || map.get(v2) != edge) {
+            return;
+        }
+        map.removeKey(v2);
+        // look for a parallel edge, the removed edge is already unlinked
+        for (int e = getFirstEdge(v1); e != NIL; e = getNextEdge(e)) {
+            if (getSecondVertex(e) == v2) {
+                map.put(v2, e);
+                break;
+            }
+        }
+    }
+
     /**
      * Returns an edge between two specified vertices.
      * 
@@ -843,25 +1154,14 @@ public class DefaultGraph implements Graph, TableModelListener {
      * @return The out degree of the vertex.
      */
     public int getOutDegree(int vertex) {
-        int cnt = 0;
-        for (int edge = vertexFirstEdge.get(vertex); 
-                edge != -1; 
-                edge = nextEdge.get(edge)) {
-            cnt++;
-        }
-        return cnt;
+        return vertexOutDegree.get(vertex);
     }
 
     /**
      * {@inheritDoc}
      */
     public int getInDegree(int vertex) {
-        int cnt = 0;
-        for (int edge = vertexFirstInEdge.get(vertex); edge != -1; edge = nextInEdge
-                .get(edge)) {
-            cnt++;
-        }
-        return cnt;
+        return vertexInDegree.get(vertex);
     }
 
     /**
@@ -0,0 +1,159 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.graph;
+
+import infovis.Graph;
+
+/**
+ * <b>GraphBuilder</b> adds edges to a graph in blocks to speed up
+ * the loading of large graphs.
+ *
+ * <p>Edges are buffered in <code>int</code> arrays and added with
+ * {@link DefaultGraph#addEdges(int[], int[], int)} when the buffer is
+ * full or when {@link #flush()} is called.  The index returned by
+ * {@link #addEdge(int, int)} is the index the edge will have once
+ * flushed, so edge attributes can be set before, as long as no other
+ * edge is added to the graph in the meantime.  Vertices are added to
+ * the graph immediately.
+ *
+ * <p>Graphs other than {@link DefaultGraph} are built one edge at a
+ * time.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class GraphBuilder {
+    /** Default number of edges buffered before being added. */
+    public static final int DEFAULT_BLOCK_SIZE = 65536;
+    protected Graph        graph;
+    protected int[]        first;
+    protected int[]        second;
+    protected int          count;
+    protected int          nextEdge;
+
+    /**
+     * Creates a GraphBuilder for a graph.
+     * @param graph the graph
+     */
+    public GraphBuilder(Graph graph) {
+        this(graph, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a GraphBuilder for a graph, buffering a specified
+     * number of edges.
+     * @param graph the graph
+     * @param blockSize the number of edges buffered
+     */
+    public GraphBuilder(Graph graph, int blockSize) {
+        this.graph = graph;
+        if (graph instanceof DefaultGraph) {
+            first = new int[Math.max(1, blockSize)];
+            second = new int[first.length];
+        }
+    }
+
+    /**
+     * Returns the graph.
+     * @return the graph
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of buffered edges.
+     * @return the number of buffered edges
+     */
+    public int getBufferedCount() {
+        return count;
+    }
+
+    /**
+     * Adds a vertex to the graph.
+     * @return the new vertex
+     */
+    public int addVertex() {
+        return graph.addVertex();
+    }
+
+    /**
+     * Adds a specified number of vertices to the graph.
+     * @param n the number of vertices
+     * @return the first new vertex, the vertices being numbered
+     * consecutively
+     */
+    public int addVertices(int n) {
+        if (graph instanceof DefaultGraph) {
+            return ((DefaultGraph)graph).addVertices(n);
+        }
+        int v0 = Graph.NIL;
+        for (int i = 0; i < n; i++) {
+            int v = graph.addVertex();
+            if (i == 0) {
+                v0 = v;
+            }
+        }
+        return v0;
+    }
+
+    /**
+     * Adds an edge between two vertices.
+     * @param v1 the first vertex
+     * @param v2 the second vertex
+     * @return the index of the edge once added to the graph
+     */
+    public int addEdge(int v1, int v2) {
+        if (first == null) {
+            return graph.addEdge(v1, v2);
+        }
+        if (count == 0) {
+            nextEdge = graph.getEdgeTable().getLastRow() + 1;
+        }
+        first[count] = v1;
+        second[count] = v2;
+        count++;
+        int edge = nextEdge++;
+        if (count == first.length) {
+            flush();
+        }
+        return edge;
+    }
+
+    /**
+     * Adds edges between pairs of vertices.
+     * @param v1 the first vertex of each edge
+     * @param v2 the second vertex of each edge
+     * @param n the number of edges
+     * @return the index of the first edge once added to the graph
+     */
+    public int addEdges(int[] v1, int[] v2, int n) {
+        flush();
+        if (first == null) {
+            int e0 = Graph.NIL;
+            for (int i = 0; i < n; i++) {
+                int e = graph.addEdge(v1[i], v2[i]);
+                if (i == 0) {
+                    e0 = e;
+                }
+            }
+            return e0;
+        }
+        return ((DefaultGraph)graph).addEdges(v1, v2, n);
+    }
+
+    /**
+     * Adds the buffered edges to the graph.
+     */
+    public void flush() {
+        if (count == 0) return;
+        int n = count;
+        count = 0;
+        ((DefaultGraph)graph).addEdges(first, second, n);
+    }
+}
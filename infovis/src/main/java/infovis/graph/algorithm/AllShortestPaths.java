@@ -0,0 +1,286 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.graph.algorithm;
+
+import infovis.Graph;
+import infovis.column.NumberColumn;
+import infovis.graph.CompressedGraph;
+import infovis.utils.IndexedDoubleHeap;
+import infovis.utils.WorkerPool;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cern.colt.matrix.DoubleFactory2D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+
+/**
+ * <b>AllShortestPaths</b> computes the length of the shortest paths
+ * between all the pairs of vertices of a graph.
+ *
+ * <p>Vertices are numbered from 0 to n-1 in the order of the graph
+ * vertex iterator, returned by {@link #getVertices()}.  The sources are
+ * processed concurrently by the {@link WorkerPool}; each thread reuses
+ * its own distance array and queue, so no memory is allocated per
+ * source.  Unweighted graphs are traversed breadth first, weighted
+ * graphs with the algorithm of Dijkstra on an
+ * {@link IndexedDoubleHeap}.  Directed graphs follow the outgoing
+ * edges.
+ *
+ * <p>Each row of distances is passed to a {@link Sink}, so large
+ * graphs can be processed without allocating a dense matrix.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class AllShortestPaths extends Algorithm {
+    protected NumberColumn     edgeWeights;
+    protected int[]            vertices;
+    protected int[]            offsets;
+    protected int[]            targets;
+    protected double[]         weights;
+    protected volatile boolean canceled;
+
+    /**
+     * <b>Sink</b> receives the rows of distances.
+     *
+     * <p>The sink is called concurrently from several threads and the
+     * distance array is reused after the call returns.
+     */
+    public interface Sink {
+        /**
+         * Receives the distances from a source vertex to all the
+         * vertices, <code>Double.POSITIVE_INFINITY</code> for the
+         * unreachable ones.
+         * @param source the index of the source vertex
+         * @param distances the distances indexed by vertex index
+         */
+        void row(int source, double[] distances);
+    }
+
+    /**
+     * Creates an AllShortestPaths for a graph.
+     * @param graph the graph
+     * @param edgeWeights the (positive) edge weights or null
+     */
+    public AllShortestPaths(Graph graph, NumberColumn edgeWeights) {
+        super(graph);
+        this.edgeWeights = edgeWeights;
+        CompressedGraph csr = CompressedGraph.get(graph);
+        vertices = csr.getVertices();
+        int n = vertices.length;
+        int[] index = new int[csr.getVertexCapacity()];
+        for (int i = 0; i < n; i++) {
+            index[vertices[i]] = i;
+        }
+        // the adjacency renumbered by vertex index
+        CompressedGraph.Adjacency adj = csr.getSuccessors();
+        offsets = new int[n+1];
+        for (int i = 0; i < n; i++) {
+            offsets[i+1] = offsets[i] + adj.getDegree(vertices[i]);
+        }
+        targets = new int[offsets[n]];
+        if (edgeWeights != null) {
+            weights = new double[offsets[n]];
+        }
+        for (int i = 0; i < n; i++) {
+            int pos = offsets[i];
+            int v = vertices[i];
+            for (int j = adj.getStart(v); j < adj.getEnd(v); j++) {
+                targets[pos] = index[adj.getVertex(j)];
+                if (weights != null) {
+                    weights[pos] = getEdgeWeight(adj.getEdge(j));
+                }
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Creates an AllShortestPaths for an unweighted graph.
+     * @param graph the graph
+     */
+    public AllShortestPaths(Graph graph) {
+        this(graph, null);
+    }
+
+    protected double getEdgeWeight(int edge) {
+        if (edgeWeights.isValueUndefined(edge)) {
+            return 1;
+        }
+        double w = edgeWeights.getDoubleAt(edge);
+        if (w < 0) {
+            throw new IllegalArgumentException(
+                    "Negative weight for edge "+edge);
+        }
+        return w;
+    }
+
+    /**
+     * Returns the vertices in the order of their index.
+     * BEWARE! no copy is done and the array should only be read.
+     * @return the array of vertices
+     */
+    public int[] getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Returns the number of vertices.
+     * @return the number of vertices
+     */
+    public int getVerticesCount() {
+        return vertices.length;
+    }
+
+    /**
+     * Cancels the computation in progress.
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isCanceled() {
+        return canceled || super.isCanceled();
+    }
+
+    /**
+     * Computes the distances from all the vertices and sends them
+     * to a sink.
+     * @param sink the sink
+     * @return true if all the rows have been computed, false if the
+     * computation has been canceled
+     */
+    public boolean compute(final Sink sink) {
+        canceled = false;
+        final int n = vertices.length;
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger done = new AtomicInteger();
+        WorkerPool pool = WorkerPool.getInstance();
+        int blocks = WorkerPool.getBlockCount(n, pool.getThreadCount());
+        setProgressValues(0, n, "Distances");
+        pool.runBlocks(blocks, blocks, new WorkerPool.BlockTask() {
+            public void run(int block, int start, int end) {
+                double[] dist = new double[n];
+                int[] queue = weights == null ? new int[n] : null;
+                IndexedDoubleHeap heap = weights == null
+                    ? null : new IndexedDoubleHeap(n);
+                int s;
+                // sources are taken one at a time to balance the load
+                while (! canceled && (s = next.getAndIncrement()) < n) {
+                    Arrays.fill(dist, Double.POSITIVE_INFINITY);
+                    if (heap == null) {
+                        breadthFirst(s, dist, queue);
+                    }
+                    else {
+                        dijkstra(s, dist, heap);
+                    }
+                    sink.row(s, dist);
+                    int count = done.incrementAndGet();
+                    if (block == 0) {
+                        setProgress(count);
+                        if (AllShortestPaths.super.isCanceled()) {
+                            canceled = true;
+                        }
+                    }
+                }
+            }
+        });
+        terminate();
+        return ! canceled;
+    }
+
+    protected void breadthFirst(int s, double[] dist, int[] queue) {
+        int head = 0;
+        int tail = 0;
+        dist[s] = 0;
+        queue[tail++] = s;
+        while (head != tail) {
+            int u = queue[head++];
+            double d = dist[u] + 1;
+            for (int i = offsets[u]; i < offsets[u+1]; i++) {
+                int v = targets[i];
+                if (dist[v] == Double.POSITIVE_INFINITY) {
+                    dist[v] = d;
+                    queue[tail++] = v;
+                }
+            }
+        }
+    }
+
+    protected void dijkstra(int s, double[] dist, IndexedDoubleHeap heap) {
+        dist[s] = 0;
+        heap.insert(s, 0);
+        while (! heap.isEmpty()) {
+            int u = heap.pop();
+            double du = dist[u];
+            for (int i = offsets[u]; i < offsets[u+1]; i++) {
+                int v = targets[i];
+                double d = du + weights[i];
+                if (d < dist[v]) {
+                    dist[v] = d;
+                    heap.insert(v, d);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the distances between all the vertices into a new
+     * matrix.
+     * @return the matrix of distances, or null if the computation
+     * has been canceled
+     */
+    public DoubleMatrix2D compute() {
+        return compute((DoubleMatrix2D)null);
+    }
+
+    /**
+     * Computes the distances between all the vertices into a matrix.
+     * @param matrix the matrix to fill or null
+     * @return the matrix of distances, or null if the computation
+     * has been canceled
+     */
+    public DoubleMatrix2D compute(DoubleMatrix2D matrix) {
+        int size = vertices.length;
+        if (matrix == null
+                || matrix.columns() < size
+                || matrix.rows() < size) {
+            matrix = DoubleFactory2D.dense.make(size, size, Double.POSITIVE_INFINITY);
+        }
+        else if (matrix.columns() != size || matrix.rows() != size) {
+            matrix.assign(Double.POSITIVE_INFINITY);
+        }
+        final DoubleMatrix2D m = matrix;
+        Sink sink;
+        if (matrix instanceof DenseDoubleMatrix2D) {
+            // rows are disjoint
+            sink = new Sink() {
+                public void row(int source, double[] distances) {
+                    for (int j = 0; j < distances.length; j++) {
+                        m.setQuick(source, j, distances[j]);
+                    }
+                }
+            };
+        }
+        else {
+            sink = new Sink() {
+                public synchronized void row(int source, double[] distances) {
+                    for (int j = 0; j < distances.length; j++) {
+                        m.setQuick(source, j, distances[j]);
+                    }
+                }
+            };
+        }
+        return compute(sink) ? matrix : null;
+    }
+}
@@ -9,7 +9,7 @@
 package infovis.graph.algorithm;
 
 import infovis.Graph;
-import infovis.utils.IntLinkedList;
+import infovis.graph.CompressedGraph;
 import infovis.utils.RowIterator;
 import cern.colt.map.OpenIntIntHashMap;
 
@@ -184,57 +184,59 @@ public class BreadthFirst extends Algorithm {
      * @param vis the Visitor
      * @param start the starting vertex
      * @param color a hash map of visited vertices or null
-     * @param edgeIter an allocated iterator or null
+     * @param edgeIter unused, the traversal uses the
+     * {@link CompressedGraph} of the graph
      */
     public void visit(
             Visitor vis, 
             int start, 
             OpenIntIntHashMap color, 
             RowIterator edgeIter) {
-        if (color == null) {
-            color = new OpenIntIntHashMap();
-        }
-        else {
-            color.clear();
-        }
-        if (edgeIter == null) {
-            edgeIter = graph.newEdgeIterator();
-        }
-        IntLinkedList Q = new IntLinkedList();
+        CompressedGraph csr = CompressedGraph.get(graph);
+        CompressedGraph.Adjacency adj = csr.getSuccessors();
+        int[] offsets = adj.getOffsets();
+        int[] edges = adj.getEdges();
+        int[] targets = adj.getVertices();
+        byte[] colors = new byte[csr.getVertexCapacity()];
+        // each vertex is queued once
+        int[] Q = new int[csr.getVerticesCount()];
+        int head = 0;
+        int tail = 0;
 
-        color.put(start, GREY);
-        Q.addLast(start);
+        colors[start] = GREY;
+        Q[tail++] = start;
         setProgressValues(0, graph.getVerticesCount(), "Breath First Search");
-        int count = 0;
-        while (!Q.isEmpty()) {
-            int u = Q.getFirst();
-            Q.removeFirst();
-            setProgress(count++);
+        while (head != tail) {
+            int u = Q[head++];
+            setProgress(head);
             vis.examineVertex(u);
-            for (RowIterator iter = graph.isDirected() 
-                    ? graph.outEdgeIterator(u, edgeIter) 
-                    : graph.edgeIterator(u, edgeIter);
-                iter.hasNext();) {
-                int e = iter.nextRow();
-                int v = graph.getOtherVertex(e, u);
+            for (int i = offsets[u]; i < offsets[u+1]; i++) {
+                int e = edges[i];
+                int v = targets[i];
                 vis.examineEdge(e);
                 
-                if (!color.containsKey(v)) {
+                if (colors[v] == WHITE) {
                     vis.treeEdge(e);
-                    color.put(v, GREY);
+                    colors[v] = GREY;
                     vis.discoverVertex(v);
-                    Q.addLast(v);
+                    Q[tail++] = v;
                 } else {
                     vis.nonTreeEdge(e);
-                    if (color.get(v) == GREY)
+                    if (colors[v] == GREY)
                         vis.greyTarget(e);
                     else
                         vis.blackTarget(e);
                 }
             } // end for
-            color.put(u, BLACK);
+            colors[u] = BLACK;
             vis.finishVertex(u);
         } // end while
+        if (color != null) {
+            color.clear();
+            for (int i = 0; i < tail; i++) {
+                color.put(Q[i], BLACK);
+            }
+        }
         terminate();
     }
     
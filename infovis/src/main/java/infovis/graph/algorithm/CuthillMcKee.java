@@ -9,6 +9,7 @@ package infovis.graph.algorithm;
 
 import infovis.Graph;
 import infovis.column.AbstractIntColumn;
+import infovis.graph.CompressedGraph;
 import infovis.graph.property.Degree;
 import infovis.utils.BitSet;
 import infovis.utils.IntLinkedList;
@@ -46,7 +47,7 @@ public class CuthillMcKee extends Algorithm {
         IntLinkedList Q = new IntLinkedList();
         IntArrayList tmp = new IntArrayList();
         IntSet inR = new BitSet(perm.size());
-        RowIterator eiter = null;
+        CompressedGraph.Adjacency adj = CompressedGraph.get(graph).getIncident();
         for (int i = 0; i < perm.size(); i++) {
             int v = perm.getDirect(i);
             if (inR.get(v))
@@ -59,10 +60,8 @@ public class CuthillMcKee extends Algorithm {
                 R.add(v);
                 inR.set(v);
                 tmp.clear();
-                for (eiter = graph.edgeIterator(v, eiter); 
-                    eiter.hasNext(); ) {
-                    int e = eiter.nextRow();
-                    int v2 = graph.getOtherVertex(e, v);
+                for (int j = adj.getStart(v); j < adj.getEnd(v); j++) {
+                    int v2 = adj.getVertex(j);
                     if (! inR.get(v2)) {
                         tmp.add(v2);
                     }
@@ -11,16 +11,17 @@ import infovis.Graph;
 import infovis.Table;
 import infovis.column.ColumnOne;
 import infovis.column.NumberColumn;
+import infovis.graph.CompressedGraph;
 import infovis.utils.Heap;
-import infovis.utils.IntLinkedList;
-import infovis.utils.Permutation;
 import infovis.utils.RowIterator;
+
+import java.util.Arrays;
+
 import cern.colt.function.IntIntDoubleProcedure;
 import cern.colt.map.AbstractIntObjectMap;
 import cern.colt.map.OpenIntDoubleHashMap;
 import cern.colt.map.OpenIntIntHashMap;
 import cern.colt.map.OpenIntObjectHashMap;
-import cern.colt.matrix.DoubleFactory2D;
 import cern.colt.matrix.DoubleMatrix2D;
 
 /**
@@ -71,6 +72,11 @@ public class DijkstraShortestPath extends Algorithm {
     /**
      * Computes the shortes paths 2D table for each vertices
      * of the graph.
+     * 
+     * <p>Rows and columns are indexed in the order of the vertex
+     * iterator.  See {@link AllShortestPaths} to compute the rows
+     * without allocating the matrix.
+     * 
      * @param graph the graph
      * @param edgeWeights the (positive) edge weights or null 
      * @param matrix the matrix to fill or null
@@ -81,74 +87,7 @@ public class DijkstraShortestPath extends Algorithm {
             NumberColumn edgeWeights,
             DoubleMatrix2D matrix) {
         assert(!graph.isDirected());
-        Permutation perm = new Permutation();
-        for (RowIterator viter = graph.vertexIterator(); viter.hasNext(); ) {
-            int from = viter.nextRow();
-            perm.add(from);
-        }
-        int size = perm.size();
-        RowIterator allocIter = graph.newEdgeIterator();
-        
-        if (matrix == null
-                || matrix.columns() < size 
-                || matrix.rows() < size) {
-            matrix = DoubleFactory2D.dense.make(size, size, Double.POSITIVE_INFINITY);
-        }
-        else {
-            matrix.assign(Double.POSITIVE_INFINITY);
-        }
-        if (edgeWeights == null) {
-            edgeWeights = ColumnOne.INSTANCE;
-        }
-                
-        for (RowIterator viter = graph.vertexIterator(); viter.hasNext(); ) {
-            int from = perm.getInverse(viter.nextRow());
-            Predecessor[] S = new Predecessor[size];
-            Predecessor[] queued = new Predecessor[size];
-            Heap queue = new Heap();
-            
-            Predecessor p = new Predecessor(from, 0);
-            queue.insert(p);
-            queued[from] = p;
-//            for (int j = 0; j < size; j++) {
-//                double d = matrix.getQuick(j, from);
-//                if (d!=Double.POSITIVE_INFINITY) {
-//                    queued[j] = new Predecessor(j, d);
-//                }
-//            }
-            while(! queue.isEmpty()) {
-                p = (Predecessor)queue.pop();
-                int v = perm.getDirect(p.vertex);
-                S[v] = p;
-                for (RowIterator iter = graph.edgeIterator(v, allocIter); iter.hasNext(); ) {
-                    int edge = iter.nextRow();
-                    double d = p.weight+ edgeWeights.getDoubleAt(edge);
-                    int v2 = graph.getOtherVertex(edge, v);
-                    assert(v2 != Graph.NIL);
-                    v2 = perm.getInverse(v2);
-                    Predecessor D = queued[v2];
-                    if (D == null) {
-                        Predecessor p2 = new Predecessor(v2, d);
-                        queue.insert(p2);
-                        queued[v2] = p2;
-                    }
-                    else if (D.weight > d) {
-                        D.weight = d;
-                        D.edge = v;
-                        queue.update(D);
-                    }
-                }
-            }
-            matrix.setQuick(from, from, 0);
-            for (int j = 0; j < S.length; j++) {
-                p = S[j];
-                if (p != null) {
-                    assert(p.vertex==j);
-                    matrix.setQuick(from, j, p.weight);
-                }
-            }
-        }
-        return matrix;
+        return new AllShortestPaths(graph, edgeWeights).compute(matrix);
     }
   
     /**
@@ -286,7 +225,7 @@ public class DijkstraShortestPath extends Algorithm {
         Predecessor p = new Predecessor(from, 0);
         queue.insert(p);
         queued.put(from, p);
-        RowIterator edgeIter = graph.newEdgeIterator();
+        CompressedGraph.Adjacency adj = CompressedGraph.get(graph).getIncident();
         
         while(! queue.isEmpty()) {
             p = (Predecessor)queue.pop();
@@ -295,10 +234,10 @@ public class DijkstraShortestPath extends Algorithm {
             int v = p.vertex;
             if (! keepQueued)
                 queued.removeKey(v); // processed so not needed any more
-            for (RowIterator iter = graph.edgeIterator(v, edgeIter); iter.hasNext(); ) {
-                int edge = iter.nextRow();
+            for (int i = adj.getStart(v); i < adj.getEnd(v); i++) {
+                int edge = adj.getEdge(i);
                 double d = p.weight + weight.getDoubleAt(edge);
-                int v2 = graph.getOtherVertex(edge, v);
+                int v2 = adj.getVertex(i);
                 assert(v2 != Graph.NIL);
                 Predecessor D = (Predecessor)queued.get(v2);
                 if (D == null) { // dist == infinity
@@ -359,30 +298,32 @@ public class DijkstraShortestPath extends Algorithm {
             Graph g, 
             int from, 
             IntIntDoubleProcedure proc) {
-        OpenIntIntHashMap dist = new OpenIntIntHashMap();
-        RowIterator edgeIter = g.newEdgeIterator();
-        IntLinkedList Q = new IntLinkedList();
-        dist.put(from, 0);
-        Q.addLast(from);
+        CompressedGraph csr = CompressedGraph.get(g);
+        CompressedGraph.Adjacency adj = csr.getSuccessors();
+        int[] offsets = adj.getOffsets();
+        int[] edges = adj.getEdges();
+        int[] targets = adj.getVertices();
+        int[] dist = new int[csr.getVertexCapacity()];
+        Arrays.fill(dist, -1);
+        int[] Q = new int[csr.getVerticesCount()];
+        int head = 0;
+        int tail = 0;
+        dist[from] = 0;
+        Q[tail++] = from;
         if (! proc.apply(-1, from, 0))
             return false;
         
-        while (!Q.isEmpty()) {
-            int u = Q.getFirst();
-            Q.removeFirst();
-            int d = dist.get(u)+1;
-            for (RowIterator iter = g.isDirected() 
-                    ? g.outEdgeIterator(u, edgeIter) 
-                    : g.edgeIterator(u, edgeIter);
-                iter.hasNext();) {
-                int e = iter.nextRow();
-                int v = g.getOtherVertex(e, u);
+        while (head != tail) {
+            int u = Q[head++];
+            int d = dist[u]+1;
+            for (int i = offsets[u]; i < offsets[u+1]; i++) {
+                int v = targets[i];
                 
-                if (!dist.containsKey(v)) {
-                    dist.put(v, d);
-                    if (! proc.apply(e, v, d))
+                if (dist[v] == -1) {
+                    dist[v] = d;
+                    if (! proc.apply(edges[i], v, d))
                         return false;
-                    Q.addLast(v);
+                    Q[tail++] = v;
                 }
             }
         }
@@ -9,13 +9,12 @@ package infovis.graph.algorithm;
 
 import infovis.Graph;
 import infovis.column.IntColumn;
+import infovis.graph.CompressedGraph;
 import infovis.graph.event.GraphChangedEvent;
 import infovis.graph.event.GraphChangedListener;
 import infovis.metadata.IO;
-import infovis.utils.Heap;
 import infovis.utils.RowIterator;
 import cern.colt.function.IntIntFunction;
-import cern.colt.map.OpenIntObjectHashMap;
 
 /**
  * Computes the "coreness" of graph vertices.
@@ -49,35 +48,14 @@ public class KCoreDecomposition implements GraphChangedListener {
         }
     }
 
-    static class Coreness implements Comparable {
-        int vertex;
-        int coreness;
-
-        public Coreness(int vertex, int coreness) {
-            this.vertex = vertex;
-            this.coreness = coreness;
-        }
-
-        public int compareTo(Object o) {
-            int cmp = (coreness - ((Coreness) o).coreness);
-            if (cmp < 0)
-                return -1;
-            else if (cmp > 0)
-                return 1;
-            else
-                return 0;
-        }
-
-        public int getVertex() {
-            return vertex;
-        }
-
-        public int getCoreness() {
-            return coreness;
-        }
-
-    }
-
+    /**
+     * Computes the coreness of each vertex of a graph using the
+     * linear time algorithm of Batagelj and Zaversnik, sorting
+     * vertices in buckets of equal degree.
+     * @param g the graph
+     * @param coreness the column to fill or null
+     * @return the coreness column
+     */
     public static IntColumn computeCoreness(
             Graph g, 
             IntColumn coreness) {
@@ -87,32 +65,63 @@ public class KCoreDecomposition implements GraphChangedListener {
         else {
             coreness.clear();
         }
-        Heap heap = new Heap();
-        OpenIntObjectHashMap queued = new OpenIntObjectHashMap();
-        RowIterator allocIter = g.newEdgeIterator();
-        
-        for (RowIterator iter = g.vertexIterator(); iter.hasNext();) {
-            int v = iter.nextRow();
-            Coreness c = new Coreness(v, g.getDegree(v));
-            heap.insert(c);
-            queued.put(v, c);
+        CompressedGraph csr = CompressedGraph.get(g);
+        CompressedGraph.Adjacency adj = csr.getIncident();
+        int[] offsets = adj.getOffsets();
+        int[] targets = adj.getVertices();
+        int[] vertices = csr.getVertices();
+        int n = vertices.length;
+        int capacity = csr.getVertexCapacity();
+        int[] degree = new int[capacity];
+        int maxDegree = 0;
+        for (int i = 0; i < n; i++) {
+            int v = vertices[i];
+            degree[v] = adj.getDegree(v);
+            maxDegree = Math.max(maxDegree, degree[v]);
         }
-
-        while (!heap.isEmpty()) {
-            Coreness c = (Coreness) heap.pop();
-            int v = c.getVertex();
-            int cor = c.getCoreness();
-            queued.removeKey(v);
+        // bin[d] is the position of the first vertex of degree d in vert
+        int[] bin = new int[maxDegree+1];
+        for (int i = 0; i < n; i++) {
+            bin[degree[vertices[i]]]++;
+        }
+        int start = 0;
+        for (int d = 0; d <= maxDegree; d++) {
+            int num = bin[d];
+            bin[d] = start;
+            start += num;
+        }
+        int[] vert = new int[n];
+        int[] pos = new int[capacity];
+        for (int i = 0; i < n; i++) {
+            int v = vertices[i];
+            pos[v] = bin[degree[v]]++;
+            vert[pos[v]] = v;
+        }
+        for (int d = maxDegree; d > 0; d--) {
+            bin[d] = bin[d-1];
+        }
+        bin[0] = 0;
+        for (int i = 0; i < n; i++) {
+            int v = vert[i];
+            int cor = degree[v];
             coreness.setExtend(v, cor);
-            for (RowIterator neighbors = g.edgeIterator(v, allocIter); neighbors.hasNext();) {
-                int e = neighbors.nextRow();
-                int v2 = g.getOtherVertex(e, v);
-                Coreness c2 = (Coreness) queued.get(v2);
-                if (c2 != null) {
-                    if (c2.coreness > cor) {
-                        c2.coreness--;
-                        heap.update(c2);
+            for (int j = offsets[v]; j < offsets[v+1]; j++) {
+                int u = targets[j];
+                int du = degree[u];
+                if (du > cor) {
+                    // move u to the beginning of its bucket then
+                    // shift the bucket boundary
+                    int pu = pos[u];
+                    int pw = bin[du];
+                    int w = vert[pw];
+                    if (u != w) {
+                        pos[u] = pw;
+                        vert[pu] = w;
+                        pos[w] = pu;
+                        vert[pw] = u;
                     }
+                    bin[du]++;
+                    degree[u] = du - 1;
                 }
             }
         }
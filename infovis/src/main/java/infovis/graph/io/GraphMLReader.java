@@ -10,8 +10,10 @@ package infovis.graph.io;
 import infovis.*;
 import infovis.column.StringColumn;
 import infovis.column.format.FormatMetadata;
+import infovis.graph.GraphBuilder;
 import infovis.io.AbstractXMLReader;
 import infovis.io.WrongFormatException;
+import infovis.utils.StringIntMap;
 
 import java.io.InputStream;
 import java.util.HashMap;
@@ -42,7 +44,8 @@ public class GraphMLReader extends AbstractXMLReader {
     protected StringBuffer characters;
     protected StringColumn nodeIdColumn;
     // protected StringColumn edgeIdColumn;
-    protected Map          nodeMap;
+    protected StringIntMap nodeMap;
+    protected GraphBuilder builder;
     
     private static Logger LOG = Logger.getLogger(GraphMLReader.class);
 
@@ -61,6 +64,23 @@ public class GraphMLReader extends AbstractXMLReader {
         this.graph = graph;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean load() {
+        try {
+            return super.load();
+        }
+        finally {
+            // endDocument is not reached when the parse fails
+            if (builder != null) {
+                builder.flush();
+                builder = null;
+                nodeMap = null;
+            }
+        }
+    }
+
     /**
      * Declare a key.
      * 
@@ -117,15 +137,13 @@ public class GraphMLReader extends AbstractXMLReader {
      * @return a n ode given its unique id.
      */
     public int findNode(String id) {
-        Integer i = (Integer) nodeMap.get(id);
-        if (i == null) {
-            int node = graph.addVertex();
+        int node = nodeMap.get(id, Graph.NIL);
+        if (node == Graph.NIL) {
+            node = builder.addVertex();
             nodeIdColumn.setExtend(node, id);
-            nodeMap.put(id, new Integer(node));
-            return node;
+            nodeMap.put(id, node);
         }
-        else
-            return i.intValue();
+        return node;
     }
 
     protected void addIdName(String ID, String name) {
@@ -140,7 +158,8 @@ public class GraphMLReader extends AbstractXMLReader {
      */
     public void startDocument() throws SAXException {
         inNode = inEdge = Graph.NIL;
-        nodeMap = new HashMap();
+        nodeMap = new StringIntMap();
+        builder = new GraphBuilder(graph);
         nodeIdColumn = StringColumn.findColumn(graph.getVertexTable(), "id");
         // edgeIdColumn = null;
     }
@@ -213,7 +232,7 @@ public class GraphMLReader extends AbstractXMLReader {
             // ID = atts.getValue("id");
             int from = findNode(source);
             int to = findNode(target);
-            inEdge = graph.addEdge(from, to);
+            inEdge = builder.addEdge(from, to);
             // if (ID != null) {
             // if (edgeIdColumn == null) {
             // edgeIdColumn =
@@ -276,6 +295,15 @@ public class GraphMLReader extends AbstractXMLReader {
         }
     }
 
+    /**
+     * @see org.xml.sax.ContentHandler#endDocument()
+     */
+    public void endDocument() throws SAXException {
+        builder.flush();
+        builder = null;
+        nodeMap = null;
+    }
+
     /**
      * @see org.xml.sax.ContentHandler#characters(char[], int, int)
      */
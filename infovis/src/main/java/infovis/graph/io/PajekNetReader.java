@@ -12,6 +12,7 @@ import infovis.Graph;
 import infovis.column.AbstractDoubleColumn;
 import infovis.column.DoubleColumn;
 import infovis.column.StringColumn;
+import infovis.graph.GraphBuilder;
 import infovis.io.WrongFormatException;
 
 import java.awt.geom.Rectangle2D.Float;
@@ -95,6 +96,7 @@ public class PajekNetReader extends AbstractGraphReader {
     }
     
     public boolean load() throws WrongFormatException {
+        GraphBuilder builder = new GraphBuilder(graph);
         try {
             tok = new StreamTokenizer(getBufferedReader());
             tok.wordChars('*', '*');
@@ -106,12 +108,10 @@ public class PajekNetReader extends AbstractGraphReader {
             }
             int vertexCount = readInt();
             skipToEol();
-            int[] vertices = new int[vertexCount];
             labelColumn = StringColumn.findColumn(graph.getVertexTable(), "label");
+            int v0 = builder.addVertices(vertexCount);
             for (int i = 0; i < vertexCount; i++) {
-                int v = graph.addVertex();
-                vertices[i] = v;
-                readVertex(i, v);
+                readVertex(i, v0 + i);
             }
             while(true) {
                 String edges = readWord();
@@ -134,12 +134,18 @@ public class PajekNetReader extends AbstractGraphReader {
                     }
                     tok.pushBack();
                     if (next == StreamTokenizer.TT_WORD) {
+                        builder.flush(); // before changing the directedness
                         break; // expect *edges or *arcs
                     }
                     int from = readInt()-1;
                     int to = readInt()-1;
                     double v = readValue();
-                    int edge = graph.addEdge(vertices[from], vertices[to]);
+                    if (from < 0 || from >= vertexCount
+                            || to < 0 || to >= vertexCount) {
+                        logger.error("Invalid vertex in edge "+(from+1)+" "+(to+1));
+                        return false;
+                    }
+                    int edge = builder.addEdge(v0 + from, v0 + to);
                     weightColumn.setExtend(edge, v);
                     skipToEol();
                 }
@@ -149,6 +155,9 @@ public class PajekNetReader extends AbstractGraphReader {
             logger.error("while reading pajek net file ", e);
             return false;
         }
+        finally {
+            builder.flush();
+        }
         //return true;
     }
 
@@ -10,13 +10,32 @@ package infovis.graph.property;
 import infovis.Graph;
 import infovis.column.AbstractDoubleColumn;
 import infovis.column.DoubleColumn;
-import infovis.graph.Edge;
-import infovis.graph.Vertex;
-import infovis.graph.jung.JungWrapper;
+import infovis.column.NumberColumn;
+import infovis.graph.CompressedGraph;
+import infovis.utils.IndexedDoubleHeap;
+import infovis.utils.RowIterator;
+import infovis.utils.WorkerPool;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
 
 /**
  * Class BetweennessCentrality
  * 
+ * <p>Computes the betweenness centrality of vertices and, optionally,
+ * edges using the algorithm of Brandes.  The sources are processed in
+ * parallel, paths can be weighted by an edge column, and the
+ * centrality can be approximated from a random sample of sources.
+ * 
+ * <p>The progress monitor is only accessed in the Event Dispatch
+ * Thread: the workers publish the number of processed sources and
+ * poll a cancellation flag set from the monitor.
+ * 
  * @author Jean-Daniel Fekete
  * @version $Revision$
  */
@@ -27,6 +46,11 @@ public class BetweennessCentrality extends DoubleColumn {
     
     protected String vertexColumnName;
     protected String edgeColumnName;
+    protected NumberColumn weightColumn;
+    protected int sampleCount;
+    protected long seed;
+    protected transient ProgressMonitor progressMonitor;
+    protected transient volatile boolean canceled;
 
     /**
      * Create a BetweennessCentrality column manager
@@ -62,37 +86,435 @@ public class BetweennessCentrality extends DoubleColumn {
     
 
     /**
-     * Updates the column
+     * Returns the column containing the edge weights or null.
+     * @return the column containing the edge weights or null
+     */
+    public NumberColumn getWeightColumn() {
+        return weightColumn;
+    }
+
+    /**
+     * Sets the column containing the (positive) edge weights, or null
+     * to count the edges of the paths.  Undefined weights count as 1.
+     * @param weightColumn the column containing the edge weights or null
+     */
+    public void setWeightColumn(NumberColumn weightColumn) {
+        this.weightColumn = weightColumn;
+    }
+
+    /**
+     * Returns the number of sampled source vertices, or 0 if
+     * all the vertices are used as sources.
+     * @return the number of sampled source vertices or 0
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Sets the number of source vertices sampled to approximate the
+     * centrality, or 0 to compute it exactly from all the vertices.
+     * The scores computed from <i>k</i> sources out of <i>n</i> are
+     * multiplied by <i>n/k</i>.
+     * @param sampleCount the number of sampled source vertices or 0
+     */
+    public void setSampleCount(int sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    /**
+     * Sets the seed of the random generator used to sample the
+     * source vertices.
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the progress monitor or null.
+     * @return the progress monitor or null
+     */
+    public ProgressMonitor getProgressMonitor() {
+        return progressMonitor;
+    }
+
+    /**
+     * Sets the progress monitor notified of the number of processed
+     * sources, and checked for cancellation.
+     * @param progressMonitor the progress monitor or null
+     */
+    public void setProgressMonitor(ProgressMonitor progressMonitor) {
+        this.progressMonitor = progressMonitor;
+    }
+
+    /**
+     * Cancels the computation in progress.
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    /**
+     * Returns true if the last computation has been canceled.
+     * @return true if the last computation has been canceled
+     */
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Updates the column.
      */
-//    @Override
     protected void update() {
-//        try {
-//            setReadOnly(false);
-            edu.uci.ics.jung.graph.Graph<Vertex, Edge> g = JungWrapper.wrap(graph);
-            edu.uci.ics.jung.algorithms.importance.BetweennessCentrality<Vertex, Edge> bc 
-                = new edu.uci.ics.jung.algorithms.importance.BetweennessCentrality<Vertex, Edge>(
-                        g, true, edgeColumnName != null);
-            bc.setRemoveRankScoresOnFinalize(false);
-            bc.evaluate();
-            
-            for (Vertex v : g.getVertices()) {
-                double d = bc.getVertexRankScore(v);
-                setExtend(v.getId(), d);
+        compute();
+    }
+
+    /**
+     * Computes the column using the algorithm of Brandes on the
+     * {@link CompressedGraph} of the graph.
+     *
+     * <p>The sources are processed concurrently by the
+     * {@link WorkerPool}, each thread accumulating the scores in its own
+     * arrays, summed at the end.  When the computation is canceled,
+     * the columns are not modified.
+     *
+     * @return true if the columns have been updated, false if the
+     * computation has been canceled
+     */
+    public boolean compute() {
+        canceled = false;
+        final CompressedGraph csr = CompressedGraph.get(graph);
+        final int[] sources = getSources(csr);
+        final double[] weights = getWeights(csr);
+        final int vertexCapacity = csr.getVertexCapacity();
+        final int edgeCapacity = edgeColumnName != null
+            ? csr.getEdgeCapacity() : -1;
+        WorkerPool pool = WorkerPool.getInstance();
+        int blocks = WorkerPool.getBlockCount(
+                sources.length,
+                pool.getThreadCount());
+        final double[][] vertexScores = new double[blocks][];
+        final double[][] edgeScores = new double[blocks][];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger done = new AtomicInteger();
+        final ProgressMonitor monitor = progressMonitor;
+        final AtomicBoolean pending = new AtomicBoolean();
+        if (monitor != null) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    monitor.setMinimum(0);
+                    monitor.setMaximum(sources.length);
+                    monitor.setNote("Betweenness centrality");
+                }
+            });
+        }
+        pool.runBlocks(blocks, blocks, new WorkerPool.BlockTask() {
+            public void run(int block, int start, int end) {
+                for (int b = start; b < end; b++) {
+                    Accumulator acc = weights == null
+                        ? new Accumulator(csr)
+                        : new WeightedAccumulator(csr, weights);
+                    double[] vertexScore = new double[vertexCapacity];
+                    double[] edgeScore = edgeCapacity < 0
+                        ? null : new double[edgeCapacity];
+                    int i;
+                    // sources are taken one at a time to balance the load
+                    while (! canceled
+                            && (i = next.getAndIncrement()) < sources.length) {
+                        acc.accumulate(sources[i], vertexScore, edgeScore);
+                        done.incrementAndGet();
+                        progress(monitor, done, pending);
+                    }
+                    vertexScores[b] = vertexScore;
+                    edgeScores[b] = edgeScore;
+                }
+            }
+        });
+        if (monitor != null) {
+            // posted after the last progress update
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    monitor.close();
+                }
+            });
+        }
+        if (canceled) {
+            return false;
+        }
+        double[] vertexScore = vertexScores[0];
+        double[] edgeScore = edgeScores[0];
+        for (int b = 1; b < blocks; b++) {
+            add(vertexScore, vertexScores[b]);
+            add(edgeScore, edgeScores[b]);
+        }
+
+        // each path is counted in both directions
+        double scale = csr.isDirected() ? 1 : 0.5;
+        if (sources.length != 0 && sources.length < csr.getVerticesCount()) {
+            scale *= (double)csr.getVerticesCount() / sources.length;
+        }
+        int[] vertices = csr.getVertices();
+        for (int i = 0; i < vertices.length; i++) {
+            int v = vertices[i];
+            setExtend(v, vertexScore[v] * scale);
+        }
+        if (edgeScore != null) {
+            AbstractDoubleColumn ec = DoubleColumn.findColumn(
+                    graph.getEdgeTable(), 
+                    edgeColumnName);
+            for (RowIterator iter = graph.edgeIterator(); iter.hasNext(); ) {
+                int e = iter.nextRow();
+                ec.setExtend(e, edgeScore[e] * scale);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Schedules the update of the progress monitor in the Event
+     * Dispatch Thread unless an update is already pending.
+     * @param monitor the progress monitor or null
+     * @param done the number of processed sources
+     * @param pending true while an update is pending
+     */
+    protected void progress(
+            final ProgressMonitor monitor,
+            final AtomicInteger done,
+            final AtomicBoolean pending) {
+        if (monitor == null || ! pending.compareAndSet(false, true)) {
+            return;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                pending.set(false);
+                monitor.setProgress(done.get());
+                if (monitor.isCanceled()) {
+                    canceled = true;
+                }
+            }
+        });
+    }
+
+    protected static void add(double[] sum, double[] values) {
+        if (sum == null) return;
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += values[i];
+        }
+    }
+
+    /**
+     * Returns the source vertices: all the vertices or a random
+     * sample of <code>sampleCount</code> vertices.
+     * @param csr the snapshot of the graph
+     * @return the source vertices
+     */
+    protected int[] getSources(CompressedGraph csr) {
+        int[] vertices = csr.getVertices();
+        if (sampleCount <= 0 || sampleCount >= vertices.length) {
+            return vertices;
+        }
+        int[] sources = vertices.clone();
+        Random random = new Random(seed);
+        // partial Fisher-Yates shuffle
+        for (int i = 0; i < sampleCount; i++) {
+            int j = i + random.nextInt(sources.length - i);
+            int tmp = sources[i];
+            sources[i] = sources[j];
+            sources[j] = tmp;
+        }
+        int[] sample = new int[sampleCount];
+        System.arraycopy(sources, 0, sample, 0, sampleCount);
+        return sample;
+    }
+
+    /**
+     * Returns the edge weights indexed by edge, or null if the
+     * edges are not weighted.
+     * @param csr the snapshot of the graph
+     * @return the edge weights or null
+     */
+    protected double[] getWeights(CompressedGraph csr) {
+        if (weightColumn == null) {
+            return null;
+        }
+        double[] weights = new double[csr.getEdgeCapacity()];
+        for (RowIterator iter = graph.edgeIterator(); iter.hasNext(); ) {
+            int e = iter.nextRow();
+            if (weightColumn.isValueUndefined(e)) {
+                weights[e] = 1;
             }
-            if (edgeColumnName != null) {
-                AbstractDoubleColumn ec = DoubleColumn.findColumn(
-                        graph.getEdgeTable(), 
-                        edgeColumnName);
-                for (Edge e : g.getEdges()) {
-                    double d = bc.getEdgeRankScore(e);
-                    ec.setExtend(e.getId(), d);
+            else {
+                weights[e] = weightColumn.getDoubleAt(e);
+                if (weights[e] <= 0) {
+                    throw new IllegalArgumentException(
+                            "Non positive weight for edge "+e);
                 }
             }
-//          }
-//          finally {
-//            setReadOnly(true);
-//        }
-        
+        }
+        return weights;
+    }
+
+    /**
+     * <b>Accumulator</b> computes the dependencies of all the
+     * vertices on a source vertex and adds them to the scores.  It
+     * holds the working arrays, reset after each source.
+     */
+    protected static class Accumulator {
+        protected CompressedGraph.Adjacency succ;
+        protected CompressedGraph.Adjacency pred;
+        protected int[]                     dist;
+        protected double[]                  sigma;
+        protected double[]                  delta;
+        protected int[]                     order;
+
+        /**
+         * Creates an Accumulator for a graph snapshot.
+         * @param csr the snapshot
+         */
+        public Accumulator(CompressedGraph csr) {
+            succ = csr.getSuccessors();
+            pred = csr.getPredecessors();
+            int n = csr.getVertexCapacity();
+            dist = new int[n];
+            Arrays.fill(dist, -1);
+            sigma = new double[n];
+            delta = new double[n];
+            order = new int[csr.getVerticesCount()];
+        }
+
+        /**
+         * Adds the dependencies on a source vertex to the scores.
+         * @param s the source vertex
+         * @param vertexScore the vertex scores
+         * @param edgeScore the edge scores or null
+         */
+        public void accumulate(int s, double[] vertexScore, double[] edgeScore) {
+            int[] offsets = succ.getOffsets();
+            int[] targets = succ.getVertices();
+            int count = 0;
+            int head = 0;
+            dist[s] = 0;
+            sigma[s] = 1;
+            order[count++] = s;
+            while (head < count) {
+                int v = order[head++];
+                int d = dist[v] + 1;
+                for (int i = offsets[v]; i < offsets[v+1]; i++) {
+                    int w = targets[i];
+                    if (dist[w] < 0) {
+                        dist[w] = d;
+                        order[count++] = w;
+                    }
+                    if (dist[w] == d) {
+                        sigma[w] += sigma[v];
+                    }
+                }
+            }
+            offsets = pred.getOffsets();
+            int[] sources = pred.getVertices();
+            int[] edges = pred.getEdges();
+            for (int j = count - 1; j > 0; j--) {
+                int w = order[j];
+                int d = dist[w] - 1;
+                double coef = (1 + delta[w]) / sigma[w];
+                for (int i = offsets[w]; i < offsets[w+1]; i++) {
+                    int v = sources[i];
+                    if (dist[v] == d) {
+                        double c = sigma[v] * coef;
+                        delta[v] += c;
+                        if (edgeScore != null) {
+                            edgeScore[edges[i]] += c;
+                        }
+                    }
+                }
+                vertexScore[w] += delta[w];
+            }
+            for (int j = 0; j < count; j++) {
+                int v = order[j];
+                dist[v] = -1;
+                sigma[v] = 0;
+                delta[v] = 0;
+            }
+        }
+    }
+
+    /**
+     * <b>WeightedAccumulator</b> computes the dependencies on a source
+     * vertex along the shortest weighted paths, found with the
+     * algorithm of Dijkstra.
+     */
+    protected static class WeightedAccumulator extends Accumulator {
+        protected double[]          weights;
+        protected double[]          distance;
+        protected IndexedDoubleHeap queue;
+
+        /**
+         * Creates a WeightedAccumulator for a graph snapshot.
+         * @param csr the snapshot
+         * @param weights the positive edge weights, indexed by edge
+         */
+        public WeightedAccumulator(CompressedGraph csr, double[] weights) {
+            super(csr);
+            this.weights = weights;
+            distance = new double[csr.getVertexCapacity()];
+            Arrays.fill(distance, Double.POSITIVE_INFINITY);
+            queue = new IndexedDoubleHeap(csr.getVertexCapacity());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void accumulate(int s, double[] vertexScore, double[] edgeScore) {
+            int[] offsets = succ.getOffsets();
+            int[] targets = succ.getVertices();
+            int[] edges = succ.getEdges();
+            int count = 0;
+            distance[s] = 0;
+            sigma[s] = 1;
+            queue.insert(s, 0);
+            while (! queue.isEmpty()) {
+                int v = queue.pop();
+                order[count++] = v;
+                for (int i = offsets[v]; i < offsets[v+1]; i++) {
+                    int w = targets[i];
+                    double d = distance[v] + weights[edges[i]];
+                    if (d < distance[w]) {
+                        distance[w] = d;
+                        sigma[w] = sigma[v];
+                        queue.insert(w, d);
+                    }
+                    else if (d == distance[w]) {
+                        sigma[w] += sigma[v];
+                    }
+                }
+            }
+            offsets = pred.getOffsets();
+            int[] sources = pred.getVertices();
+            edges = pred.getEdges();
+            for (int j = count - 1; j > 0; j--) {
+                int w = order[j];
+                double coef = (1 + delta[w]) / sigma[w];
+                for (int i = offsets[w]; i < offsets[w+1]; i++) {
+                    int v = sources[i];
+                    int e = edges[i];
+                    if (distance[v] + weights[e] == distance[w]) {
+                        double c = sigma[v] * coef;
+                        delta[v] += c;
+                        if (edgeScore != null) {
+                            edgeScore[e] += c;
+                        }
+                    }
+                }
+                vertexScore[w] += delta[w];
+            }
+            for (int j = 0; j < count; j++) {
+                int v = order[j];
+                distance[v] = Double.POSITIVE_INFINITY;
+                sigma[v] = 0;
+                delta[v] = 0;
+            }
+        }
     }
 
     /**
@@ -11,9 +11,11 @@ import infovis.Graph;
 import infovis.Visualization;
 import infovis.table.Item;
 import infovis.utils.InfovisUtilities;
+import infovis.utils.IntArrayIterator;
 import infovis.utils.Permutation;
 import infovis.visualization.Layout;
 import infovis.visualization.Orientation;
+import infovis.visualization.ProgressivePainter;
 
 import java.awt.Color;
 import java.awt.Component;
@@ -28,6 +30,7 @@ import java.util.ArrayList;
 import javax.swing.JViewport;
 
 import cern.colt.function.IntFunction;
+import cern.colt.list.IntArrayList;
 
 /**
  * <b>MatrixAxisVisualization</b> shows the axis of the matrix.
@@ -184,6 +187,22 @@ public class MatrixAxisVisualization extends GraphVisualization
             });
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void collectPaintedItems(
+            ProgressivePainter painter,
+            Rectangle2D bounds) {
+        final IntArrayList rows = new IntArrayList();
+        foreachRowInBounds(bounds, new IntFunction() {
+            public int apply(int row) {
+                rows.add(row);
+                return -1;
+            }
+        });
+        painter.addItems(this, new IntArrayIterator(rows));
+    }
     
     /**
      * {@inheritDoc}
@@ -11,6 +11,7 @@ import infovis.Column;
 import infovis.Graph;
 import infovis.Table;
 import infovis.Visualization;
+import infovis.column.AbstractDoubleColumn;
 import infovis.column.BooleanColumn;
 import infovis.column.DoubleColumn;
 import infovis.column.FilterColumn;
@@ -22,11 +23,13 @@ import infovis.graph.property.OutDegree;
 import infovis.table.Item;
 import infovis.utils.CompositeShape;
 import infovis.utils.FilteredRowIterator;
+import infovis.utils.IntArrayIterator;
 import infovis.utils.InverseRowFilter;
 import infovis.utils.Permutation;
 import infovis.utils.RowFilter;
 import infovis.utils.RowIterator;
 import infovis.visualization.Layout;
+import infovis.visualization.ProgressivePainter;
 import infovis.visualization.ruler.DiscreteRulersBuilder;
 import infovis.visualization.ruler.RulerTable;
 
@@ -42,6 +45,7 @@ import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 
 import cern.colt.function.IntFunction;
+import cern.colt.list.IntArrayList;
 
 
 /**
@@ -300,6 +304,22 @@ public class MatrixVisualization extends GraphVisualization
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void collectPaintedItems(
+            ProgressivePainter painter,
+            Rectangle2D bounds) {
+        final IntArrayList rows = new IntArrayList();
+        foreachEdgeInBounds(bounds, new IntFunction() {
+            public int apply(int row) {
+                rows.add(row);
+                return -1;
+            }
+        });
+        painter.addItems(this, new IntArrayIterator(rows));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -428,6 +448,10 @@ public class MatrixVisualization extends GraphVisualization
     protected void computeRulers(Rectangle2D bounds) {
         Table rulers = getRulerTable();
         if (rulers == null) return;
+        AbstractDoubleColumn rulersSize = DoubleColumn.findColumn(rulers, "size");
+        IntColumn rulersColor = IntColumn.findColumn(rulers, "color");
+        IntColumn rulersRow = IntColumn.findColumn(rulers, "row");
+        IntColumn rulersColumn = IntColumn.findColumn(rulers, "column");
         Column column = getVertexLabelColumn();
         clearRulers();
         
@@ -456,8 +480,8 @@ public class MatrixVisualization extends GraphVisualization
 
             assert(i==getColumnPosition(v));
 
-            DiscreteRulersBuilder.createVerticalRuler(bounds, label, vpos, getRulerTable());
-            int ruler = getRulerTable().getRowCount()-1;
+            DiscreteRulersBuilder.createVerticalRuler(bounds, label, vpos, rulers);
+            int ruler = rulers.getRowCount()-1;
             rulersSize.setExtend(ruler, w);
             rulersColor.setExtend(ruler, computeRulerColor(i));
             rulersColumn.setExtend(ruler, v);
@@ -20,6 +20,7 @@ import infovis.utils.RowIterator;
 import infovis.visualization.Layout;
 import infovis.visualization.LinkVisualization;
 import infovis.visualization.NodeAccessor;
+import infovis.visualization.ProgressivePainter;
 import infovis.visualization.magicLens.Fisheye;
 
 import java.awt.Dimension;
@@ -117,6 +118,19 @@ public class NodeLinkGraphVisualization extends GraphVisualization
         super.paintItems(graphics, bounds);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void collectPaintedItems(
+            ProgressivePainter painter,
+            Rectangle2D bounds) {
+        if (isPaintingLinks()) {
+            linkVisualization.validateShapes(bounds);
+            linkVisualization.collectPaintedItems(painter, bounds);
+        }
+        super.collectPaintedItems(painter, bounds);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -9,6 +9,7 @@ package infovis.graph.visualization.layout;
 
 import infovis.column.DoubleColumn;
 import infovis.graph.visualization.NodeLinkGraphVisualization;
+import infovis.utils.QuadTree;
 import infovis.utils.RowIterator;
 
 import java.awt.geom.Rectangle2D;
@@ -16,6 +17,20 @@ import java.awt.geom.Rectangle2D;
 /**
  * <b>BasicSpringLayout</b> is the base class for spring layouts.
  * 
+ * <p>Repulsion is computed either exactly, considering all the pairs
+ * of vertices, or approximately with the Barnes-Hut method: a
+ * {@link QuadTree} of the vertex positions is built at each iteration
+ * and distant groups of vertices are replaced by their barycenter when
+ * the ratio between the size of their cell and their distance is below
+ * <code>theta</code>.  An optional cut-off distance ignores the cells that
+ * are farther away.  Subclasses supporting the approximation
+ * implement {@link #addRepulsion(double, double, double, double[])} and
+ * call {@link #computeRepulsion(int, double[])} when
+ * {@link #getRepulsionTree()} is not null.
+ * 
+ * <p>Layouts computing their forces concurrently extend
+ * {@link ParallelSpringLayout}.
+ * 
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.13 $
  */
@@ -27,6 +42,20 @@ public abstract class BasicSpringLayout extends RandomGraphLayout {
     /** Error range for equality comparisons. */
     public static final double EPSILON = 0.000001;
     protected boolean sync = true;
+    /** Exact repulsion, quadratic in the number of vertices. */
+    public static final int REPULSION_EXACT = 0;
+    /** Barnes-Hut approximation of the repulsion. */
+    public static final int REPULSION_BARNES_HUT = 1;
+    /** Name of the repulsionMode property. */
+    public static final String PROPERTY_REPULSION_MODE = "repulsionMode";
+    /** Name of the theta property. */
+    public static final String PROPERTY_THETA = "theta";
+    /** Name of the cutoff property. */
+    public static final String PROPERTY_CUTOFF = "cutoff";
+    protected int repulsionMode = REPULSION_EXACT;
+    protected double theta = 0.9;
+    protected double cutoff = 0;
+    protected transient QuadTree repulsionTree;
     
     /**
      * {@inheritDoc}
@@ -111,6 +140,22 @@ public abstract class BasicSpringLayout extends RandomGraphLayout {
     }
 
     protected void calcRepulsion() {
+        if (repulsionMode == REPULSION_BARNES_HUT) {
+            repulsionTree = buildRepulsionTree();
+        }
+        try {
+            calcRepulsionForces();
+        }
+        finally {
+            repulsionTree = null;
+        }
+    }
+    
+    /**
+     * Computes the repulsion exerted on all the vertices, using the
+     * repulsion tree when it has been built.
+     */
+    protected void calcRepulsionForces() {
         for (RowIterator iter = getGraphVisualization().vertexIterator(); iter.hasNext(); ) {
             int v1 = iter.nextRow();
             calcRepulsion(v1);
@@ -118,6 +163,122 @@ public abstract class BasicSpringLayout extends RandomGraphLayout {
     }
     
     protected abstract void calcRepulsion(int v);
+    
+    /**
+     * Returns true if the specified vertex repulses the others.
+     * @param v the vertex
+     * @return true if the specified vertex repulses the others
+     */
+    protected boolean isRepulsive(int v) {
+        return true;
+    }
+    
+    /**
+     * Builds the QuadTree of the repulsive vertices.
+     * @return the QuadTree or null if no vertex is repulsive
+     */
+    protected QuadTree buildRepulsionTree() {
+        double xmin = Double.MAX_VALUE;
+        double ymin = Double.MAX_VALUE;
+        double xmax = -Double.MAX_VALUE;
+        double ymax = -Double.MAX_VALUE;
+        for (RowIterator iter = getGraphVisualization().vertexIterator(); iter.hasNext(); ) {
+            int v = iter.nextRow();
+            if (! isRepulsive(v)) continue;
+            double x = getX(v);
+            double y = getY(v);
+            xmin = Math.min(x, xmin);
+            ymin = Math.min(y, ymin);
+            xmax = Math.max(x, xmax);
+            ymax = Math.max(y, ymax);
+        }
+        // Square cells give better approximations
+        double size = Math.max(xmax - xmin, ymax - ymin);
+        QuadTree tree = null;
+        for (RowIterator iter = getGraphVisualization().vertexIterator(); iter.hasNext(); ) {
+            int v = iter.nextRow();
+            if (! isRepulsive(v)) continue;
+            if (tree == null) {
+                tree = new QuadTree(
+                        v, getX(v), getY(v), 1,
+                        xmin, ymin, xmin + size, ymin + size);
+            }
+            else {
+                tree.addNode(v, getX(v), getY(v), 1, 0);
+            }
+        }
+        return tree;
+    }
+    
+    /**
+     * Returns the QuadTree used to approximate the repulsion during
+     * the current iteration, or null if the repulsion is exact.
+     * @return the QuadTree or null
+     */
+    public QuadTree getRepulsionTree() {
+        return repulsionTree;
+    }
+    
+    /**
+     * Accumulates the approximate repulsion exerted on a vertex using
+     * the repulsion tree.
+     * 
+     * @param v the vertex
+     * @param force an array receiving the force in its two first slots
+     */
+    protected void computeRepulsion(int v, double[] force) {
+        force[0] = 0;
+        force[1] = 0;
+        computeRepulsion(v, getX(v), getY(v), repulsionTree, force);
+    }
+    
+    protected void computeRepulsion(
+            int v, 
+            double x, double y, 
+            QuadTree node,
+            double[] force) {
+        if (node == null) return;
+        if (node.isLeaf()) {
+            if (node.getIndex() != v) {
+                addRepulsion(x - node.getX(), y - node.getY(), node.getWeight(), force);
+            }
+            return;
+        }
+        if (cutoff > 0) {
+            double cx = Math.max(node.getXMin(), Math.min(x, node.getXMax()));
+            double cy = Math.max(node.getYMin(), Math.min(y, node.getYMax()));
+            if (dist(x - cx, y - cy) > cutoff) return;
+        }
+        double dx = x - node.getX();
+        double dy = y - node.getY();
+        boolean inside = x >= node.getXMin() && x <= node.getXMax() 
+            && y >= node.getYMin() && y <= node.getYMax();
+        if (! inside && node.getWidth() < theta * dist(dx, dy)) {
+            addRepulsion(dx, dy, node.getWeight(), force);
+            return;
+        }
+        for (int i = 0; i < node.getChildrenCount(); i++) {
+            computeRepulsion(v, x, y, node.getChild(i), force);
+        }
+    }
+    
+    /**
+     * Adds the repulsion exerted by a group of vertices of a specified
+     * weight located at a specified offset.
+     * 
+     * <p>Only called in Barnes-Hut mode, the default implementation
+     * does nothing.
+     * 
+     * @param dx the X offset from the group to the vertex
+     * @param dy the Y offset from the group to the vertex
+     * @param weight the number of vertices in the group
+     * @param force an array accumulating the force in its two first slots
+     */
+    protected void addRepulsion(
+            double dx, double dy, 
+            double weight, 
+            double[] force) {
+    }
     protected abstract void calcAttraction(int e);
     
     /**
@@ -174,6 +335,65 @@ public abstract class BasicSpringLayout extends RandomGraphLayout {
     public int getMaxIterations() {
         return maxIterations;
     }
+    
+    /**
+     * @return the repulsion mode, either REPULSION_EXACT or 
+     * REPULSION_BARNES_HUT.
+     */
+    public int getRepulsionMode() {
+        return repulsionMode;
+    }
+    
+    /**
+     * Sets the repulsion mode.
+     * @param mode either REPULSION_EXACT or REPULSION_BARNES_HUT
+     */
+    public void setRepulsionMode(int mode) {
+        if (repulsionMode == mode) return;
+        int old = repulsionMode;
+        repulsionMode = mode;
+        firePropertyChange(PROPERTY_REPULSION_MODE, old, mode);
+    }
+    
+    /**
+     * @return the Barnes-Hut opening criterion.
+     */
+    public double getTheta() {
+        return theta;
+    }
+    
+    /**
+     * Sets the Barnes-Hut opening criterion.  A cell is approximated
+     * by its barycenter when its size divided by its distance is less
+     * than theta.  Zero computes the exact repulsion using the tree.
+     * @param theta the criterion
+     */
+    public void setTheta(double theta) {
+        if (this.theta == theta) return;
+        double old = this.theta;
+        this.theta = theta;
+        firePropertyChange(PROPERTY_THETA, Double.valueOf(old), Double.valueOf(theta));
+    }
+    
+    /**
+     * @return the distance beyond which cells are ignored in
+     * Barnes-Hut mode, or 0 if there is no cut-off.
+     */
+    public double getCutoff() {
+        return cutoff;
+    }
+    
+    /**
+     * Sets the distance beyond which cells are ignored in
+     * Barnes-Hut mode.
+     * @param cutoff the distance or 0 for no cut-off
+     */
+    public void setCutoff(double cutoff) {
+        if (this.cutoff == cutoff) return;
+        double old = this.cutoff;
+        this.cutoff = cutoff;
+        firePropertyChange(PROPERTY_CUTOFF, Double.valueOf(old), Double.valueOf(cutoff));
+    }
 
     /**
      * This one is an incremental visualization.
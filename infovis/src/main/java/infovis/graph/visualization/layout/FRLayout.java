@@ -20,7 +20,7 @@ import java.awt.geom.Rectangle2D;
  * @version $Revision: 1.16 $
  * @infovis.factory GraphLayoutFactory "Fruchterman&Reingold (Spring)"
  */
-public class FRLayout extends BasicSpringLayout {
+public class FRLayout extends ParallelSpringLayout {
     protected double forceConstant;
     protected double temperature;
 
@@ -49,55 +49,72 @@ public class FRLayout extends BasicSpringLayout {
         return (length * length) / forceConstant;
     }
     
-    protected void calcRepulsion(int v) {
-        dispX.setExtend(v, 0);
-        dispY.setExtend(v, 0);
+    protected void repulsionForce(int v, double[] force) {
+        force[0] = 0;
+        force[1] = 0;
         boolean dm = dontMove(v);
+        
+        if (getRepulsionTree() != null) {
+            if (! dm) { // otherwise the displacement won't be used
+                computeRepulsion(v, force);
+            }
+            return;
+        }
     
         for (RowIterator iter2 = getGraphVisualization().vertexIterator(); iter2.hasNext();) {
             int u = iter2.nextRow();
             
             if (v != u) {
                 if (dm && dontMove(u)) continue;
-                double dx = getX(v) - getX(u);
-                double dy = getY(v) - getY(u);
+                double dx = (double)getX(v) - getX(u);
+                double dy = (double)getY(v) - getY(u);
     
                 double length = dist(dx, dy);
     
-                double force = repulsiveForce(length);
+                double f = repulsiveForce(length);
     
-                double ddx = (dx / length) * force;
-                double ddy = (dy / length) * force;
-                dispX.addExtend(v, ddx);
-                dispY.addExtend(v, ddy);
+                force[0] += (dx / length) * f;
+                force[1] += (dy / length) * f;
             }
         }
     }
     
-    protected void calcAttraction(int e) {
+    protected void applyRepulsion(int v, double fx, double fy) {
+        dispX.setExtend(v, fx);
+        dispY.setExtend(v, fy);
+    }
+    
+    protected void addRepulsion(
+            double dx, double dy, 
+            double weight, 
+            double[] force) {
+        double length = dist(dx, dy);
+        double f = repulsiveForce(length) * weight;
+        force[0] += (dx / length) * f;
+        force[1] += (dy / length) * f;
+    }
+    
+    protected boolean attractionForce(int e, double[] force) {
         int v = visualization.getFirstVertex(e);
         int u = visualization.getSecondVertex(e);
-        boolean dmv = dontMove(v);
-        boolean dmu = dontMove(u);
-        if (dmv && dmu) return;
+        if (dontMove(v) && dontMove(u)) return false;
     
         double dx = getX(v) - getX(u);
         double dy = getY(v) - getY(u);
     
         double length = dist(dx, dy);
     
-        double force = attractiveForce(length);
+        double f = attractiveForce(length);
     
-        double ddx = (dx / length) * force;
-        double ddy = (dy / length) * force;
-        if (! dmv) {
-            dispX.addExtend(v, -ddx);
-            dispY.addExtend(v, -ddy);
-        }
-        if (! dmu) {
-            dispX.addExtend(u, +ddx);
-            dispY.addExtend(u, +ddy);
-        }
+        force[0] = -(dx / length) * f;
+        force[1] = -(dy / length) * f;
+        return true;
+    }
+    
+    protected void applyAttraction(int v, double fx, double fy) {
+        if (dontMove(v)) return;
+        dispX.addExtend(v, fx);
+        dispY.addExtend(v, fy);
     }
 
     protected boolean calcPosition(int v) {
@@ -0,0 +1,219 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.graph.visualization.layout;
+
+import infovis.utils.RowIterator;
+import infovis.utils.WorkerPool;
+
+import java.util.Arrays;
+
+import cern.colt.list.IntArrayList;
+
+/**
+ * <b>ParallelSpringLayout</b> is the base class for spring layouts
+ * able to compute their forces concurrently.
+ *
+ * <p>Subclasses compute forces with the side-effect free methods
+ * {@link #repulsionForce(int, double[])} and
+ * {@link #attractionForce(int, double[])} and store them with
+ * {@link #applyRepulsion(int, double, double)} and
+ * {@link #applyAttraction(int, double, double)}.  The serial
+ * computation uses the same methods.  When the layout is parallel and
+ * the graph is large enough, repulsion and attraction are computed on
+ * blocks of vertices and edges using the shared {@link WorkerPool};
+ * attraction forces are accumulated in per-block buffers, kept between
+ * iterations, that are summed before being applied, so both computations agree up to the
+ * floating-point summation order.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public abstract class ParallelSpringLayout extends BasicSpringLayout {
+    /** Name of the parallel property. */
+    public static final String PROPERTY_PARALLEL = "parallel";
+    /** Minimum number of vertices for a parallel computation. */
+    public static final int PARALLEL_THRESHOLD = 1000;
+    protected boolean parallel;
+    private double[] repulsion = new double[2];
+    private double[] attraction = new double[2];
+    private transient double[][] blockX;
+    private transient double[][] blockY;
+    private transient double[][] blockForce;
+
+    /**
+     * Computes the repulsion force exerted on a vertex without
+     * modifying the layout state.  Called concurrently in parallel mode.
+     *
+     * @param v the vertex
+     * @param force an array receiving the force in its two first slots
+     */
+    protected abstract void repulsionForce(int v, double[] force);
+
+    /**
+     * Stores the repulsion force computed for a vertex.
+     * @param v the vertex
+     * @param fx the X component of the force
+     * @param fy the Y component of the force
+     */
+    protected abstract void applyRepulsion(int v, double fx, double fy);
+
+    /**
+     * Computes the attraction force exerted by an edge on its first
+     * vertex without modifying the layout state, the opposite force being
+     * exerted on its second vertex.  Called concurrently in parallel mode.
+     *
+     * @param e the edge
+     * @param force an array receiving the force in its two first slots
+     * @return false if the edge exerts no force
+     */
+    protected abstract boolean attractionForce(int e, double[] force);
+
+    /**
+     * Adds the sum of the attraction forces exerted on a vertex.
+     * @param v the vertex
+     * @param fx the X component of the force
+     * @param fy the Y component of the force
+     */
+    protected abstract void applyAttraction(int v, double fx, double fy);
+
+    protected void calcRepulsion(int v) {
+        repulsionForce(v, repulsion);
+        applyRepulsion(v, repulsion[0], repulsion[1]);
+    }
+
+    protected void calcAttraction(int e) {
+        if (! attractionForce(e, attraction)) return;
+        int v = visualization.getFirstVertex(e);
+        int u = visualization.getSecondVertex(e);
+        applyAttraction(v, attraction[0], attraction[1]);
+        applyAttraction(u, -attraction[0], -attraction[1]);
+    }
+
+    protected void calcRepulsionForces() {
+        if (isParallelRun()) {
+            calcRepulsionParallel();
+        }
+        else {
+            super.calcRepulsionForces();
+        }
+    }
+
+    protected void calcAttraction() {
+        if (isParallelRun()) {
+            calcAttractionParallel();
+        }
+        else {
+            super.calcAttraction();
+        }
+    }
+
+    protected boolean isParallelRun() {
+        return parallel
+            && graph.getVerticesCount() >= PARALLEL_THRESHOLD
+            && WorkerPool.getInstance().getThreadCount() > 1;
+    }
+
+    protected static int[] toArray(RowIterator iter) {
+        IntArrayList list = new IntArrayList();
+        while (iter.hasNext()) {
+            list.add(iter.nextRow());
+        }
+        list.trimToSize();
+        return list.elements();
+    }
+
+    protected void calcRepulsionParallel() {
+        final int[] vertices = toArray(getGraphVisualization().vertexIterator());
+        final double[] fx = new double[vertices.length];
+        final double[] fy = new double[vertices.length];
+        WorkerPool pool = WorkerPool.getInstance();
+        pool.runBlocks(
+                vertices.length,
+                pool.getThreadCount() * 4,
+                new WorkerPool.BlockTask() {
+            public void run(int block, int start, int end) {
+                double[] force = new double[2];
+                for (int i = start; i < end; i++) {
+                    repulsionForce(vertices[i], force);
+                    fx[i] = force[0];
+                    fy[i] = force[1];
+                }
+            }
+        });
+        for (int i = 0; i < vertices.length; i++) {
+            applyRepulsion(vertices[i], fx[i], fy[i]);
+        }
+    }
+
+    protected void calcAttractionParallel() {
+        final int[] edges = toArray(getGraphVisualization().edgeIterator());
+        final int size = graph.getVertexTable().getLastRow() + 1;
+        WorkerPool pool = WorkerPool.getInstance();
+        int blocks = WorkerPool.getBlockCount(edges.length, pool.getThreadCount());
+        // the block buffers are kept from one iteration to the next
+        if (blockX == null
+                || blockX.length != blocks
+                || (blocks != 0 && blockX[0].length != size)) {
+            blockX = new double[blocks][size];
+            blockY = new double[blocks][size];
+            blockForce = new double[blocks][2];
+        }
+        final double[][] bx = blockX;
+        final double[][] by = blockY;
+        final double[][] bf = blockForce;
+        pool.runBlocks(
+                edges.length,
+                blocks,
+                new WorkerPool.BlockTask() {
+            public void run(int block, int start, int end) {
+                double[] force = bf[block];
+                double[] x = bx[block];
+                double[] y = by[block];
+                Arrays.fill(x, 0);
+                Arrays.fill(y, 0);
+                for (int i = start; i < end; i++) {
+                    int e = edges[i];
+                    if (! attractionForce(e, force)) continue;
+                    int v = visualization.getFirstVertex(e);
+                    int u = visualization.getSecondVertex(e);
+                    x[v] += force[0];
+                    y[v] += force[1];
+                    x[u] -= force[0];
+                    y[u] -= force[1];
+                }
+            }
+        });
+        for (RowIterator iter = getGraphVisualization().vertexIterator(); iter.hasNext();) {
+            int v = iter.nextRow();
+            double x = 0;
+            double y = 0;
+            for (int b = 0; b < blocks; b++) {
+                x += bx[b][v];
+                y += by[b][v];
+            }
+            applyAttraction(v, x, y);
+        }
+    }
+
+    /**
+     * @return true if forces are computed in parallel when possible.
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Sets whether forces are computed in parallel on large graphs.
+     * @param parallel true to compute forces in parallel
+     */
+    public void setParallel(boolean parallel) {
+        if (this.parallel == parallel) return;
+        this.parallel = parallel;
+        firePropertyChange(PROPERTY_PARALLEL, !parallel, parallel);
+    }
+}
@@ -19,7 +19,7 @@ import java.awt.geom.Rectangle2D;
  * @version $Revision: 1.11 $
  * @infovis.factory GraphLayoutFactory "Spring"
  */
-public class SpringLayout extends BasicSpringLayout {
+public class SpringLayout extends ParallelSpringLayout {
     public static final int RANGE = 100;
     protected double FORCE_CONSTANT = 1.0 / 3.0;
     public static final double STRETCH = 7.0;
@@ -37,6 +37,7 @@ public class SpringLayout extends BasicSpringLayout {
     public SpringLayout(LengthFunction fn) {
         super();
         this.lengthFunction = fn;
+        cutoff = RANGE;
     }
     
     public String getName() {
@@ -88,36 +89,71 @@ public class SpringLayout extends BasicSpringLayout {
         super.incrementLayout(bounds);
     }
     
-    public void calcRepulsion(int v1) {
+    protected boolean isRepulsive(int v) {
+        return ! dontMove(v);
+    }
+    
+    protected void addRepulsion(
+            double vx, double vy, 
+            double weight, 
+            double[] force) {
+        double distance = (vx * vx) + (vy * vy);
+        if (distance == 0) {
+            force[0] += Math.random() * weight;
+            force[1] += Math.random() * weight;
+        }
+        else if (distance < RANGE * RANGE) {
+            force[0] += weight * vx / (distance * distance); 
+            force[1] += weight * vy / (distance * distance);
+        }
+    }
+    
+    protected void repulsionForce(int v1, double[] force) {
         double dx = 0;
         double dy = 0;
-        for (RowIterator iter2 = getGraphVisualization().vertexIterator(); iter2.hasNext();) {
-            int v2 = iter2.nextRow();
-            if (dontMove(v2)) continue;
-            if (v1 != v2) {
-                double vx = getX(v1) - getX(v2);
-                double vy = getY(v1) - getY(v2);
-                double distance = (vx * vx) + (vy * vy);
-                
-                if (distance == 0) {
-                    dx += Math.random();
-                    dy += Math.random();
-                }
-                else if (distance < RANGE * RANGE) {
-                    dx += vx / (distance * distance); 
-                    dy += vy / (distance * distance);
+        if (getRepulsionTree() != null) {
+            computeRepulsion(v1, force);
+            dx = force[0];
+            dy = force[1];
+        }
+        else {
+            for (RowIterator iter2 = getGraphVisualization().vertexIterator(); iter2.hasNext();) {
+                int v2 = iter2.nextRow();
+                if (dontMove(v2)) continue;
+                if (v1 != v2) {
+                    double vx = (double)getX(v1) - getX(v2);
+                    double vy = (double)getY(v1) - getY(v2);
+                    double distance = (vx * vx) + (vy * vy);
+                    
+                    if (distance == 0) {
+                        dx += Math.random();
+                        dy += Math.random();
+                    }
+                    else if (distance < RANGE * RANGE) {
+                        dx += vx / (distance * distance); 
+                        dy += vy / (distance * distance);
+                    }
                 }
             }
         }
         double len = dx*dx + dy*dy;
         if (len > 0) {
             len = Math.sqrt(len) / 2;
-            repulsiondx.addExtend(v1, dx / len);
-            repulsiondy.addExtend(v1, dy / len);
+            force[0] = dx / len;
+            force[1] = dy / len;
+        }
+        else {
+            force[0] = 0;
+            force[1] = 0;
         }
     }
     
-    public void calcAttraction(int e) {
+    protected void applyRepulsion(int v, double fx, double fy) {
+        repulsiondx.addExtend(v, fx);
+        repulsiondy.addExtend(v, fy);
+    }
+    
+    protected boolean attractionForce(int e, double[] f) {
         int v1 = visualization.getFirstVertex(e);
         int v2 = visualization.getSecondVertex(e);
     
@@ -132,12 +168,14 @@ public class SpringLayout extends BasicSpringLayout {
                 STRETCH / 100.0,
                 getGraphVisualization().getDegree(v1) + getGraphVisualization().getDegree(v2) - 2);
     
-        double dx = force * vx;
-        double dy = force * vy;
-        edgedx.addExtend(v1, dx);
-        edgedy.addExtend(v1, dy);
-        edgedx.addExtend(v2, -dx);
-        edgedy.addExtend(v2, -dy);
+        f[0] = force * vx;
+        f[1] = force * vy;
+        return true;
+    }
+    
+    protected void applyAttraction(int v, double fx, double fy) {
+        edgedx.addExtend(v, fx);
+        edgedy.addExtend(v, fy);
     }
 
     public boolean calcPosition(int v) {
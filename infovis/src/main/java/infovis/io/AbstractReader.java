@@ -22,7 +22,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
-import java.text.ParseException;
+import java.text.ParsePosition;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.compress.bzip2.CBZip2InputStream;
@@ -122,31 +122,108 @@ public abstract class AbstractReader {
         char c = field.charAt(0);
 
         if (Character.isDigit(c) || c == '-' || c == '+'
-                || (c == '.' && Character.isDigit(field.charAt(1)))) {
+                || (c == '.' && field.length() > 1
+                        && Character.isDigit(field.charAt(1)))) {
             UTCDateFormat date = UTCDateFormat.getSharedInstance();
-            try {
-                date.parse(field);
+            if (date.parse(field, new ParsePosition(0)) != null) {
                 return "date";
-            } catch (ParseException e) {
-                ; // fall through
             }
-            try {
-                Integer.parseInt(field);
+            if (isInteger(field)) {
                 return "integer";
-            } catch (NumberFormatException e) {
-                ; // fall through
             }
-            try {
-                Float.parseFloat(field);
+            if (isFloat(field)) {
                 return "float";
-            } catch (NumberFormatException e) {
-                ; // fall through
             }
         }
 
         return "string";
     }
-    
+
+    /**
+     * Returns true if a field would be accepted by
+     * <code>Integer.parseInt</code>, without relying on exceptions.
+     *
+     * @param field the field
+     * @return true if the field is a decimal integer
+     */
+    public static boolean isInteger(CharSequence field) {
+        int len = field.length();
+        int i = 0;
+        if (len != 0 && (field.charAt(0) == '-' || field.charAt(0) == '+')) {
+            i++;
+        }
+        if (i == len || len - i > 10) {
+            return false;
+        }
+        long v = 0;
+        for (; i < len; i++) {
+            int d = Character.digit(field.charAt(i), 10);
+            if (d < 0) {
+                return false;
+            }
+            v = v * 10 + d;
+        }
+        if (field.charAt(0) == '-') {
+            v = -v;
+        }
+        return v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns true if a field would be accepted by
+     * <code>Float.parseFloat</code> as a decimal number, without
+     * relying on exceptions.
+     *
+     * @param field the field
+     * @return true if the field is a decimal number
+     */
+    public static boolean isFloat(CharSequence field) {
+        int len = field.length();
+        while (len > 0 && field.charAt(len-1) <= ' ') {
+            len--;
+        }
+        int i = 0;
+        if (i < len && (field.charAt(i) == '-' || field.charAt(i) == '+')) {
+            i++;
+        }
+        String rest = field.subSequence(i, len).toString();
+        if (rest.equals("Infinity") || rest.equals("NaN")) {
+            return true;
+        }
+        boolean digits = false;
+        for (; i < len && isDigit(field.charAt(i)); i++) {
+            digits = true;
+        }
+        if (i < len && field.charAt(i) == '.') {
+            for (i++; i < len && isDigit(field.charAt(i)); i++) {
+                digits = true;
+            }
+        }
+        if (! digits) {
+            return false;
+        }
+        if (i < len && (field.charAt(i) == 'e' || field.charAt(i) == 'E')) {
+            i++;
+            if (i < len && (field.charAt(i) == '-' || field.charAt(i) == '+')) {
+                i++;
+            }
+            if (i == len || ! isDigit(field.charAt(i))) {
+                return false;
+            }
+            while (i < len && isDigit(field.charAt(i))) {
+                i++;
+            }
+        }
+        if (i < len && "fFdD".indexOf(field.charAt(i)) != -1) {
+            i++;
+        }
+        return i == len;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
     /**
      * Creates a column of the specified type and name.
      * @param type the type name
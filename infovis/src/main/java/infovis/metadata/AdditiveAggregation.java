@@ -13,6 +13,7 @@ import infovis.Tree;
 import infovis.column.*;
 import infovis.column.NumberColumn;
 import infovis.tree.DepthFirst;
+import infovis.tree.TreeIntervals;
 import infovis.utils.*;
 import infovis.utils.RowDoubleValueGenerator;
 import infovis.utils.RowIterator;
@@ -199,6 +200,19 @@ public class AdditiveAggregation extends AbstractMetadata
         }
     }
 
+    private static void setAdditiveValue(
+            NumberColumn col,
+            DoubleFunction fn,
+            int node,
+            double v) {
+        if (fn != null) {
+            v = fn.apply(v);
+        }
+        if (v > 0) {
+            col.setDoubleAt(node, v);
+        }
+    }
+
     /**
      * Creates a NumberColumn to be a valid sizeColumn by computing the sum of
      * the leave and undefining non leaf nodes. The initial values are provided
@@ -223,51 +237,36 @@ public class AdditiveAggregation extends AbstractMetadata
         final NumberColumn col = 
             dst == null ? new DoubleColumn(src.getName()) : dst;
 
-        DepthFirst.visit(tree, new DepthFirst.Visitor() {
-            public boolean preorder(int node) {
-                return true;
-            }
-            
-            void setValue(int node, double v) {
-                if (fn != null) {
-                    v = fn.apply(v);
-                }
-                if (v > 0) {
-                    col.setDoubleAt(node, v);
-                }
-            }
-
-            public void postorder(int node) {
-                if (tree.isLeaf(node)) {
-                    if (src == null || src.isValueUndefined(node)) {
-                        if (gen == null) {
-                            col.setValueUndefined(node, true);
-                        }
-                        else {
-                            setValue(node, gen.generate(node));
-                        }
-                    } else {
-                        setValue(node, src.getDoubleAt(node));
+        // the reverse preorder reaches the children before their
+        // parent, each node adding its defined value to its parent
+        int[] order = TreeIntervals.get(tree).getOrder();
+        double[] sum = new double[tree.getLastRow() + 1];
+        for (int i = order.length - 1; i >= 0; i--) {
+            int node = order[i];
+            if (tree.isLeaf(node)) {
+                if (src == null || src.isValueUndefined(node)) {
+                    if (gen == null) {
+                        col.setValueUndefined(node, true);
                     }
-                }
-                else {
-                    double sum = 0;
-
-                    for (RowIterator iter = tree.childrenIterator(node); iter
-                            .hasNext();) {
-                        int c = iter.nextRow();
-                        if (! col.isValueUndefined(c)) {
-                            sum += col.getDoubleAt(c);
-                        }
+                    else {
+                        setAdditiveValue(col, fn, node, gen.generate(node));
                     }
-                    col.setDoubleAt(node, sum);
-                    // node value is marked as undefined to
-                    // get the correct min/max values
-                    // without the parents.
-                    //col.setValueUndefined(node, true);
+                } else {
+                    setAdditiveValue(col, fn, node, src.getDoubleAt(node));
                 }
             }
-        });
+            else {
+                col.setDoubleAt(node, sum[node]);
+                // node value is marked as undefined to
+                // get the correct min/max values
+                // without the parents.
+                //col.setValueUndefined(node, true);
+            }
+            int parent = tree.getParent(node);
+            if (parent != Tree.NIL && ! col.isValueUndefined(node)) {
+                sum[parent] += col.getDoubleAt(node);
+            }
+        }
         setValue(col, AGGREGATION_TYPE, AGGREGATION_TYPE_ADDITIVE);
         return col;
     }
@@ -11,9 +11,10 @@ import infovis.Column;
 import infovis.Tree;
 import infovis.column.ColumnProxy;
 import infovis.column.NumberColumn;
-import infovis.tree.DepthFirst;
+import infovis.tree.TreeIntervals;
 import infovis.utils.IntIntSortedMap;
-import infovis.utils.RowIterator;
+
+import java.util.Arrays;
 
 /**
  * Aggregate by computing the min value
@@ -40,43 +41,25 @@ public class MinAggregation extends AbstractMetadata
         if (aggr != null) {
             return aggr.equals(AGGREGATION_TYPE_MIN);
         }
-        try {
-            DepthFirst.visit(tree, new DepthFirst.Visitor() {
-                void no() {
-                    throw new RuntimeException("NO");
-                }
-
-                public boolean preorder(int node) {
-                    return true;
-                }
-
-                public void postorder(int node) {
-                    if (tree.isLeaf(node)) {
-                        if (col.isValueUndefined(node)) {
-                            no();
-                        }
-                    } else {
-                        if (col.isValueUndefined(node)) {
-                            no();
-                        }
-                        // Min starts with first value
-                        RowIterator iter = tree.childrenIterator(node);
-                        int minIndex = iter.nextRow();
-
-                        while (iter.hasNext()) {
-                            int c = iter.nextRow();
-                            if (col.compare(minIndex, c) > 0) {
-                                minIndex = c;
-                            }
-                        }
-                        if (col.compare(minIndex, node) != 0) {
-                            no();
-                        }
-                    }
-                }
-            });
-        } catch (Exception e) {
-            return false;
+        // the reverse preorder reaches the children before their
+        // parent, each node comparing itself to the min of its parent
+        int[] order = TreeIntervals.get(tree).getOrder();
+        int[] min = new int[tree.getLastRow() + 1];
+        Arrays.fill(min, Tree.NIL);
+        for (int i = order.length - 1; i >= 0; i--) {
+            int node = order[i];
+            if (col.isValueUndefined(node)) {
+                return false;
+            }
+            if (! tree.isLeaf(node) && col.compare(min[node], node) != 0) {
+                return false;
+            }
+            int parent = tree.getParent(node);
+            if (parent != Tree.NIL
+                    && (min[parent] == Tree.NIL
+                            || col.compare(min[parent], node) > 0)) {
+                min[parent] = node;
+            }
         }
         setValue(col, AGGREGATION_TYPE, AGGREGATION_TYPE_MIN);
         return true;
@@ -95,28 +78,23 @@ public class MinAggregation extends AbstractMetadata
     }
 
     private NumberColumn aggregate(final Tree tree, final NumberColumn to, final NumberColumn col) {
-        DepthFirst.visit(tree, new DepthFirst.Visitor() {
-            public boolean preorder(int node) {
-                return true;
+        int[] order = TreeIntervals.get(tree).getOrder();
+        int[] min = new int[tree.getLastRow() + 1];
+        Arrays.fill(min, Tree.NIL);
+        for (int i = order.length - 1; i >= 0; i--) {
+            int node = order[i];
+            if (tree.isLeaf(node)) {
+                to.setDoubleAt(node, col.getDoubleAt(node));
+            } else {
+                to.setDoubleAt(node, col.getDoubleAt(min[node]));
             }
-            public void postorder(int node) {
-                if (tree.isLeaf(node)) {
-                    to.setDoubleAt(node, col.getDoubleAt(node));
-                } else {
-                    // Min starts with first value
-                    RowIterator iter = tree.childrenIterator(node);
-                    int minIndex = iter.nextRow();
-
-                    while (iter.hasNext()) {
-                        int c = iter.nextRow();
-                        if (col.compare(minIndex, c) > 0) {
-                            minIndex = c;
-                        }
-                    }
-                    to.setDoubleAt(node, col.getDoubleAt(minIndex));
-                }
+            int parent = tree.getParent(node);
+            if (parent != Tree.NIL
+                    && (min[parent] == Tree.NIL
+                            || col.compare(min[parent], node) > 0)) {
+                min[parent] = node;
             }
-        });
+        }
         return to;
     }
 
@@ -128,8 +106,7 @@ public class MinAggregation extends AbstractMetadata
         return new DenseColumn(src, tree);
     }
 
-    public static class DenseColumn extends ColumnProxy 
-        implements DepthFirst.Visitor {
+    public static class DenseColumn extends ColumnProxy {
         protected IntIntSortedMap missing;
         protected Tree tree;
         protected Column src;
@@ -145,30 +122,25 @@ public class MinAggregation extends AbstractMetadata
         public void update() {
             missing.clear();
             // Undefined leaves will have the maxIndex
-            if (getMaxIndex()== -1) {
+            int maxIndex = getMaxIndex();
+            if (maxIndex == -1) {
                 // No need to do anything
                 return;
             }
-            DepthFirst.visit(tree, this);
-        }
-        public boolean preorder(int node) {
-            return true;
-        }
-        public void postorder(int node) {
-            if (! super.isValueUndefined(node)) {
-                return;
-            }
-            int minIndex = getMaxIndex();
-            if (! tree.isLeaf(node)) {
-                // precondition: all leaves have defined/comparable values now
-                for (RowIterator iter = tree.childrenIterator(node); iter.hasNext(); ) {
-                    int c = iter.nextRow();
-                    if (super.compare(minIndex, c) > 0) {
-                        minIndex = c;
-                    }
+            int[] order = TreeIntervals.get(tree).getOrder();
+            int[] min = new int[tree.getLastRow() + 1];
+            Arrays.fill(min, maxIndex);
+            for (int i = order.length - 1; i >= 0; i--) {
+                int node = order[i];
+                if (super.isValueUndefined(node)) {
+                    // precondition: all leaves have defined/comparable values now
+                    missing.put(node, tree.isLeaf(node) ? maxIndex : min[node]);
+                }
+                int parent = tree.getParent(node);
+                if (parent != Tree.NIL && super.compare(min[parent], node) > 0) {
+                    min[parent] = node;
                 }
             }
-            missing.put(node, minIndex);
         }
         
         public boolean isValueUndefined(int row) {
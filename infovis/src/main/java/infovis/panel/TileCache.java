@@ -0,0 +1,233 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.panel;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+
+/**
+ * <b>TileCache</b> maintains an off-screen image split into square
+ * tiles that are invalidated independently.
+ *
+ * <p>The owner paints the invalid tiles in one pass, clipping its
+ * graphics to {@link #getInvalidArea()}, then calls
+ * {@link #validate()}; the image can then be copied on the screen as
+ * long as no tile is invalidated.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class TileCache {
+    /** Default size of the tiles in pixels. */
+    public static final int DEFAULT_TILE_SIZE = 128;
+    protected int           tileSize;
+    protected int           width;
+    protected int           height;
+    protected int           columns;
+    protected int           rows;
+    protected BufferedImage image;
+    protected BitSet        invalid = new BitSet();
+
+    /**
+     * Creates a TileCache with a specified tile size.
+     * @param tileSize the size of the tiles in pixels
+     */
+    public TileCache(int tileSize) {
+        this.tileSize = Math.max(1, tileSize);
+    }
+
+    /**
+     * Creates a TileCache with the default tile size.
+     */
+    public TileCache() {
+        this(DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Returns the size of the tiles in pixels.
+     * @return the size of the tiles in pixels
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Sets the size of the image, invalidating all the tiles if it
+     * has changed.
+     * @param w the width
+     * @param h the height
+     */
+    public void setSize(int w, int h) {
+        if (w == width && h == height) return;
+        width = w;
+        height = h;
+        columns = (w + tileSize - 1) / tileSize;
+        rows = (h + tileSize - 1) / tileSize;
+        if (image != null
+                && (image.getWidth() < w || image.getHeight() < h)) {
+            image.flush();
+            image = null;
+        }
+        invalid.clear();
+        invalidate();
+    }
+
+    /**
+     * Returns the width of the image.
+     * @return the width of the image
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the image.
+     * @return the height of the image
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the image, creating it if needed.
+     * @return the image
+     */
+    public BufferedImage getImage() {
+        if (image == null && width > 0 && height > 0) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return image;
+    }
+
+    /**
+     * Returns the number of tiles.
+     * @return the number of tiles
+     */
+    public int getTileCount() {
+        return columns * rows;
+    }
+
+    /**
+     * Invalidates all the tiles.
+     */
+    public void invalidate() {
+        invalid.set(0, getTileCount());
+    }
+
+    /**
+     * Invalidates the tiles intersecting an area.
+     * @param area the area
+     */
+    public void invalidate(Rectangle2D area) {
+        if (area == null) {
+            invalidate();
+            return;
+        }
+        if (area.getMaxX() < 0 || area.getMaxY() < 0
+                || area.getMinX() >= width || area.getMinY() >= height) {
+            return;
+        }
+        int c0 = Math.max(0, (int) Math.floor(area.getMinX()) / tileSize);
+        int r0 = Math.max(0, (int) Math.floor(area.getMinY()) / tileSize);
+        int c1 = Math.min(columns - 1, (int) Math.ceil(area.getMaxX()) / tileSize);
+        int r1 = Math.min(rows - 1, (int) Math.ceil(area.getMaxY()) / tileSize);
+        for (int r = r0; r <= r1; r++) {
+            if (c0 <= c1) {
+                invalid.set(r * columns + c0, r * columns + c1 + 1);
+            }
+        }
+    }
+
+    /**
+     * Returns true if a tile is invalid.
+     * @param column the column of the tile
+     * @param row the row of the tile
+     * @return true if the tile is invalid
+     */
+    public boolean isInvalid(int column, int row) {
+        return invalid.get(row * columns + column);
+    }
+
+    /**
+     * Returns true if some tiles are invalid.
+     * @return true if some tiles are invalid
+     */
+    public boolean isInvalid() {
+        return ! invalid.isEmpty();
+    }
+
+    /**
+     * Returns the number of invalid tiles.
+     * @return the number of invalid tiles
+     */
+    public int getInvalidCount() {
+        return invalid.cardinality();
+    }
+
+    /**
+     * Returns the area covered by the invalid tiles, clipped to the
+     * size of the image.
+     * @return the area covered by the invalid tiles
+     */
+    public Area getInvalidArea() {
+        Area area = new Area();
+        for (int r = 0; r < rows; r++) {
+            int c = invalid.nextSetBit(r * columns);
+            while (c != -1 && c < (r + 1) * columns) {
+                int end = invalid.nextClearBit(c);
+                if (end > (r + 1) * columns) {
+                    end = (r + 1) * columns;
+                }
+                int x = (c - r * columns) * tileSize;
+                int w = Math.min(width, (end - r * columns) * tileSize) - x;
+                int y = r * tileSize;
+                area.add(new Area(new Rectangle(
+                        x, y, w, Math.min(tileSize, height - y))));
+                c = invalid.nextSetBit(end);
+            }
+        }
+        return area;
+    }
+
+    /**
+     * Creates a graphics drawing on the image, clipped to the invalid
+     * tiles which are cleared.
+     * @return a graphics drawing on the image
+     */
+    public Graphics2D createGraphics() {
+        Graphics2D g = getImage().createGraphics();
+        g.clip(getInvalidArea());
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, width, height);
+        g.setComposite(AlphaComposite.SrcOver);
+        return g;
+    }
+
+    /**
+     * Marks all the tiles as valid.
+     */
+    public void validate() {
+        invalid.clear();
+    }
+
+    /**
+     * Releases the image.
+     */
+    public void dispose() {
+        if (image != null) {
+            image.flush();
+            image = null;
+        }
+        invalidate();
+    }
+}
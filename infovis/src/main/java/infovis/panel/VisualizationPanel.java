@@ -11,7 +11,9 @@ package infovis.panel;
 import infovis.Column;
 import infovis.Visualization;
 import infovis.table.Item;
+import infovis.visualization.CachedComponent;
 import infovis.visualization.VisualizationInteractor;
+import infovis.visualization.VisualizationLayers;
 import infovis.visualization.inter.BasicVisualizationInteractor;
 import infovis.visualization.inter.DefaultVisualizationInteractor;
 import infovis.visualization.render.VisualLabel;
@@ -21,6 +23,7 @@ import java.awt.Dimension;
 import java.awt.GradientPaint;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Shape;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Rectangle2D;
 
@@ -29,14 +32,27 @@ import javax.swing.JComponent;
 /**
  * Component managing a visualization.
  * 
+ * <p>When tiled, the background and the layers up to
+ * {@link VisualizationLayers#MAIN_LAYER} are rendered in a
+ * {@link TileCache} whose tiles are invalidated by the visualizations
+ * when they repaint, and the upper layers are painted over the cached
+ * image.  Repainting the panel without changes then only copies the
+ * image.  Code changing the rendering without calling
+ * <code>repaint</code> or <code>invalidate</code> on the visualization
+ * should call {@link #invalidateCache(Visualization, Rectangle2D)}.
+ * 
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.29 $
  */
-public class VisualizationPanel extends JComponent {
+public class VisualizationPanel extends JComponent 
+    implements CachedComponent {
     protected Visualization visualization;
     protected boolean       usingGradient = true;
+    protected TileCache     tileCache;
     /** Property name for usingGradient.*/
     public static final String PROPERTY_USING_GRADIENT = "usingGradient";
+    /** Property name for tiled.*/
+    public static final String PROPERTY_TILED = "tiled";
     BasicVisualizationInteractor inter;
 
     /**
@@ -111,12 +127,121 @@ public class VisualizationPanel extends JComponent {
      */
     protected void paintComponent(Graphics g) {
         Graphics2D g2 = (Graphics2D) g;
-        paintBackground(g2);
-        if (this.visualization != null) {
-            visualization.paint(g2, getFullBounds());
+        if (tileCache == null || isPaintingForPrint()) {
+            paintBackground(g2);
+            if (this.visualization != null) {
+                visualization.paint(g2, getFullBounds());
+            }
+            return;
+        }
+        tileCache.setSize(getWidth(), getHeight());
+        if (tileCache.getImage() == null) {
+            return;
+        }
+        if (tileCache.isInvalid()) {
+            Graphics2D ig = tileCache.createGraphics();
+            try {
+                paintBackground(ig);
+                paintLayers(ig, true);
+            }
+            finally {
+                ig.dispose();
+            }
+            tileCache.validate();
+        }
+        g2.drawImage(tileCache.getImage(), 0, 0, null);
+        paintLayers(g2, false);
+    }
+
+    /**
+     * Paints either the layers cached in the tiles, up to the main
+     * layer, or the layers above the main layer.
+     * @param graphics the graphics
+     * @param cached true to paint the layers cached in the tiles
+     */
+    protected void paintLayers(Graphics2D graphics, boolean cached) {
+        if (visualization == null) 
+            return;
+        Rectangle2D bounds = getFullBounds();
+        if (! (visualization instanceof VisualizationLayers)) {
+            if (cached) {
+                visualization.paint(graphics, bounds);
+            }
+            return;
+        }
+        VisualizationLayers layers = (VisualizationLayers) visualization;
+        Shape clip = graphics.getClip();
+        for (int i = 0; i < layers.size(); i++) {
+            Visualization vis = layers.getVisualization(i);
+            if (isOverlay(vis) != cached) {
+                vis.paint(graphics, bounds);
+                graphics.setClip(clip);
+            }
         }
     }
 
+    /**
+     * Returns true if a visualization is painted over the cached tiles.
+     * @param vis the visualization
+     * @return true if the visualization is painted over the cached tiles
+     */
+    public boolean isOverlay(Visualization vis) {
+        if (! (visualization instanceof VisualizationLayers)) 
+            return false;
+        VisualizationLayers layers = (VisualizationLayers) visualization;
+        return layers.getRank(vis) > VisualizationLayers.MAIN_LAYER;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void invalidateCache(Visualization vis, Rectangle2D area) {
+        if (tileCache == null || (vis != null && isOverlay(vis))) 
+            return;
+        tileCache.invalidate(area);
+    }
+
+    /**
+     * Returns true if the rendering is cached in tiles.
+     * @return true if the rendering is cached in tiles
+     */
+    public boolean isTiled() {
+        return tileCache != null;
+    }
+
+    /**
+     * Sets whether the rendering is cached in tiles.
+     * @param tiled true if the rendering should be cached in tiles
+     */
+    public void setTiled(boolean tiled) {
+        if (tiled == isTiled()) return;
+        if (tiled) {
+            tileCache = new TileCache();
+        }
+        else {
+            tileCache.dispose();
+            tileCache = null;
+        }
+        repaint();
+        firePropertyChange(PROPERTY_TILED, !tiled, tiled);
+    }
+
+    /**
+     * Returns the tile cache or null if the panel is not tiled.
+     * @return the tile cache or null
+     */
+    public TileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBackground(Color bg) {
+        invalidateCache(null, null);
+        super.setBackground(bg);
+    }
+
     /**
      * Returns the visualization.
      * 
@@ -139,6 +264,7 @@ public class VisualizationPanel extends JComponent {
         this.visualization = visualization;
         if (this.visualization != null)
             this.visualization.setParent(this);
+        invalidateCache(null, null);
     }
 
     /**
@@ -186,6 +312,7 @@ public class VisualizationPanel extends JComponent {
         if (this.usingGradient == usingGradient) return;
         boolean old = this.usingGradient;
         this.usingGradient = usingGradient;
+        invalidateCache(null, null);
         repaint();
         firePropertyChange(PROPERTY_USING_GRADIENT, old, usingGradient);
     }
@@ -10,6 +10,7 @@ package infovis.panel.dqinter;
 import infovis.Column;
 import infovis.column.FilterColumn;
 import infovis.column.NumberColumn;
+import infovis.column.NumberColumnIndex;
 import infovis.column.visualization.HistogramVisualization;
 import infovis.panel.DefaultDoubleBoundedRangeModel;
 import infovis.panel.DynamicQuery;
@@ -27,6 +28,10 @@ import javax.swing.event.ChangeListener;
 /**
  * Bounded range model used as a dynamic query for range sliders.
  * 
+ * <p>When indexed, the model uses a {@link NumberColumnIndex} to
+ * find the rows entering or leaving the range when its bounds change
+ * and only updates these rows in the filter column.
+ * 
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.12 $
  */
@@ -35,6 +40,11 @@ public class NumberColumnBoundedRangeModel extends
     protected NumberColumn      column;
     protected FilterColumn      filter;
     protected DoubleRangeSlider component;
+    protected boolean           indexed = true;
+    protected transient FilterColumn appliedFilter;
+    protected transient int     appliedVersion;
+    protected transient int     appliedLow;
+    protected transient int     appliedHigh;
 
     /**
      * Constructor from a NumberColumn.
@@ -51,6 +61,10 @@ public class NumberColumnBoundedRangeModel extends
      */
     public void stateChanged(ChangeEvent e) {
         if (e.getSource() == column) {
+            if (indexed) {
+                // the index may not have been notified yet
+                NumberColumnIndex.get(column).invalidate();
+            }
             update();
         }
     }
@@ -117,6 +131,7 @@ public class NumberColumnBoundedRangeModel extends
         if (this.column != null)
             this.column.removeChangeListener(this);
         this.column = column;
+        appliedFilter = null;
         if (this.column != null)
             this.column.addChangeListener(this);
         update();
@@ -137,6 +152,7 @@ public class NumberColumnBoundedRangeModel extends
             this.filter.removeDynamicQuery(this);
         }
         this.filter = filter;
+        appliedFilter = null;
         if (this.filter != null) {
             this.filter.addDynamicQuery(this);
         }
@@ -146,11 +162,78 @@ public class NumberColumnBoundedRangeModel extends
      * {@inheritDoc}
      */
     public void apply() {
-        if (filter != null) {
-            filter.applyDynamicQuery(
-                    this, 
-                    new TableIterator(0, Math.max(filter.size(), column.size())));
+        if (filter == null) {
+            return;
+        }
+        if (! indexed || (component != null && !component.isEnabled())) {
+            appliedFilter = null;
+            applyAll();
+            return;
+        }
+        NumberColumnIndex index = NumberColumnIndex.get(column);
+        double min = column.coerce(getValueDouble());
+        double max = column.coerce(getValueDouble() + getExtentDouble());
+        int low = index.lowerBound(min);
+        int high = Math.max(low, index.upperBound(max));
+        int version = index.getVersion();
+        if (appliedFilter == filter
+                && appliedVersion == version
+                && filter.getDynamicQueryIndex(this) != -1) {
+            try {
+                filter.disableNotify();
+                // Only the rows between the old and new bounds can change
+                if (low != appliedLow) {
+                    filter.updateDynamicQuery(
+                            this,
+                            index.iterator(
+                                    Math.min(low, appliedLow),
+                                    Math.max(low, appliedLow)));
+                }
+                if (high != appliedHigh) {
+                    filter.updateDynamicQuery(
+                            this,
+                            index.iterator(
+                                    Math.min(high, appliedHigh),
+                                    Math.max(high, appliedHigh)));
+                }
+            }
+            finally {
+                filter.enableNotify();
+            }
+        }
+        else {
+            applyAll();
+            appliedFilter = filter;
+            appliedVersion = version;
         }
+        appliedLow = low;
+        appliedHigh = high;
+    }
+    
+    protected void applyAll() {
+        filter.applyDynamicQuery(
+                this, 
+                new TableIterator(0, Math.max(filter.size(), column.size())));
+    }
+
+    /**
+     * Returns true if the model uses a sorted index of its column to
+     * update the filter incrementally.
+     * @return true if the model uses a sorted index
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Sets whether the model uses a sorted index of its column to
+     * update the filter incrementally.
+     * @param indexed true to use a sorted index
+     */
+    public void setIndexed(boolean indexed) {
+        if (this.indexed == indexed) return;
+        this.indexed = indexed;
+        appliedFilter = null;
     }
 
     /*
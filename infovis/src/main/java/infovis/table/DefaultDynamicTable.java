@@ -170,6 +170,28 @@ public class DefaultDynamicTable extends DefaultTable
         return row;
     }
     
+    /**
+     * Adds a specified number of consecutive rows after the last row,
+     * with a single notification.
+     * 
+     * @param count the number of rows
+     * @return the first added row
+     */
+    public int addRows(int count) {
+        int size = getRowCount();
+        int row = idManager.newIds(count);
+        if (count > 0 && hasTableModelListener()) {
+            int op;
+            if (row == size)
+                op = TableModelEvent.INSERT;
+            else
+                op = TableModelEvent.UPDATE;
+            TMP_event.setValues(row, row + count - 1, TableModelEvent.ALL_COLUMNS, op);
+            fireTableChanged(TMP_event);
+        }
+        return row;
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,76 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.table.io;
+
+/**
+ * <b>BinaryTableConstants</b> defines the constants of the InfoVis
+ * binary columnar file format.
+ * 
+ * <p>All the values are big-endian.  A file starts with the
+ * <code>MAGIC</code> number, the <code>VERSION</code> and the
+ * <code>KIND</code> of structure stored, followed by:
+ * <ul>
+ * <li>a table block for a table;
+ * <li>a table block whose rows are in depth-first order followed by
+ * the parent of each row for a tree;
+ * <li>a boolean for the directedness, a vertex table block, an edge
+ * table block and the first then second vertex of each edge for a
+ * graph.
+ * </ul>
+ * 
+ * <p>A table block contains the row count, the table metadata, the
+ * column count and the columns.  Each column contains its name, type,
+ * metadata, the number and list of rows with undefined values, the
+ * categories of categorical columns, and then the values of all the
+ * rows in a contiguous array that can be memory-mapped.
+ * 
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public interface BinaryTableConstants {
+    /** Magic number starting the file: "IVB1". */
+    int MAGIC = 0x49564231;
+    /** Version of the format. */
+    int VERSION = 1;
+    
+    /** Kind of file storing a table. */
+    int KIND_TABLE = 0;
+    /** Kind of file storing a tree. */
+    int KIND_TREE = 1;
+    /** Kind of file storing a graph. */
+    int KIND_GRAPH = 2;
+    
+    /** Type of int columns. */
+    byte TYPE_INT = 1;
+    /** Type of float columns. */
+    byte TYPE_FLOAT = 2;
+    /** Type of double columns. */
+    byte TYPE_DOUBLE = 3;
+    /** Type of long columns. */
+    byte TYPE_LONG = 4;
+    /** Type of date columns, stored as longs. */
+    byte TYPE_DATE = 5;
+    /** Type of boolean columns, stored as bytes. */
+    byte TYPE_BOOLEAN = 6;
+    /**
+     * Type of string columns, stored as the size in bytes of the
+     * values followed by the UTF-8 length and bytes of each value.
+     */
+    byte TYPE_STRING = 7;
+    /** Type of categorical columns, stored as ints. */
+    byte TYPE_CATEGORICAL = 8;
+    
+    /** Tag of string metadata values. */
+    byte META_STRING = 's';
+    /** Tag of boolean metadata values. */
+    byte META_BOOLEAN = 'b';
+    /** Tag of int metadata values. */
+    byte META_INT = 'i';
+    /** Tag of double metadata values. */
+    byte META_DOUBLE = 'd';
+}
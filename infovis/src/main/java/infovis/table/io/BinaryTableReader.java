@@ -0,0 +1,458 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.table.io;
+
+import infovis.Column;
+import infovis.Graph;
+import infovis.Table;
+import infovis.Tree;
+import infovis.column.BooleanColumn;
+import infovis.column.CategoricalColumn;
+import infovis.column.DateColumn;
+import infovis.column.LongColumn;
+import infovis.column.MappedDoubleColumn;
+import infovis.column.MappedFloatColumn;
+import infovis.column.MappedIntColumn;
+import infovis.column.StringColumn;
+import infovis.graph.GraphBuilder;
+import infovis.io.WrongFormatException;
+import infovis.table.DefaultDynamicTable;
+import infovis.utils.BitSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.SimpleAttributeSet;
+
+import org.apache.log4j.Logger;
+
+import cern.colt.list.IntArrayList;
+
+/**
+ * <b>BinaryTableReader</b> reads tables, trees and graphs in the
+ * InfoVis binary columnar format described in
+ * {@link BinaryTableConstants}.
+ *
+ * <p>The file is memory-mapped: int, float and double columns are
+ * read-only views on the file and are not copied, so loading is
+ * almost immediate whatever the size of the table.  Other columns are
+ * decoded from the mapped file.  The structure of trees and graphs is
+ * rebuilt from the stored parents and edges.  The table, tree or graph
+ * read should be empty.
+ *
+ * <p>The input stream given by the reader factories is closed and the
+ * file is opened again by name to be mapped, so compressed files and
+ * URLs cannot be read.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ * @infovis.factory TableReaderFactory ivb
+ * @infovis.factory TreeReaderFactory ivb
+ * @infovis.factory GraphReaderFactory ivb
+ */
+public class BinaryTableReader extends AbstractTableReader
+    implements BinaryTableConstants {
+    protected Graph             graph;
+    protected RandomAccessFile  file;
+    protected FileChannel       channel;
+    private static final Logger LOG = Logger.getLogger(BinaryTableReader.class);
+
+    /**
+     * Creates a reader for a table or a tree.
+     *
+     * @param in the input stream, closed by the reader
+     * @param name the file name
+     * @param table the table
+     */
+    public BinaryTableReader(InputStream in, String name, Table table) {
+        super(in, name, table);
+    }
+
+    /**
+     * Creates a reader for a tree.
+     *
+     * @param in the input stream, closed by the reader
+     * @param name the file name
+     * @param tree the tree
+     */
+    public BinaryTableReader(InputStream in, String name, Tree tree) {
+        super(in, name, tree);
+    }
+
+    /**
+     * Creates a reader for a graph.
+     *
+     * @param in the input stream, closed by the reader
+     * @param name the file name
+     * @param graph the graph
+     */
+    public BinaryTableReader(InputStream in, String name, Graph graph) {
+        super(in, name, graph.getEdgeTable());
+        this.graph = graph;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean load() throws WrongFormatException {
+        try {
+            if (getIn() != null) {
+                close();
+            }
+            File f = new File(getName());
+            if (! f.isFile()) {
+                LOG.error("Binary tables can only be mapped from files: "+getName());
+                return false;
+            }
+            file = new RandomAccessFile(f, "r");
+            channel = file.getChannel();
+            if (file.readInt() != MAGIC) {
+                throw new WrongFormatException("Not an InfoVis binary file "+getName());
+            }
+            int version = file.readInt();
+            if (version > VERSION) {
+                throw new WrongFormatException("Unsupported version "+version);
+            }
+            int kind = file.readInt();
+            if (graph != null) {
+                if (kind != KIND_GRAPH) {
+                    throw new WrongFormatException(getName()+" does not contain a graph");
+                }
+                readGraph();
+            }
+            else if (table instanceof Tree) {
+                if (kind != KIND_TREE) {
+                    throw new WrongFormatException(getName()+" does not contain a tree");
+                }
+                readTree((Tree)table);
+            }
+            else {
+                if (kind == KIND_GRAPH) {
+                    throw new WrongFormatException(getName()+" contains a graph");
+                }
+                // the structure of a tree is ignored
+                int rows = file.readInt();
+                if (table instanceof DefaultDynamicTable) {
+                    checkEmpty(table.getLastRow() == -1);
+                    ((DefaultDynamicTable)table).addRows(rows);
+                }
+                else {
+                    checkEmpty(table.getRowCount() == 0);
+                }
+                readColumns(table, rows);
+            }
+            return true;
+        }
+        catch(IOException e) {
+            LOG.error("Cannot read binary table "+getName(), e);
+            return false;
+        }
+        finally {
+            if (file != null) {
+                try {
+                    // mapped buffers remain valid
+                    file.close();
+                }
+                catch(IOException e) {
+                    LOG.error("Cannot close "+getName(), e);
+                }
+                file = null;
+                channel = null;
+            }
+        }
+    }
+
+    protected void checkEmpty(boolean empty) throws WrongFormatException {
+        if (! empty) {
+            throw new WrongFormatException(
+                    "Cannot read "+getName()+" into a non empty structure");
+        }
+    }
+
+    protected void readGraph() throws IOException {
+        checkEmpty(graph.getVerticesCount() == 0 && graph.getEdgesCount() == 0);
+        graph.setDirected(file.readBoolean());
+        GraphBuilder builder = new GraphBuilder(graph);
+        int vertices = file.readInt();
+        builder.addVertices(vertices);
+        readColumns(graph.getVertexTable(), vertices);
+        int edges = file.readInt();
+        long pos = file.getFilePointer();
+        // skip the edge columns to read the edges first
+        file.seek(skipColumns(edges));
+        int[] first = readInts(edges);
+        int[] second = readInts(edges);
+        for (int i = 0; i < edges; i++) {
+            if (first[i] < 0 || first[i] >= vertices
+                    || second[i] < 0 || second[i] >= vertices) {
+                throw new WrongFormatException("Invalid vertex in edge "+i);
+            }
+        }
+        builder.addEdges(first, second, edges);
+        file.seek(pos);
+        readColumns(graph.getEdgeTable(), edges);
+    }
+
+    protected void readTree(Tree tree) throws IOException {
+        checkEmpty(tree.getNodeCount() == 1);
+        int nodes = file.readInt();
+        long pos = file.getFilePointer();
+        file.seek(skipColumns(nodes));
+        int[] parent = readInts(nodes);
+        for (int node = 1; node < nodes; node++) {
+            int par = parent[node];
+            if (par < 0 || par >= node
+                    || tree.addNode(par) != node) {
+                throw new WrongFormatException("Invalid parent for node "+node);
+            }
+        }
+        file.seek(pos);
+        readColumns(tree, nodes);
+    }
+
+    protected ByteBuffer map(long size) throws IOException {
+        long pos = file.getFilePointer();
+        MappedByteBuffer buffer = channel.map(
+                FileChannel.MapMode.READ_ONLY, pos, size);
+        file.seek(pos + size);
+        return buffer;
+    }
+
+    protected int[] readInts(int count) throws IOException {
+        int[] values = new int[count];
+        if (count != 0) {
+            map(4L * count).asIntBuffer().get(values);
+        }
+        return values;
+    }
+
+    protected void readMetadata(MutableAttributeSet metadata) throws IOException {
+        int count = file.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = file.readUTF();
+            Object value;
+            byte tag = file.readByte();
+            switch(tag) {
+            case META_STRING:
+                value = file.readUTF();
+                break;
+            case META_BOOLEAN:
+                value = Boolean.valueOf(file.readBoolean());
+                break;
+            case META_INT:
+                value = Integer.valueOf(file.readInt());
+                break;
+            case META_DOUBLE:
+                value = Double.valueOf(file.readDouble());
+                break;
+            default:
+                throw new WrongFormatException("Invalid metadata tag "+tag);
+            }
+            metadata.addAttribute(key, value);
+        }
+    }
+
+    protected void skipMetadata() throws IOException {
+        int count = file.readInt();
+        for (int i = 0; i < count; i++) {
+            file.readUTF();
+            byte tag = file.readByte();
+            switch(tag) {
+            case META_STRING:
+                file.readUTF();
+                break;
+            case META_BOOLEAN:
+                file.readBoolean();
+                break;
+            case META_INT:
+                file.readInt();
+                break;
+            case META_DOUBLE:
+                file.readDouble();
+                break;
+            default:
+                throw new WrongFormatException("Invalid metadata tag "+tag);
+            }
+        }
+    }
+
+    /**
+     * Skips the columns of a table block.
+     * @param rows the number of rows
+     * @return the position after the columns
+     * @throws IOException on error
+     */
+    protected long skipColumns(int rows) throws IOException {
+        skipMetadata();
+        int count = file.readInt();
+        for (int i = 0; i < count; i++) {
+            file.readUTF();
+            byte type = file.readByte();
+            skipMetadata();
+            int undefined = file.readInt();
+            file.seek(file.getFilePointer() + 4L * undefined);
+            if (type == TYPE_CATEGORICAL) {
+                int categories = file.readInt();
+                for (int j = 0; j < categories; j++) {
+                    file.readUTF();
+                    file.readInt();
+                }
+            }
+            switch(type) {
+            case TYPE_CATEGORICAL:
+            case TYPE_INT:
+            case TYPE_FLOAT:
+                file.seek(file.getFilePointer() + 4L * rows);
+                break;
+            case TYPE_DOUBLE:
+            case TYPE_LONG:
+            case TYPE_DATE:
+                file.seek(file.getFilePointer() + 8L * rows);
+                break;
+            case TYPE_BOOLEAN:
+                file.seek(file.getFilePointer() + rows);
+                break;
+            case TYPE_STRING: {
+                long size = file.readLong();
+                file.seek(file.getFilePointer() + size);
+                break;
+            }
+            default:
+                throw new WrongFormatException("Invalid column type "+type);
+            }
+        }
+        return file.getFilePointer();
+    }
+
+    /**
+     * Reads the columns of a table block and adds them to a table.
+     * @param t the table
+     * @param rows the number of rows
+     * @throws IOException on error
+     */
+    protected void readColumns(Table t, int rows) throws IOException {
+        readMetadata(t.getMetadata());
+        int count = file.readInt();
+        for (int i = 0; i < count; i++) {
+            Column c = readColumn(rows);
+            if (t.getColumn(c.getName()) != null) {
+                LOG.warn("Column "+c.getName()+" already in table, ignored");
+                continue;
+            }
+            t.addColumn(c);
+        }
+    }
+
+    protected Column readColumn(int rows) throws IOException {
+        String name = file.readUTF();
+        byte type = file.readByte();
+        MutableAttributeSet metadata = new SimpleAttributeSet();
+        readMetadata(metadata);
+        int[] undefinedRows = readInts(file.readInt());
+        BitSet undefined = null;
+        if (undefinedRows.length != 0) {
+            undefined = new BitSet(rows);
+            for (int i = 0; i < undefinedRows.length; i++) {
+                undefined.set(undefinedRows[i]);
+            }
+        }
+        Column c;
+        switch(type) {
+        case TYPE_INT:
+            c = new MappedIntColumn(
+                    name,
+                    map(4L * rows).asIntBuffer(),
+                    undefined);
+            break;
+        case TYPE_FLOAT:
+            c = new MappedFloatColumn(
+                    name,
+                    map(4L * rows).asFloatBuffer(),
+                    undefined);
+            break;
+        case TYPE_DOUBLE:
+            c = new MappedDoubleColumn(
+                    name,
+                    map(8L * rows).asDoubleBuffer(),
+                    undefined);
+            break;
+        case TYPE_CATEGORICAL: {
+            CategoricalColumn col = new CategoricalColumn(name);
+            int categories = file.readInt();
+            for (int i = 0; i < categories; i++) {
+                String category = file.readUTF();
+                col.putCategory(category, file.readInt());
+            }
+            IntArrayList values = col.getValueReference();
+            values.setSize(rows);
+            if (rows != 0) {
+                map(4L * rows).asIntBuffer().get(values.elements(), 0, rows);
+            }
+            col.setSize(rows);
+            c = col;
+            break;
+        }
+        case TYPE_LONG:
+        case TYPE_DATE: {
+            LongColumn col = type == TYPE_DATE
+                ? new DateColumn(name, rows) : new LongColumn(name, rows);
+            ByteBuffer buffer = map(8L * rows);
+            for (int i = 0; i < rows; i++) {
+                col.setExtend(i, buffer.getLong(8 * i));
+            }
+            c = col;
+            break;
+        }
+        case TYPE_BOOLEAN: {
+            BooleanColumn col = new BooleanColumn(name);
+            ByteBuffer buffer = map(rows);
+            for (int i = 0; i < rows; i++) {
+                col.setExtend(i, buffer.get(i) != 0);
+            }
+            c = col;
+            break;
+        }
+        case TYPE_STRING: {
+            StringColumn col = new StringColumn(name, rows);
+            ByteBuffer buffer = map(file.readLong());
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < rows; i++) {
+                int len = buffer.getInt();
+                if (len < 0) {
+                    col.setValueUndefined(i, true);
+                    continue;
+                }
+                if (len > bytes.length) {
+                    bytes = new byte[len];
+                }
+                buffer.get(bytes, 0, len);
+                col.setExtend(i, new String(bytes, 0, len, "UTF-8"));
+            }
+            c = col;
+            break;
+        }
+        default:
+            throw new WrongFormatException("Invalid column type "+type);
+        }
+        if (undefined != null && ! (c instanceof MappedIntColumn
+                || c instanceof MappedFloatColumn
+                || c instanceof MappedDoubleColumn)) {
+            for (int i = 0; i < undefinedRows.length; i++) {
+                c.setValueUndefined(undefinedRows[i], true);
+            }
+        }
+        c.getMetadata().addAttributes(metadata);
+        return c;
+    }
+}
@@ -0,0 +1,363 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.table.io;
+
+import infovis.Column;
+import infovis.Graph;
+import infovis.Table;
+import infovis.Tree;
+import infovis.column.AbstractBooleanColumn;
+import infovis.column.AbstractDoubleColumn;
+import infovis.column.AbstractFloatColumn;
+import infovis.column.AbstractIntColumn;
+import infovis.column.CategoricalColumn;
+import infovis.column.ColumnFilter;
+import infovis.column.DateColumn;
+import infovis.column.LongColumn;
+import infovis.column.StringColumn;
+import infovis.column.filter.FilterNone;
+import infovis.io.AbstractWriter;
+import infovis.utils.RowIterator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.swing.text.AttributeSet;
+
+import org.apache.log4j.Logger;
+
+import cern.colt.list.IntArrayList;
+
+/**
+ * <b>BinaryTableWriter</b> writes tables, trees and graphs in the
+ * InfoVis binary columnar format described in
+ * {@link BinaryTableConstants}.
+ *
+ * <p>Only the valid rows are written, renumbered consecutively; tree
+ * nodes are written in depth-first order.  Int, float, double, long,
+ * date, boolean, string and categorical columns are written, other
+ * columns are skipped.  Metadata are written when their keys are
+ * strings and their values are strings, booleans or numbers.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ * @infovis.factory GraphWriterFactory ivb InfoVis Binary
+ */
+public class BinaryTableWriter extends AbstractWriter
+    implements BinaryTableConstants {
+    protected Graph             graph;
+    protected DataOutputStream  out;
+    private static final Logger LOG = Logger.getLogger(BinaryTableWriter.class);
+
+    /**
+     * Creates a writer for a table or a tree.
+     *
+     * @param out the output stream
+     * @param name the name
+     * @param table the table
+     */
+    public BinaryTableWriter(OutputStream out, String name, Table table) {
+        super(out, name, table);
+    }
+
+    /**
+     * Creates a writer for a graph.
+     *
+     * @param out the output stream
+     * @param name the name
+     * @param graph the graph
+     */
+    public BinaryTableWriter(OutputStream out, String name, Graph graph) {
+        super(out, name, graph.getEdgeTable());
+        this.graph = graph;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean write() {
+        try {
+            out = new DataOutputStream(
+                    new BufferedOutputStream(getOut(), 65536));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            if (graph != null) {
+                writeGraph();
+            }
+            else if (table instanceof Tree) {
+                writeTree((Tree)table);
+            }
+            else {
+                out.writeInt(KIND_TABLE);
+                writeTable(table, validRows(table));
+            }
+            out.flush();
+            return true;
+        }
+        catch(IOException e) {
+            LOG.error("Cannot write binary table "+getName(), e);
+            return false;
+        }
+    }
+
+    protected static int[] validRows(Table t) {
+        IntArrayList rows = new IntArrayList(t.getRowCount());
+        for (RowIterator it = t.iterator(); it.hasNext(); ) {
+            rows.add(it.nextRow());
+        }
+        rows.trimToSize();
+        return rows.elements();
+    }
+
+    protected static int[] inverse(int[] rows, int size) {
+        int[] index = new int[size];
+        for (int i = 0; i < size; i++) {
+            index[i] = -1;
+        }
+        for (int i = 0; i < rows.length; i++) {
+            index[rows[i]] = i;
+        }
+        return index;
+    }
+
+    protected void writeGraph() throws IOException {
+        Table vertices = graph.getVertexTable();
+        Table edges = graph.getEdgeTable();
+        int[] vertexRows = validRows(vertices);
+        int[] edgeRows = validRows(edges);
+        int[] vertexIndex = inverse(vertexRows, vertices.getLastRow() + 1);
+        out.writeInt(KIND_GRAPH);
+        out.writeBoolean(graph.isDirected());
+        writeTable(vertices, vertexRows);
+        writeTable(edges, edgeRows);
+        for (int i = 0; i < edgeRows.length; i++) {
+            out.writeInt(vertexIndex[graph.getFirstVertex(edgeRows[i])]);
+        }
+        for (int i = 0; i < edgeRows.length; i++) {
+            out.writeInt(vertexIndex[graph.getSecondVertex(edgeRows[i])]);
+        }
+    }
+
+    protected void writeTree(Tree tree) throws IOException {
+        // depth-first order with an explicit stack
+        IntArrayList order = new IntArrayList(tree.getRowCount());
+        IntArrayList stack = new IntArrayList();
+        IntArrayList children = new IntArrayList();
+        stack.add(Tree.ROOT);
+        while (! stack.isEmpty()) {
+            int node = stack.get(stack.size() - 1);
+            stack.remove(stack.size() - 1);
+            order.add(node);
+            children.clear();
+            for (RowIterator it = tree.childrenIterator(node); it.hasNext(); ) {
+                children.add(it.nextRow());
+            }
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.add(children.get(i));
+            }
+        }
+        order.trimToSize();
+        int[] rows = order.elements();
+        int[] index = inverse(rows, tree.getLastRow() + 1);
+        out.writeInt(KIND_TREE);
+        writeTable(tree, rows);
+        for (int i = 0; i < rows.length; i++) {
+            int parent = tree.getParent(rows[i]);
+            out.writeInt(parent == Tree.NIL ? Tree.NIL : index[parent]);
+        }
+    }
+
+    protected static byte typeOf(Column c) {
+        if (c instanceof CategoricalColumn) {
+            return TYPE_CATEGORICAL;
+        }
+        if (c instanceof AbstractIntColumn) {
+            return TYPE_INT;
+        }
+        if (c instanceof AbstractFloatColumn) {
+            return TYPE_FLOAT;
+        }
+        if (c instanceof AbstractDoubleColumn) {
+            return TYPE_DOUBLE;
+        }
+        if (c instanceof DateColumn) {
+            return TYPE_DATE;
+        }
+        if (c instanceof LongColumn) {
+            return TYPE_LONG;
+        }
+        if (c instanceof AbstractBooleanColumn) {
+            return TYPE_BOOLEAN;
+        }
+        if (c instanceof StringColumn) {
+            return TYPE_STRING;
+        }
+        return 0;
+    }
+
+    protected void writeTable(Table t, int[] rows) throws IOException {
+        ColumnFilter filter = getColumnFilter();
+        if (filter == null) {
+            filter = FilterNone.getSharedInstance();
+        }
+        ArrayList columns = new ArrayList();
+        for (int i = 0; i < t.getColumnCount(); i++) {
+            Column c = t.getColumnAt(i);
+            if (filter.filter(c)) {
+                continue;
+            }
+            if (typeOf(c) == 0) {
+                LOG.warn("Cannot write column "+c.getName()
+                        +" of type "+c.getClass().getName());
+                continue;
+            }
+            columns.add(c);
+        }
+        out.writeInt(rows.length);
+        writeMetadata(t.getMetadata());
+        out.writeInt(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            writeColumn((Column)columns.get(i), rows);
+        }
+    }
+
+    protected void writeMetadata(AttributeSet metadata) throws IOException {
+        ArrayList keys = new ArrayList();
+        for (Enumeration e = metadata.getAttributeNames(); e.hasMoreElements(); ) {
+            Object key = e.nextElement();
+            Object value = metadata.getAttribute(key);
+            if (key instanceof String
+                    && (value instanceof String
+                            || value instanceof Boolean
+                            || value instanceof Number)) {
+                keys.add(key);
+            }
+        }
+        out.writeInt(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            String key = (String)keys.get(i);
+            Object value = metadata.getAttribute(key);
+            out.writeUTF(key);
+            if (value instanceof String) {
+                out.writeByte(META_STRING);
+                out.writeUTF((String)value);
+            }
+            else if (value instanceof Boolean) {
+                out.writeByte(META_BOOLEAN);
+                out.writeBoolean(((Boolean)value).booleanValue());
+            }
+            else if (value instanceof Integer) {
+                out.writeByte(META_INT);
+                out.writeInt(((Integer)value).intValue());
+            }
+            else {
+                out.writeByte(META_DOUBLE);
+                out.writeDouble(((Number)value).doubleValue());
+            }
+        }
+    }
+
+    protected void writeColumn(Column c, int[] rows) throws IOException {
+        byte type = typeOf(c);
+        out.writeUTF(c.getName());
+        out.writeByte(type);
+        writeMetadata(c.getMetadata());
+        int undefined = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (c.isValueUndefined(rows[i])) {
+                undefined++;
+            }
+        }
+        out.writeInt(undefined);
+        for (int i = 0; undefined != 0 && i < rows.length; i++) {
+            if (c.isValueUndefined(rows[i])) {
+                out.writeInt(i);
+            }
+        }
+        if (type == TYPE_CATEGORICAL) {
+            // the categories precede the codes
+            Map categories = ((CategoricalColumn)c).getCategories();
+            out.writeInt(categories.size());
+            for (Iterator it = categories.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry e = (Map.Entry)it.next();
+                out.writeUTF((String)e.getKey());
+                out.writeInt(((Number)e.getValue()).intValue());
+            }
+        }
+        switch(type) {
+        case TYPE_CATEGORICAL:
+        case TYPE_INT: {
+            AbstractIntColumn col = (AbstractIntColumn)c;
+            for (int i = 0; i < rows.length; i++) {
+                out.writeInt(col.isValueUndefined(rows[i]) ? 0 : col.get(rows[i]));
+            }
+            break;
+        }
+        case TYPE_FLOAT: {
+            AbstractFloatColumn col = (AbstractFloatColumn)c;
+            for (int i = 0; i < rows.length; i++) {
+                out.writeFloat(col.isValueUndefined(rows[i]) ? 0 : col.get(rows[i]));
+            }
+            break;
+        }
+        case TYPE_DOUBLE: {
+            AbstractDoubleColumn col = (AbstractDoubleColumn)c;
+            for (int i = 0; i < rows.length; i++) {
+                out.writeDouble(col.isValueUndefined(rows[i]) ? 0 : col.get(rows[i]));
+            }
+            break;
+        }
+        case TYPE_LONG:
+        case TYPE_DATE: {
+            LongColumn col = (LongColumn)c;
+            for (int i = 0; i < rows.length; i++) {
+                out.writeLong(col.isValueUndefined(rows[i]) ? 0 : col.get(rows[i]));
+            }
+            break;
+        }
+        case TYPE_BOOLEAN: {
+            AbstractBooleanColumn col = (AbstractBooleanColumn)c;
+            for (int i = 0; i < rows.length; i++) {
+                out.writeBoolean(! col.isValueUndefined(rows[i]) && col.get(rows[i]));
+            }
+            break;
+        }
+        case TYPE_STRING: {
+            StringColumn col = (StringColumn)c;
+            // total size first to skip or map the strings at once
+            long size = 0;
+            for (int i = 0; i < rows.length; i++) {
+                String s = col.isValueUndefined(rows[i]) ? null : col.get(rows[i]);
+                size += 4;
+                if (s != null) {
+                    size += s.getBytes("UTF-8").length;
+                }
+            }
+            out.writeLong(size);
+            for (int i = 0; i < rows.length; i++) {
+                String s = col.isValueUndefined(rows[i]) ? null : col.get(rows[i]);
+                if (s == null) {
+                    out.writeInt(-1);
+                }
+                else {
+                    byte[] bytes = s.getBytes("UTF-8");
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            break;
+        }
+        }
+    }
+}
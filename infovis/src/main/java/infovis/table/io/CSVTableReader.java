@@ -11,22 +11,39 @@ package infovis.table.io;
 import infovis.Column;
 import infovis.DynamicTable;
 import infovis.Table;
+import infovis.column.DoubleColumn;
+import infovis.column.FloatColumn;
+import infovis.column.IntColumn;
+import infovis.column.LongColumn;
+import infovis.column.format.DoubleFormat;
+import infovis.column.format.IntFormat;
 import infovis.utils.RowIterator;
+import infovis.utils.WorkerPool;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.text.Format;
 import java.text.ParseException;
 import java.util.ArrayList;
 
-import au.com.bytecode.opencsv.CSVReader;
-
 import org.apache.log4j.Logger;
 
 /**
  * Read an Excel CSV format into a table.
+ *
+ * <p>The types of the columns not declared in a type line are guessed
+ * from the first records of the file.  Fields are then parsed
+ * directly from the buffer of the tokenizer into the columns, without
+ * creating Strings for the integer and floating point columns.
+ *
+ * <p>In parallel mode, the records following the sample are split into
+ * chunks starting on record boundaries that are tokenized and parsed
+ * concurrently by the {@link WorkerPool}; the chunks are then appended
+ * in order to the table.  The input is read in bounded windows of a
+ * few chunks per thread so the whole file is never held in memory.
  * 
  * @version $Revision: 1.34 $
  * @author Jean-Daniel Fekete
@@ -48,7 +65,34 @@ public class CSVTableReader extends AbstractTableReader {
     private boolean             consideringQuotes = true;
     protected transient boolean emptyField        = false;
     protected transient int     row               = 0;
-    protected CSVReader         reader;
+    /** Number of records used to guess the types of the columns. */
+    private int                 sampleSize        = 100;
+    /** True if the records are parsed concurrently. */
+    private boolean             parallel          = false;
+    /** Minimum number of characters of a chunk in parallel mode. */
+    private int                 chunkSize         = 1 << 20;
+    /** Maximum number of characters read at once in parallel mode. */
+    public static final int     MAX_WINDOW        = 1 << 28;
+    protected CSVTokenizer      reader;
+    /** Columns associated with each field index. */
+    protected transient Column[] columns;
+    /** Kinds of the columns associated with each field index. */
+    protected transient int[]   columnKinds;
+    protected transient long    streamLength;
+    protected transient long    sampleLength;
+    protected transient char    minusSign         = '-';
+
+    protected static final int  KIND_OTHER        = 0;
+    protected static final int  KIND_INT          = 1;
+    protected static final int  KIND_LONG         = 2;
+    protected static final int  KIND_FLOAT        = 3;
+    protected static final int  KIND_DOUBLE       = 4;
+    private static final long   NO_LONG           = Long.MIN_VALUE;
+    private static final long   MAX_MANTISSA      = 1L << 53;
+    private static final double[] POW10           = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
 
     private static final Logger LOG               = Logger.getLogger(CSVTableReader.class);
 
@@ -176,6 +220,71 @@ public class CSVTableReader extends AbstractTableReader {
         this.skipLines = skipLines;
     }
 
+    /**
+     * Returns the number of records used to guess the types of the
+     * columns.
+     * 
+     * @return the number of records used to guess the types of the
+     *         columns.
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Sets the number of records used to guess the types of the
+     * columns.
+     * 
+     * @param sampleSize
+     *            the number of records used to guess the types of the
+     *            columns.
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = Math.max(1, sampleSize);
+    }
+
+    /**
+     * Returns <code>true</code> if the records are parsed concurrently.
+     * 
+     * @return <code>true</code> if the records are parsed concurrently.
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Sets whether the records are parsed concurrently.  The whole
+     * file is then kept in memory while it is parsed.
+     * 
+     * @param parallel
+     *            <code>true</code> if the records are parsed
+     *            concurrently.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Returns the minimum number of characters of a chunk parsed
+     * concurrently.
+     * 
+     * @return the minimum number of characters of a chunk.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the minimum number of characters of a chunk parsed
+     * concurrently.
+     * 
+     * @param chunkSize
+     *            the minimum number of characters of a chunk.
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
     /**
      * Returns a default field name for a specified index.
      * 
@@ -248,50 +357,308 @@ public class CSVTableReader extends AbstractTableReader {
     }
 
     /**
-     * Adds the value of specified column.
-     * 
-     * @param column
-     *            DOCUMENT ME!
-     * @param field
-     *            DOCUMENT ME!
+     * Returns the column associated with a field index, or null if
+     * no column of that name exists yet.  The column is remembered
+     * so the label is only looked up once.
      * 
-     * @return DOCUMENT ME!
+     * @param index
+     *            the field index
+     * @return the column associated with the field index or null.
+     */
+    protected Column findColumn(int index) {
+        if (columns != null && index < columns.length
+                && columns[index] != null) {
+            return columns[index];
+        }
+        Column col = getColumnAt(index);
+        if (col != null) {
+            cacheColumn(index, col);
+        }
+        return col;
+    }
+
+    /**
+     * Creates the column associated with a field index and adds it
+     * to the table.
      * 
+     * @param index
+     *            the field index
+     * @param type
+     *            the type of the column
+     * @return the new column
      * @throws ParseException
-     *             DOCUMENT ME!
+     *             if the column cannot be created
      */
-    public boolean addField(int column, String field) throws ParseException {
-        String label = getLabelAt(column);
-        Column col = table.getColumn(label);
+    protected Column createFieldColumn(int index, String type)
+            throws ParseException {
+        Column col = createColumn(type, getLabelAt(index));
 
         if (col == null) {
-            String type = guessFieldType(field);
-            col = createColumn(type, label);
+            throw new ParseException(
+                    "couldn't guess the type of field at column " + index,
+                    0);
+        }
 
-            if (col == null) {
-                throw new ParseException(
-                        "couldn't guess the type of field at column " + column,
-                        0);
+        table.addColumn(col);
+        cacheColumn(index, col);
+        return col;
+    }
+
+    protected void cacheColumn(int index, Column col) {
+        if (columns == null || index >= columns.length) {
+            int n = Math.max(index + 1, columns == null ? 8 : columns.length * 2);
+            Column[] c = new Column[n];
+            int[] k = new int[n];
+            if (columns != null) {
+                System.arraycopy(columns, 0, c, 0, columns.length);
+                System.arraycopy(columnKinds, 0, k, 0, columns.length);
             }
+            columns = c;
+            columnKinds = k;
+        }
+        columns[index] = col;
+        columnKinds[index] = kindOf(col);
+    }
 
-            table.addColumn(col);
+    /**
+     * Returns the kind of a column, telling whether its values can be
+     * parsed directly from characters.
+     * 
+     * @param col
+     *            the column
+     * @return the kind of the column
+     */
+    protected static int kindOf(Column col) {
+        Class c = col.getClass();
+        Format format = col.getFormat();
+        if (format == IntFormat.INSTANCE) {
+            if (c == IntColumn.class) {
+                return KIND_INT;
+            }
+            if (c == LongColumn.class) {
+                return KIND_LONG;
+            }
+        }
+        else if (format == DoubleFormat.INSTANCE) {
+            if (c == FloatColumn.class) {
+                return KIND_FLOAT;
+            }
+            if (c == DoubleColumn.class) {
+                return KIND_DOUBLE;
+            }
+        }
+        return KIND_OTHER;
+    }
+
+    /**
+     * Merges two types guessed from the values of a column.
+     * 
+     * @param type1
+     *            the first type or null
+     * @param type2
+     *            the second type or null
+     * @return a type able to hold values of both types.
+     */
+    public static String mergeFieldTypes(String type1, String type2) {
+        if (type1 == null || type1.equals(type2)) {
+            return type2;
+        }
+        if (type2 == null) {
+            return type1;
+        }
+        if ((type1.equals("integer") || type1.equals("float"))
+                && (type2.equals("integer") || type2.equals("float"))) {
+            return "float";
         }
+        return "string";
+    }
 
+    /**
+     * Adds rows to a dynamic table until the current row exists.
+     */
+    protected void addRows() {
         if (table instanceof DynamicTable) {
             DynamicTable dt = (DynamicTable) table;
             while (dt.getLastRow() < row)
                 dt.addRow();
         }
+    }
+
+    /**
+     * Adds the value of specified column.
+     * 
+     * @param column
+     *            the field index
+     * @param field
+     *            the value
+     * 
+     * @return true if the value has been added.
+     * 
+     * @throws ParseException
+     *             if the column cannot be created.
+     */
+    public boolean addField(int column, String field) throws ParseException {
+        Column col = findColumn(column);
+
+        if (col == null) {
+            col = createFieldColumn(column, guessFieldType(field));
+        }
+
+        addRows();
         col.setValueOrNullAt(row, field);
 
         return true;
     }
 
+    /**
+     * Sets the value of a field in the current row from a range of
+     * characters.
+     * 
+     * <p>Integer and floating point values in their simplest form are
+     * converted directly, the other values are parsed by the column.
+     * 
+     * @param column
+     *            the field index
+     * @param chars
+     *            the characters
+     * @param start
+     *            the position of the first character
+     * @param end
+     *            the position following the last character
+     * @throws ParseException
+     *             if the column cannot be created.
+     */
+    protected void setField(int column, char[] chars, int start, int end)
+            throws ParseException {
+        Column col = findColumn(column);
+        if (col == null) {
+            col = createFieldColumn(
+                    column,
+                    guessFieldType(new String(chars, start, end - start)));
+        }
+        int kind = columnKinds[column];
+        if (kind != KIND_OTHER && start == end) {
+            col.setValueUndefined(row, true);
+            return;
+        }
+        switch(kind) {
+        case KIND_INT: {
+            long v = parseLong(chars, start, end);
+            if (v != NO_LONG && v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) {
+                ((IntColumn) col).setExtend(row, (int) v);
+                return;
+            }
+            break;
+        }
+        case KIND_LONG: {
+            long v = parseLong(chars, start, end);
+            if (v != NO_LONG) {
+                ((LongColumn) col).setExtend(row, v);
+                return;
+            }
+            break;
+        }
+        case KIND_FLOAT: {
+            double v = parseDouble(chars, start, end);
+            if (! Double.isNaN(v)) {
+                ((FloatColumn) col).setExtend(row, (float) v);
+                return;
+            }
+            break;
+        }
+        case KIND_DOUBLE: {
+            double v = parseDouble(chars, start, end);
+            if (! Double.isNaN(v)) {
+                ((DoubleColumn) col).setExtend(row, v);
+                return;
+            }
+            break;
+        }
+        }
+        col.setValueOrNullAt(row, new String(chars, start, end - start));
+    }
+
+    /**
+     * Parses a decimal integer made of an optional minus sign and at
+     * most 18 digits.
+     * 
+     * @return the integer or NO_LONG if the characters have another
+     *         form.
+     */
+    protected long parseLong(char[] chars, int start, int end) {
+        boolean negative = false;
+        if (start < end && chars[start] == minusSign) {
+            negative = true;
+            start++;
+        }
+        if (start == end || end - start > 18) {
+            return NO_LONG;
+        }
+        long v = 0;
+        for (int i = start; i < end; i++) {
+            int d = chars[i] - '0';
+            if (d < 0 || d > 9) {
+                return NO_LONG;
+            }
+            v = v * 10 + d;
+        }
+        return negative ? -v : v;
+    }
+
+    /**
+     * Parses a decimal number without exponent whose digits fit in
+     * the mantissa of a double, so the conversion is exact.
+     * 
+     * @return the number or NaN if the characters have another form.
+     */
+    protected static double parseDouble(char[] chars, int start, int end) {
+        boolean negative = false;
+        if (start < end && (chars[start] == '-' || chars[start] == '+')) {
+            negative = chars[start] == '-';
+            start++;
+        }
+        long m = 0;
+        int frac = -1;
+        boolean digits = false;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                m = m * 10 + (c - '0');
+                if (m > MAX_MANTISSA) {
+                    return Double.NaN;
+                }
+                digits = true;
+                if (frac >= 0) {
+                    frac++;
+                }
+            }
+            else if (c == '.' && frac < 0) {
+                frac = 0;
+            }
+            else {
+                return Double.NaN;
+            }
+        }
+        if (! digits || frac >= POW10.length) {
+            return Double.NaN;
+        }
+        double v = frac > 0 ? m / POW10[frac] : m;
+        return negative ? -v : v;
+    }
+
     /**
      * @see infovis.io.AbstractReader#load()
      */
     public boolean load() {
-        reader = new CSVReader(
+        try {
+            streamLength = getIn().available();
+        } catch (IOException e) {
+            streamLength = 0;
+        }
+        columns = null;
+        columnKinds = null;
+        minusSign = IntFormat.INSTANCE.getDecimalFormatSymbols().getMinusSign();
+        reader = new CSVTokenizer(
                 getBufferedReader(), 
                 separator, 
                 (consideringQuotes ? '"' : 0),
@@ -314,6 +681,8 @@ public class CSVTableReader extends AbstractTableReader {
                 LOG.error("Closing a CSV file", e);
             }
             reader = null;
+            columns = null;
+            columnKinds = null;
         }
 
         return true;
@@ -330,30 +699,481 @@ public class CSVTableReader extends AbstractTableReader {
                 row = 0;
                 iter = null;
             }
-            String[] line;
-            while ((line = reader.readNext()) != null) {
-                if (consideringQuotes 
-                        && (line[0].length() == 0 
-                            || line[0].charAt(0)=='#')) 
-                    continue;
-
+            ArrayList sample = readSample();
+            guessColumns(sample);
+            ensureCapacity(sample.size());
+            for (int i = 0; i < sample.size(); i++) {
+                String[] line = (String[]) sample.get(i);
+                addRows();
                 for (int column = 0; column < line.length; column++) {
-                    String field = line[column];
-                    addField(column, field);
+                    char[] field = line[column].toCharArray();
+                    setField(column, field, 0, field.length);
                 }
-                if (iter != null && iter.hasNext()) {
-                    row = iter.nextRow();
-                }
-                else {
-                    row++;
-                    iter = null;
+                iter = nextRow(iter);
+            }
+            if (parallel && sample.size() == sampleSize
+                    && WorkerPool.getInstance().getThreadCount() > 1) {
+                readChunks(iter);
+                return;
+            }
+            while (reader.nextRecord()) {
+                if (isSkipped()) 
+                    continue;
+                addRows();
+                char[] chars = reader.getChars();
+                int count = reader.getFieldCount();
+                for (int column = 0; column < count; column++) {
+                    setField(
+                            column,
+                            chars,
+                            reader.getFieldStart(column),
+                            reader.getFieldEnd(column));
                 }
+                iter = nextRow(iter);
             }
         } finally {
             enableNotify();
         }
     }
 
+    protected RowIterator nextRow(RowIterator iter) {
+        if (iter != null && iter.hasNext()) {
+            row = iter.nextRow();
+            return iter;
+        }
+        row++;
+        return null;
+    }
+
+    /**
+     * Returns true if the current record is empty or is a comment.
+     * 
+     * @return true if the current record should be skipped.
+     */
+    protected boolean isSkipped() {
+        return isSkipped(reader);
+    }
+
+    protected boolean isSkipped(CSVTokenizer tokenizer) {
+        if (! consideringQuotes)
+            return false;
+        int start = tokenizer.getFieldStart(0);
+        return start == tokenizer.getFieldEnd(0)
+            || tokenizer.getChars()[start] == '#';
+    }
+
+    /**
+     * Reads the remaining records, parsing chunks concurrently and
+     * appending them in order.
+     * 
+     * <p>The input is read in windows holding a few chunks per thread
+     * and truncated to their last complete record; the incomplete
+     * record is moved to the beginning of the next window.  A window
+     * only grows to hold a record longer than itself.
+     * 
+     * @param iter
+     *            the iterator over the existing rows or null
+     * @throws IOException
+     *             if the reader throws it or if a record is longer
+     *             than MAX_WINDOW characters
+     * @throws ParseException
+     *             if a column cannot be created.
+     */
+    protected void readChunks(RowIterator iter)
+            throws IOException, ParseException {
+        WorkerPool pool = WorkerPool.getInstance();
+        int maxCount = 4 * pool.getThreadCount();
+        char[] chars = new char[(int) Math.min(
+                MAX_WINDOW,
+                (long) chunkSize * maxCount)];
+        int len = 0;
+        boolean eof = false;
+        while (! eof) {
+            while (len < chars.length) {
+                int n = reader.read(chars, len, chars.length - len);
+                if (n < 0) {
+                    eof = true;
+                    break;
+                }
+                len += n;
+            }
+            int end = eof ? len : reader.lastRecordEnd(chars, 0, len);
+            if (end == 0 && ! eof) {
+                if (chars.length == MAX_WINDOW) {
+                    throw new IOException(
+                            "Record longer than "+MAX_WINDOW+" characters");
+                }
+                char[] n = new char[(int) Math.min(
+                        MAX_WINDOW,
+                        2L * chars.length)];
+                System.arraycopy(chars, 0, n, 0, len);
+                chars = n;
+                continue;
+            }
+            iter = readChunks(chars, end, maxCount, iter);
+            System.arraycopy(chars, end, chars, 0, len - end);
+            len -= end;
+        }
+    }
+    
+    /**
+     * Parses the records of a range of characters concurrently and
+     * appends them in order.
+     * 
+     * @param chars
+     *            the characters
+     * @param limit
+     *            the position following the last record
+     * @param maxCount
+     *            the maximum number of chunks
+     * @param iter
+     *            the iterator over the existing rows or null
+     * @return the iterator over the remaining existing rows or null
+     * @throws ParseException
+     *             if a column cannot be created.
+     */
+    protected RowIterator readChunks(
+            char[] chars,
+            int limit,
+            int maxCount,
+            RowIterator iter) throws ParseException {
+        int count = Math.min(maxCount, Math.max(1, limit / chunkSize));
+        int[] bounds = reader.split(chars, 0, limit, count);
+        final Chunk[] chunks = new Chunk[count];
+        int records = 0;
+        for (int i = 0; i < count; i++) {
+            chunks[i] = new Chunk(chars, bounds[i], bounds[i+1]);
+        }
+        WorkerPool.getInstance().runBlocks(count, count, new WorkerPool.BlockTask() {
+            public void run(int block, int start, int end) {
+                for (int i = start; i < end; i++) {
+                    chunks[i].parse();
+                }
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            records += chunks[i].records;
+        }
+        if (columns != null) {
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] != null) {
+                    columns[i].ensureCapacity(row + records);
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            iter = append(chunks[i], iter);
+            chunks[i] = null;
+        }
+        return iter;
+    }
+
+    /**
+     * Appends the records of a parsed chunk to the table.
+     * 
+     * @param chunk
+     *            the chunk
+     * @param iter
+     *            the iterator over the existing rows or null
+     * @return the iterator over the remaining existing rows or null
+     * @throws ParseException
+     *             if a column cannot be created.
+     */
+    protected RowIterator append(Chunk chunk, RowIterator iter)
+            throws ParseException {
+        int[] rows = new int[chunk.records];
+        for (int r = 0; r < rows.length; r++) {
+            addRows();
+            rows[r] = row;
+            iter = nextRow(iter);
+        }
+        int next = row;
+        try {
+            for (int column = 0; column < chunk.states.length; column++) {
+                byte[] states = chunk.states[column];
+                if (states == null)
+                    continue;
+                int kind = chunk.kinds[column];
+                long[] longs = chunk.longs[column];
+                double[] doubles = chunk.doubles[column];
+                String[] strings = chunk.strings[column];
+                Column col = findColumn(column);
+                for (int r = 0; r < rows.length; r++) {
+                    row = rows[r];
+                    switch(states[r]) {
+                    case Chunk.MISSING:
+                        break;
+                    case Chunk.UNDEFINED:
+                        col.setValueUndefined(row, true);
+                        break;
+                    case Chunk.STRING:
+                        if (col == null) {
+                            col = createFieldColumn(
+                                    column,
+                                    guessFieldType(strings[r]));
+                        }
+                        col.setValueOrNullAt(row, strings[r]);
+                        break;
+                    default:
+                        switch(kind) {
+                        case KIND_INT:
+                            ((IntColumn) col).setExtend(row, (int) longs[r]);
+                            break;
+                        case KIND_LONG:
+                            ((LongColumn) col).setExtend(row, longs[r]);
+                            break;
+                        case KIND_FLOAT:
+                            ((FloatColumn) col).setExtend(row, (float) doubles[r]);
+                            break;
+                        case KIND_DOUBLE:
+                            ((DoubleColumn) col).setExtend(row, doubles[r]);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            row = next;
+        }
+        return iter;
+    }
+
+    /**
+     * <b>Chunk</b> holds the values of the records of a range of
+     * characters, parsed in a worker thread before being appended
+     * to the table.
+     */
+    protected class Chunk {
+        static final byte MISSING   = 0;
+        static final byte VALUE     = 1;
+        static final byte UNDEFINED = 2;
+        static final byte STRING    = 3;
+        char[]     chars;
+        int        start;
+        int        end;
+        int        records;
+        int        capacity;
+        int[]      kinds;
+        byte[][]   states;
+        long[][]   longs;
+        double[][] doubles;
+        String[][] strings;
+
+        Chunk(char[] chars, int start, int end) {
+            this.chars = chars;
+            this.start = start;
+            this.end = end;
+            int count = columns == null ? 0 : columns.length;
+            kinds = new int[count];
+            for (int i = 0; i < count; i++) {
+                if (columns[i] != null) {
+                    kinds[i] = columnKinds[i];
+                }
+            }
+            states = new byte[count][];
+            longs = new long[count][];
+            doubles = new double[count][];
+            strings = new String[count][];
+        }
+
+        void parse() {
+            CSVTokenizer tokenizer = new CSVTokenizer(
+                    chars, start, end, 
+                    separator, 
+                    (consideringQuotes ? '"' : 0));
+            try {
+                while (tokenizer.nextRecord()) {
+                    if (isSkipped(tokenizer))
+                        continue;
+                    if (records == capacity) {
+                        grow(Math.max(64, 2 * capacity));
+                    }
+                    char[] buf = tokenizer.getChars();
+                    int count = tokenizer.getFieldCount();
+                    for (int column = 0; column < count; column++) {
+                        set(column,
+                            buf,
+                            tokenizer.getFieldStart(column),
+                            tokenizer.getFieldEnd(column));
+                    }
+                    records++;
+                }
+            }
+            catch(IOException e) {
+                throw new RuntimeException(e); // cannot happen in memory
+            }
+            chars = null;
+        }
+
+        void grow(int n) {
+            capacity = n;
+            for (int column = 0; column < states.length; column++) {
+                states[column] = grow(states[column]);
+                longs[column] = grow(longs[column]);
+                doubles[column] = grow(doubles[column]);
+                strings[column] = grow(strings[column]);
+            }
+        }
+
+        byte[] grow(byte[] a) {
+            if (a == null) return null;
+            byte[] n = new byte[capacity];
+            System.arraycopy(a, 0, n, 0, records);
+            return n;
+        }
+
+        long[] grow(long[] a) {
+            if (a == null) return null;
+            long[] n = new long[capacity];
+            System.arraycopy(a, 0, n, 0, records);
+            return n;
+        }
+
+        double[] grow(double[] a) {
+            if (a == null) return null;
+            double[] n = new double[capacity];
+            System.arraycopy(a, 0, n, 0, records);
+            return n;
+        }
+
+        String[] grow(String[] a) {
+            if (a == null) return null;
+            String[] n = new String[capacity];
+            System.arraycopy(a, 0, n, 0, records);
+            return n;
+        }
+
+        void set(int column, char[] buf, int from, int to) {
+            if (column >= states.length) {
+                int n = column + 1;
+                byte[][] s = new byte[n][];
+                long[][] l = new long[n][];
+                double[][] d = new double[n][];
+                String[][] str = new String[n][];
+                int[] k = new int[n];
+                System.arraycopy(states, 0, s, 0, states.length);
+                System.arraycopy(longs, 0, l, 0, states.length);
+                System.arraycopy(doubles, 0, d, 0, states.length);
+                System.arraycopy(strings, 0, str, 0, states.length);
+                System.arraycopy(kinds, 0, k, 0, states.length);
+                states = s; longs = l; doubles = d; strings = str; kinds = k;
+            }
+            if (states[column] == null) {
+                states[column] = new byte[capacity];
+            }
+            int kind = kinds[column];
+            if (kind != KIND_OTHER && from == to) {
+                states[column][records] = UNDEFINED;
+                return;
+            }
+            switch(kind) {
+            case KIND_INT:
+            case KIND_LONG: {
+                long v = parseLong(buf, from, to);
+                if (v != NO_LONG && (kind == KIND_LONG
+                        || (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE))) {
+                    if (longs[column] == null) {
+                        longs[column] = new long[capacity];
+                    }
+                    longs[column][records] = v;
+                    states[column][records] = VALUE;
+                    return;
+                }
+                break;
+            }
+            case KIND_FLOAT:
+            case KIND_DOUBLE: {
+                double v = parseDouble(buf, from, to);
+                if (! Double.isNaN(v)) {
+                    if (doubles[column] == null) {
+                        doubles[column] = new double[capacity];
+                    }
+                    doubles[column][records] = v;
+                    states[column][records] = VALUE;
+                    return;
+                }
+                break;
+            }
+            }
+            if (strings[column] == null) {
+                strings[column] = new String[capacity];
+            }
+            strings[column][records] = new String(buf, from, to - from);
+            states[column][records] = STRING;
+        }
+    }
+
+    /**
+     * Reads the records used to guess the types of the columns.
+     * 
+     * @return a list of String arrays.
+     * @throws IOException
+     *             if the reader throws it
+     */
+    protected ArrayList readSample() throws IOException {
+        ArrayList sample = new ArrayList();
+        long start = reader.getPosition();
+        while (sample.size() < sampleSize && reader.nextRecord()) {
+            if (isSkipped())
+                continue;
+            sample.add(reader.getFields());
+        }
+        sampleLength = reader.getPosition() - start;
+        return sample;
+    }
+
+    /**
+     * Creates the columns that do not exist yet with a type guessed
+     * from the non empty values of the sample.
+     * 
+     * @param sample
+     *            the list of records
+     * @throws ParseException
+     *             if a column cannot be created.
+     */
+    protected void guessColumns(ArrayList sample) throws ParseException {
+        int count = 0;
+        for (int i = 0; i < sample.size(); i++) {
+            count = Math.max(count, ((String[]) sample.get(i)).length);
+        }
+        for (int column = 0; column < count; column++) {
+            if (findColumn(column) != null)
+                continue;
+            String type = null;
+            for (int i = 0; i < sample.size(); i++) {
+                String[] line = (String[]) sample.get(i);
+                if (column >= line.length || line[column].length() == 0)
+                    continue;
+                type = mergeFieldTypes(type, guessFieldType(line[column]));
+                if (type.equals("string"))
+                    break;
+            }
+            createFieldColumn(column, type == null ? "string" : type);
+        }
+    }
+
+    /**
+     * Reserves room in the columns for the number of records estimated
+     * from the length of the stream and the length of the sample.
+     * 
+     * @param sampled
+     *            the number of records in the sample
+     */
+    protected void ensureCapacity(int sampled) {
+        if (columns == null || sampled == 0 || sampleLength <= 0
+                || streamLength <= 0) 
+            return;
+        long remaining = Math.max(0, streamLength - reader.getPosition());
+        long records = sampled + remaining * sampled / sampleLength;
+        int capacity = (int) Math.min(Integer.MAX_VALUE / 2, row + records);
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] != null) {
+                columns[i].ensureCapacity(capacity);
+            }
+        }
+    }
+
     protected void readTypes() throws IOException, ParseException {
         if (! typeLinePresent)
             return;
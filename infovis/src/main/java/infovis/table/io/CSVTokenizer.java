@@ -0,0 +1,448 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.table.io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * <b>CSVTokenizer</b> splits a stream of characters into records of
+ * fields separated by a separator character.
+ *
+ * <p>Fields can be enclosed in quotes to contain separators and
+ * end of lines; a doubled quote inside quotes stands for one quote.
+ * Quotes in the middle of an unquoted field are kept.
+ * Lines end with "\n", "\r" or "\r\n".
+ *
+ * <p>The fields of the current record are kept in one shared
+ * character buffer, accessible with {@link #getChars()},
+ * {@link #getFieldStart(int)} and {@link #getFieldEnd(int)}, so
+ * that a record can be read without allocating Strings.  The buffer
+ * is overwritten by the next call to {@link #nextRecord()}.
+ *
+ * <p>Characters are only read from the underlying reader when a
+ * record is requested so the reader can be used before.
+ *
+ * <p>A tokenizer can also read records from a range of a character
+ * array, filled by {@link #read(char[], int, int)}, truncated to its
+ * last complete record by {@link #lastRecordEnd(char[], int, int)} and
+ * split on record boundaries by {@link #split(char[], int, int, int)},
+ * so that several ranges can be tokenized concurrently.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class CSVTokenizer {
+    protected Reader  in;
+    protected char    separator;
+    protected char    quote;
+    protected int     skipLines;
+    protected char[]  buf      = new char[65536];
+    protected int     pos;
+    protected int     limit;
+    protected long    position;
+    protected boolean eof;
+    protected char[]  chars    = new char[256];
+    protected int     length;
+    protected int[]   bounds   = new int[32];
+    protected int     fieldCount;
+
+    /**
+     * Creates a CSVTokenizer.
+     * @param in the reader
+     * @param separator the field separator
+     * @param quote the quote character or 0 if fields are not quoted
+     * @param skipLines the number of lines to skip at the beginning
+     */
+    public CSVTokenizer(Reader in, char separator, char quote, int skipLines) {
+        this.in = in;
+        this.separator = separator;
+        this.quote = quote;
+        this.skipLines = skipLines;
+    }
+
+    /**
+     * Creates a CSVTokenizer reading from a range of a character array.
+     * @param chars the characters
+     * @param start the position of the first character
+     * @param end the position following the last character
+     * @param separator the field separator
+     * @param quote the quote character or 0 if fields are not quoted
+     */
+    public CSVTokenizer(char[] chars, int start, int end, char separator, char quote) {
+        this.buf = chars;
+        this.pos = start;
+        this.limit = end;
+        this.eof = true;
+        this.separator = separator;
+        this.quote = quote;
+    }
+
+    /**
+     * Creates a CSVTokenizer with quotes and no skipped lines.
+     * @param in the reader
+     * @param separator the field separator
+     */
+    public CSVTokenizer(Reader in, char separator) {
+        this(in, separator, '"', 0);
+    }
+
+    protected boolean fill() throws IOException {
+        if (eof) return false;
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) {
+            eof = true;
+            limit = pos = 0;
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    protected int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        position++;
+        return buf[pos++];
+    }
+
+    protected void skipLf() throws IOException {
+        if (pos == limit && !fill()) {
+            return;
+        }
+        if (buf[pos] == '\n') {
+            pos++;
+            position++;
+        }
+    }
+
+    protected void append(char c) {
+        if (length == chars.length) {
+            char[] n = new char[chars.length * 2];
+            System.arraycopy(chars, 0, n, 0, length);
+            chars = n;
+        }
+        chars[length++] = c;
+    }
+
+    protected void endField() {
+        if (2*fieldCount+3 > bounds.length) {
+            int[] n = new int[bounds.length * 2];
+            System.arraycopy(bounds, 0, n, 0, bounds.length);
+            bounds = n;
+        }
+        bounds[2*fieldCount+1] = length;
+        fieldCount++;
+        bounds[2*fieldCount] = length;
+    }
+
+    protected boolean skipLine() throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '\n') return true;
+            if (c == '\r') {
+                skipLf();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the next record.
+     * @return true if a record has been read, false at the end
+     * of the stream
+     * @throws IOException if the reader throws it
+     */
+    public boolean nextRecord() throws IOException {
+        for (; skipLines > 0; skipLines--) {
+            if (! skipLine()) {
+                skipLines = 0;
+                break;
+            }
+        }
+        length = 0;
+        fieldCount = 0;
+        bounds[0] = 0;
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+        boolean inQuotes = false;
+        for (; c != -1; c = read()) {
+            char ch = (char)c;
+            if (ch == quote && quote != 0) {
+                if (inQuotes) {
+                    if (pos == limit) fill();
+                    if (pos < limit && buf[pos] == quote) {
+                        append(quote);
+                        pos++;
+                        position++;
+                    }
+                    else {
+                        inQuotes = false;
+                    }
+                }
+                else if (length == bounds[2*fieldCount]) {
+                    inQuotes = true;
+                }
+                else {
+                    append(ch); // quote inside an unquoted field
+                }
+            }
+            else if (ch == '\n' || ch == '\r') {
+                if (ch == '\r') {
+                    skipLf();
+                }
+                if (! inQuotes) {
+                    break;
+                }
+                append('\n');
+            }
+            else if (ch == separator && !inQuotes) {
+                endField();
+            }
+            else {
+                append(ch);
+            }
+        }
+        endField();
+        return true;
+    }
+
+    /**
+     * Reads the next record and returns its fields.
+     * @return an array of fields or null at the end of the stream
+     * @throws IOException if the reader throws it
+     */
+    public String[] readNext() throws IOException {
+        if (! nextRecord()) {
+            return null;
+        }
+        return getFields();
+    }
+
+    /**
+     * Returns the fields of the current record.
+     * @return an array of fields
+     */
+    public String[] getFields() {
+        String[] ret = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            ret[i] = getField(i);
+        }
+        return ret;
+    }
+
+    /**
+     * Reads characters into a portion of an array, starting with the
+     * characters already buffered.
+     * @param cbuf the destination array
+     * @param off the offset at which to start storing characters
+     * @param len the maximum number of characters to read
+     * @return the number of characters read, or -1 if the end of the
+     * stream has been reached
+     * @throws IOException if the reader throws it
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buf, pos, cbuf, off, n);
+        pos += n;
+        position += n;
+        return n;
+    }
+
+    /**
+     * Returns the position following the last complete record of a
+     * range of characters starting on a record boundary.  A carriage
+     * return ending the range is not considered complete since it can
+     * be followed by a line feed.
+     * @param chars the characters
+     * @param start the position of the first character
+     * @param end the position following the last character
+     * @return the position following the last end of line of the range,
+     * or start if the range holds no complete record
+     */
+    public int lastRecordEnd(char[] chars, int start, int end) {
+        int ret = start;
+        boolean inQuotes = false;
+        boolean fieldStart = true;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (inQuotes) {
+                if (c == quote) {
+                    if (i+1 < end && chars[i+1] == quote) {
+                        i++;
+                        fieldStart = false;
+                    }
+                    else {
+                        inQuotes = false;
+                    }
+                }
+                else {
+                    fieldStart = false;
+                }
+            }
+            else if (c == quote && quote != 0 && fieldStart) {
+                inQuotes = true;
+            }
+            else if (c == separator) {
+                fieldStart = true;
+            }
+            else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    if (i+1 == end) {
+                        break;
+                    }
+                    if (chars[i+1] == '\n') {
+                        i++;
+                    }
+                }
+                fieldStart = true;
+                ret = i+1;
+            }
+            else {
+                fieldStart = false;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Splits a range of characters into ranges of comparable lengths
+     * starting on record boundaries.
+     * @param chars the characters
+     * @param start the position of the first character
+     * @param end the position following the last character
+     * @param count the number of ranges
+     * @return an array of count+1 positions, the range i going from
+     * position i to position i+1
+     */
+    public int[] split(char[] chars, int start, int end, int count) {
+        int[] ret = new int[count+1];
+        ret[0] = start;
+        int k = 1;
+        long size = end - start;
+        int target = start + (int)(size * k / count);
+        boolean inQuotes = false;
+        boolean fieldStart = true;
+        for (int i = start; i < end && k < count; i++) {
+            char c = chars[i];
+            if (inQuotes) {
+                if (c == quote) {
+                    if (i+1 < end && chars[i+1] == quote) {
+                        i++;
+                        fieldStart = false;
+                    }
+                    else {
+                        inQuotes = false;
+                    }
+                }
+                else {
+                    fieldStart = false;
+                }
+            }
+            else if (c == quote && quote != 0 && fieldStart) {
+                inQuotes = true;
+            }
+            else if (c == separator) {
+                fieldStart = true;
+            }
+            else if (c == '\n' || c == '\r') {
+                if (c == '\r' && i+1 < end && chars[i+1] == '\n') {
+                    i++;
+                }
+                fieldStart = true;
+                while (k < count && i+1 >= target) {
+                    ret[k++] = i+1;
+                    target = start + (int)(size * k / count);
+                }
+            }
+            else {
+                fieldStart = false;
+            }
+        }
+        while (k <= count) {
+            ret[k++] = end;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of fields of the current record.
+     * @return the number of fields of the current record
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns the buffer holding the fields of the current record.
+     * BEWARE! no copy is done and the array should only be read.
+     * @return the buffer holding the fields of the current record
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    /**
+     * Returns the position of the first character of a field in
+     * the buffer.
+     * @param field the field index
+     * @return the position of the first character of the field
+     */
+    public int getFieldStart(int field) {
+        return bounds[2*field];
+    }
+
+    /**
+     * Returns the position following the last character of a field
+     * in the buffer.
+     * @param field the field index
+     * @return the position following the last character of the field
+     */
+    public int getFieldEnd(int field) {
+        return bounds[2*field+1];
+    }
+
+    /**
+     * Returns the value of a field as a String.
+     * @param field the field index
+     * @return the value of the field
+     */
+    public String getField(int field) {
+        int start = bounds[2*field];
+        return new String(chars, start, bounds[2*field+1] - start);
+    }
+
+    /**
+     * Returns the number of characters read from the reader.
+     * @return the number of characters read from the reader
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Closes the reader.
+     * @throws IOException if the reader throws it
+     */
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+}
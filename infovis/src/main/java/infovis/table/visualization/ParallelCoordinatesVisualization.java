@@ -47,7 +47,7 @@ public class ParallelCoordinatesVisualization extends TimeSeriesVisualization {
 
     public void computeShapes(Rectangle2D bounds, Visualization vis) {
         clearRulers();
-        shapes.clear();
+        getShapes().clear();
         double sx = bounds.getWidth() / (columns.size()-1);
         double min =0;
         double max = 0;
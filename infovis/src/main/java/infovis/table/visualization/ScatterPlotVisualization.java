@@ -19,10 +19,12 @@ import infovis.metadata.DependencyMetadata;
 import infovis.panel.DoubleBoundedRangeModel;
 import infovis.panel.dqinter.NumberColumnBoundedRangeModel;
 import infovis.utils.IntPair;
+import infovis.utils.IntSet;
 import infovis.utils.RowIterator;
 import infovis.visualization.DefaultVisualColumn;
 import infovis.visualization.DefaultVisualization;
 import infovis.visualization.Layout;
+import infovis.visualization.RowLocalLayout;
 import infovis.visualization.render.VisualSize;
 import infovis.visualization.ruler.LinearRulersBuilder;
 import infovis.visualization.ruler.RulerTable;
@@ -43,7 +45,7 @@ import javax.swing.event.ChangeEvent;
  * @version $Revision: 1.72 $
  * @infovis.factory VisualizationFactory "Table Scatter Plot" infovis.Table
  */
-public class ScatterPlotVisualization extends DefaultVisualization implements Layout {
+public class ScatterPlotVisualization extends DefaultVisualization implements RowLocalLayout {
     /** Name of the property for x axis model change notification */
     public static final String              PROPERTY_X_AXIS_MODEL = "xAxisModel";
     /** Name of the property for y axis model change notification */
@@ -287,7 +289,6 @@ public class ScatterPlotVisualization extends DefaultVisualization implements La
         VisualSize vs = VisualSize.get(this);
         vs.install(null);
         double maxSize = vs.getMaxSize();
-        double height = bounds.getHeight();
         double off = maxSize / 2 + margin;
         double insideMargin = maxSize - 2 * margin;
         Rectangle2D.Double insideBounds = new Rectangle2D.Double();
@@ -310,27 +311,12 @@ public class ScatterPlotVisualization extends DefaultVisualization implements La
 
         NumberColumn xCol = getNumberColumnFor(xAxisColumn);
         NumberColumn yCol = getNumberColumnFor(yAxisColumn);
-        shapes.clear();
+        getShapes().clear();
         for (RowIterator iter = iterator(); iter.hasNext();) {
             int row = iter.nextRow();
-            if (xCol.isValueUndefined(row) || yCol.isValueUndefined(row)) {
-                freeRectAt(row);
-                continue;
-            }
-
-            double xpos = 
-                (xCol.getDoubleAt(row) - dataBounds.getX()) * xscale 
-                + off
-                + bounds.getX();
-            double ypos = 
-                height - ((yCol.getDoubleAt(row) - dataBounds.getY()) * yscale
-                + off
-                + bounds.getY());
-            Rectangle2D.Float rect = findRectAt(row);
-            vs.setRectSizeAt(row, rect);
-            rect.x = (float) xpos - rect.width / 2;
-            rect.y = (float) ypos - rect.height / 2;
-            setShapeAt(row, rect);
+            computeShapeAt(
+                    row, xCol, yCol, bounds, dataBounds,
+                    xscale, yscale, off, vs);
         }
         clearRulers();
         double step = LinearRulersBuilder.computeStep(
@@ -362,6 +348,75 @@ public class ScatterPlotVisualization extends DefaultVisualization implements La
         vs.uninstall(null);
     }
 
+    protected void computeShapeAt(
+            int row,
+            NumberColumn xCol,
+            NumberColumn yCol,
+            Rectangle2D bounds,
+            Rectangle2D dataBounds,
+            double xscale,
+            double yscale,
+            double off,
+            VisualSize vs) {
+        if (xCol.isValueUndefined(row) || yCol.isValueUndefined(row)) {
+            freeRectAt(row);
+            return;
+        }
+
+        double xpos = 
+            (xCol.getDoubleAt(row) - dataBounds.getX()) * xscale 
+            + off
+            + bounds.getX();
+        double ypos = 
+            bounds.getHeight() - ((yCol.getDoubleAt(row) - dataBounds.getY()) * yscale
+            + off
+            + bounds.getY());
+        Rectangle2D.Float rect = findRectAt(row);
+        vs.setRectSizeAt(row, rect);
+        rect.x = (float) xpos - rect.width / 2;
+        rect.y = (float) ypos - rect.height / 2;
+        setShapeAt(row, rect);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean computeShapes(
+            Rectangle2D bounds, 
+            Visualization vis,
+            IntSet rows) {
+        Rectangle2D dataBounds = getDataBounds();
+        if (dataBounds == null) {
+            return false;
+        }
+        VisualSize vs = VisualSize.get(this);
+        vs.install(null);
+        double maxSize = vs.getMaxSize();
+        double off = maxSize / 2 + margin;
+        double insideMargin = maxSize - 2 * margin;
+        double width = bounds.getWidth() - insideMargin;
+        double height = bounds.getHeight() - insideMargin;
+        if (width <= 0 || height <= 0) {
+            vs.uninstall(null);
+            return false;
+        }
+        double xscale = width / dataBounds.getWidth();
+        double yscale = height / dataBounds.getHeight();
+        NumberColumn xCol = getNumberColumnFor(xAxisColumn);
+        NumberColumn yCol = getNumberColumnFor(yAxisColumn);
+        for (int row = rows.nextSet(0); row >= 0; row = rows.nextSet(row+1)) {
+            if (getRowIndex(row) == -1) {
+                // not visible through the permutation
+                continue;
+            }
+            computeShapeAt(
+                    row, xCol, yCol, bounds, dataBounds,
+                    xscale, yscale, off, vs);
+        }
+        vs.uninstall(null);
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
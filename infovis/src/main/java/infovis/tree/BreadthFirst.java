@@ -9,11 +9,15 @@ package infovis.tree;
 
 import infovis.Tree;
 import infovis.utils.IntStack;
-import infovis.utils.RowIterator;
 
 
 /**
  * Breadth First traversal algorithm for trees.
+ * 
+ * <p>The queue is an <code>int</code> list and, as with
+ * {@link DepthFirst}, the children of a {@link DefaultTree} are reached
+ * through its sibling links and the children of other trees through
+ * {@link Tree#getChild(int, int)}.
  *
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.9 $
@@ -29,23 +33,36 @@ public class BreadthFirst {
      * @param Q an IntVector used as a queue.
      */
     public static void visit(Tree tree, Visitor visitor, int node, IntStack Q) {
+        Q.clear();
         if (visitor.discover(node)) {
             Q.add(node);
         }
+        DefaultTree dt = tree instanceof DefaultTree ? (DefaultTree)tree : null;
 
-        while (!Q.isEmpty()) {
-            int n = Q.pop();
+        for (int head = 0; head < Q.size(); head++) {
+            int n = Q.getQuick(head);
             visitor.examine(n);
 
-            for (RowIterator iter = tree.childrenIterator(n); iter.hasNext(); ) {
-                int child = iter.nextRow();
-                if (visitor.discover(child)) {
-                    Q.add(child);
+            if (dt != null) {
+                for (int child = dt.child.get(n); child != Tree.NIL; 
+                    child = dt.next.get(child)) {
+                    if (visitor.discover(child)) {
+                        Q.add(child);
+                    }
+                }
+            }
+            else {
+                for (int i = 0; i < tree.getChildCount(n); i++) {
+                    int child = tree.getChild(n, i);
+                    if (visitor.discover(child)) {
+                        Q.add(child);
+                    }
                 }
             }
 
             visitor.finish(n);
         }
+        Q.clear();
     }
     
     public static void visit(Tree tree, Visitor visitor, int node) {
@@ -10,6 +10,7 @@ package infovis.tree;
 import infovis.Tree;
 import infovis.column.IntColumn;
 import infovis.table.DefaultDynamicTable;
+import infovis.utils.IntStack;
 import infovis.utils.RowComparator;
 import infovis.utils.RowIterator;
 
@@ -35,6 +36,14 @@ import cern.colt.Sorting;
  * <li><cide>#parent</code> contains the index of the parent of a node
  * </ol>
  * 
+ * <p>Two more internal <code>IntColumn</code>s, <code>#depth</code> and
+ * <code>#degree</code>, maintain the depth and the number of children of
+ * each node so {@link #getDepth(int)} and {@link #getChildCount(int)}
+ * run in constant time.  The children of a node are also cached in an
+ * array, rebuilt when they change, for {@link #getChild(int, int)}.
+ * A {@link TreeIntervals} index is computed on demand and kept until
+ * the structure changes.
+ * 
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.26 $
  */
@@ -58,11 +67,25 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
      * Name of the IntColumn referencing the parent of a node.
      */
     public static final String PARENT_COLUMN = "#parent";
+
+    /**
+     * Name of the IntColumn containing the depth of a node.
+     */
+    public static final String DEPTH_COLUMN = "#depth";
+
+    /**
+     * Name of the IntColumn containing the number of children of a node.
+     */
+    public static final String DEGREE_COLUMN = "#degree";
     
     protected IntColumn    child;
     protected IntColumn    next;
     protected IntColumn    last;
     protected IntColumn    parent;
+    protected IntColumn    depth;
+    protected IntColumn    degree;
+    protected transient int[][] childrenCache;
+    protected transient TreeIntervals intervals;
     
     protected int firing = 0;
     
@@ -76,6 +99,8 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
         next = IntColumn.findColumn(this, NEXT_COLUMN);
         last = IntColumn.findColumn(this, LAST_COLUMN);
         parent = IntColumn.findColumn(this, PARENT_COLUMN);
+        depth = IntColumn.findColumn(this, DEPTH_COLUMN);
+        degree = IntColumn.findColumn(this, DEGREE_COLUMN);
 
         clear();
     }
@@ -94,6 +119,10 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
             next.setExtend(ROOT, NIL);
             last.setExtend(ROOT, NIL);
             parent.setExtend(ROOT, NIL);
+            depth.setExtend(ROOT, 0);
+            degree.setExtend(ROOT, 0);
+            childrenCache = null;
+            intervals = null;
         }
         finally {
             enableNotify();
@@ -116,11 +145,57 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
     public int getChild(int node, int index) {
         if (! isRowValid(node))
             return NIL;
-        for (int c = getFirstChild(node); c != Tree.NIL; c = getNextSibling(c)) {
-            if (index-- == 0)
-                return c;
+        int[] c = getChildren(node);
+        if (index < 0 || index >= c.length)
+            return NIL;
+        return c[index];
+    }
+
+    /**
+     * Returns the cached array of children of a node, building it if
+     * required.
+     * BEWARE! no copy is done and the array should only be read.
+     *
+     * @param node the node
+     *
+     * @return the array of children of the node
+     */
+    protected int[] getChildren(int node) {
+        if (childrenCache == null || childrenCache.length <= node) {
+            int[][] cache = new int[Math.max(node+1, getLastRow()+1)][];
+            if (childrenCache != null) {
+                System.arraycopy(childrenCache, 0, cache, 0, childrenCache.length);
+            }
+            childrenCache = cache;
+        }
+        int[] c = childrenCache[node];
+        if (c == null) {
+            int n = degree.get(node);
+            if (n == 0) {
+                c = NULL_INT;
+            }
+            else {
+                c = new int[n];
+                int i = 0;
+                for (int ch = child.get(node); ch != NIL; ch = next.get(ch)) {
+                    c[i++] = ch;
+                }
+                assert(i == n);
+            }
+            childrenCache[node] = c;
+        }
+        return c;
+    }
+
+    /**
+     * Invalidates the cached array of children of a node.
+     *
+     * @param node the node
+     */
+    protected void invalidateChildren(int node) {
+        if (childrenCache != null && node < childrenCache.length) {
+            childrenCache[node] = null;
         }
-        return NIL;
     }
 
     /**
@@ -174,6 +249,8 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
             child.setExtend(node, NIL);
             last.setExtend(node, NIL);
             next.setExtend(node, NIL);
+            degree.setExtend(node, 0);
+            invalidateChildren(node);
             addChild(node, par);
         }
         finally {
@@ -185,6 +262,10 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
 
     protected void addChild(int node, int par) {
         parent.setExtend(node, par);
+        depth.setExtend(node, depth.get(par) + 1);
+        degree.set(par, degree.get(par) + 1);
+        invalidateChildren(par);
+        intervals = null;
 
         if (last.get(par) == NIL) {
             child.set(par, node);
@@ -204,6 +285,9 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
 
         par = parent.get(node);
         parent.set(node, NIL);
+        degree.set(par, degree.get(par) - 1);
+        invalidateChildren(par);
+        intervals = null;
         if (child.get(par) == node) {
             index = 0;
             child.set(par, next.get(node));
@@ -267,10 +351,15 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
                 // don't touch the columns
                 removeChild(node);
                 //super.removeRow(node);
-                parent.setSize(getRowCount());
-                child.setSize(getRowCount());
-                last.setSize(getRowCount());
-                next.setSize(getRowCount());
+                // removed rows can leave holes, keep the columns
+                // as large as the last row
+                int size = getLastRow() + 1;
+                parent.setSize(size);
+                child.setSize(size);
+                last.setSize(size);
+                next.setSize(size);
+                depth.setSize(size);
+                degree.setSize(size);
             }
             finally {
                 enableNotify();
@@ -309,6 +398,7 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
             firing++;
             removeChild(node);
             addChild(node, newparent);
+            updateDepth(node);
         }
         finally {
             firing--;
@@ -318,6 +408,39 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
     }
     
 
+    /**
+     * Updates the depth of the descendants of a node after its
+     * depth has changed.
+     *
+     * @param node the node
+     */
+    protected void updateDepth(int node) {
+        IntStack stack = new IntStack();
+        stack.push(node);
+        while (! stack.isEmpty()) {
+            int n = stack.pop();
+            int d = depth.get(n) + 1;
+            for (int c = child.get(n); c != NIL; c = next.get(c)) {
+                depth.set(c, d);
+                stack.push(c);
+            }
+        }
+    }
+
+    /**
+     * Returns the interval index of the tree, computing it if the tree
+     * structure has changed since it was last computed.  Once computed,
+     * it is also used by {@link #isAncestor(int, int)}.
+     *
+     * @return the interval index of the tree
+     */
+    public TreeIntervals getIntervals() {
+        if (intervals == null) {
+            intervals = new TreeIntervals(this);
+        }
+        return intervals;
+    }
+
     /**
      * Returns true if the first node has the second node as ancestor.
      *
@@ -327,6 +450,11 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
      * @return true if the first node has the second node as ancestor.
      */
     public boolean isAncestor(int node, int par) {
+        if (intervals != null) {
+            return isRowValid(node)
+                && isRowValid(par)
+                && intervals.isAncestor(node, par);
+        }
         while (node != NIL) {
             if (node == par) {
                 return true;
@@ -358,27 +486,29 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
     }
     
     /**
-     * Returns the depth of a node using either a depth column if it has been computed or
-     * the computeDepth method.
+     * Returns the depth of a node maintained in the depth column.
      *
      * @param node the node.
      *
      * @return the depth of the node.
      */
     public int getDepth(int node) {
-        return computeDepth(node);
+        if (! isRowValid(node))
+            return -1;
+        return depth.get(node);
     }
 
     /**
-     * Returns the degree of a node using either a degree column if it has been computed or
-     * the computeDegree method.
+     * Returns the degree of a node maintained in the degree column.
      *
      * @param node the node.
      *
      * @return the depth of the node.
      */
     public int getChildCount(int node) {
-        return computeDegree(node);
+        if (! isRowValid(node))
+            return 0;
+        return degree.get(node);
     }
 
     /**
@@ -492,19 +622,9 @@ public class DefaultTree extends DefaultDynamicTable implements Tree {
      * or null is the node has no child.
      */
     public int[] children(int node) {
-        int   n = getChildCount(node);
-        int[] c;
-        if (n == 0)
-            c = NULL_INT;
-        else {
-            c = new int[n];
-            int i = 0;
-
-            for (int child = getFirstChild(node); child != NIL;
-                     child = getNextSibling(child))
-                c[i++] = child;
-        }
-        return c;
+        if (getChildCount(node) == 0)
+            return NULL_INT;
+        return getChildren(node).clone();
     }
 
     /**
@@ -9,12 +9,18 @@ package infovis.tree;
 
 import infovis.Tree;
 import infovis.utils.IntStack;
-import infovis.utils.RowIterator;
 import cern.colt.function.IntProcedure;
 
 
 /**
  * Depth First traversal algorithm for trees.
+ * 
+ * <p>The traversal uses an explicit stack so deep trees do not overflow
+ * the Java stack.  A {@link DefaultTree} is traversed through its
+ * sibling links and other trees through
+ * {@link Tree#getChild(int, int)}, so no iterator is allocated per
+ * node.  As with an iterator, the next sibling of a node is read
+ * before the node is visited.
  *
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.9 $
@@ -29,41 +35,101 @@ public class DepthFirst {
      * @param node the root node.
      */
     public static void visit(Tree tree, Visitor visitor, int node) {
-        if (visitor.preorder(node)) {
-            for (RowIterator iter = tree.childrenIterator(node); 
-                iter.hasNext(); ) {
-                visit(tree, visitor, iter.nextRow());
-            }
-            visitor.postorder(node);
+        if (! visitor.preorder(node)) {
+            return;
+        }
+        if (tree instanceof DefaultTree) {
+            visitLinked((DefaultTree)tree, visitor, node);
+        }
+        else {
+            visitIndexed(tree, visitor, node);
         }
     }
     
-    public static void visitPreorder(
-            Tree tree, 
-            IntProcedure visitor, 
+    // pending holds the next child to visit at each level
+    private static void visitLinked(
+            DefaultTree tree,
+            Visitor visitor,
             int node) {
-        IntStack stack = new IntStack();
-        stack.push(node);
-        while(! stack.isEmpty()) {
-            node = stack.pop();
-            if (visitor.apply(node)) {
-                int start = stack.size();
-                for (RowIterator iter = tree.childrenIterator(node); 
-                    iter.hasNext(); ) {
-                    stack.push(iter.nextRow());
+        IntStack nodes = new IntStack();
+        IntStack pending = new IntStack();
+        nodes.push(node);
+        pending.push(tree.child.get(node));
+        while (! nodes.isEmpty()) {
+            int c = pending.top();
+            if (c != Tree.NIL) {
+                pending.setTop(tree.next.get(c));
+                if (visitor.preorder(c)) {
+                    nodes.push(c);
+                    pending.push(tree.child.get(c));
                 }
-                int end = stack.size()-1;
-                while (start < end) {
-                    int tmp = stack.getQuick(start);
-                    stack.setQuick(start, stack.getQuick(end));
-                    stack.setQuick(end, tmp);
-                    start++;
-                    end--;
+            }
+            else {
+                int n = nodes.pop();
+                pending.pop();
+                visitor.postorder(n);
+            }
+        }
+    }
+    
+    // pending holds the index of the next child to visit at each level
+    private static void visitIndexed(
+            Tree tree,
+            Visitor visitor,
+            int node) {
+        IntStack nodes = new IntStack();
+        IntStack pending = new IntStack();
+        nodes.push(node);
+        pending.push(0);
+        while (! nodes.isEmpty()) {
+            int n = nodes.top();
+            int index = pending.top();
+            if (index < tree.getChildCount(n)) {
+                pending.setTop(index + 1);
+                int c = tree.getChild(n, index);
+                if (visitor.preorder(c)) {
+                    nodes.push(c);
+                    pending.push(0);
                 }
             }
+            else {
+                nodes.pop();
+                pending.pop();
+                visitor.postorder(n);
+            }
         }
     }
     
+    /**
+     * Traverse the tree starting at a node in preorder, calling the
+     * procedure at each node.
+     * 
+     * @param tree the <code>Tree</code>
+     * @param visitor the procedure, returning false to prune the
+     * subtree of the node
+     * @param node the root node.
+     */
+    public static void visitPreorder(
+            Tree tree, 
+            final IntProcedure visitor, 
+            int node) {
+        visit(tree, new Visitor() {
+            public boolean preorder(int node) {
+                return visitor.apply(node);
+            }
+            public void postorder(int node) {
+            }
+        },
+        node);
+    }
+    
+    /**
+     * Traverse the tree in preorder, calling the procedure at each node.
+     * 
+     * @param tree the <code>Tree</code>
+     * @param visitor the procedure, returning false to prune the
+     * subtree of the node
+     */
     public static void visitPreorder(
             Tree tree, 
             IntProcedure visitor) {
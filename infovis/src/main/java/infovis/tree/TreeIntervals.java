@@ -0,0 +1,167 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.tree;
+
+import infovis.Tree;
+import infovis.utils.IntArrayIterator;
+import infovis.utils.RowIterator;
+
+/**
+ * <b>TreeIntervals</b> is an immutable index of the depth-first order
+ * of a {@link Tree}.
+ *
+ * <p>Each node is labelled with its rank in the preorder traversal of
+ * the tree and with the rank following its last descendant, so the
+ * descendants of a node occupy a contiguous range of the order.
+ * Ancestor tests take constant time, subtrees are enumerated without
+ * traversal, and iterating the order backwards reaches each node after
+ * all its descendants, so bottom-up aggregations are computed in a
+ * single linear pass.
+ *
+ * <p>The index is built with the iterative {@link DepthFirst}
+ * traversal.  Use {@link #get(Tree)} to share the index of a tree; a
+ * {@link DefaultTree} keeps it until its structure changes.  Other
+ * trees get a new index at each call.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class TreeIntervals {
+    protected Tree  tree;
+    protected int[] order;
+    protected int[] start;
+    protected int[] end;
+
+    /**
+     * Builds the index of a tree.
+     * @param tree the tree
+     */
+    public TreeIntervals(Tree tree) {
+        this.tree = tree;
+        int capacity = tree.getLastRow() + 1;
+        final int[] order = new int[tree.getNodeCount()];
+        final int[] start = new int[capacity];
+        final int[] end = new int[capacity];
+        this.order = order;
+        this.start = start;
+        this.end = end;
+        for (int i = 0; i < capacity; i++) {
+            start[i] = -1;
+            end[i] = -1;
+        }
+        final int[] count = new int[1];
+        DepthFirst.visit(tree, new DepthFirst.Visitor() {
+            public boolean preorder(int node) {
+                start[node] = count[0];
+                order[count[0]++] = node;
+                return true;
+            }
+            public void postorder(int node) {
+                end[node] = count[0];
+            }
+        });
+        assert(count[0] == order.length);
+    }
+
+    /**
+     * Returns the index associated with a tree, recomputing it if the
+     * tree structure has changed.
+     * @param tree the tree
+     * @return the index of the tree
+     */
+    public static TreeIntervals get(Tree tree) {
+        if (tree instanceof DefaultTree) {
+            return ((DefaultTree)tree).getIntervals();
+        }
+        return new TreeIntervals(tree);
+    }
+
+    /**
+     * Returns the tree.
+     * @return the tree
+     */
+    public Tree getTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the number of nodes.
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return order.length;
+    }
+
+    /**
+     * Returns the nodes in depth-first preorder.
+     * BEWARE! no copy is done and the array should only be read.
+     * @return the array of nodes
+     */
+    public int[] getOrder() {
+        return order;
+    }
+
+    /**
+     * Returns the node at a specified rank in the order.
+     * @param rank the rank
+     * @return the node
+     */
+    public int getNode(int rank) {
+        return order[rank];
+    }
+
+    /**
+     * Returns the rank of a node in the order.
+     * @param node the node
+     * @return the rank of the node
+     */
+    public int getStart(int node) {
+        return start[node];
+    }
+
+    /**
+     * Returns the rank following the last descendant of a node.
+     * @param node the node
+     * @return the rank following the last descendant of a node
+     */
+    public int getEnd(int node) {
+        return end[node];
+    }
+
+    /**
+     * Returns the number of nodes of the subtree rooted at a node,
+     * including the node.
+     * @param node the node
+     * @return the number of nodes of the subtree
+     */
+    public int getSubtreeSize(int node) {
+        return end[node] - start[node];
+    }
+
+    /**
+     * Returns true if the first node has the second node as ancestor,
+     * as {@link Tree#isAncestor(int, int)}.
+     * @param node the node
+     * @param par the tested ancestor
+     * @return true if the first node has the second node as ancestor
+     */
+    public boolean isAncestor(int node, int par) {
+        int s = start[node];
+        return s >= start[par] && s < end[par];
+    }
+
+    /**
+     * Returns an iterator over the subtree rooted at a node, in
+     * depth-first preorder.
+     * @param node the node
+     * @return an iterator over the subtree
+     */
+    public RowIterator subtreeIterator(int node) {
+        return new IntArrayIterator(start[node], end[node], order);
+    }
+}
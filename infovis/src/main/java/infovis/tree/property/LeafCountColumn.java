@@ -10,8 +10,7 @@ package infovis.tree.property;
 import infovis.Column;
 import infovis.Tree;
 import infovis.metadata.AggregationConstants;
-import infovis.tree.DepthFirst;
-import infovis.utils.RowIterator;
+import infovis.tree.TreeIntervals;
 
 /**
  * Class for computing and maintaining the number of leaves
@@ -75,23 +74,19 @@ public class LeafCountColumn extends TreeProperty {
             disableNotify();
             setReadOnly(false);
             clear();
-            DepthFirst.visit(tree, new DepthFirst.Visitor() {
-                public boolean preorder(int node) {
-                    return true;
+            // the reverse preorder reaches the children before their
+            // parent, each node adding its count to its parent
+            int[] order = TreeIntervals.get(tree).getOrder();
+            int[] sum = new int[tree.getLastRow() + 1];
+            for (int i = order.length - 1; i >= 0; i--) {
+                int node = order[i];
+                int count = tree.isLeaf(node) ? 1 : sum[node];
+                setExtend(node, count);
+                int parent = tree.getParent(node);
+                if (parent != Tree.NIL) {
+                    sum[parent] += count;
                 }
-                public void postorder(int node) {
-                    if (tree.isLeaf(node)) {
-                        setExtend(node, 1);
-                    } else {
-                        int sum = 0;
-                        for (RowIterator iter = tree
-                                .childrenIterator(node); iter.hasNext();) {
-                            sum += get(iter.nextRow());
-                        }
-                        setExtend(node, sum);
-                    }
-                }
-            });
+            }
         } finally {
             setReadOnly(true);
             enableNotify();
@@ -101,6 +101,17 @@ public class NodeLinkTreeVisualization extends TreeVisualization
         super.paintItems(graphics, bounds);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void collectPaintedItems(
+            ProgressivePainter painter,
+            Rectangle2D bounds) {
+        linkVisualization.validateShapes(bounds);
+        linkVisualization.collectPaintedItems(painter, bounds);
+        super.collectPaintedItems(painter, bounds);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -16,6 +16,7 @@ import infovis.column.ObjectColumn;
 import infovis.metadata.AdditiveAggregation;
 import infovis.table.Item;
 import infovis.tree.DepthFirst;
+import infovis.tree.TreeIntervals;
 import infovis.tree.property.DegreeColumn;
 import infovis.tree.property.DepthColumn;
 import infovis.tree.property.LeafCountColumn;
@@ -26,6 +27,7 @@ import infovis.utils.RowIterator;
 import infovis.utils.ZeroValueGenerator;
 import infovis.visualization.DefaultVisualization;
 import infovis.visualization.ItemRenderer;
+import infovis.visualization.ProgressivePainter;
 
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
@@ -109,8 +111,51 @@ public class TreeVisualization extends DefaultVisualization
      * {@inheritDoc}
      */
     public void paintItems(final Graphics2D graphics, Rectangle2D bounds) {
-        this.graphics = graphics;
-        DepthFirst.visitPreorder(this, this, visibleRoot);
+        RowIterator iter = visibleSubtreeIterator();
+        if (iter == null) {
+            this.graphics = graphics;
+            DepthFirst.visitPreorder(this, this, visibleRoot);
+            return;
+        }
+        while (iter.hasNext()) {
+            paintItem(graphics, iter.nextRow());
+        }
+    }
+
+    /**
+     * Returns an iterator over the subtree of the visible root in
+     * preorder, taken from the {@link TreeIntervals} of the tree, or
+     * null when the children are permuted and the subtree should be
+     * visited through {@link #childrenIterator(int)}.
+     * 
+     * @return an iterator over the visible subtree or null
+     */
+    protected RowIterator visibleSubtreeIterator() {
+        if (permutation != null) {
+            return null;
+        }
+        return TreeIntervals.get(tree).subtreeIterator(visibleRoot);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void collectPaintedItems(
+            ProgressivePainter painter,
+            Rectangle2D bounds) {
+        RowIterator iter = visibleSubtreeIterator();
+        if (iter != null) {
+            painter.addItems(this, iter);
+            return;
+        }
+        final IntArrayList rows = new IntArrayList();
+        DepthFirst.visitPreorder(this, new IntProcedure() {
+            public boolean apply(int node) {
+                rows.add(node);
+                return true;
+            }
+        }, visibleRoot);
+        painter.addItems(this, new IntArrayIterator(rows));
     }
 
     /**
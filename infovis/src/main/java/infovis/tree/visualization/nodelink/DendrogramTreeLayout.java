@@ -7,6 +7,7 @@
  *****************************************************************************/
 package infovis.tree.visualization.nodelink;
 
+import infovis.Tree;
 import infovis.Visualization;
 import infovis.column.DoubleColumn;
 import infovis.column.NumberColumn;
@@ -14,12 +15,15 @@ import infovis.tree.Algorithms;
 import infovis.tree.DepthFirst;
 import infovis.tree.visualization.NodeLinkTreeLayout;
 import infovis.tree.visualization.NodeLinkTreeVisualization;
+import infovis.utils.IntStack;
 import infovis.utils.RowIterator;
 import infovis.visualization.Orientation;
 
 import java.awt.Dimension;
 import java.awt.geom.Rectangle2D;
 
+import cern.colt.function.IntProcedure;
+
 /**
  * Layout for Dendrograms.
  * 
@@ -142,46 +146,66 @@ public class DendrogramTreeLayout extends NodeLinkTreeLayout {
     public String getName() {
         return "Dendrogram";
     }
-    protected float computeShapes(NodeLinkTreeVisualization vis, int node, float start) {
-        float pos = start;
-        if (!vis.isLeaf(node)) {
-            Rectangle2D.Float first = null;
-            int c = -1;
-            for (RowIterator iter = childrenIterator(node); iter.hasNext();) {
-                c = iter.nextRow();
-                start = computeShapes(vis, c, start);
-                start += siblingSeparation;
-                if (first == null) {
-                    first = getRectAt(c);
-                }
-            }
-            start -= siblingSeparation;
-            Rectangle2D.Float last = getRectAt(c);
-            if (Orientation.isHorizontal(getOrientation())) {
-                pos = (first.y + last.y) / 2;
+    protected float computeShapes(
+            final NodeLinkTreeVisualization vis,
+            final int node,
+            float start) {
+        // first and last hold the first and last child positioned
+        // at each level
+        final IntStack first = new IntStack();
+        final IntStack last = new IntStack();
+        final float[] end = { start };
+        DepthFirst.visit(vis, new DepthFirst.Visitor() {
+            public boolean preorder(int n) {
+                first.push(Tree.NIL);
+                last.push(Tree.NIL);
+                return true;
             }
-            else {
-                pos = (first.x + last.x) / 2;
+
+            public void postorder(int n) {
+                float start = end[0];
+                float pos = start;
+                int f = first.pop();
+                int l = last.pop();
+                if (f != Tree.NIL) {
+                    start -= siblingSeparation;
+                    Rectangle2D.Float firstRect = getRectAt(f);
+                    Rectangle2D.Float lastRect = getRectAt(l);
+                    if (Orientation.isHorizontal(getOrientation())) {
+                        pos = (firstRect.y + lastRect.y) / 2;
+                    }
+                    else {
+                        pos = (firstRect.x + lastRect.x) / 2;
+                    }
+                }
+                Rectangle2D.Float rect = getRectAt(n);
+                switch (getOrientation()) {
+                case ORIENTATION_NORTH:
+                case ORIENTATION_SOUTH:
+                    rect.x = pos;
+                    pos += rect.width;
+                    rect.y = (float) nodeDepth(n);
+                    break;
+                case ORIENTATION_EAST:
+                case ORIENTATION_WEST:
+                    rect.y = pos;
+                    pos += rect.height;
+                    rect.x = (float) nodeDepth(n);
+                    break;
+                }
+                setShapeAt(n, rect);
+                start = Math.max(start, pos);
+                if (n != node) {
+                    start += siblingSeparation;
+                    if (first.top() == Tree.NIL) {
+                        first.setTop(n);
+                    }
+                    last.setTop(n);
+                }
+                end[0] = start;
             }
-        }
-        Rectangle2D.Float rect = getRectAt(node);
-        switch (getOrientation()) {
-        case ORIENTATION_NORTH:
-        case ORIENTATION_SOUTH:
-            rect.x = pos;
-            pos += rect.width;
-            rect.y = (float) nodeDepth(node);
-            break;
-        case ORIENTATION_EAST:
-        case ORIENTATION_WEST:
-            rect.y = pos;
-            pos += rect.height;
-            rect.x = (float) nodeDepth(node);
-            break;
-        }
-        setShapeAt(node, rect);
-        start = Math.max(start, pos);
-        return start;
+        }, node);
+        return end[0];
     }
 
     protected float getLength(int node) {
@@ -197,18 +221,23 @@ public class DendrogramTreeLayout extends NodeLinkTreeLayout {
         }
     }
 
-    protected float computeLength(NodeLinkTreeVisualization vis, int node) {
-        if (isLeaf(node)) {
-            return getLength(node);
-        }
-        float ret = 0;
-        for (RowIterator iter = childrenIterator(node); iter.hasNext();) {
-            int c = iter.nextRow();
-            ret += computeLength(vis, c);
-            ret += siblingSeparation;
-        }
-        ret -= siblingSeparation;
-        return ret;
+    protected float computeLength(
+            final NodeLinkTreeVisualization vis,
+            int node) {
+        // the lengths of the leaves and the separations between siblings
+        final float[] ret = { 0 };
+        DepthFirst.visitPreorder(vis, new IntProcedure() {
+            public boolean apply(int n) {
+                if (isLeaf(n)) {
+                    ret[0] += getLength(n);
+                }
+                else {
+                    ret[0] += (vis.getChildCount(n) - 1) * siblingSeparation;
+                }
+                return true;
+            }
+        }, node);
+        return ret[0];
     }
 
     /**
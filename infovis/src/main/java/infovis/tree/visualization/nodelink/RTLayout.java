@@ -11,8 +11,10 @@ import infovis.Tree;
 import infovis.Visualization;
 import infovis.column.FloatColumn;
 import infovis.column.IntColumn;
+import infovis.tree.DepthFirst;
 import infovis.tree.visualization.NodeLinkTreeLayout;
 import infovis.tree.visualization.NodeLinkTreeVisualization;
+import infovis.utils.IntStack;
 import infovis.utils.RectPool;
 import infovis.utils.RowIterator;
 import infovis.visualization.Orientable;
@@ -22,6 +24,8 @@ import java.awt.Dimension;
 import java.awt.geom.Rectangle2D;
 import java.util.Arrays;
 
+import cern.colt.list.FloatArrayList;
+
 /**
  * Implements the Reingold and Tilford Tree Layout.
  * 
@@ -293,66 +297,102 @@ public class RTLayout extends NodeLinkTreeLayout implements Orientable {
         maxNodeWidthAtLevel = new float[100];
     }
 
+    /**
+     * Grows the tables indexed by level to hold a specified level.
+     * 
+     * @param level the level
+     */
+    protected void ensureLevelCapacity(int level) {
+        int size = previousNodeAtLevel.length;
+        if (level < size) {
+            return;
+        }
+        int newSize = Math.max(level + 1, size * 2);
+        int[] prev = new int[newSize];
+        System.arraycopy(previousNodeAtLevel, 0, prev, 0, size);
+        Arrays.fill(prev, size, newSize, Tree.NIL);
+        previousNodeAtLevel = prev;
+        float[] h = new float[newSize];
+        System.arraycopy(maxNodeHightAtLevel, 0, h, 0, size);
+        maxNodeHightAtLevel = h;
+        float[] w = new float[newSize];
+        System.arraycopy(maxNodeWidthAtLevel, 0, w, 0, size);
+        maxNodeWidthAtLevel = w;
+    }
+
     /**
      * Computes the preliminary position and modifier.
      *
+     * <p>The subtree is traversed with {@link DepthFirst} so deep trees
+     * do not overflow the stack; the children are positioned in
+     * preorder when they are leaves and in postorder otherwise.
+     *
      * @param node appex node.
      * @param level depth level.
      */
-    protected void firstWalk(int node, int level) {
-        setModifier(node, 0);
-        setPrelim(node, 0);
-
-        updateLevelHeight(node, level);
-        updateLevelWidth(node, level);
-        updateLeftAndRightNeighborsAtLevel(node, level);
-
-        if (isLeaf(node) || level == maxDepth) {
-            if (hasLeftSibling(node)) {
-                int left = getLeftSibling(node);
-                setPrelim(
-                    node,
-                    getPrelim(left)
-                        + siblingSeparation
-                        + getMeanNodeSize(left, node));
-                //getLayoutSize(left));
-            }
-            else {
+    protected void firstWalk(int node, final int level) {
+        // rightmost holds the last child visited at each level
+        final IntStack rightmost = new IntStack();
+        DepthFirst.visit(visualization, new DepthFirst.Visitor() {
+            public boolean preorder(int node) {
+                int l = level + rightmost.size();
+                ensureLevelCapacity(l);
+                if (! rightmost.isEmpty()) {
+                    // update the left/right sibling tables here
+                    int left = rightmost.top();
+                    setLeftSibling(node, left);
+                    if (left != Tree.NIL) {
+                        setRightSibling(left, node);
+                    }
+                    setRightSibling(node, Tree.NIL);
+                    rightmost.setTop(node);
+                }
+                setModifier(node, 0);
                 setPrelim(node, 0);
-            }
-        }
-        else {
-            int rightmost = Tree.NIL;
-            for (RowIterator iter = childrenIterator(node);
-                iter.hasNext();
-                ) {
-                int child = iter.nextRow();
-                // update the left/right sibling tables here
-                setLeftSibling(child, rightmost);
-                if (rightmost != Tree.NIL) {
-                    setRightSibling(rightmost, child);
+
+                updateLevelHeight(node, l);
+                updateLevelWidth(node, l);
+                updateLeftAndRightNeighborsAtLevel(node, l);
+
+                if (isLeaf(node) || l == maxDepth) {
+                    if (hasLeftSibling(node)) {
+                        int left = getLeftSibling(node);
+                        setPrelim(
+                            node,
+                            getPrelim(left)
+                                + siblingSeparation
+                                + getMeanNodeSize(left, node));
+                        //getLayoutSize(left));
+                    }
+                    else {
+                        setPrelim(node, 0);
+                    }
+                    return false;
                 }
-                firstWalk(child, level + 1);
-                rightmost = child;
-            }
-            setRightSibling(rightmost, Tree.NIL);
-
-            int leftmost = getFirstChild(node);
-            float midpoint =
-                (getPrelim(leftmost) + getPrelim(rightmost)) / 2;
-
-            if (hasLeftSibling(node)) {
-                int left = getLeftSibling(node);
-                setPrelim(node, getPrelim(left) + siblingSeparation +
-                //getLayoutSize(left));
-                getMeanNodeSize(left, node));
-                setModifier(node, getPrelim(node) - midpoint);
-                apportion(node, level);
+                rightmost.push(Tree.NIL);
+                return true;
             }
-            else {
-                setPrelim(node, midpoint);
+
+            public void postorder(int node) {
+                int last = rightmost.pop();
+                int l = level + rightmost.size();
+                int leftmost = getFirstChild(node);
+                float midpoint =
+                    (getPrelim(leftmost) + getPrelim(last)) / 2;
+
+                if (hasLeftSibling(node)) {
+                    int left = getLeftSibling(node);
+                    setPrelim(node, getPrelim(left) + siblingSeparation +
+                    //getLayoutSize(left));
+                    getMeanNodeSize(left, node));
+                    setModifier(node, getPrelim(node) - midpoint);
+                    apportion(node, l);
+                }
+                else {
+                    setPrelim(node, midpoint);
+                }
             }
-        }
+        }, node);
     }
     
     protected void apportion(int node, int level) {
@@ -425,15 +465,26 @@ public class RTLayout extends NodeLinkTreeLayout implements Orientable {
     protected int getLeftMost(int node, int level, int depth) {
         if (level >= depth)
             return node;
-        if (isLeaf(node))
-            return Tree.NIL;
-        for (RowIterator iter = childrenIterator(node);
-            iter.hasNext();
-            ) {
-            int child = iter.nextRow();
-            int leftMost = getLeftMost(child, level + 1, depth);
-            if (leftMost != Tree.NIL)
-                return leftMost;
+        // pending holds the index of the next child to visit at each level
+        IntStack nodes = new IntStack();
+        IntStack pending = new IntStack();
+        nodes.push(node);
+        pending.push(0);
+        while (! nodes.isEmpty()) {
+            int n = nodes.top();
+            int index = pending.top();
+            if (index < visualization.getChildCount(n)) {
+                pending.setTop(index + 1);
+                int child = visualization.getChild(n, index);
+                if (level + nodes.size() >= depth)
+                    return child;
+                nodes.push(child);
+                pending.push(0);
+            }
+            else {
+                nodes.pop();
+                pending.pop();
+            }
         }
         return Tree.NIL;
     }
@@ -461,88 +512,92 @@ public class RTLayout extends NodeLinkTreeLayout implements Orientable {
     /**
      * Second pass to propagate the modifiers to actual positions.
      *
+     * <p>The subtree is traversed with {@link DepthFirst}, the
+     * accumulated modifiers being kept on a stack.
+     *
      * @param node the appex node.
      * @param level the depth level.
-     * @param xModifierSum the accumulated modifiers for X.
-     * @param yModifierSum the accumulated modifiers for Y.
+     * @param modifierSum the accumulated modifiers.
      */
-    protected void secondWalk(int node, int level, float modifierSum) {
-        while (level < maxDepth) {
-            float x = 0;
-            float y = 0;
-
-            switch (getOrientation()) {
-                case ORIENTATION_NORTH :
-                    x =
-                        topXAdjustment
-                            + getPrelim(node)
-                            + modifierSum
-                            - getLayoutSize(node) / 2;
-                    y =
-                        topYAdjustment
-                            - level
-                                * ((float) vs.getMaxSize()
-                                    + levelSeparation);
-                    break;
-                case ORIENTATION_SOUTH :
-                    x =
-                        topXAdjustment
-                            + getPrelim(node)
-                            + modifierSum
-                            - getLayoutSize(node) / 2;
-                    y =
-                        topYAdjustment
-                            + level
-                                * ((float) vs.getMaxSize()
-                                    + levelSeparation);
-                    break;
-                case ORIENTATION_EAST :
-                    y =
-                        topXAdjustment
-                            + getPrelim(node)
-                            + modifierSum
-                            - getLayoutSize(node) / 2;
-                    x =
-                        topYAdjustment
-                            + level
-                                * ((float) vs.getMaxSize()
-                                    + levelSeparation);
-                    break;
-                case ORIENTATION_WEST :
-                    y =
-                        topXAdjustment
-                            + getPrelim(node)
-                            + modifierSum
-                            - getLayoutSize(node) / 2;
-                    x =
-                        topYAdjustment
-                            - level
-                                * ((float) vs.getMaxSize()
-                                    + levelSeparation);
-                    break;
-            }
+    protected void secondWalk(int node, final int level, float modifierSum) {
+        // modifiers accumulated above each level
+        final FloatArrayList sums = new FloatArrayList();
+        sums.add(modifierSum);
+        DepthFirst.visit(visualization, new DepthFirst.Visitor() {
+            public boolean preorder(int node) {
+                int depth = sums.size() - 1;
+                int l = level + depth;
+                if (l >= maxDepth) {
+                    return false;
+                }
+                float modifierSum = sums.getQuick(depth);
+                float x = 0;
+                float y = 0;
+
+                switch (getOrientation()) {
+                    case ORIENTATION_NORTH :
+                        x =
+                            topXAdjustment
+                                + getPrelim(node)
+                                + modifierSum
+                                - getLayoutSize(node) / 2;
+                        y =
+                            topYAdjustment
+                                - l
+                                    * ((float) vs.getMaxSize()
+                                        + levelSeparation);
+                        break;
+                    case ORIENTATION_SOUTH :
+                        x =
+                            topXAdjustment
+                                + getPrelim(node)
+                                + modifierSum
+                                - getLayoutSize(node) / 2;
+                        y =
+                            topYAdjustment
+                                + l
+                                    * ((float) vs.getMaxSize()
+                                        + levelSeparation);
+                        break;
+                    case ORIENTATION_EAST :
+                        y =
+                            topXAdjustment
+                                + getPrelim(node)
+                                + modifierSum
+                                - getLayoutSize(node) / 2;
+                        x =
+                            topYAdjustment
+                                + l
+                                    * ((float) vs.getMaxSize()
+                                        + levelSeparation);
+                        break;
+                    case ORIENTATION_WEST :
+                        y =
+                            topXAdjustment
+                                + getPrelim(node)
+                                + modifierSum
+                                - getLayoutSize(node) / 2;
+                        x =
+                            topYAdjustment
+                                - l
+                                    * ((float) vs.getMaxSize()
+                                        + levelSeparation);
+                        break;
+                }
 
-            setXCoord(node, x);
-            setYCoord(node, y);
-            // Handle terminal recursion by trying to unroll the final call
-            // to avoid java stack overflow.
-            int right = getRightSibling(node);
-            if (right == Tree.NIL) {
-                if (isLeaf(node)) return;
-                modifierSum += getModifier(node);
-                node = getFirstChild(node);
-                level++;
-            }
-            else {
-                if (! isLeaf(node)) {
-                    secondWalk(
-                            getFirstChild(node),
-                            level + 1,
-                            modifierSum + getModifier(node));
+                setXCoord(node, x);
+                setYCoord(node, y);
+                if (isLeaf(node)) {
+                    return false;
                 }
-                node = right;
+                sums.add(modifierSum + getModifier(node));
+                return true;
             }
-        }
+
+            public void postorder(int node) {
+                sums.remove(sums.size() - 1);
+            }
+        }, node);
     }
 
 }
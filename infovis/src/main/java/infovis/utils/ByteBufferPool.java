@@ -13,16 +13,34 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 import java.util.ArrayList;
-import java.util.NoSuchElementException;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import org.apache.log4j.Logger;
 import cern.colt.list.LongArrayList;
 
 /**
- * <b>ByteBufferPool</b> maintains a LRU pool of ByteBuffer objects.
+ * <b>ByteBufferPool</b> maintains a pool of ByteBuffer objects paged
+ * in and out of a page file.
+ * 
+ * <p>Pages are replaced with the clock algorithm: each page in memory
+ * has a reference bit set when its buffer is accessed and the oldest
+ * page whose bit is cleared is paged out when room is needed.  Pages
+ * are accessed between {@link Ref#pin()} and {@link Ref#unpin()}; a
+ * pinned page is never paged out and pinning a page already in memory
+ * takes no lock, so several threads can read paged columns
+ * concurrently.  The buffers of the pages paged out are reused for the
+ * pages paged in, so direct buffers are allocated once.  Writes to a
+ * page should be done by one thread at a time.
+ * 
+ * <p>The pool returned by {@link #getInstance()} is configured with
+ * the <code>infovis.poolsize</code> system property for its size and
+ * the <code>infovis.pooltype</code> property for its backend:
+ * <code>heap</code> (default), <code>direct</code> for direct buffers
+ * or <code>mapped</code> for a {@link MappedByteBufferPool}.
  * 
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.7 $
@@ -34,17 +52,28 @@ public class ByteBufferPool {
     public static final int             CHUNK_SIZE  = (1 << CHUNK_BITS);
     /** Mask of bits. */
     public static final int             CHUNK_MASK  = (CHUNK_SIZE - 1);
-    protected transient ArrayList       pages;
+    /** Size of a page in bytes. */
+    public static final int             PAGE_SIZE   = 4 * CHUNK_SIZE;
     protected int                       maxPages;
+    protected boolean                   direct;
     // Cacheing mechanism, not to be serialized automatically
-    protected volatile int              lastOffset;
+    protected long                      lastOffset;
     protected volatile RandomAccessFile pageFile;
-    protected transient Ref             header      = new Ref();
+    protected transient Ref[]           frames;
+    protected transient int             hand;
     protected transient int             size;
-    private transient int               lastTime;
-    protected volatile LongArrayList    freeOffsets = new LongArrayList();
-    protected int                       pageInCount;
-    protected int                       pageOutCount;
+    protected LongArrayList             freeOffsets = new LongArrayList();
+    protected transient ArrayList       freeBuffers = new ArrayList();
+    protected volatile int              allocateCount;
+    protected volatile int              pageInCount;
+    protected volatile int              pageOutCount;
+    protected volatile long             missCount;
+    private static final int            STRIPES     = 16;
+    // one counter per cache line to avoid contention between threads
+    private final long[]                hitCounts   = new long[STRIPES * 8];
+
+    private static final AtomicIntegerFieldUpdater PINS
+        = AtomicIntegerFieldUpdater.newUpdater(Ref.class, "pins");
 
     private static ByteBufferPool       INSTANCE;
     private static final Logger         LOG         
@@ -53,7 +82,7 @@ public class ByteBufferPool {
     /**
      * @return the convenient instance
      */
-    public static ByteBufferPool getInstance() {
+    public static synchronized ByteBufferPool getInstance() {
         if (INSTANCE == null) {
             String def = "20m";
             String size = System.getProperty("infovis.poolsize", def);
@@ -84,9 +113,15 @@ public class ByteBufferPool {
             		LOG.warn("Unkown allocation unit: "+c);
             	}
             }
-            LOG.info("Allocating a memory pool of " + s + " cells ("
+            String type = System.getProperty("infovis.pooltype", "heap");
+            LOG.info("Allocating a "+type+" memory pool of " + s + " cells ("
                     + (s * 4 / 1024) + ") Kb");
-            INSTANCE = new ByteBufferPool(s);
+            if ("mapped".equalsIgnoreCase(type)) {
+                INSTANCE = new MappedByteBufferPool(s);
+            }
+            else {
+                INSTANCE = new ByteBufferPool(s, "direct".equalsIgnoreCase(type));
+            }
         }
         return INSTANCE;
     }
@@ -98,8 +133,22 @@ public class ByteBufferPool {
      *            the maximum amount or memory used
      */
     public ByteBufferPool(int maxMemory) {
-        this.maxPages = (maxMemory + CHUNK_SIZE - 1) >> CHUNK_BITS;
-        header.next = header.prev = header;
+        this(maxMemory, false);
+    }
+    
+    /**
+     * Creates a ByteBufferPool with a specified maximum memory,
+     * allocating direct or heap buffers.
+     * 
+     * @param maxMemory
+     *            the maximum amount or memory used
+     * @param direct
+     *            true to allocate direct buffers
+     */
+    public ByteBufferPool(int maxMemory, boolean direct) {
+        this.maxPages = Math.max(1, (maxMemory + CHUNK_SIZE - 1) >> CHUNK_BITS);
+        this.direct = direct;
+        frames = new Ref[maxPages];
     }
     
     /**
@@ -126,7 +175,13 @@ public class ByteBufferPool {
                 file = new File(tmpDir, prefix+i+".tmp");
                 boolean exists = file.exists();
                 ra = new RandomAccessFile(file, "rw");
-                FileLock lock = ra.getChannel().tryLock();
+                FileLock lock;
+                try {
+                    lock = ra.getChannel().tryLock();
+                }
+                catch(OverlappingFileLockException e) {
+                    lock = null; // locked by another pool in this VM
+                }
                 if (lock != null) { 
                     if (exists) {
                         LOG.info("Reusing page file for the ByteBufferPool " + file);
@@ -137,8 +192,10 @@ public class ByteBufferPool {
                     file.deleteOnExit(); // just in case...
                     break;
                 }
-                else
+                else {
+                    ra.close();
                     ra = null;
+                }
             }
         }
         catch(IOException e) {
@@ -149,7 +206,7 @@ public class ByteBufferPool {
         return ra;
     }
 
-    protected RandomAccessFile getPageFile() {
+    protected synchronized RandomAccessFile getPageFile() {
         if (pageFile == null) {
             try {
                 pageFile = openLockPageFile("InfoVis");
@@ -159,7 +216,7 @@ public class ByteBufferPool {
                 LOG.error(msg, e);
                 throw new java.lang.RuntimeException(msg, e);
             }
-            Timer poolTimer = new Timer("InfoVis Pool Monitor");
+            Timer poolTimer = new Timer("InfoVis Pool Monitor", true);
             poolTimer.schedule(new TimerTask() {
                 int inCount = pageInCount;
                 int outCount = pageOutCount;
@@ -169,7 +226,9 @@ public class ByteBufferPool {
                     inCount = pageInCount;
                     outCount = pageOutCount;
                     if (in != 0 || out != 0)
-                        LOG.info("Pool activity: in="+in+" out="+out);
+                        LOG.info("Pool activity: in="+in+" out="+out
+                                +" hits="+getHitCount()
+                                +" misses="+getMissCount());
                 }
             }, 5000, 5000);
         }
@@ -182,16 +241,31 @@ public class ByteBufferPool {
      * @param max
      *            the maximum memory to allocate
      */
-    public void setMaxMemory(int max) {
-        int maxPages = (max + CHUNK_SIZE - 1) >> CHUNK_BITS;
+    public synchronized void setMaxMemory(int max) {
+        int maxPages = Math.max(1, (max + CHUNK_SIZE - 1) >> CHUNK_BITS);
         if (maxPages == this.maxPages)
             return;
-        if (maxPages < this.maxPages) {
-            while (size >= maxPages) {
-                delete(header.prev);
+        while (size > maxPages) {
+            Ref ref = frames[hand];
+            hand = (hand + 1) % frames.length;
+            if (ref != null && ! pageOut(ref) && hand == 0) {
+                Thread.yield(); // pinned pages are released without lock
             }
         }
+        Ref[] newFrames = new Ref[maxPages];
+        int j = 0;
+        for (int i = 0; i < frames.length; i++) {
+            Ref ref = frames[i];
+            if (ref == null) continue;
+            newFrames[j] = ref;
+            ref.frame = j++;
+        }
+        frames = newFrames;
+        hand = 0;
         this.maxPages = maxPages;
+        while (freeBuffers.size() > maxPages) {
+            freeBuffers.remove(freeBuffers.size() - 1);
+        }
     }
 
     /**
@@ -201,6 +275,13 @@ public class ByteBufferPool {
         return maxPages << CHUNK_BITS;
     }
     
+    /**
+     * @return true if the pool allocates direct buffers
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+    
     /**
      * @return the pageInCount
      */
@@ -214,6 +295,62 @@ public class ByteBufferPool {
     public int getPageOutCount() {
         return pageOutCount;
     }
+    
+    /**
+     * Returns the number of buffers allocated, the other page ins
+     * reusing the buffers of pages paged out.
+     * @return the number of buffers allocated
+     */
+    public int getAllocateCount() {
+        return allocateCount;
+    }
+
+    /**
+     * Returns the number of buffers accessed while in memory.
+     * 
+     * <p>The count is kept without synchronization and can miss a
+     * few hits when several threads access the pool.
+     * 
+     * @return the hit count
+     */
+    public long getHitCount() {
+        long hits = 0;
+        for (int i = 0; i < hitCounts.length; i += 8) {
+            hits += hitCounts[i];
+        }
+        return hits;
+    }
+    
+    /**
+     * @return the number of buffers accessed while not in memory
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+    
+    /**
+     * Resets the hit, miss, page in and page out counts.
+     */
+    public synchronized void resetCounts() {
+        for (int i = 0; i < hitCounts.length; i++) {
+            hitCounts[i] = 0;
+        }
+        missCount = 0;
+        pageInCount = 0;
+        pageOutCount = 0;
+    }
+    
+    protected final void hit() {
+        int stripe = (int)Thread.currentThread().getId() & (STRIPES - 1);
+        hitCounts[stripe << 3]++;
+    }
+    
+    /**
+     * @return the number of pages in memory
+     */
+    public int size() {
+        return size;
+    }
 
     /**
      * Creates a new Ref.
@@ -224,22 +361,6 @@ public class ByteBufferPool {
         return new Ref();
     }
 
-    protected boolean unlink(Ref e) {
-        if (e == header) {
-            LOG.error("Trying to unlink the header");
-            throw new NoSuchElementException();
-        }
-        if (e.next == null) {
-            return false;
-        }
-        e.prev.next = e.next;
-        e.next.prev = e.prev;
-        e.next = e.prev = null;
-        size--;
-        // assert(size==computeLength());
-        return true;
-    }
-
     /**
      * Deletes the specified Ref: it is no longer managed by this pool.
      * 
@@ -247,87 +368,72 @@ public class ByteBufferPool {
      *            the Ref
      * @return true if it was managed before, false otherwise
      */
-    public boolean delete(Ref e) {
+    public synchronized boolean delete(Ref e) {
         assert(e.getPool()==this);
+        ByteBuffer chunk = e.buffer;
         boolean ret = unlink(e);
         e.buffer = null;
+        if (ret && e.pins == 0) {
+            freeBuffer(chunk);
+        }
+        freeOffset(e);
+        return ret;
+    }
+    
+    protected void freeOffset(Ref e) {
         if (e.fileOffset != -1) {
             freeOffsets.add(e.fileOffset);
             LOG.info("Reclaiming byte offset " + e.fileOffset);
             e.fileOffset = -1;
         }
-        return ret;
-    }
-
-    protected void addBefore(Ref ref, Ref e) {
-        unlink(ref);
-        ref.next = e;
-        ref.prev = e.prev;
-        ref.prev.next = ref;
-        ref.next.prev = ref;
-        size++;
-        // assert(size==computeLength());
     }
 
-    // private int computeLength() {
-    // int l = 0;
-    // for (Ref r = header.next; r != header; r = r.next) {
-    // l++;
-    // }
-    // return l;
-    // }
-    //    
-    // private boolean checkLastOldest() {
-    // if (size == 0) return true;
-    // int last = header.prev.time;
-    // for (Ref r = header.next; r != header.prev; r = r.next) {
-    // if (last > r.time)
-    // return false;
-    // }
-    //        
-    //        
-    // return true;
-    // }
-    //    
-    protected void moveToFront(Ref ref) {
-        if (header.next == ref)
-            return;
-        addBefore(ref, header.next);
-        ref.time = lastTime++;
-    }
-    
-    protected void moveToBack(Ref ref) {
-        if (header.prev == ref)
-            return;
-        addBefore(ref, header);
+    protected boolean unlink(Ref e) {
+        if (e.frame == -1) {
+            return false;
+        }
+        frames[e.frame] = null;
+        e.frame = -1;
+        size--;
+        return true;
     }
 
-    protected void pageOut(Ref ref) {
+    /**
+     * Pages out a page unless it is pinned, keeping its buffer for
+     * the next page in.
+     * 
+     * @param ref the page
+     * @return true if the page has been paged out, false if it is pinned
+     */
+    protected boolean pageOut(Ref ref) {
         ByteBuffer chunk = ref.buffer;
-        unlink(ref);
+        // Clearing the buffer before checking the pins prevents a
+        // concurrent pin from using it: either the pin sees no buffer
+        // and waits for the lock, or the page is seen pinned.
         ref.buffer = null;
+        if (ref.pins != 0) {
+            ref.buffer = chunk;
+            return false;
+        }
+        unlink(ref);
         if (!ref.isDirty()) {
-            return;
+            freeBuffer(chunk);
+            return true;
         }
 
         try {
             assert (chunk != null);
             long offset = ref.findFileOffset();
             getPageFile();
-            if (pageFile.length() < (offset + CHUNK_SIZE)) {
-                pageFile.setLength(offset + CHUNK_SIZE);
+            if (pageFile.length() < (offset + PAGE_SIZE)) {
+                pageFile.setLength(offset + PAGE_SIZE);
             }
             FileChannel channel = pageFile.getChannel();
-            chunk.position(0);
-            int n = channel.write(chunk, offset);
-            if (n != (CHUNK_SIZE * 4)) {
-                LOG.warn("Wrote only " + n + " bytes instead of "
-                        + (CHUNK_SIZE * 4));
-                while (chunk.remaining() != 0) {
-                    offset += n;
-                    n = channel.write(chunk, offset);
-                    assert (n > 0);
-                }
+            ByteBuffer out = chunk.duplicate();
+            out.clear();
+            while (out.remaining() != 0) {
+                int n = channel.write(out, offset + out.position());
+                assert (n >= 0);
             }
             ref.setDirty(false);
             pageOutCount++;
@@ -336,39 +442,81 @@ public class ByteBufferPool {
             LOG.error(msg);
             throw new RuntimeException(msg, e);
         }
+        freeBuffer(chunk);
+        return true;
+    }
+    
+    /**
+     * Finds an empty frame or frees one, paging out the first page
+     * neither pinned nor referenced since the clock hand last passed it.
+     * 
+     * @return the index of a free frame
+     */
+    protected int findFrame() {
+        if (size < frames.length) {
+            for (int i = 0; i < frames.length; i++) {
+                int f = (hand + i) % frames.length;
+                if (frames[f] == null) {
+                    return f;
+                }
+            }
+        }
+        int passes = 0;
+        while (true) {
+            Ref ref = frames[hand];
+            int f = hand;
+            hand = (hand + 1) % frames.length;
+            if (ref == null) {
+                return f;
+            }
+            if (ref.referenced) {
+                ref.referenced = false;
+            }
+            else if (pageOut(ref)) {
+                return f;
+            }
+            if (hand == 0 && ++passes > 2) {
+                Thread.yield(); // all the pages are pinned
+            }
+        }
+    }
+    
+    protected void freeBuffer(ByteBuffer chunk) {
+        if (chunk != null && freeBuffers.size() < maxPages) {
+            freeBuffers.add(chunk);
+        }
+    }
+    
+    protected ByteBuffer allocate() {
+        if (! freeBuffers.isEmpty()) {
+            ByteBuffer chunk = 
+                (ByteBuffer)freeBuffers.remove(freeBuffers.size() - 1);
+            chunk.clear();
+            return chunk;
+        }
+        allocateCount++;
+        if (direct) {
+            return ByteBuffer.allocateDirect(PAGE_SIZE);
+        }
+        return ByteBuffer.allocate(PAGE_SIZE);
     }
 
-    protected void pageIn(Ref ref) {
-        assert (ref.buffer == null);
-        if (size < maxPages) {
-            ByteBuffer buffer = ByteBuffer.allocate(4 * CHUNK_SIZE);
-            ref.buffer = buffer;
-            ref.setDirty(false);
-            moveToFront(ref);
-            return;
+    protected synchronized ByteBuffer pageIn(Ref ref) {
+        if (ref.buffer != null) { // paged in by another thread
+            return ref.buffer;
         }
-        Ref oldest = header.prev;
-        assert (oldest != null && oldest.buffer != null);
-        // assert(checkLastOldest());
-        ByteBuffer chunk = oldest.buffer;
-        pageOut(oldest);
-        assert (oldest.buffer == null);
-        ref.buffer = chunk;
+        missCount++;
+        int f = findFrame();
+        boolean reused = ! freeBuffers.isEmpty();
+        ByteBuffer chunk = allocate();
         long offset = ref.getFileOffset();
         if (offset >= 0) {
             try {
-                assert (pageFile.length() >= (offset + CHUNK_SIZE));
+                assert (pageFile.length() >= (offset + PAGE_SIZE));
                 FileChannel channel = pageFile.getChannel();
-                chunk.clear();
-                int n = channel.read(chunk, offset);
-                if (n != (CHUNK_SIZE * 4)) {
-                    LOG.warn("Read only " + n + " bytes instead of "
-                            + (CHUNK_SIZE * 4));
-                    while (chunk.remaining() != 0) {
-                        offset += n;
-                        n = channel.read(chunk, offset);
-                        assert (n > 0);
-                    }
+                while (chunk.remaining() != 0) {
+                    int n = channel.read(chunk, offset + chunk.position());
+                    assert (n > 0);
                 }
                 chunk.position(0);
                 assert (!ref.isDirty());
@@ -379,7 +527,31 @@ public class ByteBufferPool {
                 throw new RuntimeException(msg, e);
             }
         }
-        moveToFront(ref);
+        else {
+            if (reused) { // clear the page left by another ref
+                for (int i = 0; i < PAGE_SIZE; i += 8) {
+                    chunk.putLong(i, 0);
+                }
+            }
+            ref.setDirty(false);
+        }
+        frames[f] = ref;
+        ref.frame = f;
+        ref.referenced = true;
+        size++;
+        ref.buffer = chunk;
+        return chunk;
+    }
+
+    protected synchronized ByteBuffer pinIn(Ref ref) {
+        PINS.incrementAndGet(ref);
+        try {
+            return pageIn(ref);
+        }
+        catch(RuntimeException e) {
+            PINS.decrementAndGet(ref);
+            throw e;
+        }
     }
 
     /**
@@ -388,22 +560,16 @@ public class ByteBufferPool {
      * @author Jean-Daniel Fekete
      */
     public class Ref {
-        boolean    dirty;
-        long       fileOffset;
-        ByteBuffer buffer;
-        Ref        next;
-        Ref        prev;
-        int        time;
-
-        private Ref(ByteBuffer buffer, Ref next, Ref prev) {
-            this.fileOffset = -1;
-            this.buffer = buffer;
-            this.next = next;
-            this.prev = prev;
-        }
+        volatile boolean    dirty;
+        volatile boolean    referenced;
+        long                fileOffset;
+        volatile ByteBuffer buffer;
+        volatile int        pins;
+        int                 frame;
 
-        private Ref() {
-            this(null, null, null);
+        Ref() {
+            this.fileOffset = -1;
+            this.frame = -1;
         }
 
         /**
@@ -414,16 +580,56 @@ public class ByteBufferPool {
         }
 
         /**
+         * Returns the buffer, paging it in if needed, and prevents it
+         * from being paged out until {@link #unpin()} is called.
+         * @return the ByteBuffer
+         */
+        public ByteBuffer pin() {
+            PINS.incrementAndGet(this);
+            ByteBuffer b = buffer;
+            if (b == null) {
+                // never wait for the pool lock holding a pin
+                PINS.decrementAndGet(this);
+                return pinIn(this);
+            }
+            if (! referenced) {
+                referenced = true;
+            }
+            hit();
+            return b;
+        }
+
+        /**
+         * Allows the buffer pinned by {@link #pin()} to be paged out.
+         */
+        public void unpin() {
+            PINS.decrementAndGet(this);
+        }
+
+        /**
+         * @return true if the buffer is pinned
+         */
+        public boolean isPinned() {
+            return pins != 0;
+        }
+
+        /**
+         * Returns the buffer without pinning it.  The buffer can be
+         * paged out and reused for another page as soon as another
+         * thread pages in a page, so use {@link #pin()} when the pool
+         * is shared between threads.
          * @return the ByteBuffer or null
          */
         public ByteBuffer getBuffer() {
-            if (buffer == null) {
-                pageIn(this);
+            ByteBuffer b = buffer;
+            if (b == null) {
+                return pageIn(this);
             }
-            else {
-                moveToFront(this);
+            if (! referenced) {
+                referenced = true;
             }
-            return buffer;
+            hit();
+            return b;
         }
         
         /**
@@ -431,16 +637,14 @@ public class ByteBufferPool {
          *
          */
         public void bury() {
-            if (buffer != null) {
-                moveToBack(this);
-            }
+            referenced = false;
         }
 
         /**
-         * Declares the buffer dirty
+         * Declares the buffer dirty.  Should be called while the
+         * buffer is pinned, after it has been modified.
          */
         public void touch() {
-            assert (buffer != null);
             dirty = true;
         }
 
@@ -472,22 +676,22 @@ public class ByteBufferPool {
          * @param dirty
          *            the dirty to set
          */
-        private void setDirty(boolean dirty) {
+        void setDirty(boolean dirty) {
             this.dirty = dirty;
         }
 
         /**
          * @return the fileOffset
          */
-        private long getFileOffset() {
+        long getFileOffset() {
             return fileOffset;
         }
 
-        private long findFileOffset() {
+        long findFileOffset() {
             if (fileOffset == -1) {
                 if (freeOffsets.isEmpty()) {
                     setFileOffset(lastOffset);
-                    lastOffset += CHUNK_SIZE * 4;
+                    lastOffset += PAGE_SIZE;
                 }
                 else {
                     long o = freeOffsets.get(freeOffsets.size() - 1);
@@ -502,7 +706,7 @@ public class ByteBufferPool {
          * @param fileOffset
          *            the fileOffset to set
          */
-        private void setFileOffset(long fileOffset) {
+        void setFileOffset(long fileOffset) {
             this.fileOffset = fileOffset;
         }
     }
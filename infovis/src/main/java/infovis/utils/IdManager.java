@@ -177,6 +177,21 @@ public class IdManager extends IntIntSortedMap {
         return newId;
     }
 
+    /**
+     * Allocates a specified number of consecutive indexes after the
+     * maximum managed index, leaving the free indexes unchanged.
+     * 
+     * @param count
+     *            the number of indexes
+     * @return the first new index
+     */
+    public int newIds(int count) {
+        int first = maxId + 1;
+        maxId += count;
+        assert (checkInvariant());
+        return first;
+    }
+
     /**
      * Returns the number of managed indexes.
      * 
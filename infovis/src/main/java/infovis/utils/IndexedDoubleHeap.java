@@ -0,0 +1,182 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.utils;
+
+import java.util.NoSuchElementException;
+
+/**
+ * <b>IndexedDoubleHeap</b> is a binary min-heap of indices in the range
+ * [0,capacity) ordered by a <code>double</code> key.
+ *
+ * <p>The position of each index in the heap is maintained so the key
+ * of an index can be decreased in logarithmic time, as required by the
+ * algorithm of Dijkstra.  The heap allocates nothing after its
+ * creation and can be reused after {@link #clear()}.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class IndexedDoubleHeap {
+    protected int[]    heap;
+    protected int[]    position;
+    protected double[] keys;
+    protected int      size;
+
+    /**
+     * Creates an empty heap able to hold the indices [0,capacity).
+     * @param capacity the capacity
+     */
+    public IndexedDoubleHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new double[capacity];
+        for (int i = 0; i < capacity; i++) {
+            position[i] = -1;
+        }
+    }
+
+    /**
+     * Returns the capacity of the heap.
+     * @return the capacity of the heap
+     */
+    public int getCapacity() {
+        return heap.length;
+    }
+
+    /**
+     * Returns the number of indices in the heap.
+     * @return the number of indices in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the heap is empty.
+     * @return true if the heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all the indices.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns true if an index is in the heap.
+     * @param index the index
+     * @return true if the index is in the heap
+     */
+    public boolean contains(int index) {
+        return position[index] >= 0;
+    }
+
+    /**
+     * Returns the key of an index in the heap.
+     * @param index the index
+     * @return the key of the index
+     */
+    public double getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Inserts an index with a key, or changes the key of an
+     * index already in the heap when the new key is smaller.
+     * @param index the index
+     * @param key the key
+     * @return true if the heap has been modified
+     */
+    public boolean insert(int index, double key) {
+        int pos = position[index];
+        if (pos < 0) {
+            pos = size++;
+        }
+        else if (key >= keys[index]) {
+            return false;
+        }
+        keys[index] = key;
+        percolateUp(pos, index);
+        return true;
+    }
+
+    /**
+     * Returns the index with the smallest key.
+     * @return the index with the smallest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int peek() throws NoSuchElementException {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return heap[0];
+    }
+
+    /**
+     * Returns and removes the index with the smallest key.
+     * @return the index with the smallest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int pop() throws NoSuchElementException {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size != 0) {
+            percolateDown(0, heap[size]);
+        }
+        return top;
+    }
+
+    private void percolateUp(int i, int index) {
+        double key = keys[index];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            int p = heap[parent];
+            if (keys[p] <= key) {
+                break;
+            }
+            heap[i] = p;
+            position[p] = i;
+            i = parent;
+        }
+        heap[i] = index;
+        position[index] = i;
+    }
+
+    private void percolateDown(int i, int index) {
+        double key = keys[index];
+        int half = size >> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[c]) {
+                child = right;
+                c = heap[child];
+            }
+            if (key <= keys[c]) {
+                break;
+            }
+            heap[i] = c;
+            position[c] = i;
+            i = child;
+        }
+        heap[i] = index;
+        position[index] = i;
+    }
+}
@@ -8,7 +8,6 @@
 package infovis.utils;
 
 import java.awt.*;
-import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
@@ -64,7 +63,8 @@ public abstract class InfovisUtilities {
           graphics.drawImage(img, DILATE_OP, x-1, y-2);
           img.flush();
         }
-        graphics.drawString(
+        LabelCache.getInstance().drawString(
+                graphics,
                 str, 
                 x-(int)labelBounds.getX(),
                 y-(int)labelBounds.getY());
@@ -77,8 +77,7 @@ public abstract class InfovisUtilities {
             float hjustif, 
             float vjustif,
             boolean outlined) {
-        FontMetrics fm = graphics.getFontMetrics();
-        Rectangle2D labelBounds = fm.getStringBounds(str, graphics);
+        Rectangle2D labelBounds = LabelCache.getInstance().getStringBounds(graphics, str);
         drawString(graphics, str, labelBounds, bounds, hjustif, vjustif, outlined);
     }
     
@@ -110,8 +109,7 @@ public abstract class InfovisUtilities {
             float hjustif, 
             float vjustif,
             boolean outlined) {
-        FontMetrics fm = graphics.getFontMetrics();
-        Rectangle2D labelBounds = fm.getStringBounds(str, graphics);
+        Rectangle2D labelBounds = LabelCache.getInstance().getStringBounds(graphics, str);
         drawStringVertical(
                 graphics, 
                 str, 
@@ -0,0 +1,272 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.utils;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Rectangle2D;
+import java.text.Bidi;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <b>LabelCache</b> keeps the bounds and the glyphs of the most
+ * recently used strings for each font, to avoid measuring and laying
+ * out the same labels at each layout and repaint.
+ *
+ * <p>Entries are keyed by font, string and the antialiasing and
+ * fractional metrics of the FontRenderContext; the transform of the
+ * context is ignored so the same entries are used at all zoom levels.
+ * The least recently used entries are discarded when the capacity is
+ * reached.  Strings requiring bidirectional layout are measured but
+ * drawn with <code>drawString</code>.
+ *
+ * <p>The cache is synchronized since layouts can be computed in
+ * background threads.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class LabelCache {
+    /** Default number of entries. */
+    public static final int   DEFAULT_CAPACITY = 65536;
+    private static LabelCache instance = new LabelCache(DEFAULT_CAPACITY);
+    protected int             capacity;
+    protected LinkedHashMap   map;
+    protected Key             probe = new Key();
+    protected FontRenderContext lastContext;
+    protected FontRenderContext lastNormalized;
+    protected int             hitCount;
+    protected int             missCount;
+
+    static class Key {
+        Font              font;
+        FontRenderContext frc;
+        String            string;
+        int               hash;
+
+        void set(Font font, FontRenderContext frc, String string) {
+            this.font = font;
+            this.frc = frc;
+            this.string = string;
+            this.hash = (font.hashCode() * 31 + frc.hashCode()) * 31
+                + string.hashCode();
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object obj) {
+            if (! (obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash
+                && string.equals(other.string)
+                && font.equals(other.font)
+                && frc.equals(other.frc);
+        }
+    }
+
+    static class Entry {
+        Rectangle2D bounds;
+        GlyphVector glyphs;
+    }
+
+    /**
+     * Returns the shared instance of the LabelCache.
+     * @return the shared instance of the LabelCache
+     */
+    public static LabelCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Sets the shared instance of the LabelCache.
+     * @param cache the LabelCache
+     */
+    public static void setInstance(LabelCache cache) {
+        instance = cache;
+    }
+
+    /**
+     * Creates a LabelCache with a specified capacity.
+     * @param capacity the maximum number of entries
+     */
+    public LabelCache(int capacity) {
+        this.capacity = capacity;
+        this.map = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > LabelCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     * @return the maximum number of entries
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the maximum number of entries, discarding the least
+     * recently used ones if needed.
+     * @param capacity the maximum number of entries
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        if (map.size() > capacity) {
+            map.clear();
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns the number of lookups that found their entry.
+     * @return the number of lookups that found their entry
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that created their entry.
+     * @return the number of lookups that created their entry
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    protected FontRenderContext normalize(FontRenderContext frc) {
+        if (frc != lastContext) {
+            lastContext = frc;
+            lastNormalized = frc.isTransformed()
+                ? new FontRenderContext(
+                        null,
+                        frc.getAntiAliasingHint(),
+                        frc.getFractionalMetricsHint())
+                : frc;
+        }
+        return lastNormalized;
+    }
+
+    protected Entry getEntry(Font font, FontRenderContext frc, String s) {
+        frc = normalize(frc);
+        probe.set(font, frc, s);
+        Entry e = (Entry) map.get(probe);
+        if (e != null) {
+            hitCount++;
+            return e;
+        }
+        missCount++;
+        e = new Entry();
+        e.bounds = font.getStringBounds(s, frc);
+        Key key = new Key();
+        key.set(font, frc, s);
+        map.put(key, e);
+        return e;
+    }
+
+    /**
+     * Returns the bounds of a string.
+     * BEWARE! the rectangle is shared and should only be read.
+     * @param font the font
+     * @param frc the FontRenderContext
+     * @param s the string
+     * @return the bounds of the string
+     */
+    public synchronized Rectangle2D getStringBounds(
+            Font font,
+            FontRenderContext frc,
+            String s) {
+        return getEntry(font, frc, s).bounds;
+    }
+
+    /**
+     * Returns the bounds of a string drawn with the current font of
+     * a graphics.
+     * BEWARE! the rectangle is shared and should only be read.
+     * @param graphics the graphics
+     * @param s the string
+     * @return the bounds of the string
+     */
+    public Rectangle2D getStringBounds(Graphics2D graphics, String s) {
+        return getStringBounds(
+                graphics.getFont(),
+                graphics.getFontRenderContext(),
+                s);
+    }
+
+    /**
+     * Returns the glyphs of a string laid out from left to right, or
+     * null if the string requires a bidirectional layout.
+     * @param font the font
+     * @param frc the FontRenderContext
+     * @param s the string
+     * @return the glyphs of the string or null
+     */
+    public synchronized GlyphVector getGlyphVector(
+            Font font,
+            FontRenderContext frc,
+            String s) {
+        Entry e = getEntry(font, frc, s);
+        if (e.glyphs == null) {
+            char[] chars = s.toCharArray();
+            if (Bidi.requiresBidi(chars, 0, chars.length)) {
+                return null;
+            }
+            e.glyphs = font.layoutGlyphVector(
+                    normalize(frc),
+                    chars,
+                    0,
+                    chars.length,
+                    Font.LAYOUT_LEFT_TO_RIGHT);
+        }
+        return e.glyphs;
+    }
+
+    /**
+     * Draws a string with the current font and color of a graphics,
+     * using the cached glyphs when possible.
+     * @param graphics the graphics
+     * @param s the string
+     * @param x the X coordinate of the baseline
+     * @param y the Y coordinate of the baseline
+     */
+    public void drawString(Graphics2D graphics, String s, float x, float y) {
+        GlyphVector glyphs = getGlyphVector(
+                graphics.getFont(),
+                graphics.getFontRenderContext(),
+                s);
+        if (glyphs == null) {
+            graphics.drawString(s, x, y);
+        }
+        else {
+            graphics.drawGlyphVector(glyphs, x, y);
+        }
+    }
+}
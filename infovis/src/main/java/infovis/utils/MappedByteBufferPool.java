@@ -0,0 +1,128 @@
+/*****************************************************************************
+ * Copyright (C) 2007 Jean-Daniel Fekete and INRIA, France                  *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license.txt file.                                                         *
+ *****************************************************************************/
+package infovis.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <b>MappedByteBufferPool</b> is a ByteBufferPool that memory-maps its
+ * page file.
+ * 
+ * <p>The page file is mapped in large regions and each page is a
+ * slice of its region, allocated once and kept as long as the page is
+ * not deleted.  Paging in and out is left to the operating system so
+ * the maximum memory only hints at the expected working set.  Pages
+ * are never moved so any number of threads can read them; writes
+ * should be done by one thread at a time.
+ * 
+ * <p>The page in count is the number of regions mapped and the miss
+ * count the number of pages sliced.
+ * 
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class MappedByteBufferPool extends ByteBufferPool {
+    /** Number of bits of a region. */
+    public static final int REGION_BITS = 26;
+    /** Size of a mapped region in bytes. */
+    public static final int REGION_SIZE = 1 << REGION_BITS;
+    protected ArrayList     regions     = new ArrayList();
+    private static final Logger LOG 
+        = Logger.getLogger(MappedByteBufferPool.class);
+
+    /**
+     * Creates a MappedByteBufferPool with a specified expected memory.
+     * 
+     * @param maxMemory
+     *            the expected amount of memory used
+     */
+    public MappedByteBufferPool(int maxMemory) {
+        super(maxMemory, true);
+        frames = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void setMaxMemory(int max) {
+        maxPages = Math.max(1, (max + CHUNK_SIZE - 1) >> CHUNK_BITS);
+    }
+
+    /**
+     * Returns the number of regions mapped.
+     * @return the number of regions mapped
+     */
+    public int getRegionCount() {
+        return regions.size();
+    }
+
+    protected MappedByteBuffer getRegion(int r) {
+        while (regions.size() <= r) {
+            regions.add(null);
+        }
+        MappedByteBuffer region = (MappedByteBuffer)regions.get(r);
+        if (region == null) {
+            try {
+                FileChannel channel = getPageFile().getChannel();
+                region = channel.map(
+                        FileChannel.MapMode.READ_WRITE,
+                        ((long)r) << REGION_BITS,
+                        REGION_SIZE);
+            }
+            catch(IOException e) {
+                String msg = "Error mapping page file";
+                LOG.error(msg, e);
+                throw new RuntimeException(msg, e);
+            }
+            regions.set(r, region);
+            pageInCount++;
+        }
+        return region;
+    }
+
+    protected synchronized ByteBuffer pageIn(Ref ref) {
+        if (ref.buffer != null) {
+            return ref.buffer;
+        }
+        missCount++;
+        boolean reused = ! freeOffsets.isEmpty();
+        long offset = ref.findFileOffset();
+        ByteBuffer region = getRegion((int)(offset >> REGION_BITS)).duplicate();
+        int start = (int)(offset & (REGION_SIZE - 1));
+        region.limit(start + PAGE_SIZE);
+        region.position(start);
+        ByteBuffer chunk = region.slice();
+        if (reused) { // clear the page left by a deleted ref
+            for (int i = 0; i < PAGE_SIZE; i += 8) {
+                chunk.putLong(i, 0);
+            }
+        }
+        ref.buffer = chunk;
+        size++;
+        return chunk;
+    }
+
+    protected boolean pageOut(Ref ref) {
+        // the operating system writes the pages back
+        return true;
+    }
+
+    protected boolean unlink(Ref e) {
+        if (e.buffer == null) {
+            return false;
+        }
+        size--;
+        return true;
+    }
+}
@@ -18,6 +18,9 @@ import java.util.HashSet;
  * <p>Improves speed by avoiding garbage collection of
  * rectangles that are used extensively by the toolkit.
  * 
+ * <p>The pool is synchronized since layouts can be computed
+ * in background threads.
+ * 
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.7 $
  */
@@ -75,7 +78,7 @@ public class RectPool {
      * Returns an available rectangle from the pool.
      * @return an available rectangle from the pool.
      */
-    public Rectangle2D.Float allocate() {
+    public synchronized Rectangle2D.Float allocate() {
         Rectangle2D.Float r;
         if (freeList.isEmpty()) {
             r = new Rectangle2D.Float();
@@ -108,7 +111,7 @@ public class RectPool {
      * if it is a rectangle.
      * @param r the shape
      */
-    public void free(Shape r) {
+    public synchronized void free(Shape r) {
         if (enabled
                 && r != null
                 && r instanceof Rectangle2D.Float) {
@@ -155,7 +158,7 @@ public class RectPool {
     /**
      * Clears the whole pool.
      */
-    public void reset() {
+    public synchronized void reset() {
         freeList = new ArrayList();
         if (debug != null) {
             debug = new HashSet();
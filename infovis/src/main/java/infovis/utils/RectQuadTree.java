@@ -0,0 +1,522 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.utils;
+
+import infovis.column.ShapeColumn;
+
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+
+import cern.colt.list.IntArrayList;
+
+/**
+ * <b>RectQuadTree</b> is a spatial index maintaining the bounding
+ * boxes of a set of rows and allowing fast retrieval of the rows
+ * whose box intersects a query rectangle.
+ *
+ * <p>Unlike {@link QuadTree}, which stores weighted points for
+ * force computations, each row is stored in the deepest node whose
+ * quadrant fully contains its box.  Boxes that fall outside of the
+ * root bounds, for instance after an incremental update, are kept
+ * in the root node so the index remains correct without being
+ * rebuilt.
+ *
+ * <p>Queries return candidate rows in no particular order;
+ * intersections are computed on bounding boxes and are inclusive
+ * so that degenerate boxes, such as those of horizontal or vertical
+ * lines, are found.  {@link #nearest(Rectangle2D, double, double, int, IntArrayList)}
+ * returns the rows whose box center is the closest to a point,
+ * visiting the nodes nearest first and pruning the ones farther
+ * than the current candidates.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class RectQuadTree {
+    /** Maximum depth of the tree. */
+    public static final int MAX_DEPTH = 16;
+    /** Number of rows a leaf holds before being split. */
+    public static final int SPLIT_THRESHOLD = 16;
+
+    protected Node      root;
+    /** Boxes stored as xmin, ymin, xmax, ymax for each row. */
+    protected float[]   boxes = new float[0];
+    protected int       count;
+    protected int[]     heapRows = new int[0];
+    protected double[]  heapDist = new double[0];
+    protected int       heapSize;
+    // Children distances and visiting order, four slots per depth
+    protected double[]  nearestDist = new double[4 * (MAX_DEPTH + 1)];
+    protected int[]     nearestOrder = new int[4 * (MAX_DEPTH + 1)];
+
+    /**
+     * Node of the tree.
+     */
+    protected static class Node {
+        final double      xmin;
+        final double      ymin;
+        final double      xmax;
+        final double      ymax;
+        final int         depth;
+        final IntArrayList rows = new IntArrayList(4);
+        Node[]            children;
+
+        Node(double xmin, double ymin, double xmax, double ymax, int depth) {
+            this.xmin = xmin;
+            this.ymin = ymin;
+            this.xmax = xmax;
+            this.ymax = ymax;
+            this.depth = depth;
+        }
+
+        double getCenterX() {
+            return (xmin + xmax) / 2;
+        }
+
+        double getCenterY() {
+            return (ymin + ymax) / 2;
+        }
+
+        boolean contains(float x0, float y0, float x1, float y1) {
+            return x0 >= xmin && y0 >= ymin && x1 <= xmax && y1 <= ymax;
+        }
+
+        boolean intersects(double x0, double y0, double x1, double y1) {
+            return x0 <= xmax && x1 >= xmin && y0 <= ymax && y1 >= ymin;
+        }
+
+        double distance2(double x, double y) {
+            double dx = Math.max(Math.max(xmin - x, x - xmax), 0);
+            double dy = Math.max(Math.max(ymin - y, y - ymax), 0);
+            return dx * dx + dy * dy;
+        }
+
+        /**
+         * Returns the index of the child fully containing the
+         * specified box, or -1 if the box straddles the center.
+         */
+        int quadrant(float x0, float y0, float x1, float y1) {
+            double cx = getCenterX();
+            double cy = getCenterY();
+            int q;
+            if (x1 <= cx) {
+                q = 0;
+            }
+            else if (x0 >= cx) {
+                q = 1;
+            }
+            else {
+                return -1;
+            }
+            if (y1 <= cy) {
+                return q;
+            }
+            else if (y0 >= cy) {
+                return q + 2;
+            }
+            return -1;
+        }
+
+        void split() {
+            double cx = getCenterX();
+            double cy = getCenterY();
+            children = new Node[4];
+            children[0] = new Node(xmin, ymin, cx, cy, depth + 1);
+            children[1] = new Node(cx, ymin, xmax, cy, depth + 1);
+            children[2] = new Node(xmin, cy, cx, ymax, depth + 1);
+            children[3] = new Node(cx, cy, xmax, ymax, depth + 1);
+        }
+    }
+
+    /**
+     * Creates an empty RectQuadTree covering the specified bounds.
+     * @param bounds the bounds of the root node
+     */
+    public RectQuadTree(Rectangle2D bounds) {
+        root = new Node(
+                bounds.getMinX(), bounds.getMinY(),
+                bounds.getMaxX(), bounds.getMaxY(),
+                0);
+    }
+
+    /**
+     * Builds a RectQuadTree from the shapes of a ShapeColumn.
+     * @param shapes the ShapeColumn
+     * @return a RectQuadTree indexing the defined shapes of the column
+     */
+    public static RectQuadTree build(ShapeColumn shapes) {
+        Rectangle2D.Float bounds = shapes.getBounds();
+        RectQuadTree tree = new RectQuadTree(bounds);
+        RectPool.freeRect(bounds);
+        tree.ensureCapacity(shapes.size());
+        for (RowIterator iter = shapes.iterator(); iter.hasNext(); ) {
+            int row = iter.nextRow();
+            tree.put(row, shapes.get(row));
+        }
+        return tree;
+    }
+
+    protected void ensureCapacity(int rows) {
+        if (boxes.length >= rows * 4) return;
+        int newSize = Math.max(rows * 4, boxes.length * 2);
+        float[] b = new float[newSize];
+        System.arraycopy(boxes, 0, b, 0, boxes.length);
+        for (int i = boxes.length; i < newSize; i += 4) {
+            b[i] = Float.NaN;
+        }
+        boxes = b;
+    }
+
+    /**
+     * Returns the number of rows in the index.
+     * @return the number of rows in the index
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns true if the specified row is indexed.
+     * @param row the row
+     * @return true if the specified row is indexed
+     */
+    public boolean contains(int row) {
+        int i = row * 4;
+        return i >= 0 && i < boxes.length && !Float.isNaN(boxes[i]);
+    }
+
+    /**
+     * Inserts or updates the box of a specified row.
+     *
+     * @param row the row
+     * @param s the shape of the row or <code>null</code>
+     * to remove it from the index
+     */
+    public void put(int row, Shape s) {
+        remove(row);
+        if (s == null) return;
+        float x0, y0, x1, y1;
+        if (s instanceof Rectangle2D.Float) {
+            Rectangle2D.Float r = (Rectangle2D.Float) s;
+            x0 = r.x;
+            y0 = r.y;
+            x1 = r.x + r.width;
+            y1 = r.y + r.height;
+        }
+        else {
+            Rectangle2D r = s.getBounds2D();
+            x0 = (float)r.getMinX();
+            y0 = (float)r.getMinY();
+            x1 = (float)r.getMaxX();
+            y1 = (float)r.getMaxY();
+        }
+        if (Float.isNaN(x0) || Float.isNaN(y0)) return;
+        ensureCapacity(row + 1);
+        int i = row * 4;
+        boxes[i] = x0;
+        boxes[i+1] = y0;
+        boxes[i+2] = x1;
+        boxes[i+3] = y1;
+        count++;
+        insert(row, x0, y0, x1, y1);
+    }
+
+    protected void insert(int row, float x0, float y0, float x1, float y1) {
+        Node node = root;
+        if (node.contains(x0, y0, x1, y1)) {
+            while (node.children != null) {
+                int q = node.quadrant(x0, y0, x1, y1);
+                if (q < 0) break;
+                node = node.children[q];
+            }
+        }
+        node.rows.add(row);
+        if (node.children == null
+                && node.rows.size() > SPLIT_THRESHOLD
+                && node.depth < MAX_DEPTH) {
+            pushDown(node);
+        }
+    }
+
+    protected void pushDown(Node node) {
+        node.split();
+        IntArrayList rows = node.rows;
+        int kept = 0;
+        for (int j = 0; j < rows.size(); j++) {
+            int row = rows.getQuick(j);
+            int i = row * 4;
+            float x0 = boxes[i];
+            float y0 = boxes[i+1];
+            float x1 = boxes[i+2];
+            float y1 = boxes[i+3];
+            int q = -1;
+            if (node != root || node.contains(x0, y0, x1, y1)) {
+                q = node.quadrant(x0, y0, x1, y1);
+            }
+            if (q < 0) {
+                rows.setQuick(kept++, row);
+            }
+            else {
+                node.children[q].rows.add(row);
+            }
+        }
+        rows.setSize(kept);
+        for (int q = 0; q < 4; q++) {
+            Node child = node.children[q];
+            if (child.rows.size() > SPLIT_THRESHOLD
+                    && child.depth < MAX_DEPTH) {
+                pushDown(child);
+            }
+        }
+    }
+
+    /**
+     * Removes a specified row from the index.
+     * @param row the row
+     */
+    public void remove(int row) {
+        if (!contains(row)) return;
+        int i = row * 4;
+        float x0 = boxes[i];
+        float y0 = boxes[i+1];
+        float x1 = boxes[i+2];
+        float y1 = boxes[i+3];
+        boxes[i] = Float.NaN;
+        count--;
+        Node node = root;
+        if (node.contains(x0, y0, x1, y1)) {
+            while (node.children != null) {
+                int q = node.quadrant(x0, y0, x1, y1);
+                if (q < 0) break;
+                node = node.children[q];
+            }
+        }
+        IntArrayList rows = node.rows;
+        int j = rows.indexOf(row);
+        if (j >= 0) {
+            int last = rows.size() - 1;
+            rows.setQuick(j, rows.getQuick(last));
+            rows.setSize(last);
+        }
+    }
+
+    /**
+     * Removes all the rows from the index.
+     */
+    public void clear() {
+        root = new Node(root.xmin, root.ymin, root.xmax, root.ymax, 0);
+        boxes = new float[0];
+        count = 0;
+    }
+
+    /**
+     * Collects the rows whose bounding box intersects the
+     * specified rectangle.
+     *
+     * @param rect the query rectangle
+     * @param result a list to add the rows to or <code>null</code>
+     * @return the list of rows
+     */
+    public IntArrayList query(Rectangle2D rect, IntArrayList result) {
+        if (result == null) {
+            result = new IntArrayList();
+        }
+        double x0 = rect.getMinX();
+        double y0 = rect.getMinY();
+        double x1 = rect.getMaxX();
+        double y1 = rect.getMaxY();
+        // The root may contain boxes outside of its bounds
+        collect(root, x0, y0, x1, y1, result);
+        if (root.children != null) {
+            query(root.children, x0, y0, x1, y1, result);
+        }
+        return result;
+    }
+
+    protected void query(
+            Node[] children,
+            double x0, double y0, double x1, double y1,
+            IntArrayList result) {
+        for (int q = 0; q < 4; q++) {
+            Node node = children[q];
+            if (!node.intersects(x0, y0, x1, y1)) continue;
+            collect(node, x0, y0, x1, y1, result);
+            if (node.children != null) {
+                query(node.children, x0, y0, x1, y1, result);
+            }
+        }
+    }
+
+    protected void collect(
+            Node node,
+            double x0, double y0, double x1, double y1,
+            IntArrayList result) {
+        IntArrayList rows = node.rows;
+        for (int j = 0; j < rows.size(); j++) {
+            int row = rows.getQuick(j);
+            int i = row * 4;
+            if (boxes[i] <= x1 && boxes[i+2] >= x0
+                    && boxes[i+1] <= y1 && boxes[i+3] >= y0) {
+                result.add(row);
+            }
+        }
+    }
+
+    /**
+     * Collects the rows whose bounding box intersects the
+     * specified rectangle and whose box center is among the
+     * <code>k</code> closest to a specified point.
+     *
+     * <p>The rows are added to the result sorted by increasing
+     * distance, ties being sorted by increasing row.
+     *
+     * @param rect the query rectangle
+     * @param x the X coordinate of the point
+     * @param y the Y coordinate of the point
+     * @param k the maximum number of rows
+     * @param result a list to add the rows to or <code>null</code>
+     * @return the list of rows
+     */
+    public IntArrayList nearest(
+            Rectangle2D rect,
+            double x, double y,
+            int k,
+            IntArrayList result) {
+        if (result == null) {
+            result = new IntArrayList(k);
+        }
+        if (k <= 0) {
+            return result;
+        }
+        if (heapRows.length < k) {
+            heapRows = new int[k];
+            heapDist = new double[k];
+        }
+        heapSize = 0;
+        double x0 = rect.getMinX();
+        double y0 = rect.getMinY();
+        double x1 = rect.getMaxX();
+        double y1 = rect.getMaxY();
+        // The root may contain boxes outside of its bounds
+        collectNearest(root, x0, y0, x1, y1, x, y, k);
+        if (root.children != null) {
+            nearest(root.children, x0, y0, x1, y1, x, y, k);
+        }
+        int start = result.size();
+        int n = heapSize;
+        result.setSize(start + n);
+        while (heapSize > 0) {
+            result.setQuick(start + heapSize - 1, heapRows[0]);
+            heapRemoveTop();
+        }
+        return result;
+    }
+
+    protected void nearest(
+            Node[] children,
+            double x0, double y0, double x1, double y1,
+            double x, double y,
+            int k) {
+        double[] dist = nearestDist;
+        int[] order = nearestOrder;
+        // the slots of this level are not used by the deeper calls
+        int base = 4 * children[0].depth;
+        for (int q = 0; q < 4; q++) {
+            dist[base + q] = children[q].distance2(x, y);
+            order[base + q] = q;
+        }
+        // insertion sort of the four children by distance
+        for (int i = 1; i < 4; i++) {
+            int q = order[base + i];
+            int j = i;
+            while (j > 0 && dist[base + order[base + j-1]] > dist[base + q]) {
+                order[base + j] = order[base + j-1];
+                j--;
+            }
+            order[base + j] = q;
+        }
+        for (int i = 0; i < 4; i++) {
+            int q = order[base + i];
+            if (heapSize == k && dist[base + q] > heapDist[0]) {
+                return;
+            }
+            Node node = children[q];
+            if (!node.intersects(x0, y0, x1, y1)) continue;
+            collectNearest(node, x0, y0, x1, y1, x, y, k);
+            if (node.children != null) {
+                nearest(node.children, x0, y0, x1, y1, x, y, k);
+            }
+        }
+    }
+
+    protected void collectNearest(
+            Node node,
+            double x0, double y0, double x1, double y1,
+            double x, double y,
+            int k) {
+        IntArrayList rows = node.rows;
+        for (int j = 0; j < rows.size(); j++) {
+            int row = rows.getQuick(j);
+            int i = row * 4;
+            if (boxes[i] <= x1 && boxes[i+2] >= x0
+                    && boxes[i+1] <= y1 && boxes[i+3] >= y0) {
+                double dx = (boxes[i] + boxes[i+2]) / 2 - x;
+                double dy = (boxes[i+1] + boxes[i+3]) / 2 - y;
+                double d = dx * dx + dy * dy;
+                if (heapSize < k) {
+                    heapInsert(row, d);
+                }
+                else if (before(row, d, heapRows[0], heapDist[0])) {
+                    heapRemoveTop();
+                    heapInsert(row, d);
+                }
+            }
+        }
+    }
+
+    private static boolean before(int r1, double d1, int r2, double d2) {
+        return d1 < d2 || (d1 == d2 && r1 < r2);
+    }
+
+    // Max-heap of the k best candidates, the farthest at the top
+    private void heapInsert(int row, double d) {
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!before(heapRows[parent], heapDist[parent], row, d)) break;
+            heapRows[i] = heapRows[parent];
+            heapDist[i] = heapDist[parent];
+            i = parent;
+        }
+        heapRows[i] = row;
+        heapDist[i] = d;
+    }
+
+    private void heapRemoveTop() {
+        int n = --heapSize;
+        if (n == 0) return;
+        int row = heapRows[n];
+        double d = heapDist[n];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) break;
+            if (child + 1 < n
+                    && before(heapRows[child], heapDist[child],
+                            heapRows[child+1], heapDist[child+1])) {
+                child++;
+            }
+            if (!before(row, d, heapRows[child], heapDist[child])) break;
+            heapRows[i] = heapRows[child];
+            heapDist[i] = heapDist[child];
+            i = child;
+        }
+        heapRows[i] = row;
+        heapDist[i] = d;
+    }
+}
@@ -8,6 +8,7 @@
 package infovis.utils;
 
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Font;
@@ -26,6 +27,7 @@ import java.awt.RenderingHints.Key;
 import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.awt.image.ImageObserver;
@@ -36,6 +38,13 @@ import java.util.Map;
 
 /**
  * <b>RowBufferGraphics2D</b> store rows (ints) for each object drawn.
+ *
+ * <p>Each pixel of the backing image holds the row set by
+ * {@link #setItem(int)} when it was last drawn, or -1 where nothing
+ * has been drawn since {@link #clear()}; use
+ * {@link #getRowAt(int, int)} to read it back.
+ * Colors, paints and composites are ignored and images are replaced
+ * by the area they cover.
  * 
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.1 $
@@ -67,7 +76,7 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
      */
     public RowBufferGraphics2D(int width, int height) {
         this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        this.graphics = image.createGraphics();
+        this.graphics = createGraphics(image);
         this.lens = new Rectangle(0, 0, width, height);
     }
     
@@ -77,9 +86,27 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
      */
     public RowBufferGraphics2D(Rectangle lens) {
         this.image = new BufferedImage(lens.width, lens.height, BufferedImage.TYPE_INT_ARGB);
-        this.graphics = image.createGraphics();
+        this.graphics = createGraphics(image);
         setLens(lens);
     }
+
+    /**
+     * Creates the graphics drawing in the backing image, storing
+     * the row colors without blending or antialiasing.
+     * @param image the backing image
+     * @return the graphics
+     */
+    protected static Graphics2D createGraphics(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.setRenderingHint(
+                RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_OFF);
+        g.setRenderingHint(
+                RenderingHints.KEY_TEXT_ANTIALIASING,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        return g;
+    }
     
     /**
      * Clears the current lens.
@@ -116,11 +143,34 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
             graphics.dispose();
             image.flush();
             image = new BufferedImage(lens.width, lens.height, BufferedImage.TYPE_INT_ARGB);
-            this.graphics = image.createGraphics(); 
+            this.graphics = createGraphics(image);
             graphics.setTransform(new AffineTransform(1, 0, 0, 1, lens.x, lens.y));
         }
     }
     
+    /**
+     * Returns the backing image.
+     * @return the backing image
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns the row stored at a specified position of the
+     * backing image, or -1 if no row has been drawn there or if
+     * the position is outside of the image.
+     * @param x the X coordinate in the image
+     * @param y the Y coordinate in the image
+     * @return the row or -1
+     */
+    public int getRowAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= image.getWidth() || y >= image.getHeight()) {
+            return -1;
+        }
+        return image.getRGB(x, y);
+    }
+
     /**
      * @return the proxy graphics
      */
@@ -139,7 +189,7 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
      * @param item the item to set
      */
     public void setItem(int item) {
-        if (this.row != item) {
+        if (this.row != item || rowColor == null) {
             this.row = item;
             this.rowColor = new Color(item, true);
             getGraphics().setColor(this.rowColor);
@@ -348,7 +398,30 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
      * {@inheritDoc}
      */
     public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
-        getGraphics().drawImage(img, op, x, y);
+        getGraphics().fillRect(x, y, img.getWidth(), img.getHeight());
+    }
+
+    protected boolean fillImage(Image img, AffineTransform xform, ImageObserver obs) {
+        int w = img.getWidth(obs);
+        int h = img.getHeight(obs);
+        if (w < 0 || h < 0) {
+            return false;
+        }
+        Shape s = new Rectangle(0, 0, w, h);
+        if (xform != null) {
+            s = xform.createTransformedShape(s);
+        }
+        getGraphics().fill(s);
+        return true;
+    }
+
+    protected boolean fillImage(int dx1, int dy1, int dx2, int dy2) {
+        getGraphics().fillRect(
+                Math.min(dx1, dx2),
+                Math.min(dy1, dy2),
+                Math.abs(dx2 - dx1),
+                Math.abs(dy2 - dy1));
+        return true;
     }
 
     /**
@@ -359,7 +432,7 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
      * @see java.awt.Graphics2D#drawImage(java.awt.Image, java.awt.geom.AffineTransform, java.awt.image.ImageObserver)
      */
     public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) {
-        return getGraphics().drawImage(img, xform, obs);
+        return fillImage(img, xform, obs);
     }
 
     /**
@@ -377,7 +450,7 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
             int y,
             Color bgcolor,
             ImageObserver observer) {
-        return getGraphics().drawImage(img, x, y, bgcolor, observer);
+        return fillImage(img, AffineTransform.getTranslateInstance(x, y), observer);
     }
 
     /**
@@ -389,7 +462,7 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
      * @see java.awt.Graphics#drawImage(java.awt.Image, int, int, java.awt.image.ImageObserver)
      */
     public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
-        return getGraphics().drawImage(img, x, y, observer);
+        return fillImage(img, AffineTransform.getTranslateInstance(x, y), observer);
     }
 
     /**
@@ -411,7 +484,7 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
             int height,
             Color bgcolor,
             ImageObserver observer) {
-        return getGraphics().drawImage(img, x, y, width, height, bgcolor, observer);
+        return fillImage(x, y, x + width, y + height);
     }
 
     /**
@@ -431,7 +504,7 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
             int width,
             int height,
             ImageObserver observer) {
-        return getGraphics().drawImage(img, x, y, width, height, observer);
+        return fillImage(x, y, x + width, y + height);
     }
 
     /**
@@ -461,18 +534,7 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
             int sy2,
             Color bgcolor,
             ImageObserver observer) {
-        return getGraphics().drawImage(
-                img,
-                dx1,
-                dy1,
-                dx2,
-                dy2,
-                sx1,
-                sy1,
-                sx2,
-                sy2,
-                bgcolor,
-                observer);
+        return fillImage(dx1, dy1, dx2, dy2);
     }
 
     /**
@@ -500,17 +562,7 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
             int sx2,
             int sy2,
             ImageObserver observer) {
-        return getGraphics().drawImage(
-                img,
-                dx1,
-                dy1,
-                dx2,
-                dy2,
-                sx1,
-                sy1,
-                sx2,
-                sy2,
-                observer);
+        return fillImage(dx1, dy1, dx2, dy2);
     }
 
     /**
@@ -580,7 +632,9 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
      * @see java.awt.Graphics2D#drawRenderableImage(java.awt.image.renderable.RenderableImage, java.awt.geom.AffineTransform)
      */
     public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
-        getGraphics().drawRenderableImage(img, xform);
+        Shape s = new Rectangle2D.Float(
+                img.getMinX(), img.getMinY(), img.getWidth(), img.getHeight());
+        getGraphics().fill(xform.createTransformedShape(s));
     }
 
     /**
@@ -589,7 +643,9 @@ public class RowBufferGraphics2D extends Graphics2D implements Cloneable {
      * @see java.awt.Graphics2D#drawRenderedImage(java.awt.image.RenderedImage, java.awt.geom.AffineTransform)
      */
     public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
-        getGraphics().drawRenderedImage(img, xform);
+        Shape s = new Rectangle(
+                img.getMinX(), img.getMinY(), img.getWidth(), img.getHeight());
+        getGraphics().fill(xform.createTransformedShape(s));
     }
 
     /**
@@ -0,0 +1,154 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.utils;
+
+/**
+ * <b>StringIntMap</b> is a hash map associating strings to ints
+ * without boxing the values.
+ *
+ * <p>It uses open addressing with linear probing in two parallel
+ * arrays and is meant to map identifiers read from a file to
+ * indices, such as vertex ids in graph readers.  Keys cannot be
+ * removed individually; the map can only be cleared.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class StringIntMap {
+    protected String[] keys;
+    protected int[]    values;
+    protected int      size;
+    protected int      mask;
+
+    /**
+     * Creates an empty StringIntMap.
+     */
+    public StringIntMap() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty StringIntMap able to hold a specified number
+     * of keys without growing.
+     * @param capacity the number of keys
+     */
+    public StringIntMap(int capacity) {
+        int n = 16;
+        while (n < capacity * 2) {
+            n *= 2;
+        }
+        allocate(n);
+    }
+
+    protected void allocate(int n) {
+        keys = new String[n];
+        values = new int[n];
+        mask = n - 1;
+    }
+
+    /**
+     * Returns the number of keys.
+     * @return the number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the map is empty.
+     * @return true if the map is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all the keys.
+     */
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = null;
+        }
+        size = 0;
+    }
+
+    protected static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    protected int indexOf(String key) {
+        int i = hash(key) & mask;
+        String k;
+        while ((k = keys[i]) != null) {
+            if (k == key || k.equals(key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -i - 1;
+    }
+
+    /**
+     * Returns true if the map contains a specified key.
+     * @param key the key
+     * @return true if the map contains the key
+     */
+    public boolean containsKey(String key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value associated with a key or a specified value
+     * if the key is not in the map.
+     * @param key the key
+     * @param missing the value returned when the key is not in the map
+     * @return the value associated with the key or missing
+     */
+    public int get(String key, int missing) {
+        int i = indexOf(key);
+        return i < 0 ? missing : values[i];
+    }
+
+    /**
+     * Associates a value with a key, replacing the previous value.
+     * @param key the key, not null
+     * @param value the value
+     * @return true if the key was not already in the map
+     */
+    public boolean put(String key, int value) {
+        int i = indexOf(key);
+        if (i >= 0) {
+            values[i] = value;
+            return false;
+        }
+        i = -i - 1;
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    protected void rehash(int n) {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(n);
+        for (int j = 0; j < oldKeys.length; j++) {
+            String k = oldKeys[j];
+            if (k == null) continue;
+            int i = hash(k) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = k;
+            values[i] = oldValues[j];
+        }
+    }
+}
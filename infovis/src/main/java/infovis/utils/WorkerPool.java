@@ -0,0 +1,218 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.utils;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <b>WorkerPool</b> manages a pool of daemon threads used by the
+ * algorithms of the toolkit that can split their work.
+ *
+ * <p>The main service is {@link #runBlocks(int, int, BlockTask)} that
+ * splits a range of indices into contiguous blocks, runs them
+ * concurrently and waits for their completion.  The calling thread
+ * computes one of the blocks itself.  When called from a worker
+ * thread, blocks are run sequentially to avoid starving the pool.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class WorkerPool {
+    private static WorkerPool instance;
+    protected int             threadCount;
+    protected ExecutorService executor;
+
+    /**
+     * Returns the shared instance of the WorkerPool, using as
+     * many threads as available processors.
+     * @return the shared instance of the WorkerPool
+     */
+    public static synchronized WorkerPool getInstance() {
+        if (instance == null) {
+            instance = new WorkerPool(
+                    Runtime.getRuntime().availableProcessors());
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the shared instance of the WorkerPool.
+     * @param pool the WorkerPool
+     */
+    public static synchronized void setInstance(WorkerPool pool) {
+        instance = pool;
+    }
+
+    /**
+     * Creates a WorkerPool with a specified number of threads.
+     * @param threadCount the number of threads
+     */
+    public WorkerPool(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+        executor = Executors.newFixedThreadPool(
+                this.threadCount,
+                new ThreadFactory() {
+                    private int count;
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread t = new Worker(r, "infovis-worker-" + (count++));
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * Returns the number of threads of the pool.
+     * @return the number of threads of the pool
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Returns the ExecutorService running the tasks.
+     * @return the ExecutorService running the tasks
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns true if the current thread belongs to a WorkerPool.
+     * @return true if the current thread belongs to a WorkerPool
+     */
+    public static boolean isWorkerThread() {
+        return Thread.currentThread() instanceof Worker;
+    }
+
+    /**
+     * Task computing a block of indices.
+     */
+    public interface BlockTask {
+        /**
+         * Computes a block.
+         * @param block the block number
+         * @param start the first index of the block
+         * @param end the index following the last index of the block
+         */
+        void run(int block, int start, int end);
+    }
+
+    /**
+     * Returns the number of blocks <code>runBlocks</code> will use
+     * for a specified size and maximum number of blocks.
+     * @param size the number of indices
+     * @param blocks the maximum number of blocks
+     * @return the number of blocks
+     */
+    public static int getBlockCount(int size, int blocks) {
+        return Math.max(1, Math.min(size, blocks));
+    }
+
+    /**
+     * Splits the range [0,size) into blocks, run them concurrently and
+     * waits for their completion.
+     *
+     * @param size the number of indices
+     * @param blocks the maximum number of blocks
+     * @param task the task
+     */
+    public void runBlocks(int size, int blocks, final BlockTask task) {
+        blocks = getBlockCount(size, blocks);
+        if (blocks == 1 || isWorkerThread()) {
+            for (int b = 0; b < blocks; b++) {
+                task.run(b, blockStart(size, blocks, b), blockStart(size, blocks, b+1));
+            }
+            return;
+        }
+        ArrayList futures = new ArrayList(blocks - 1);
+        for (int b = 1; b < blocks; b++) {
+            final int block = b;
+            final int start = blockStart(size, blocks, b);
+            final int end = blockStart(size, blocks, b+1);
+            futures.add(executor.submit(new Runnable() {
+                public void run() {
+                    task.run(block, start, end);
+                }
+            }));
+        }
+        try {
+            task.run(0, 0, blockStart(size, blocks, 1));
+        }
+        finally {
+            waitFor(futures);
+        }
+    }
+
+    /**
+     * Submits a task to the pool.
+     * @param task the task
+     * @return a Future holding the result of the task
+     */
+    public Future submit(Callable task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Waits for the completion of a list of futures, rethrowing the
+     * first exception raised by one of them.
+     * @param futures the list of futures
+     */
+    public static void waitFor(ArrayList futures) {
+        RuntimeException error = null;
+        for (int i = 0; i < futures.size(); i++) {
+            Future f = (Future) futures.get(i);
+            try {
+                f.get();
+            }
+            catch (InterruptedException e) {
+                // stop waiting, the remaining tasks are abandoned
+                Thread.currentThread().interrupt();
+                for (int j = i; j < futures.size(); j++) {
+                    ((Future) futures.get(j)).cancel(false);
+                }
+                if (error == null) {
+                    error = new RuntimeException(e);
+                }
+                break;
+            }
+            catch (ExecutionException e) {
+                if (error != null) continue;
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    error = (RuntimeException) cause;
+                }
+                else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                else {
+                    error = new RuntimeException(cause);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    protected static int blockStart(int size, int blocks, int b) {
+        return (int)((long)size * b / blocks);
+    }
+
+    static class Worker extends Thread {
+        Worker(Runnable r, String name) {
+            super(r, name);
+        }
+    }
+}
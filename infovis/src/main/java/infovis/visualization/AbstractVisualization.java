@@ -23,6 +23,7 @@ import infovis.Visualization;
 import infovis.column.BooleanColumn;
 import infovis.column.FilterColumn;
 import infovis.table.Item;
+import infovis.utils.IntSet;
 import infovis.utils.Permutation;
 import infovis.utils.RowIterator;
 
@@ -206,6 +207,13 @@ public abstract class AbstractVisualization implements Visualization {
     public void invalidate(Column c) {
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void invalidate(Column c, IntSet rows) {
+        invalidate(c);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,263 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.visualization;
+
+import infovis.Visualization;
+import infovis.column.ShapeColumn;
+import infovis.utils.WorkerPool;
+import infovis.visualization.ruler.RulerTable;
+
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.swing.SwingUtilities;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <b>BackgroundLayout</b> computes the shapes of a
+ * {@link DefaultVisualization} in a thread of the {@link WorkerPool}
+ * so that slow layouts do not block painting.
+ *
+ * <p>The layout writes its shapes into a back {@link ShapeColumn},
+ * initialized with a copy of the visible shapes, that is returned by
+ * {@link DefaultVisualization#getShapes()} in the layout thread only.
+ * When the layout is done, the back column is swapped with the
+ * visible one in the Event Dispatch Thread.  Until then, the
+ * visualization keeps painting its previous shapes.
+ *
+ * <p>The rulers are double-buffered the same way: the layout fills a
+ * back {@link RulerTable} with the columns of the visible one, copied
+ * into the visible table when the shapes are swapped, so the ruler
+ * visualizations never see a partial set of rulers.  The item
+ * renderers are installed in the Event Dispatch Thread before the
+ * layout starts and uninstalled after it finishes; the layout thread
+ * only reads their state.
+ *
+ * <p>Only one layout runs at a time.  A layout becomes stale when the
+ * visualization is invalidated or when other bounds are requested;
+ * its result is then discarded and the last requested bounds are
+ * computed when it finishes.
+ *
+ * <p>The layout thread belongs to the WorkerPool so layouts using
+ * {@link WorkerPool#runBlocks(int, int, WorkerPool.BlockTask)} run
+ * their blocks sequentially in that thread.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class BackgroundLayout {
+    protected DefaultVisualization visualization;
+    protected ShapeColumn          shapes;
+    protected RulerTable           rulers;
+    protected Job                  running;
+    protected Rectangle2D.Float    pending;
+    protected int                  generation;
+    protected int                  layoutCount;
+    protected volatile Thread      thread;
+    private static final Logger    logger = Logger.getLogger(BackgroundLayout.class);
+
+    /**
+     * A layout computation for specified bounds.
+     */
+    protected class Job implements Runnable {
+        protected Rectangle2D.Float bounds;
+        protected int               generation;
+        protected Future            future;
+
+        protected Job(Rectangle2D bounds, int generation) {
+            this.bounds = new Rectangle2D.Float();
+            this.bounds.setRect(bounds);
+            this.generation = generation;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                visualization.computeShapes(bounds);
+            }
+            catch(Exception e) {
+                logger.error("In background layout", e);
+            }
+            finally {
+                thread = null;
+            }
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    finish(Job.this);
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates a BackgroundLayout for a visualization.
+     * @param visualization the visualization
+     */
+    public BackgroundLayout(DefaultVisualization visualization) {
+        this.visualization = visualization;
+        this.shapes = new ShapeColumn(Visualization.VISUAL_SHAPE);
+    }
+
+    /**
+     * Returns the back column where the layout stores its shapes.
+     * @return the back column
+     */
+    public ShapeColumn getShapes() {
+        return shapes;
+    }
+
+    /**
+     * Returns the back table where the layout stores its rulers.
+     * @return the back table or null if the visualization has no rulers
+     */
+    public RulerTable getRulerTable() {
+        return rulers;
+    }
+
+    /**
+     * Returns true if the current thread is computing the layout.
+     * @return true if the current thread is computing the layout
+     */
+    public boolean isLayoutThread() {
+        return thread == Thread.currentThread();
+    }
+
+    /**
+     * Returns true if a layout is being computed.
+     * @return true if a layout is being computed
+     */
+    public synchronized boolean isRunning() {
+        return running != null;
+    }
+
+    /**
+     * Returns the number of layouts made visible.
+     * @return the number of layouts made visible
+     */
+    public synchronized int getLayoutCount() {
+        return layoutCount;
+    }
+
+    /**
+     * Makes the running layout stale after the inputs of the layout
+     * have changed.
+     */
+    public synchronized void invalidate() {
+        generation++;
+    }
+
+    /**
+     * Requests the computation of the layout for specified bounds.
+     * If a stale layout is running, the request is delayed until it
+     * finishes, replacing a previous delayed request.
+     * @param bounds the bounds
+     */
+    public synchronized void request(Rectangle2D bounds) {
+        if (running != null) {
+            if (running.generation == generation
+                    && running.bounds.equals(bounds)) {
+                pending = null;
+                return;
+            }
+            if (! running.future.cancel(false)) {
+                if (pending == null) {
+                    pending = new Rectangle2D.Float();
+                }
+                pending.setRect(bounds);
+                return;
+            }
+            // the canceled job never runs, so finish is not called
+            running = null;
+            visualization.uninstallRenderers();
+        }
+        pending = null;
+        start(bounds);
+    }
+
+    protected void start(Rectangle2D bounds) {
+        shapes.copyShapes(visualization.getShapes());
+        RulerTable front = visualization.rulers;
+        if (front == null) {
+            rulers = null;
+        }
+        else if (rulers == null
+                || rulers.getColumnCount() != front.getColumnCount()) {
+            rulers = RulerTable.createCopy(front);
+        }
+        else {
+            RulerTable.copyRulers(front, rulers);
+        }
+        visualization.installRenderers();
+        Job job = new Job(bounds, generation);
+        running = job;
+        job.future = WorkerPool.getInstance().getExecutor().submit(job);
+    }
+
+    protected synchronized void finish(Job job) {
+        if (running != job) return;
+        running = null;
+        visualization.uninstallRenderers();
+        if (pending != null) {
+            Rectangle2D.Float next = pending;
+            pending = null;
+            start(next);
+        }
+        else if (job.generation == generation) {
+            layoutCount++;
+            // made visible while holding the lock so that waitFor
+            // returns after the result is visible and no other layout
+            // starts with the back buffers in the meantime
+            visualization.layoutComputed(job.bounds, shapes, rulers);
+        }
+    }
+
+    /**
+     * Waits for the running layouts and makes their result visible.
+     */
+    public void waitFor() {
+        Job job;
+        synchronized(this) {
+            job = running;
+        }
+        while (job != null) {
+            try {
+                job.future.get();
+            }
+            catch(CancellationException e) {
+                // replaced by another job
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch(ExecutionException e) {
+                logger.error("In background layout", e.getCause());
+            }
+            finish(job);
+            synchronized(this) {
+                job = running;
+            }
+        }
+    }
+
+    /**
+     * Computes the layout for specified bounds if needed and waits
+     * for its result.
+     * @param bounds the bounds
+     */
+    public void validate(Rectangle2D bounds) {
+        visualization.validateShapes(bounds);
+        waitFor();
+    }
+}
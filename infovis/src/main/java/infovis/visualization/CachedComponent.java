@@ -0,0 +1,33 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.visualization;
+
+import infovis.Visualization;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * <b>CachedComponent</b> is implemented by the components keeping an
+ * off-screen image of the visualizations they display.
+ *
+ * <p>Visualizations call {@link #invalidateCache(Visualization, Rectangle2D)}
+ * before requesting a repaint of their parent so that the component
+ * renders again the parts of the image that have changed.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public interface CachedComponent {
+    /**
+     * Invalidates the cached image of a visualization.
+     * @param vis the visualization that has changed
+     * @param area the area to invalidate or null for the whole
+     * component
+     */
+    void invalidateCache(Visualization vis, Rectangle2D area);
+}
@@ -85,6 +85,19 @@ public abstract class ColorVisualization implements ChangeListener {
         return new Color(getColorValue(row), true);
     }
 
+    /**
+     * Returns true if the color of a row only depends on the value
+     * of that row and on the range of values of the column, so that
+     * modifying some rows without changing the range only changes
+     * the color of these rows.
+     * 
+     * @return true if the color of a row only depends on its value
+     * and on the range of values of the column.
+     */
+    public boolean isRowLocal() {
+        return false;
+    }
+
     /**
      * Convert r,g,b,a float values into an int.
      *
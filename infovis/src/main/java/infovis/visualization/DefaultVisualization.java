@@ -18,11 +18,15 @@ import infovis.table.Item;
 import infovis.table.TableProxy;
 import infovis.utils.FilteredRowIterator;
 import infovis.utils.IntPair;
+import infovis.utils.IntSet;
 import infovis.utils.Permutation;
 import infovis.utils.RectPool;
+import infovis.utils.RectQuadTree;
+import infovis.utils.RowBufferGraphics2D;
 import infovis.utils.RowIterator;
 import infovis.visualization.magicLens.ExcentricItem;
 import infovis.visualization.magicLens.Fisheye;
+import infovis.visualization.magicLens.IndexedLabeledComponent;
 import infovis.visualization.render.AbstractItemRenderer;
 import infovis.visualization.render.ItemRendererFactory;
 import infovis.visualization.render.LayoutVisual;
@@ -34,12 +38,15 @@ import infovis.visualization.ruler.RulerTable;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.Shape;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -51,6 +58,11 @@ import javax.swing.event.TableModelEvent;
 
 import org.apache.log4j.Logger;
 
+import cern.colt.Sorting;
+import cern.colt.function.IntComparator;
+import cern.colt.list.DoubleArrayList;
+import cern.colt.list.IntArrayList;
+
 /**
  * Base class for concrete visualizations.
  * 
@@ -93,6 +105,8 @@ import org.apache.log4j.Logger;
  * Each visualization has to maintain this association when it makes sense.  Scatter plots use it to define the axes
  * rulers.  The method {@link #getRulerTable()} returns a <code>Table</code> containing the items to visualize
  * as rulers, as described in {@link infovis.visualization.ruler.RulerTable}.
+ * Layouts access the rulers through {@link #getRulerTable()} only: a
+ * {@link BackgroundLayout} gives its thread a table of its own.
  * 
  * @javabean.class
  *     name="DefaultVisualization"
@@ -112,8 +126,17 @@ import org.apache.log4j.Logger;
  * @version $Revision: 1.89 $
  */
 
-public class DefaultVisualization extends TableProxy implements Visualization {
+public class DefaultVisualization extends TableProxy
+    implements Visualization, IndexedLabeledComponent {
     private static final long                    serialVersionUID = -8085675695602493696L;
+    /** Margin in pixels added around repainted shapes for borders. */
+    public static final int                      DIRTY_MARGIN     = 2;
+    /** Property name for progressive. */
+    public static final String                   PROPERTY_PROGRESSIVE = "progressive";
+    /** Property name for the progress of progressive painting. */
+    public static final String                   PROPERTY_PAINT_PROGRESS = "paintProgress";
+    /** Property name for backgroundLayout. */
+    public static final String                   PROPERTY_BACKGROUND_LAYOUT = "backgroundLayout";
     /** The Panel parent of this visualization */
     protected Component                          parent;
     /** The permutation of rows used by this visualization. */
@@ -134,6 +157,14 @@ public class DefaultVisualization extends TableProxy implements Visualization {
     private transient boolean                    shapesUpdated;
     private transient Rectangle2D.Double         bounds           = new Rectangle2D.Double();
     private transient boolean                    itemsInstalled   = false;
+    private boolean                              spatialIndexEnabled;
+    private double                               spatialIndexMargin = 4;
+    private transient RectQuadTree               spatialIndex;
+    private boolean                              pickingBufferEnabled;
+    private transient RowBufferGraphics2D        pickingBuffer;
+    private transient Rectangle                  pickingBounds;
+    private transient ProgressivePainter         progressivePainter;
+    private transient BackgroundLayout           backgroundLayout;
 
     private static final Logger                  logger           = 
         Logger.getLogger(DefaultVisualization.class);
@@ -461,6 +492,8 @@ public class DefaultVisualization extends TableProxy implements Visualization {
             vc.setColumn(null);
         }
         getShapes().clear();
+        spatialIndex = null;
+        disposePickingBuffer();
         int i = 0;
         for (Visualization v = getVisualization(i++); v != null;
         v = getVisualization(i++)) {
@@ -565,6 +598,79 @@ public class DefaultVisualization extends TableProxy implements Visualization {
         }
     }
     
+    /**
+     * Invalidates or repaints the specified rows only when possible.
+     *
+     * <p>When the column changes the layout, the layout is asked to
+     * recompute the shapes of the specified rows if it is a
+     * {@link RowLocalLayout}, otherwise the visualization is
+     * invalidated.  When the column does not change the layout, only
+     * the area covered by the rows is repainted.
+     *
+     * @param c the Column triggering the invalidate/repaint.
+     * @param rows the modified rows or <code>null</code>.
+     */
+    public void invalidate(Column c, IntSet rows) {
+        if (rows == null || !shapesUpdated || getFisheye() != null
+                || (backgroundLayout != null && backgroundLayout.isRunning())) {
+            invalidate(c);
+            return;
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (!isInvalidateColumn(c)) {
+            repaint(rows);
+            return;
+        }
+        Layout l = getLayout();
+        if (!(l instanceof RowLocalLayout)) {
+            invalidate();
+            return;
+        }
+        Rectangle2D dirty = getShapeBoundsAt(rows, null);
+        boolean done;
+        try {
+            getShapes().disableNotify();
+            done = ((RowLocalLayout) l).computeShapes(bounds, this, rows);
+        }
+        finally {
+            getShapes().enableNotify();
+        }
+        if (!done) {
+            invalidate();
+            return;
+        }
+        dirty = getShapeBoundsAt(rows, dirty);
+        if (dirty != null) {
+            repaint(dirty);
+        }
+    }
+
+    /**
+     * Returns the union of the bounds of the visual representation of
+     * the specified rows.
+     *
+     * @param rows the rows
+     * @param rect a rectangle to add the bounds to or <code>null</code>
+     * @return the union of the bounds or <code>null</code> if no row
+     * has a shape and <code>rect</code> is <code>null</code>
+     */
+    public Rectangle2D getShapeBoundsAt(IntSet rows, Rectangle2D rect) {
+        for (int row = rows.nextSet(0); row >= 0; row = rows.nextSet(row+1)) {
+            Rectangle2D r = getShapeBoundsAt(row);
+            if (r == null) continue;
+            if (rect == null) {
+                rect = new Rectangle2D.Double();
+                rect.setRect(r);
+            }
+            else {
+                rect.add(r);
+            }
+        }
+        return rect;
+    }
+
     /**
      * Returns the bounds around the visual representation of
      * a specified row.
@@ -588,8 +694,14 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      * Invalidates the contents of the Visualization.
      */
     public void invalidate() {
+        if (backgroundLayout != null) {
+            if (backgroundLayout.isLayoutThread()) return;
+            backgroundLayout.invalidate();
+        }
         if (! shapesUpdated) return;
         shapesUpdated = false;
+        spatialIndex = null;
+        pickingBounds = null;
         if (getParent() != null) {
             if (getParent() instanceof JComponent) {
                 JComponent jc = (JComponent)getParent();
@@ -619,7 +731,15 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      * Trigger a repaint on the visualization pane.
      */
     public void repaint() {
+        if (isLayoutThread()) return;
+        pickingBounds = null;
+        if (progressivePainter != null) {
+            progressivePainter.restart();
+        }
         if (parent != null) {
+            if (parent instanceof CachedComponent) {
+                ((CachedComponent) parent).invalidateCache(this, null);
+            }
 //            if (bounds != null && ! bounds.isEmpty())
 //                parent.repaint(bounds.getBounds());
 //            else
@@ -628,6 +748,46 @@ public class DefaultVisualization extends TableProxy implements Visualization {
         }
     }
     
+    /**
+     * Triggers a repaint for the specified rows.
+     * @param rows the rows
+     */
+    public void repaint(IntSet rows) {
+        Rectangle2D r = getShapeBoundsAt(rows, null);
+        if (r != null) {
+            repaint(r);
+        }
+    }
+
+    /**
+     * Triggers a repaint of a specified area, enlarged by
+     * {@link #DIRTY_MARGIN} to account for borders.
+     * @param r the area
+     */
+    public void repaint(Rectangle2D r) {
+        if (parent == null) return;
+        int x = (int)Math.floor(r.getX()) - DIRTY_MARGIN;
+        int y = (int)Math.floor(r.getY()) - DIRTY_MARGIN;
+        repaintParent(
+                x,
+                y,
+                (int)Math.ceil(r.getMaxX()) + DIRTY_MARGIN - x,
+                (int)Math.ceil(r.getMaxY()) + DIRTY_MARGIN - y);
+    }
+
+    protected void repaintParent(int x, int y, int w, int h) {
+        if (isLayoutThread()) return;
+        if (progressivePainter != null) {
+            progressivePainter.invalidate(new Rectangle(x, y, w, h));
+        }
+        if (parent instanceof CachedComponent) {
+            ((CachedComponent) parent).invalidateCache(
+                    this,
+                    new Rectangle(x, y, w, h));
+        }
+        parent.repaint(0, x, y, w, h);
+    }
+
     /**
      * Triggers a repaint for the specified row.
      * @param row the row
@@ -636,16 +796,8 @@ public class DefaultVisualization extends TableProxy implements Visualization {
         Rectangle2D r = getShapeBoundsAt(row);
         if (r == null) 
             repaint();
-        else if (parent != null) {
-            parent.repaint(
-                    0, 
-                    (int)r.getX(), 
-                    (int)r.getY(),
-                    (int)Math.ceil(r.getWidth()),
-                    (int)Math.ceil(r.getHeight()));
-        }
-
-        
+        else
+            repaint(r);
     }
     // Management of managed Columns
     /**
@@ -758,7 +910,8 @@ public class DefaultVisualization extends TableProxy implements Visualization {
     public void computeShapes(Rectangle2D bounds) {
         Layout l = getLayout();
         if (l == null) return;
-        if (! itemsInstalled) {
+        boolean background = isLayoutThread();
+        if (background || ! itemsInstalled) {
             Table t = getRulerTable();
             try {
                 if (t != null) {
@@ -767,20 +920,27 @@ public class DefaultVisualization extends TableProxy implements Visualization {
                 getShapes().disableNotify();
                 //shapes.clear();
 //                shapes.setSize(table.getLastRow()+1);
-                itemRenderer.install(null);
-                itemsInstalled = true;
+                // the BackgroundLayout installs the renderers in the EDT
+                if (! background) {
+                    itemRenderer.install(null);
+                    itemsInstalled = true;
+                }
                 getLayout().computeShapes(bounds, this);
             }
             catch(Exception e) {
                 logger.error("In ComputeShapes",e);
             }
             finally {
-                itemsInstalled = false;
-                itemRenderer.uninstall(null);
+                if (! background) {
+                    itemsInstalled = false;
+                    itemRenderer.uninstall(null);
+                }
                 getShapes().enableNotify();
                 if (t != null) {
                     t.enableNotify();
-                    firePropertyChange(PROPERTY_RULERS, null, t);
+                    if (! background) {
+                        firePropertyChange(PROPERTY_RULERS, null, t);
+                    }
                 }
             }
         }
@@ -805,6 +965,10 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      * @param bounds the bounding box of the visualization.
      */
     public void paint(Graphics2D graphics, Rectangle2D bounds) {
+        if (progressivePainter != null) {
+            paintProgressive(graphics, bounds);
+            return;
+        }
         try {
             validateShapes(bounds);
             if (! itemsInstalled) {
@@ -853,11 +1017,195 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      * @param bounds the bounding box of the visualization.
      */
     public void print(Graphics2D graphics, Rectangle2D bounds) {
-        paint(graphics, bounds);
+        if (backgroundLayout != null) {
+            backgroundLayout.validate(bounds);
+        }
+        ProgressivePainter painter = progressivePainter;
+        progressivePainter = null;
+        try {
+            paint(graphics, bounds);
+        }
+        finally {
+            progressivePainter = painter;
+        }
+    }
+
+    /**
+     * Returns true if the items are painted progressively.
+     * @return true if the items are painted progressively
+     */
+    public boolean isProgressive() {
+        return progressivePainter != null;
+    }
+
+    /**
+     * Sets whether the items are painted progressively.
+     * 
+     * <p>When progressive, each paint is limited by the time budget
+     * of the {@link ProgressivePainter} and the visualization requests
+     * new paints until all the items are painted.  The painting is
+     * restarted when the visualization is invalidated or repainted.
+     * 
+     * @param progressive true if the items should be painted
+     * progressively
+     */
+    public void setProgressive(boolean progressive) {
+        if (progressive == isProgressive()) return;
+        if (progressive) {
+            progressivePainter = new ProgressivePainter(this);
+        }
+        else {
+            progressivePainter.dispose();
+            progressivePainter = null;
+        }
+        repaint();
+        firePropertyChange(PROPERTY_PROGRESSIVE, !progressive, progressive);
+    }
+
+    /**
+     * Returns the ProgressivePainter or null if the items are not
+     * painted progressively.
+     * @return the ProgressivePainter or null
+     */
+    public ProgressivePainter getProgressivePainter() {
+        return progressivePainter;
+    }
+
+    /**
+     * Returns true if the shapes are computed in the background.
+     * @return true if the shapes are computed in the background
+     */
+    public boolean isBackgroundLayout() {
+        return backgroundLayout != null;
+    }
+
+    /**
+     * Sets whether the shapes are computed in the background.
+     * 
+     * <p>When set, {@link #validateShapes(Rectangle2D)} requests the
+     * computation of the shapes from a {@link BackgroundLayout} and
+     * the visualization keeps its previous shapes until the
+     * computation is done.  Disabling waits for the running
+     * computation.
+     * 
+     * @param background true if the shapes should be computed in
+     * the background
+     */
+    public void setBackgroundLayout(boolean background) {
+        if (background == isBackgroundLayout()) return;
+        if (background) {
+            backgroundLayout = new BackgroundLayout(this);
+        }
+        else {
+            backgroundLayout.waitFor();
+            backgroundLayout = null;
+        }
+        invalidate();
+        firePropertyChange(PROPERTY_BACKGROUND_LAYOUT, !background, background);
+    }
+
+    /**
+     * Returns the BackgroundLayout or null if the shapes are computed
+     * when painting.
+     * @return the BackgroundLayout or null
+     */
+    public BackgroundLayout getBackgroundLayout() {
+        return backgroundLayout;
+    }
+
+    /**
+     * Returns true if the current thread computes the shapes in
+     * the background.
+     * @return true if the current thread computes the shapes in
+     * the background
+     */
+    protected boolean isLayoutThread() {
+        BackgroundLayout layout = backgroundLayout;
+        return layout != null && layout.isLayoutThread();
+    }
+
+    /**
+     * Called by the {@link BackgroundLayout} in the Event Dispatch
+     * Thread before computing the shapes, installing the item
+     * renderers for the layout.
+     */
+    protected void installRenderers() {
+        itemRenderer.install(null);
+    }
+
+    /**
+     * Called by the {@link BackgroundLayout} in the Event Dispatch
+     * Thread after computing the shapes.
+     */
+    protected void uninstallRenderers() {
+        itemRenderer.uninstall(null);
+    }
+
+    /**
+     * Called by the {@link BackgroundLayout} in the Event Dispatch
+     * Thread to make visible the shapes and rulers it has computed.
+     * 
+     * @param bounds the bounds used to compute the shapes
+     * @param computed the column holding the computed shapes,
+     * receiving the previous shapes
+     * @param computedRulers the table holding the computed rulers
+     * or null
+     */
+    protected void layoutComputed(
+            Rectangle2D bounds,
+            ShapeColumn computed,
+            RulerTable computedRulers) {
+        spatialIndex = null;
+        pickingBounds = null;
+        this.bounds.setRect(bounds);
+        shapes.swap(computed);
+        shapesUpdated = true;
+        if (rulers != null && computedRulers != null) {
+            RulerTable.copyRulers(computedRulers, rulers);
+            firePropertyChange(PROPERTY_RULERS, null, rulers);
+        }
+        repaint();
+    }
+
+    /**
+     * Paints the next items within the time budget and requests
+     * another paint if some items remain to paint.
+     *
+     * @param graphics the graphics.
+     * @param bounds the bounding box of the visualization.
+     */
+    protected void paintProgressive(Graphics2D graphics, Rectangle2D bounds) {
+        ProgressivePainter painter = progressivePainter;
+        float old = painter.getProgress();
+        boolean complete = true;
+        try {
+            validateShapes(bounds);
+            complete = painter.paint(graphics, bounds);
+        }
+        catch(Exception e) {
+            logger.error("In Paint",e);
+        }
+        float progress = painter.getProgress();
+        if (progress != old) {
+            firePropertyChange(
+                    PROPERTY_PAINT_PROGRESS,
+                    new Float(old),
+                    new Float(progress));
+        }
+        if (! complete && parent != null) {
+            // continue without restarting
+            if (parent instanceof CachedComponent) {
+                ((CachedComponent) parent).invalidateCache(this, null);
+            }
+            parent.repaint();
+        }
     }
 
     /**
      * Method for filtering and painting the items.
+     * 
+     * <p>Subclasses overriding this method should also override
+     * {@link #collectPaintedItems(ProgressivePainter, Rectangle2D)}.
      *
      * @param graphics the graphics.
      * @param bounds the bounding box of the visualization.
@@ -869,16 +1217,45 @@ public class DefaultVisualization extends TableProxy implements Visualization {
         }
     }
 
+    /**
+     * Adds to a ProgressivePainter the items painted by
+     * {@link #paintItems(Graphics2D, Rectangle2D)}, in the same order,
+     * so that they can be painted over several frames by
+     * {@link #paintItem(Graphics2D, int)}.
+     * 
+     * @param painter the ProgressivePainter
+     * @param bounds the bounding box of the visualization.
+     */
+    public void collectPaintedItems(
+            ProgressivePainter painter,
+            Rectangle2D bounds) {
+        painter.addItems(this, iterator());
+    }
+
     /**
      * Checks whether the shapes should be recomputed and call
-     * updateShapes then.
+     * updateShapes then, or request their computation from the
+     * {@link BackgroundLayout} when the layout is computed in the
+     * background.
      *
      * @param bounds the Visualization bounds.
      */
     public void validateShapes(Rectangle2D bounds) {
+        if (backgroundLayout != null
+                && !(shapesUpdated && this.bounds.equals(bounds))) {
+            if (! backgroundLayout.isLayoutThread()) {
+                backgroundLayout.request(bounds);
+            }
+            return;
+        }
         if (!(shapesUpdated && this.bounds.equals(bounds))) {
             try {
                 getShapes().disableNotify();
+                spatialIndex = null;
+                pickingBounds = null;
+                if (progressivePainter != null) {
+                    progressivePainter.restart();
+                }
                 this.bounds.setRect(bounds);
                 computeShapes(bounds);
             }
@@ -895,6 +1272,9 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      * @return the ObjectColumn containing the shapes.
      */
     public ShapeColumn getShapes() {
+        if (isLayoutThread()) {
+            return backgroundLayout.getShapes();
+        }
         return shapes;
     }
     
@@ -908,7 +1288,7 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      *         store.
      */
     public Shape getShapeAt(int row) {
-        return shapes.get(row);
+        return getShapes().get(row);
     }
     
     /**
@@ -917,7 +1297,7 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      * @return the rectangle or null.
      */
     public Rectangle2D.Float getRectAt(int row) {
-        return shapes.getRect(row);
+        return getShapes().getRect(row);
     }
     
     /**
@@ -928,7 +1308,7 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      * allocating it if needed.
      */
     public Rectangle2D.Float findRectAt(int row) {
-        return shapes.findRect(row);
+        return getShapes().findRect(row);
     }
     
     /**
@@ -938,7 +1318,12 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      * @param row the row of the rectangle. 
      */
     public void freeRectAt(int row) {
-        shapes.freeRect(row);
+        getShapes().freeRect(row);
+        if (isLayoutThread()) return;
+        pickingBounds = null;
+        if (spatialIndex != null) {
+            spatialIndex.remove(row);
+        }
     }
 
     /**
@@ -948,7 +1333,291 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      * @param s the shape.
      */
     public void setShapeAt(int row, Shape s) {
-        shapes.setExtend(row, s);
+        getShapes().setExtend(row, s);
+        if (isLayoutThread()) return;
+        pickingBounds = null;
+        if (spatialIndex != null) {
+            spatialIndex.put(row, s);
+        }
+    }
+
+    // Spatial index
+    /**
+     * Returns true if picking uses a spatial index over the
+     * shapes instead of scanning all the items.
+     * 
+     * @return true if picking uses a spatial index.
+     */
+    public boolean isSpatialIndexEnabled() {
+        return spatialIndexEnabled;
+    }
+
+    /**
+     * Sets whether picking uses a spatial index over the shapes.
+     * 
+     * <p>The index is built lazily at the first pick following a
+     * recomputation of the shapes and kept up to date by
+     * {@link #setShapeAt(int, Shape)} and {@link #freeRectAt(int)}.
+     * Layouts that modify rectangles in place outside of
+     * {@link #computeShapes(Rectangle2D)} should call
+     * {@link #invalidateSpatialIndex()}.
+     * 
+     * @param enabled true to enable the spatial index
+     */
+    public void setSpatialIndexEnabled(boolean enabled) {
+        if (spatialIndexEnabled == enabled) return;
+        spatialIndexEnabled = enabled;
+        spatialIndex = null;
+    }
+
+    /**
+     * Returns the margin added around hit boxes when querying
+     * the spatial index.
+     * 
+     * @return the margin added around hit boxes
+     */
+    public double getSpatialIndexMargin() {
+        return spatialIndexMargin;
+    }
+
+    /**
+     * Sets the margin added around hit boxes when querying
+     * the spatial index.
+     * 
+     * <p>Item renderers can pick outside of the stored shape, for
+     * example when stroking with a large width.  The margin should
+     * be at least half of the widest stroke.
+     * 
+     * @param margin the margin
+     */
+    public void setSpatialIndexMargin(double margin) {
+        spatialIndexMargin = margin;
+    }
+
+    /**
+     * Discards the spatial index and the picking buffer so they are
+     * rebuilt at the next pick.
+     */
+    public void invalidateSpatialIndex() {
+        spatialIndex = null;
+        pickingBounds = null;
+    }
+
+    /**
+     * Returns the spatial index over the shapes, building it
+     * if needed, or null if it is not enabled.
+     * 
+     * @return the spatial index or null.
+     */
+    public RectQuadTree getSpatialIndex() {
+        if (! spatialIndexEnabled) {
+            return null;
+        }
+        if (spatialIndex == null) {
+            spatialIndex = RectQuadTree.build(getShapes());
+        }
+        return spatialIndex;
+    }
+
+    /**
+     * Returns the rows whose shape bounds intersect the specified
+     * rectangle, sorted in the painting order, or null if the
+     * spatial index is not enabled.
+     * 
+     * @param rect the rectangle
+     * @param margin a margin to add around the rectangle
+     * @return the sorted rows or null
+     */
+    protected IntArrayList pickCandidates(Rectangle2D rect, double margin) {
+        RectQuadTree tree = getSpatialIndex();
+        if (tree == null) {
+            return null;
+        }
+        Rectangle2D.Float query = RectPool.allocateRect();
+        IntArrayList candidates;
+        try {
+            query.setRect(
+                    rect.getX() - margin,
+                    rect.getY() - margin,
+                    rect.getWidth() + 2 * margin,
+                    rect.getHeight() + 2 * margin);
+            candidates = tree.query(query, null);
+        }
+        finally {
+            RectPool.freeRect(query);
+        }
+        sortRows(candidates);
+        return candidates;
+    }
+
+    /**
+     * Sorts a list of rows in the painting order, removing the
+     * invalid or filtered rows and the duplicates.
+     * 
+     * @param candidates the list of rows
+     */
+    protected void sortRows(IntArrayList candidates) {
+        // Replace rows by their painting index, sort them and map back
+        int n = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            int row = candidates.getQuick(i);
+            if (! table.isRowValid(row)) continue;
+            int index = getRowIndex(row);
+            if (index >= 0) {
+                candidates.setQuick(n++, index);
+            }
+        }
+        candidates.setSize(n);
+        candidates.sort();
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            int index = candidates.getQuick(i);
+            if (m != 0 && index == candidates.getQuick(m-1)) continue;
+            candidates.setQuick(m++, index);
+        }
+        candidates.setSize(m);
+        for (int i = 0; i < m; i++) {
+            candidates.setQuick(i, getRowAtIndex(candidates.getQuick(i)));
+        }
+    }
+
+    // Picking buffer
+    /**
+     * Returns true if picking reads the rows from a picking buffer.
+     * 
+     * @return true if picking reads the rows from a picking buffer.
+     */
+    public boolean isPickingBufferEnabled() {
+        return pickingBufferEnabled;
+    }
+
+    /**
+     * Sets whether picking reads the rows from a picking buffer.
+     * 
+     * <p>The picking buffer is an image of the visualization bounds
+     * where each item is painted with its row instead of its colors,
+     * using a {@link RowBufferGraphics2D}.  It is painted lazily at
+     * the first pick following a change of the shapes or a full
+     * repaint; then {@link #pickTop(Rectangle2D, Rectangle2D)} and
+     * {@link #pickAll(Rectangle2D, Rectangle2D, ArrayList)} only read
+     * the pixels under the hit box, whatever the number of items and
+     * the complexity of their shapes.
+     * 
+     * <p>Only the items visible under the hit box are picked, and
+     * picking is exact to the pixel.  The picking buffer is not used
+     * when a fisheye is active.
+     * 
+     * @param enabled true to enable the picking buffer
+     */
+    public void setPickingBufferEnabled(boolean enabled) {
+        if (pickingBufferEnabled == enabled) return;
+        pickingBufferEnabled = enabled;
+        disposePickingBuffer();
+    }
+
+    protected void disposePickingBuffer() {
+        if (pickingBuffer != null) {
+            pickingBuffer.dispose();
+            pickingBuffer.getImage().flush();
+            pickingBuffer = null;
+        }
+        pickingBounds = null;
+    }
+
+    /**
+     * Returns the picking buffer, painting it if needed, or null if
+     * it is not enabled or cannot be used.
+     * 
+     * @return the picking buffer or null.
+     */
+    public RowBufferGraphics2D getPickingBuffer() {
+        if (! pickingBufferEnabled || getFisheye() != null) {
+            return null;
+        }
+        int x = (int)Math.floor(bounds.getX());
+        int y = (int)Math.floor(bounds.getY());
+        int w = (int)Math.ceil(bounds.getMaxX()) - x;
+        int h = (int)Math.ceil(bounds.getMaxY()) - y;
+        if (w <= 0 || h <= 0) {
+            return null;
+        }
+        if (pickingBounds != null
+                && pickingBounds.x == x && pickingBounds.y == y
+                && pickingBounds.width == w && pickingBounds.height == h) {
+            return pickingBuffer;
+        }
+        if (pickingBuffer == null
+                || pickingBuffer.getImage().getWidth() != w
+                || pickingBuffer.getImage().getHeight() != h) {
+            disposePickingBuffer();
+            pickingBuffer = new RowBufferGraphics2D(w, h);
+        }
+        pickingBuffer.setTransform(new AffineTransform());
+        pickingBuffer.setClip(null);
+        pickingBuffer.clear();
+        pickingBuffer.translate(-x, -y);
+        try {
+            paintPickingBuffer(pickingBuffer);
+        }
+        catch(Exception e) {
+            logger.error("In paintPickingBuffer", e);
+        }
+        pickingBounds = new Rectangle(x, y, w, h);
+        return pickingBuffer;
+    }
+
+    /**
+     * Paints the items in the picking buffer.
+     * 
+     * @param buffer the picking buffer
+     */
+    protected void paintPickingBuffer(RowBufferGraphics2D buffer) {
+        try {
+            itemRenderer.install(buffer);
+            for (RowIterator iter = iterator(); iter.hasNext();) {
+                int row = iter.nextRow();
+                buffer.setItem(row);
+                paintItem(buffer, row);
+            }
+        }
+        finally {
+            itemRenderer.uninstall(buffer);
+        }
+    }
+
+    /**
+     * Returns the rows read from the picking buffer under a hit box,
+     * sorted in the painting order, or null if the picking buffer is
+     * not enabled.
+     * 
+     * @param hitBox the hit box
+     * @return the sorted rows or null
+     */
+    protected IntArrayList pickBuffer(Rectangle2D hitBox) {
+        RowBufferGraphics2D buffer = getPickingBuffer();
+        if (buffer == null) {
+            return null;
+        }
+        Rectangle r = pickingBounds;
+        int x0 = Math.max(0, (int)Math.floor(hitBox.getMinX()) - r.x);
+        int y0 = Math.max(0, (int)Math.floor(hitBox.getMinY()) - r.y);
+        int x1 = Math.min(r.width, Math.max(
+                (int)Math.ceil(hitBox.getMaxX()) - r.x, x0 + 1));
+        int y1 = Math.min(r.height, Math.max(
+                (int)Math.ceil(hitBox.getMaxY()) - r.y, y0 + 1));
+        IntArrayList rows = new IntArrayList();
+        int last = -1;
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                int row = buffer.getRowAt(x, y);
+                if (row != last && row >= 0) {
+                    rows.add(row);
+                }
+                last = row;
+            }
+        }
+        sortRows(rows);
+        return rows;
     }
 
     // Picking
@@ -982,6 +1651,23 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      */
     public Item pickTop(Rectangle2D hitBox, Rectangle2D bounds) {
         validateShapes(bounds);
+        IntArrayList rows = pickBuffer(hitBox);
+        if (rows != null) {
+            if (rows.isEmpty()) {
+                return null;
+            }
+            return getItem(rows.getQuick(rows.size()-1));
+        }
+        IntArrayList candidates = pickCandidates(hitBox, spatialIndexMargin);
+        if (candidates != null) {
+            for (int i = candidates.size(); --i >= 0; ) {
+                int row = candidates.getQuick(i);
+                Shape s = getShapeAt(row);
+                if (pickItem(hitBox, bounds, s, row))
+                    return getItem(row);
+            }
+            return null;
+        }
         for (RowIterator iter = reverseIterator(); iter.hasNext();) {
             int row = iter.nextRow();
             Shape s = getShapeAt(row);
@@ -1010,6 +1696,24 @@ public class DefaultVisualization extends TableProxy implements Visualization {
             pick = new ArrayList();
         else
             pick.clear();
+        IntArrayList rows = pickBuffer(hitBox);
+        if (rows != null) {
+            for (int i = 0; i < rows.size(); i++) {
+                pick.add(getItem(rows.getQuick(i)));
+            }
+            return pick;
+        }
+        IntArrayList candidates = pickCandidates(hitBox, spatialIndexMargin);
+        if (candidates != null) {
+            for (int i = 0; i < candidates.size(); i++) {
+                int row = candidates.getQuick(i);
+                Shape s = getShapeAt(row);
+                if (pickItem(hitBox, bounds, s, row)) {
+                    pick.add(getItem(row));
+                }
+            }
+            return pick;
+        }
         for (RowIterator iter = iterator(); iter.hasNext();) {
             int row = iter.nextRow();
             Shape s = getShapeAt(row);
@@ -1039,6 +1743,17 @@ public class DefaultVisualization extends TableProxy implements Visualization {
             pick = new ArrayList();
         else
             pick.clear();
+        IntArrayList candidates = pickCandidates(lasso.getBounds2D(), 0);
+        if (candidates != null) {
+            for (int i = 0; i < candidates.size(); i++) {
+                int row = candidates.getQuick(i);
+                Shape s = getShapeAt(row);
+                if (lasso.contains(s.getBounds2D())) {
+                    pick.add(getItem(row));
+                }
+            }
+            return pick;
+        }
         for (RowIterator iter = iterator(); iter.hasNext();) {
             int row = iter.nextRow();
             Shape s = getShapeAt(row);
@@ -1050,6 +1765,112 @@ public class DefaultVisualization extends TableProxy implements Visualization {
     }
     
     
+    /**
+     * Picks the items under a rectangle whose center is the
+     * closest to the center of the rectangle.
+     * 
+     * <p>When the spatial index is enabled, only the items near
+     * the rectangle are visited.  The center of an item is the
+     * center of its shape bounds.
+     * 
+     * @param hitBox the bounds where the items are searched.
+     * @param bounds the total bounds where the visualization is displayed.
+     * @param count the maximum number of items
+     * @param pick an IntArrayList that will contain the rows of
+     *        the picked items, the closest first, or null.
+     * 
+     * @return the IntArrayList of rows.
+     */
+    public IntArrayList pickNearest(
+            Rectangle2D hitBox,
+            Rectangle2D bounds,
+            int count,
+            IntArrayList pick) {
+        validateShapes(bounds);
+        if (pick == null)
+            pick = new IntArrayList(count);
+        else
+            pick.clear();
+        if (count <= 0) {
+            return pick;
+        }
+        double x = hitBox.getCenterX();
+        double y = hitBox.getCenterY();
+        RectQuadTree tree = getSpatialIndex();
+        if (tree == null) {
+            return pickNearestScan(hitBox, bounds, x, y, count, pick);
+        }
+        Rectangle2D.Float query = RectPool.allocateRect();
+        try {
+            query.setRect(
+                    hitBox.getX() - spatialIndexMargin,
+                    hitBox.getY() - spatialIndexMargin,
+                    hitBox.getWidth() + 2 * spatialIndexMargin,
+                    hitBox.getHeight() + 2 * spatialIndexMargin);
+            // Invalid, filtered or missed rows are dropped so ask for
+            // more rows until enough are found or the index is exhausted
+            for (int k = count; ; k *= 2) {
+                IntArrayList rows = tree.nearest(query, x, y, k, null);
+                pick.clear();
+                for (int i = 0; i < rows.size() && pick.size() < count; i++) {
+                    int row = rows.getQuick(i);
+                    if (! table.isRowValid(row) || getRowIndex(row) < 0)
+                        continue;
+                    if (pickItem(hitBox, bounds, getShapeAt(row), row)) {
+                        pick.add(row);
+                    }
+                }
+                if (pick.size() == count || rows.size() < k) {
+                    break;
+                }
+            }
+        }
+        finally {
+            RectPool.freeRect(query);
+        }
+        return pick;
+    }
+
+    protected IntArrayList pickNearestScan(
+            Rectangle2D hitBox,
+            Rectangle2D bounds,
+            double x,
+            double y,
+            int count,
+            IntArrayList pick) {
+        final IntArrayList rows = new IntArrayList();
+        final DoubleArrayList dist = new DoubleArrayList();
+        for (RowIterator iter = iterator(); iter.hasNext();) {
+            int row = iter.nextRow();
+            Shape s = getShapeAt(row);
+            if (pickItem(hitBox, bounds, s, row)) {
+                Rectangle2D r = s.getBounds2D();
+                double dx = r.getCenterX() - x;
+                double dy = r.getCenterY() - y;
+                rows.add(row);
+                dist.add(dx * dx + dy * dy);
+            }
+        }
+        int[] index = new int[rows.size()];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = i;
+        }
+        Sorting.mergeSort(index, 0, index.length, new IntComparator() {
+            public int compare(int a, int b) {
+                double d = dist.getQuick(a) - dist.getQuick(b);
+                if (d < 0)
+                    return -1;
+                else if (d > 0)
+                    return 1;
+                return rows.getQuick(a) - rows.getQuick(b);
+            }
+        });
+        for (int i = 0; i < index.length && i < count; i++) {
+            pick.add(rows.getQuick(index[i]));
+        }
+        return pick;
+    }
+
     /**
      * Returns true of an item is picked by the specified
      * bounds.
@@ -1307,6 +2128,45 @@ public class DefaultVisualization extends TableProxy implements Visualization {
         return pick;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public List pickNearest(
+        Rectangle2D hitBox,
+        Rectangle2D bounds,
+        int count,
+        List pick) {
+        IntArrayList rows = pickNearest(hitBox, bounds, count, (IntArrayList)null);
+        if (pick == null)
+            pick = new ArrayList(rows.size());
+
+        int i;
+        for (i = 0; i < rows.size(); i++) {
+            pick.add(createLabelItem(getItem(rows.getQuick(i))));
+        }
+        i = 0;
+        Rectangle2D.Float vb = RectPool.allocateRect();
+        try {
+            for (Visualization sub = getVisualization(i);
+                sub != null;
+                sub = getVisualization(++i)) {
+                vb.setRect(bounds);
+                getVisualizationBounds(i, vb);
+                if (sub instanceof IndexedLabeledComponent) {
+                    ((IndexedLabeledComponent)sub).pickNearest(
+                            hitBox, vb, count, pick);
+                }
+                else {
+                    pick.addAll(sub.pickAll(hitBox, vb, (Set)null));
+                }
+            }
+        }
+        finally {
+            RectPool.freeRect(vb);
+        }
+        return pick;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1444,6 +2304,9 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      * {@inheritDoc}
      */
     public Table getRulerTable() {
+        if (isLayoutThread()) {
+            return backgroundLayout.getRulerTable();
+        }
         return rulers;
     }
     
@@ -1462,8 +2325,9 @@ public class DefaultVisualization extends TableProxy implements Visualization {
      * Clears the ruler table.
      */
     public void clearRulers() {
-        if (rulers != null) {
-            rulers.clear();
+        Table t = getRulerTable();
+        if (t != null) {
+            t.clear();
         }
     }
 }
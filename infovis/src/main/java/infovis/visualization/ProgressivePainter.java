@@ -0,0 +1,377 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.visualization;
+
+import infovis.utils.RowIterator;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+/**
+ * <b>ProgressivePainter</b> paints the items of a
+ * {@link DefaultVisualization} over several frames, each limited by a
+ * time budget.
+ *
+ * <p>The items are collected in their painting order by
+ * {@link DefaultVisualization#collectPaintedItems(ProgressivePainter, Rectangle2D)},
+ * possibly from several visualizations such as the links and the nodes
+ * of a node-link diagram.  They are painted in off-screen images.  The
+ * first frame paints a regular sample of the items, then the following
+ * frames paint all the items in the painting order, so the final image
+ * is the same as the one obtained by painting all the items at once.
+ * Until then, the partial image is shown over the sample.
+ *
+ * <p>The painting restarts from the beginning after
+ * {@link #restart()} is called, when the bounds change or when one of
+ * the other visualizations painting items is invalidated.  An area
+ * invalidated by {@link #invalidate(Rectangle)} is cleared and the
+ * items already painted that intersect it are painted again in the
+ * next frame.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class ProgressivePainter {
+    /** Default time budget of a frame in milliseconds. */
+    public static final long     DEFAULT_BUDGET      = 40;
+    /** Default number of items of the sample. */
+    public static final int      DEFAULT_SAMPLE_SIZE = 10000;
+    /** Number of items painted between two checks of the clock. */
+    protected static final int   BATCH_SIZE          = 256;
+    protected DefaultVisualization visualization;
+    protected long               budget              = DEFAULT_BUDGET;
+    protected int                sampleSize          = DEFAULT_SAMPLE_SIZE;
+    protected Rectangle2D.Float  bounds              = new Rectangle2D.Float();
+    protected BufferedImage      sample;
+    protected BufferedImage      detail;
+    protected int[]              rows;
+    protected int                rowCount;
+    protected ArrayList          layers              = new ArrayList();
+    protected int[]              layerEnds           = new int[4];
+    protected int                position;
+    protected boolean            restart             = true;
+    protected Rectangle          dirty;
+
+    /**
+     * Creates a ProgressivePainter for a visualization.
+     * @param visualization the visualization
+     */
+    public ProgressivePainter(DefaultVisualization visualization) {
+        this.visualization = visualization;
+    }
+
+    /**
+     * Returns the time budget of a frame in milliseconds.
+     * @return the time budget of a frame in milliseconds
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the time budget of a frame in milliseconds.
+     * @param budget the time budget of a frame in milliseconds
+     */
+    public void setBudget(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the number of items painted in the first frame.
+     * @return the number of items painted in the first frame
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Sets the number of items painted in the first frame.
+     * @param sampleSize the number of items painted in the first frame
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Cancels the current painting, the next frame starts again from
+     * the beginning.
+     */
+    public void restart() {
+        restart = true;
+        dirty = null;
+    }
+
+    /**
+     * Invalidates an area of the visualization.  Unless the painting
+     * restarts, the items already painted over the area are painted
+     * again in the next frame.
+     * @param r the area in the coordinates of the visualization
+     */
+    public void invalidate(Rectangle r) {
+        if (restart) return;
+        if (dirty == null) {
+            dirty = new Rectangle(r);
+        }
+        else {
+            dirty.add(r);
+        }
+    }
+
+    /**
+     * Adds items painted by a visualization, after the items
+     * already added.
+     * @param vis the visualization painting the items
+     * @param iter the rows of the items in their painting order
+     */
+    public void addItems(DefaultVisualization vis, RowIterator iter) {
+        int layer = layers.size();
+        if (layer == 0 || layers.get(layer - 1) != vis) {
+            if (layer == layerEnds.length) {
+                int[] n = new int[layer * 2];
+                System.arraycopy(layerEnds, 0, n, 0, layer);
+                layerEnds = n;
+            }
+            layers.add(vis);
+        }
+        else {
+            layer--;
+        }
+        if (rows == null) {
+            rows = new int[Math.max(16, visualization.getRowCount())];
+        }
+        while (iter.hasNext()) {
+            if (rowCount == rows.length) {
+                int[] n = new int[Math.max(16, rowCount * 2)];
+                System.arraycopy(rows, 0, n, 0, rowCount);
+                rows = n;
+            }
+            rows[rowCount++] = iter.nextRow();
+        }
+        layerEnds[layer] = rowCount;
+    }
+
+    protected DefaultVisualization getLayer(int layer) {
+        return (DefaultVisualization) layers.get(layer);
+    }
+
+    protected int getLayerStart(int layer) {
+        return layer == 0 ? 0 : layerEnds[layer - 1];
+    }
+
+    /**
+     * Returns true if all the items have been painted.
+     * @return true if all the items have been painted
+     */
+    public boolean isComplete() {
+        return !restart && position == rowCount;
+    }
+
+    /**
+     * Returns the fraction of the items already painted.
+     * @return the fraction of the items already painted
+     */
+    public float getProgress() {
+        if (restart) return 0;
+        if (rowCount == 0) return 1;
+        return (float)position / rowCount;
+    }
+
+    /**
+     * Releases the images.
+     */
+    public void dispose() {
+        if (sample != null) {
+            sample.flush();
+            sample = null;
+        }
+        if (detail != null) {
+            detail.flush();
+            detail = null;
+        }
+        rows = null;
+        layers.clear();
+        restart();
+    }
+
+    protected BufferedImage clear(BufferedImage image, int w, int h) {
+        if (image == null || image.getWidth() != w || image.getHeight() != h) {
+            if (image != null) {
+                image.flush();
+            }
+            return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        }
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, w, h);
+        g.dispose();
+        return image;
+    }
+
+    protected void start(Graphics2D graphics, int w, int h) {
+        detail = clear(detail, w, h);
+        rowCount = 0;
+        layers.clear();
+        visualization.collectPaintedItems(this, bounds);
+        position = 0;
+        restart = false;
+        dirty = null;
+        if (rowCount > sampleSize && sampleSize > 0) {
+            sample = clear(sample, w, h);
+            Graphics2D g = createGraphics(sample, graphics);
+            try {
+                int stride = (rowCount + sampleSize - 1) / sampleSize;
+                int i = 0;
+                for (int l = 0; l < layers.size(); l++) {
+                    DefaultVisualization vis = getLayer(l);
+                    vis.getItemRenderer().install(g);
+                    try {
+                        for (; i < layerEnds[l]; i += stride) {
+                            vis.paintItem(g, rows[i]);
+                        }
+                    }
+                    finally {
+                        vis.getItemRenderer().uninstall(g);
+                    }
+                }
+            }
+            finally {
+                g.dispose();
+            }
+        }
+        else if (sample != null) {
+            sample.flush();
+            sample = null;
+        }
+    }
+
+    /**
+     * Clears the dirty area and paints again the items already
+     * painted that intersect it.
+     * @param graphics the graphics
+     */
+    protected void repaintDirty(Graphics2D graphics) {
+        Rectangle r = dirty;
+        dirty = null;
+        Graphics2D g = createGraphics(detail, graphics);
+        try {
+            g.clip(r);
+            Composite c = g.getComposite();
+            g.setComposite(AlphaComposite.Clear);
+            g.fill(r);
+            g.setComposite(c);
+            for (int l = 0; l < layers.size(); l++) {
+                int start = getLayerStart(l);
+                if (start >= position) break;
+                DefaultVisualization vis = getLayer(l);
+                vis.getItemRenderer().install(g);
+                try {
+                    int end = Math.min(position, layerEnds[l]);
+                    for (int i = start; i < end; i++) {
+                        Shape s = vis.getShapeAt(rows[i]);
+                        if (s != null && s.getBounds2D().intersects(r)) {
+                            vis.paintItem(g, rows[i]);
+                        }
+                    }
+                }
+                finally {
+                    vis.getItemRenderer().uninstall(g);
+                }
+            }
+        }
+        finally {
+            g.dispose();
+        }
+    }
+
+    protected Graphics2D createGraphics(BufferedImage image, Graphics2D graphics) {
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHints(graphics.getRenderingHints());
+        g.translate(-Math.floor(bounds.x), -Math.floor(bounds.y));
+        return g;
+    }
+
+    /**
+     * Paints the next items within the time budget, then shows the
+     * current state of the rendering.
+     * @param graphics the graphics
+     * @param b the bounds of the visualization
+     * @return true if all the items have been painted
+     */
+    public boolean paint(Graphics2D graphics, Rectangle2D b) {
+        int w = (int) Math.ceil(b.getWidth());
+        int h = (int) Math.ceil(b.getHeight());
+        if (w <= 0 || h <= 0) {
+            return true;
+        }
+        long deadline = System.currentTimeMillis() + budget;
+        for (int l = 0; ! restart && l < layers.size(); l++) {
+            DefaultVisualization vis = getLayer(l);
+            // other visualizations, such as links, are laid out again
+            if (vis != visualization && vis.isInvalidated()) {
+                restart();
+            }
+        }
+        if (restart || ! bounds.equals(b)) {
+            bounds.setRect(b);
+            start(graphics, w, h);
+        }
+        else if (dirty != null) {
+            repaintDirty(graphics);
+        }
+        if (position < rowCount) {
+            Graphics2D g = createGraphics(detail, graphics);
+            try {
+                int l = 0;
+                while (layerEnds[l] <= position) {
+                    l++;
+                }
+                do {
+                    DefaultVisualization vis = getLayer(l);
+                    vis.getItemRenderer().install(g);
+                    try {
+                        do {
+                            int end = Math.min(layerEnds[l], position + BATCH_SIZE);
+                            for (; position < end; position++) {
+                                vis.paintItem(g, rows[position]);
+                            }
+                        }
+                        while (position < layerEnds[l]
+                                && System.currentTimeMillis() < deadline);
+                    }
+                    finally {
+                        vis.getItemRenderer().uninstall(g);
+                    }
+                    l++;
+                }
+                while (position < rowCount
+                        && System.currentTimeMillis() < deadline);
+            }
+            finally {
+                g.dispose();
+            }
+        }
+        int x = (int) Math.floor(bounds.x);
+        int y = (int) Math.floor(bounds.y);
+        boolean complete = position == rowCount;
+        if (! complete && sample != null) {
+            graphics.drawImage(sample, x, y, null);
+        }
+        graphics.drawImage(detail, x, y, null);
+        if (complete && sample != null) {
+            sample.flush();
+            sample = null;
+        }
+        return complete;
+    }
+}
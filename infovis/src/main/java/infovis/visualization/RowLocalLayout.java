@@ -0,0 +1,36 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.visualization;
+
+import infovis.Visualization;
+import infovis.utils.IntSet;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Layout where the shape of each row only depends on the values of
+ * that row, so that modifying a few rows only requires their shapes
+ * to be recomputed.
+ * 
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public interface RowLocalLayout extends Layout {
+    /**
+     * Recomputes the shapes of the specified rows, leaving the other
+     * shapes unchanged.
+     * 
+     * @param bounds the bounds of the visualization
+     * @param vis the visualization
+     * @param rows the rows to recompute
+     * @return <code>true</code> if the shapes have been recomputed,
+     * <code>false</code> if the whole layout should be recomputed
+     * instead.
+     */
+    boolean computeShapes(Rectangle2D bounds, Visualization vis, IntSet rows);
+}
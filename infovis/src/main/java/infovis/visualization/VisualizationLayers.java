@@ -168,7 +168,13 @@ public class VisualizationLayers extends VisualizationProxy {
     public int indexOf(Visualization visualization) {
         if (layer == null)
             return -1;
-        return layer.indexOf(visualization);
+        // Visualizations of the same table are equal, compare identities
+        for (int i = 0; i < layer.size(); i++) {
+            if (layer.get(i) == visualization) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -13,6 +13,7 @@ import infovis.Visualization;
 import infovis.column.BooleanColumn;
 import infovis.column.FilterColumn;
 import infovis.table.Item;
+import infovis.utils.IntSet;
 import infovis.utils.Permutation;
 import infovis.utils.RowIterator;
 
@@ -271,6 +272,13 @@ public class VisualizationProxy implements Visualization {
         if (visualization != null)
             visualization.invalidate(c);
     }
+    /**
+     * {@inheritDoc}
+     */
+    public void invalidate(Column c, IntSet rows) {
+        if (visualization != null)
+            visualization.invalidate(c, rows);
+    }
     /**
      * {@inheritDoc}
      */
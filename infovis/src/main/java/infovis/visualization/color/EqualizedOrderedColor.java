@@ -114,6 +114,14 @@ public class EqualizedOrderedColor extends OrderedColor {
     public boolean isUsingQuantiles() {
         return usingQuantiles;
     }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isRowLocal() {
+        // quantiles depend on all the values
+        return ! usingQuantiles;
+    }
     public void setUsingQuantiles(boolean usingQuantiles) {
         if (this.usingQuantiles == usingQuantiles) return;
         this.usingQuantiles = usingQuantiles;
@@ -43,6 +43,13 @@ public class ExplicitColor extends ColorVisualization {
         return colorColumn.get(row);
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isRowLocal() {
+        return true;
+    }
+    
     /**
      * @see javax.swing.event.ChangeListener#stateChanged(ChangeEvent)
      */
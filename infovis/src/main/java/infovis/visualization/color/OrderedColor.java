@@ -83,6 +83,13 @@ public class OrderedColor extends ColorVisualization {
         update();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isRowLocal() {
+        return true;
+    }
+
     public Color[] getCache() {
         if (cache == null) {
             cache = new Color[cacheSize];
@@ -7,6 +7,9 @@
  *****************************************************************************/
 package infovis.visualization.magicLens;
 
+import infovis.utils.LabelCache;
+import infovis.visualization.DefaultVisualization;
+
 import java.awt.*;
 import java.awt.geom.*;
 import java.util.*;
@@ -16,14 +19,27 @@ import javax.swing.event.SwingPropertyChangeSupport;
 /**
  * Display excentric labels around items in a labeledComponent.
  *
+ * <p>When the labeledComponent is an {@link IndexedLabeledComponent},
+ * only the items closest to the center of the lens are picked, through
+ * the spatial index of the component, so the lens follows the mouse
+ * smoothly on dense visualizations.  The spatial index of a
+ * {@link DefaultVisualization} is enabled when it is labeled.
+ * Otherwise, all the items under the lens are picked and the closest
+ * are labeled.  The arrays of labels are kept from one frame to the
+ * next.
+ *
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.3 $
  */
 public class DefaultExcentricLabels
     extends DefaultMagicLens
     implements ExcentricLabels, Comparator {
-    protected Set hits;
+    protected ArrayList hits = new ArrayList();
+    protected Set pickSet;
     protected LabeledComponent.LabeledItem items[];
+    protected Point2D.Double center1 = new Point2D.Double();
+    protected Point2D.Double center2 = new Point2D.Double();
+    protected Rectangle2D.Double labelBounds = new Rectangle2D.Double();
     protected Point2D.Double[] itemPosition;
     protected Point2D.Double[] linkPosition;
     protected Point2D.Double[] labelPosition;
@@ -59,6 +75,9 @@ public class DefaultExcentricLabels
      */
     public void setVisualization(LabeledComponent labeledComponent) {
         this.labeledComponent = labeledComponent;
+        if (labeledComponent instanceof DefaultVisualization) {
+            ((DefaultVisualization)labeledComponent).setSpatialIndexEnabled(true);
+        }
     }
 
     /**
@@ -67,10 +86,6 @@ public class DefaultExcentricLabels
      * @return the item or null
      */
     public LabeledComponent.LabeledItem getItem(int index) {
-        if (items == null) {
-            items = new LabeledComponent.LabeledItem[hits.size()];
-            hits.toArray(items);
-        }
         return items[index];
     }
 
@@ -83,7 +98,6 @@ public class DefaultExcentricLabels
                 || !isEnabled()) {
             return;
         }
-        FontMetrics fm = graphics.getFontMetrics();
         computeExcentricLabels(graphics, bounds);
 
         Line2D.Double line = new Line2D.Double();
@@ -100,8 +114,8 @@ public class DefaultExcentricLabels
 //            }
             if (opaque) {
                 graphics.setColor(backgroundColor);
-                Rectangle2D sb = fm.getStringBounds(lab, graphics);
-                
+                Rectangle2D sb = labelBounds;
+                sb.setRect(LabelCache.getInstance().getStringBounds(graphics, lab));
                 sb.setRect(
                         pos.x + sb.getX() - 2,
                         pos.y + sb.getY() - 2,
@@ -119,7 +133,8 @@ public class DefaultExcentricLabels
             if (fisheye != null) {
                 pos = (Point2D.Double)fisheye.transform(pos);
             }
-            graphics.drawString(lab, (int) (pos.x), (int) (pos.y));
+            LabelCache.getInstance().drawString(
+                    graphics, lab, (int) (pos.x), (int) (pos.y));
             line.setLine(
                 itemPosition[i],
                 linkPosition[i]);
@@ -149,20 +164,53 @@ public class DefaultExcentricLabels
                 || !isEnabled()) {
             return;
         }
-        items = null;
-        if (hits != null)
-            hits.clear();
-        else
-            hits = new HashSet();
-        hits = labeledComponent.pickAll(getBounds(), bounds, hits);
-
+        hits.clear();
+        Rectangle2D lens = getBounds();
+        if (labeledComponent instanceof IndexedLabeledComponent) {
+            ((IndexedLabeledComponent)labeledComponent).pickNearest(
+                    lens, bounds, maxLabels, hits);
+        }
+        else {
+            if (pickSet != null)
+                pickSet.clear();
+            pickSet = labeledComponent.pickAll(lens, bounds, pickSet);
+            hits.addAll(pickSet);
+        }
+        if (hits.size() > maxLabels) {
+            sortNearest(lens);
+        }
         labelCount = Math.min(maxLabels, hits.size());
+        if (items == null || items.length < labelCount) {
+            items = new LabeledComponent.LabeledItem[maxLabels];
+        }
+        for (int i = 0; i < labelCount; i++) {
+            items[i] = (LabeledComponent.LabeledItem)hits.get(i);
+        }
         if (labelCount != 0) {
             computeItemPositions(graphics, bounds);
             projectLeftRight(graphics, bounds);
         }
     }
 
+    /**
+     * Sorts the picked items by distance of their center to the
+     * center of the lens.
+     * @param lens the lens bounds
+     */
+    protected void sortNearest(final Rectangle2D lens) {
+        final double x = lens.getCenterX();
+        final double y = lens.getCenterY();
+        Collections.sort(hits, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                Point2D p1 = ((LabeledComponent.LabeledItem)o1).getCenterIn(lens, center1);
+                Point2D p2 = ((LabeledComponent.LabeledItem)o2).getCenterIn(lens, center2);
+                double d1 = p1 == null ? Double.MAX_VALUE : p1.distanceSq(x, y);
+                double d2 = p2 == null ? Double.MAX_VALUE : p2.distanceSq(x, y);
+                return d1 < d2 ? -1 : (d1 == d2 ? 0 : 1);
+            }
+        });
+    }
+
     protected void computeItemPositions(
         Graphics2D graphics,
         Rectangle2D bounds) {
@@ -207,7 +255,7 @@ public class DefaultExcentricLabels
             String lab = getItem(i).getLabel();
             if (lab == null)
                 lab = "item" + getItem(i);
-            Rectangle2D sb = fm.getStringBounds(lab, graphics);
+            Rectangle2D sb = LabelCache.getInstance().getStringBounds(graphics, lab);
             Point2D.Double linkPos = linkPosition[i];
             Point2D.Double labelPos = labelPosition[i];
 
@@ -562,8 +562,26 @@ public class DefaultFisheye extends DefaultMagicLens implements Fisheye {
      *            DOCUMENT ME!
      */
     public void transform(float[] coords, int npoints) {
+        transform(coords, 0, npoints);
+    }
+
+    /**
+     * Transforms the points of an array of coordinates starting at a
+     * specified point.
+     * 
+     * <p>This method only reads the state of the fisheye so distinct
+     * ranges of an array can be transformed concurrently.
+     * 
+     * @param coords
+     *            the array of X and Y coordinates
+     * @param start
+     *            the index of the first point
+     * @param npoints
+     *            the number of points to transform
+     */
+    public void transform(float[] coords, int start, int npoints) {
         if (!isEnabled()) return;
-        for (int i = 0; i < npoints; i++) {
+        for (int i = start; i < start + npoints; i++) {
             float scale = getScale(coords[2 * i], coords[2 * i + 1]);
             if (scale != 1) {
                 coords[2 * i] = transformX(coords[2 * i], scale);
@@ -650,6 +668,9 @@ public class DefaultFisheye extends DefaultMagicLens implements Fisheye {
      *            The lensType to set
      */
     public void setLensType(short lensType) {
+        if (this.lensType == lensType && lensProfile != null)
+            return;
+        firePropertyChange(PROPERTY_LENS_SHAPE, this.lensType, lensType);
         this.lensType = lensType;
 
         switch (lensType) {
@@ -0,0 +1,41 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+package infovis.visualization.magicLens;
+
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+/**
+ * Interface IndexedLabeledComponent is implemented by
+ * LabeledComponents able to return the items closest to the
+ * center of a lens without scanning all their items, usually
+ * through a spatial index.
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public interface IndexedLabeledComponent extends LabeledComponent {
+    /**
+     * Returns a list of LabeledItems under a specified Rectangle,
+     * the closest to its center first.
+     *
+     * @param hitBox the rectangle that the items should intersect
+     * @param bounds the bounds of the visualization
+     * @param count the maximum number of items returned by this
+     * component
+     * @param pick a List to add the items to or null if a new
+     * one has be be allocated.
+     *
+     * @return the List of LabeledItems under the specified Rectangle.
+     */
+    public List pickNearest(
+        Rectangle2D hitBox,
+        Rectangle2D bounds,
+        int count,
+        List pick);
+}
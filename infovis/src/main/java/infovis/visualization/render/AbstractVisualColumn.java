@@ -11,6 +11,8 @@ import infovis.Column;
 import infovis.Visualization;
 import infovis.column.ColumnFilter;
 import infovis.column.ColumnFilterException;
+import infovis.column.NumberColumn;
+import infovis.column.event.ColumnChangeEvent;
 import infovis.metadata.VisualRole;
 import infovis.visualization.ItemRenderer;
 import infovis.visualization.VisualColumnDescriptor;
@@ -32,6 +34,9 @@ public abstract class AbstractVisualColumn extends AbstractItemRenderer
         implements VisualColumnDescriptor, ColumnFilter, ChangeListener {
     protected boolean invalidate;
     protected ColumnFilter filter;
+    private transient boolean rangeKnown;
+    private transient double rangeMin;
+    private transient double rangeMax;
 
     protected AbstractVisualColumn(String name) {
         super(name);
@@ -49,10 +54,52 @@ public abstract class AbstractVisualColumn extends AbstractItemRenderer
      */
     public void stateChanged(ChangeEvent e) {
         if (visualization != null) {
-            visualization.invalidate(getColumn());
+            if (e instanceof ColumnChangeEvent 
+                    && isRowLocal((ColumnChangeEvent)e)) {
+                visualization.invalidate(
+                        getColumn(),
+                        ((ColumnChangeEvent)e).getDetail());
+            }
+            else {
+                visualization.invalidate(getColumn());
+            }
         }
     }
     
+    /**
+     * Returns true if the change described by the specified event
+     * only affects the visual attributes of the modified rows.
+     * 
+     * <p>By default, a change is row-local when the column is a
+     * <code>NumberColumn</code> whose range of values has not changed,
+     * since visual attributes are usually computed relatively to
+     * that range.
+     * 
+     * @param e the event
+     * @return true if the change only affects the modified rows
+     */
+    protected boolean isRowLocal(ColumnChangeEvent e) {
+        Column c = getColumn();
+        if (e.getSource() != c || e.getDetail() == null 
+                || !(c instanceof NumberColumn)) {
+            return false;
+        }
+        NumberColumn number = (NumberColumn) c;
+        double min = Double.NaN;
+        double max = Double.NaN;
+        if (number.getMinIndex() != -1) {
+            min = number.getDoubleMin();
+            max = number.getDoubleMax();
+        }
+        boolean sameRange = rangeKnown
+            && Double.compare(min, rangeMin) == 0
+            && Double.compare(max, rangeMax) == 0;
+        rangeKnown = true;
+        rangeMin = min;
+        rangeMax = max;
+        return sameRange;
+    }
+    
     /**
      * @return a default value for the column
      */
@@ -75,6 +122,7 @@ public abstract class AbstractVisualColumn extends AbstractItemRenderer
         if (old != null) {
             old.removeChangeListener(this);
         }
+        rangeKnown = false;
         if (column != null) {
             column.addChangeListener(this);
         }
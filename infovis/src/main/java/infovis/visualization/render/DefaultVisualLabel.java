@@ -9,6 +9,7 @@ package infovis.visualization.render;
 
 import infovis.*;
 import infovis.utils.InfovisUtilities;
+import infovis.utils.LabelCache;
 import infovis.visualization.*;
 
 import java.awt.*;
@@ -51,6 +52,7 @@ public class DefaultVisualLabel extends VisualLabel implements Orientable {
         super(child);
         this.showingLabel = showingLabel;
         this.defaultColor = defaultColor;
+        this.minimumSize = 10;
     }
 
     /**
@@ -111,10 +113,10 @@ public class DefaultVisualLabel extends VisualLabel implements Orientable {
             return 0;
         if (orientation != ORIENTATION_NORTH
                 && orientation != ORIENTATION_SOUTH) {
-            return font.getStringBounds(label, FRC).getWidth();
+            return getStringBounds(label).getWidth();
         }
         else {
-            return font.getStringBounds(label, FRC).getHeight();
+            return getStringBounds(label).getHeight();
         }
     }
 
@@ -126,10 +128,10 @@ public class DefaultVisualLabel extends VisualLabel implements Orientable {
             return 0;
         if (orientation != ORIENTATION_NORTH
                 && orientation != ORIENTATION_SOUTH) {
-            return font.getStringBounds(label, FRC).getHeight();
+            return getStringBounds(label).getHeight();
         }
         else {
-            return font.getStringBounds(label, FRC).getWidth();
+            return getStringBounds(label).getWidth();
         }
     }
 
@@ -144,7 +146,8 @@ public class DefaultVisualLabel extends VisualLabel implements Orientable {
         Rectangle2D bounds = s.getBounds2D();
         double width = bounds.getWidth();
         double height = bounds.getHeight();
-        if (isClipped() && (width < 10 || height < 10)) {
+        if (! fontVisible
+                || (isClipped() && (width < minimumSize || height < minimumSize))) {
             // too small, don't even try
             return;
         }
@@ -154,8 +157,8 @@ public class DefaultVisualLabel extends VisualLabel implements Orientable {
             return;
         }
         graphics.setFont(getFont());
-        FontMetrics fm = graphics.getFontMetrics();
-        Rectangle2D labelBounds = fm.getStringBounds(label, graphics);
+        LabelCache cache = LabelCache.getInstance();
+        Rectangle2D labelBounds = cache.getStringBounds(graphics, label);
         boolean shouldRotate = false;
         boolean shouldClip =
 //            alwaysClip ||
@@ -179,7 +182,7 @@ public class DefaultVisualLabel extends VisualLabel implements Orientable {
                 label = labelClipper.clip(label, graphics, labelBounds, hw, hh);
                 if (label == null)
                     return;
-                labelBounds = fm.getStringBounds(label, graphics);
+                labelBounds = cache.getStringBounds(graphics, label);
             }
             if (!bounds.contains(labelBounds)) {
                 Rectangle rect = bounds.getBounds();
@@ -8,6 +8,7 @@
 package infovis.visualization.render;
 
 import infovis.*;
+import infovis.column.event.ColumnChangeEvent;
 import infovis.metadata.ValueCategory;
 import infovis.visualization.ColorVisualization;
 import infovis.visualization.ItemRenderer;
@@ -218,6 +219,15 @@ public class VisualColor extends AbstractVisualColumn {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean isRowLocal(ColumnChangeEvent e) {
+        return colorVisualization != null
+            && colorVisualization.isRowLocal()
+            && super.isRowLocal(e);
+    }
+
     public ColorVisualization getColorVisualization() {
         return colorVisualization;
     }
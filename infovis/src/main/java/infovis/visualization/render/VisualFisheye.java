@@ -10,22 +10,54 @@ package infovis.visualization.render;
 import infovis.Column;
 import infovis.Visualization;
 import infovis.column.filter.FilterAll;
+import infovis.utils.RectQuadTree;
+import infovis.utils.WorkerPool;
+import infovis.visualization.DefaultVisualization;
 import infovis.visualization.ItemRenderer;
+import infovis.visualization.magicLens.DefaultFisheye;
 import infovis.visualization.magicLens.Fisheye;
 
 import java.awt.Graphics2D;
 import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+import cern.colt.list.IntArrayList;
 
 /**
  * A <code>VisualFisheye</code> applies a fisheye deformation to
  * its children.
  * 
+ * <p>When cached, the transformed shapes are kept from one paint to
+ * the next and only recomputed when the fisheye changes, for
+ * instance when the lens moves, or when the shape of an item
+ * changes.  Items outside of the lens bounds are not transformed and
+ * rectangles smaller than the anchor size are transformed through
+ * their two corners instead of being flattened and subdivided.
+ * When the spatial index of the visualization is enabled, the
+ * corners of the items under the lens are transformed in one loop,
+ * in parallel for large numbers of items.
+ * 
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.5 $
  */
-public class VisualFisheye extends AbstractVisualColumn {
+public class VisualFisheye extends AbstractVisualColumn
+    implements PropertyChangeListener {
     public static final String VISUAL = "fisheye";
+    /** Minimum number of items for a parallel transformation. */
+    public static final int PARALLEL_THRESHOLD = 1000;
     protected Fisheye fisheye;
+    protected boolean cached;
+    protected float anchorSize = 8;
+    protected transient int stamp = 1;
+    protected transient int validStamp;
+    protected transient Rectangle2D.Float lensBounds;
+    protected transient Shape[] sources;
+    protected transient Shape[] transformed;
+    protected transient float[] boxes;
+    protected transient int[] stamps;
+    protected transient float[] coords;
 
     public static VisualFisheye get(Visualization vis) {
         return (VisualFisheye)findNamed(VISUAL, vis);
@@ -80,9 +112,21 @@ public class VisualFisheye extends AbstractVisualColumn {
         this(c1, c2, c3, null);
     }
     
+    public void install(Graphics2D graphics) {
+        if (cached && fisheye != null) {
+            validate();
+        }
+        super.install(graphics);
+    }
+
     public void paint(Graphics2D graphics, int row, Shape shape) {
         if (fisheye != null) {
-            shape = fisheye.transform(shape);
+            if (cached) {
+                shape = transformCached(row, shape);
+            }
+            else {
+                shape = fisheye.transform(shape);
+            }
         }
         super.paint(graphics, row, shape);
     }
@@ -98,7 +142,237 @@ public class VisualFisheye extends AbstractVisualColumn {
     
     public void setFisheye(Fisheye fisheye) {
         if (this.fisheye == fisheye) return;
+        if (this.fisheye != null) {
+            this.fisheye.removePropertyChangeListener(this);
+        }
         this.fisheye = fisheye;
+        if (fisheye != null) {
+            fisheye.addPropertyChangeListener(this);
+        }
+        clearCache();
         getVisualization().repaint();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void propertyChange(PropertyChangeEvent evt) {
+        stamp++;
+    }
+
+    /**
+     * Returns true if the transformed shapes are cached.
+     * @return true if the transformed shapes are cached
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Sets whether the transformed shapes are cached.
+     * 
+     * <p>Caching also enables the spatial index of a
+     * {@link DefaultVisualization} to find the items under the lens.
+     * 
+     * @param cached true to cache the transformed shapes
+     */
+    public void setCached(boolean cached) {
+        if (this.cached == cached) return;
+        this.cached = cached;
+        clearCache();
+        Visualization vis = getVisualization();
+        if (cached && vis instanceof DefaultVisualization) {
+            ((DefaultVisualization)vis).setSpatialIndexEnabled(true);
+        }
+        if (vis != null) {
+            vis.repaint();
+        }
+    }
+
+    /**
+     * Returns the size below which rectangles are transformed through
+     * their corners.
+     * @return the anchor size
+     */
+    public float getAnchorSize() {
+        return anchorSize;
+    }
+
+    /**
+     * Sets the size below which rectangles are transformed through
+     * their corners when the shapes are cached.
+     * @param size the anchor size, 0 to always transform the
+     * outline of the shapes
+     */
+    public void setAnchorSize(float size) {
+        if (anchorSize == size) return;
+        anchorSize = size;
+        stamp++;
+        repaint();
+    }
+
+    /**
+     * Discards the transformed shapes.
+     */
+    public void clearCache() {
+        sources = null;
+        transformed = null;
+        boxes = null;
+        stamps = null;
+        stamp++;
+    }
+
+    protected void ensureCapacity(int rows) {
+        if (stamps != null && stamps.length >= rows) return;
+        int size = Math.max(rows, stamps == null ? 16 : stamps.length * 2);
+        Shape[] s = new Shape[size];
+        Shape[] t = new Shape[size];
+        float[] b = new float[size * 4];
+        int[] st = new int[size];
+        if (stamps != null) {
+            System.arraycopy(sources, 0, s, 0, sources.length);
+            System.arraycopy(transformed, 0, t, 0, transformed.length);
+            System.arraycopy(boxes, 0, b, 0, boxes.length);
+            System.arraycopy(stamps, 0, st, 0, stamps.length);
+        }
+        sources = s;
+        transformed = t;
+        boxes = b;
+        stamps = st;
+    }
+
+    protected boolean isAnchored(Shape s) {
+        return s instanceof Rectangle2D
+            && ((Rectangle2D)s).getWidth() <= anchorSize
+            && ((Rectangle2D)s).getHeight() <= anchorSize;
+    }
+
+    protected void store(int row, Shape s, Rectangle2D box, Shape t) {
+        ensureCapacity(row + 1);
+        int i = row * 4;
+        boxes[i] = (float)box.getMinX();
+        boxes[i+1] = (float)box.getMinY();
+        boxes[i+2] = (float)box.getMaxX();
+        boxes[i+3] = (float)box.getMaxY();
+        sources[row] = s;
+        transformed[row] = t;
+        stamps[row] = stamp;
+    }
+
+    /**
+     * Updates the lens bounds and transforms the items under the lens
+     * when the fisheye has changed since the last paint.
+     */
+    protected void validate() {
+        if (validStamp == stamp && lensBounds != null) return;
+        validStamp = stamp;
+        if (lensBounds == null) {
+            // allocated here since renderers are cloned from prototypes
+            lensBounds = new Rectangle2D.Float();
+            coords = new float[4];
+        }
+        lensBounds.setRect(fisheye.getBounds());
+        if (! fisheye.isEnabled()) return;
+        Visualization vis = getVisualization();
+        if (! (vis instanceof DefaultVisualization)) return;
+        RectQuadTree index = ((DefaultVisualization)vis).getSpatialIndex();
+        if (index == null) return;
+        IntArrayList rows = index.query(lensBounds, null);
+        if (coords.length < rows.size() * 4) {
+            coords = new float[rows.size() * 4];
+        }
+        int n = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            int row = rows.getQuick(i);
+            Shape s = vis.getShapeAt(row);
+            if (! isAnchored(s)) continue;
+            Rectangle2D r = (Rectangle2D)s;
+            rows.setQuick(n, row);
+            coords[4*n] = (float)r.getMinX();
+            coords[4*n+1] = (float)r.getMinY();
+            coords[4*n+2] = (float)r.getMaxX();
+            coords[4*n+3] = (float)r.getMaxY();
+            n++;
+        }
+        transformCorners(n);
+        for (int i = 0; i < n; i++) {
+            int row = rows.getQuick(i);
+            Rectangle2D s = (Rectangle2D)vis.getShapeAt(row);
+            store(row, s, s, createRect(4*i));
+        }
+    }
+
+    protected void transformCorners(int n) {
+        final float[] c = coords;
+        if (n >= PARALLEL_THRESHOLD && fisheye instanceof DefaultFisheye) {
+            final DefaultFisheye f = (DefaultFisheye)fisheye;
+            WorkerPool pool = WorkerPool.getInstance();
+            pool.runBlocks(
+                    n * 2,
+                    pool.getThreadCount(),
+                    new WorkerPool.BlockTask() {
+                public void run(int block, int start, int end) {
+                    f.transform(c, start, end - start);
+                }
+            });
+        }
+        else {
+            fisheye.transform(c, n * 2);
+        }
+    }
+
+    protected Shape createRect(int i) {
+        float x0 = Math.min(coords[i], coords[i+2]);
+        float y0 = Math.min(coords[i+1], coords[i+3]);
+        return new Rectangle2D.Float(
+                x0, y0,
+                Math.max(coords[i], coords[i+2]) - x0,
+                Math.max(coords[i+1], coords[i+3]) - y0);
+    }
+
+    /**
+     * Returns the transformed shape of a row, from the cache if the
+     * fisheye and the shape have not changed since it was computed.
+     * 
+     * @param row the row
+     * @param s the shape
+     * @return the transformed shape
+     */
+    protected Shape transformCached(int row, Shape s) {
+        if (s == null) return s;
+        validate();
+        Rectangle2D box = s instanceof Rectangle2D ? (Rectangle2D)s : s.getBounds2D();
+        if (stamps != null && row < stamps.length
+                && stamps[row] == stamp
+                && sources[row] == s) {
+            int i = row * 4;
+            if (boxes[i] == (float)box.getMinX()
+                    && boxes[i+1] == (float)box.getMinY()
+                    && boxes[i+2] == (float)box.getMaxX()
+                    && boxes[i+3] == (float)box.getMaxY()) {
+                return transformed[row];
+            }
+        }
+        Shape t;
+        if (! fisheye.isEnabled()
+                || box.getMaxX() < lensBounds.getMinX()
+                || box.getMinX() > lensBounds.getMaxX()
+                || box.getMaxY() < lensBounds.getMinY()
+                || box.getMinY() > lensBounds.getMaxY()) {
+            t = s;
+        }
+        else if (isAnchored(s)) {
+            coords[0] = (float)box.getMinX();
+            coords[1] = (float)box.getMinY();
+            coords[2] = (float)box.getMaxX();
+            coords[3] = (float)box.getMaxY();
+            fisheye.transform(coords, 2);
+            t = createRect(0);
+        }
+        else {
+            t = fisheye.transform(s);
+        }
+        store(row, s, box, t);
+        return t;
+    }
 }
@@ -12,7 +12,9 @@ import java.awt.font.FontRenderContext;
 import java.awt.geom.Rectangle2D;
 
 import infovis.*;
+import infovis.column.event.ColumnChangeEvent;
 import infovis.metadata.VisualRole;
+import infovis.utils.LabelCache;
 import infovis.visualization.*;
 
 /**
@@ -22,6 +24,11 @@ import infovis.visualization.*;
  * <p>More sophisticated
  * versions may derive from this class.</p>
  * 
+ * <p>Labels are measured and drawn through the {@link LabelCache}.
+ * Labels are skipped when the item is smaller than the minimum size,
+ * or when the font is smaller than the minimum font size on the
+ * device, as computed once when the renderer is installed.</p>
+ * 
  * @author Jean-Daniel Fekete
  * @version $Revision: 1.16 $
  */
@@ -34,6 +41,12 @@ public class VisualLabel extends AbstractVisualColumn {
     protected Font                           font   = new Font("Dialog", Font.PLAIN, 10);
     /** The default color used for drawing the fonts or NULL if automatic */
     protected Color                          defaultColor  = null;
+    /** Minimum width and height of an item for showing its label */
+    protected double                         minimumSize   = 3;
+    /** Minimum size of the font on the device for showing labels */
+    protected double                         minimumFontSize = 4;
+    /** False when the font is too small on the current graphics */
+    protected transient boolean              fontVisible   = true;
 
     protected static final FontRenderContext FRC           = new FontRenderContext(
             null,
@@ -140,6 +153,15 @@ public class VisualLabel extends AbstractVisualColumn {
         invalidate();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean isRowLocal(ColumnChangeEvent e) {
+        // labels can overflow the shapes so the whole
+        // visualization is repainted.
+        return false;
+    }
+
     /**
      * Returns the defaultFont.
      * 
@@ -184,7 +206,7 @@ public class VisualLabel extends AbstractVisualColumn {
     public double getWidth(String label) {
         if (label == null)
             return 0;
-        return font.getStringBounds(label, FRC).getWidth();
+        return getStringBounds(label).getWidth();
     }
 
     /**
@@ -195,7 +217,82 @@ public class VisualLabel extends AbstractVisualColumn {
     public double getHeight(String label) {
         if (label == null)
             return 0;
-        return font.getStringBounds(label, FRC).getHeight();
+        return getStringBounds(label).getHeight();
+    }
+
+    /**
+     * Returns the bounds of the specified label with the font,
+     * independently of any graphics.
+     * BEWARE! the rectangle is shared and should only be read.
+     * @param label the label
+     * @return the bounds of the label
+     */
+    public Rectangle2D getStringBounds(String label) {
+        return LabelCache.getInstance().getStringBounds(font, FRC, label);
+    }
+
+    /**
+     * Returns the minimum width and height of an item for showing
+     * its label.
+     * @return the minimum size in pixels
+     */
+    public double getMinimumSize() {
+        return minimumSize;
+    }
+
+    /**
+     * Sets the minimum width and height of an item for showing
+     * its label.
+     * @param minimumSize the minimum size in pixels
+     */
+    public void setMinimumSize(double minimumSize) {
+        this.minimumSize = minimumSize;
+        repaint();
+    }
+
+    /**
+     * Returns the minimum size of the font on the device for
+     * showing the labels.
+     * @return the minimum font size in pixels
+     */
+    public double getMinimumFontSize() {
+        return minimumFontSize;
+    }
+
+    /**
+     * Sets the minimum size of the font on the device for
+     * showing the labels.
+     * @param minimumFontSize the minimum font size in pixels
+     */
+    public void setMinimumFontSize(double minimumFontSize) {
+        this.minimumFontSize = minimumFontSize;
+        repaint();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void install(Graphics2D graphics) {
+        super.install(graphics);
+        fontVisible = true;
+        Font f = getFont();
+        if (graphics != null && f != null && minimumFontSize > 0) {
+            double scale = Math.sqrt(Math.abs(
+                    graphics.getTransform().getDeterminant()));
+            fontVisible = f.getSize2D() * scale >= minimumFontSize;
+        }
+    }
+
+    /**
+     * Returns true if a label can be shown in the specified item
+     * bounds.
+     * @param bounds the item bounds
+     * @return true if a label can be shown
+     */
+    public boolean isLabelVisible(Rectangle2D bounds) {
+        return fontVisible
+            && bounds.getWidth() >= minimumSize
+            && bounds.getHeight() >= minimumSize;
     }
 
     /**
@@ -218,23 +315,22 @@ public class VisualLabel extends AbstractVisualColumn {
      * {@inheritDoc}
      */
     public void paint(Graphics2D graphics, int row, Shape s) {
+        Rectangle2D bounds = s.getBounds2D();
+        if (! isLabelVisible(bounds)) {
+            // too small, don't even try
+            return;
+        }
         String label = getLabelAt(row);
         if (label == null) {
             // Nothing to show
             return;
         }
-        Rectangle2D bounds = s.getBounds2D();
-        double width = bounds.getWidth();
-        double height = bounds.getHeight();
-        if (width < 3 || height < 3) {
-            // too small, don't even try
-            return;
-        }
         graphics.setFont(getFont());
         graphics.setColor(getDefaultColor());
-        FontMetrics fm = graphics.getFontMetrics();
-        Rectangle2D labelBounds = fm.getStringBounds(label, graphics);
-        graphics.drawString(
+        LabelCache cache = LabelCache.getInstance();
+        Rectangle2D labelBounds = cache.getStringBounds(graphics, label);
+        cache.drawString(
+                graphics,
                 label,
                 (float)(bounds.getCenterX()-labelBounds.getCenterX()),
                 (float)(bounds.getCenterY()-labelBounds.getCenterY()));
@@ -7,6 +7,7 @@
  *****************************************************************************/
 package infovis.visualization.render;
 
+import infovis.utils.LabelCache;
 import infovis.visualization.ItemRenderer;
 
 import java.awt.*;
@@ -29,7 +30,7 @@ public class VisualLabelUnder extends DefaultVisualLabel {
     }
 
     public void paint(Graphics2D graphics, int row, Shape s) {
-        if (!showingLabel) {
+        if (!showingLabel || !fontVisible) {
             return;
         }
         String label = getLabelAt(row);
@@ -37,12 +38,12 @@ public class VisualLabelUnder extends DefaultVisualLabel {
             return;
         }
         Rectangle2D bounds = s.getBounds2D();
-        FontMetrics fm = graphics.getFontMetrics();
-        Rectangle2D labelBounds = fm.getStringBounds(label, graphics);
+        LabelCache cache = LabelCache.getInstance();
+        Rectangle2D labelBounds = cache.getStringBounds(graphics, label);
 
         Color savedColor = contrastColor(graphics);
 
-        graphics.drawString(label,
+        cache.drawString(graphics, label,
                 (float) (bounds.getCenterX() - labelBounds.getWidth()/2),
                 (float) (bounds.getMaxY() + labelBounds.getHeight()));
         graphics.setColor(savedColor);
@@ -9,6 +9,7 @@ package infovis.visualization.render;
 
 import infovis.*;
 import infovis.column.BooleanColumn;
+import infovis.column.event.ColumnChangeEvent;
 import infovis.column.filter.NotTypedFilter;
 import infovis.visualization.ItemRenderer;
 
@@ -127,6 +128,14 @@ public class VisualSelection extends AbstractVisualColumn {
         invalidate();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean isRowLocal(ColumnChangeEvent e) {
+        // selecting a row only changes its own appearance
+        return e.getSource() == selection && e.getDetail() != null;
+    }
+
     /**
      * Return the color for the specified row.
      * @param row the row 
@@ -7,7 +7,9 @@
  *****************************************************************************/
 package infovis.visualization.ruler;
 
+import infovis.Column;
 import infovis.Table;
+import infovis.column.ColumnFactory;
 import infovis.column.ShapeColumn;
 import infovis.column.StringColumn;
 import infovis.table.DefaultTable;
@@ -90,6 +92,53 @@ public class RulerTable extends DefaultTable {
         return (String)table.getMetadata().getAttribute(attributeName);
     }
 
+    /**
+     * Creates a RulerTable with the columns of a specified table and
+     * a copy of its rulers.
+     * @param table the table
+     * @return a new RulerTable holding a copy of the rulers
+     */
+    public static RulerTable createCopy(Table table) {
+        RulerTable copy = new RulerTable();
+        ColumnFactory factory = ColumnFactory.getInstance();
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            Column c = table.getColumnAt(i);
+            if (copy.getColumn(c.getName()) != null) continue;
+            Column col = factory.create(factory.getTypeName(c), c.getName());
+            if (col != null) {
+                copy.addColumn(col);
+            }
+        }
+        copyRulers(table, copy);
+        return copy;
+    }
+
+    /**
+     * Replaces the rulers of a table by the rulers of another table,
+     * copying the columns with the same name and the axis labels.
+     * @param from the table to copy from
+     * @param to the table to copy to
+     */
+    public static void copyRulers(Table from, Table to) {
+        try {
+            to.disableNotify();
+            to.clear();
+            for (int i = 0; i < from.getColumnCount(); i++) {
+                Column src = from.getColumnAt(i);
+                Column dst = to.getColumn(src.getName());
+                if (dst == null) continue;
+                dst.setSize(src.size());
+                for (int row = 0; row < src.size(); row++) {
+                    dst.setObjectAt(row, src.getObjectAt(row));
+                }
+            }
+            to.getMetadata().addAttributes(from.getMetadata());
+        }
+        finally {
+            to.enableNotify();
+        }
+    }
+
     /**
      * Returns a shape from the shape column stored in the table.
      * @param table the table
@@ -0,0 +1,241 @@
+import infovis.Table;
+import infovis.Visualization;
+import infovis.column.IntColumn;
+import infovis.table.DefaultTable;
+import infovis.utils.RowIterator;
+import infovis.utils.WorkerPool;
+import infovis.visualization.AbstractLayout;
+import infovis.visualization.BackgroundLayout;
+import infovis.visualization.DefaultVisualization;
+import infovis.visualization.Layout;
+import infovis.visualization.ruler.RulerTable;
+
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+
+/**
+ * Class BackgroundLayoutTest
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class BackgroundLayoutTest extends TestCase {
+    public BackgroundLayoutTest(String name) {
+        super(name);
+    }
+
+    static class BlockingLayout extends AbstractLayout {
+        Semaphore start = new Semaphore(0);
+        Semaphore entered = new Semaphore(0);
+        volatile int count;
+        volatile Thread thread;
+
+        public String getName() {
+            return "Blocking";
+        }
+
+        public Visualization getVisualization() {
+            return null;
+        }
+
+        public void invalidate(Visualization vis) {
+        }
+
+        public void computeShapes(Rectangle2D bounds, Visualization vis) {
+            entered.release();
+            start.acquireUninterruptibly();
+            thread = Thread.currentThread();
+            count++;
+            for (RowIterator iter = vis.iterator(); iter.hasNext(); ) {
+                int row = iter.nextRow();
+                vis.setShapeAt(row, new Rectangle2D.Float(
+                        0, row, (float)bounds.getWidth(), 1));
+            }
+        }
+    }
+
+    static class RulerLayout extends BlockingLayout {
+        public void computeShapes(Rectangle2D bounds, Visualization vis) {
+            DefaultVisualization v = (DefaultVisualization)vis;
+            v.clearRulers();
+            super.computeShapes(bounds, vis);
+            Table rulers = vis.getRulerTable();
+            IntColumn rows = IntColumn.findColumn(rulers, "row");
+            for (RowIterator iter = vis.iterator(); iter.hasNext(); ) {
+                int row = iter.nextRow();
+                RulerTable.addRuler(
+                        rulers,
+                        new Rectangle2D.Float(0, row, (float)bounds.getWidth(), 0),
+                        Integer.toString(row));
+                rows.setExtend(rulers.getRowCount() - 1, row);
+            }
+            RulerTable.setAxisLabel(rulers, "rows", true);
+        }
+    }
+
+    static class LayoutVisualization extends DefaultVisualization {
+        Layout layout;
+        int installed;
+
+        LayoutVisualization(Table table, Layout layout) {
+            super(table);
+            this.layout = layout;
+        }
+
+        public Layout getLayout() {
+            return layout;
+        }
+
+        protected void installRenderers() {
+            installed++;
+            super.installRenderers();
+        }
+
+        protected void uninstallRenderers() {
+            installed--;
+            super.uninstallRenderers();
+        }
+    }
+
+    public void testBackgroundLayout() {
+        DefaultTable table = new DefaultTable();
+        IntColumn col = new IntColumn("value");
+        for (int i = 0; i < 100; i++) {
+            col.add(i);
+        }
+        table.addColumn(col);
+        BlockingLayout layout = new BlockingLayout();
+        DefaultVisualization vis = new LayoutVisualization(table, layout);
+        vis.setBackgroundLayout(true);
+        BackgroundLayout background = vis.getBackgroundLayout();
+
+        vis.validateShapes(new Rectangle2D.Float(0, 0, 100, 100));
+        layout.entered.acquireUninterruptibly();
+        assertTrue(background.isRunning());
+        assertNull(vis.getShapeAt(0));
+        // resize while the first layout is running
+        vis.validateShapes(new Rectangle2D.Float(0, 0, 200, 100));
+        vis.validateShapes(new Rectangle2D.Float(0, 0, 300, 100));
+        layout.start.release(2);
+        background.waitFor();
+        assertFalse(background.isRunning());
+        assertEquals(2, layout.count);
+        assertEquals(1, background.getLayoutCount());
+        assertNotSame(Thread.currentThread(), layout.thread);
+        assertEquals(300, vis.getShapeAt(5).getBounds2D().getWidth(), 0);
+        assertFalse(vis.isInvalidated());
+
+        // the previous shapes remain visible during the layout
+        vis.invalidate();
+        vis.validateShapes(new Rectangle2D.Float(0, 0, 300, 100));
+        assertTrue(background.isRunning());
+        assertEquals(300, vis.getShapeAt(5).getBounds2D().getWidth(), 0);
+        vis.validateShapes(new Rectangle2D.Float(0, 0, 300, 100));
+        layout.start.release();
+        background.waitFor();
+        assertEquals(3, layout.count);
+        assertEquals(2, background.getLayoutCount());
+        assertEquals(5, vis.getShapeAt(5).getBounds2D().getY(), 0);
+
+        vis.setBackgroundLayout(false);
+        assertNull(vis.getBackgroundLayout());
+        layout.start.release();
+        vis.validateShapes(new Rectangle2D.Float(0, 0, 50, 100));
+        assertSame(Thread.currentThread(), layout.thread);
+        assertEquals(50, vis.getShapeAt(5).getBounds2D().getWidth(), 0);
+    }
+
+    public void testRulers() {
+        DefaultTable table = new DefaultTable();
+        IntColumn col = new IntColumn("value");
+        for (int i = 0; i < 10; i++) {
+            col.add(i);
+        }
+        table.addColumn(col);
+        RulerLayout layout = new RulerLayout();
+        DefaultVisualization vis = new LayoutVisualization(table, layout);
+        RulerTable rulers = new RulerTable();
+        rulers.addColumn(new IntColumn("row"));
+        vis.setRulerTable(rulers);
+        vis.setBackgroundLayout(true);
+        BackgroundLayout background = vis.getBackgroundLayout();
+
+        layout.start.release();
+        background.validate(new Rectangle2D.Float(0, 0, 100, 100));
+        assertSame(rulers, vis.getRulerTable());
+        assertEquals(10, rulers.getRowCount());
+        assertEquals("rows", RulerTable.getAxisLabel(rulers, true));
+        layout.entered.drainPermits();
+
+        // the visible rulers are not modified during the layout
+        vis.invalidate();
+        vis.validateShapes(new Rectangle2D.Float(0, 0, 200, 100));
+        // the layout has cleared its rulers
+        layout.entered.acquireUninterruptibly();
+        assertNotSame(rulers, background.getRulerTable());
+        assertEquals(0, background.getRulerTable().getRowCount());
+        assertEquals(10, rulers.getRowCount());
+        assertEquals(100, RulerTable.getShape(rulers, 3).getBounds2D().getWidth(), 0);
+        layout.start.release();
+        background.waitFor();
+        assertEquals(10, rulers.getRowCount());
+        IntColumn rows = IntColumn.findColumn(rulers, "row");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, rows.get(i));
+            assertEquals(200, RulerTable.getShape(rulers, i).getBounds2D().getWidth(), 0);
+        }
+        assertEquals("rows", RulerTable.getAxisLabel(rulers, true));
+    }
+
+    public void testCancel() throws InterruptedException {
+        DefaultTable table = new DefaultTable();
+        IntColumn col = new IntColumn("value");
+        for (int i = 0; i < 10; i++) {
+            col.add(i);
+        }
+        table.addColumn(col);
+        BlockingLayout layout = new BlockingLayout();
+        LayoutVisualization vis = new LayoutVisualization(table, layout);
+        WorkerPool pool = WorkerPool.getInstance();
+        WorkerPool.setInstance(new WorkerPool(1));
+        try {
+            vis.setBackgroundLayout(true);
+            BackgroundLayout background = vis.getBackgroundLayout();
+            // keeps the only worker busy so the layouts are queued
+            final Semaphore busy = new Semaphore(0);
+            WorkerPool.getInstance().getExecutor().submit(new Runnable() {
+                public void run() {
+                    busy.acquireUninterruptibly();
+                }
+            });
+            background.request(new Rectangle2D.Float(0, 0, 100, 100));
+            assertEquals(1, vis.installed);
+            // the queued layout is canceled and replaced
+            background.request(new Rectangle2D.Float(0, 0, 200, 100));
+            assertEquals(1, vis.installed);
+            layout.start.release();
+            busy.release();
+            background.waitFor();
+            assertEquals(0, vis.installed);
+            assertEquals(1, layout.count);
+            assertEquals(200, vis.getShapeAt(5).getBounds2D().getWidth(), 0);
+        }
+        finally {
+            WorkerPool.getInstance().getExecutor().shutdown();
+            WorkerPool.getInstance().getExecutor().awaitTermination(
+                    10, TimeUnit.SECONDS);
+            WorkerPool.setInstance(pool);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 import infovis.column.AbstractDoubleColumn;
+import infovis.column.DoubleColumn;
 import infovis.graph.DefaultGraph;
 import infovis.graph.property.BetweennessCentrality;
+import infovis.utils.WorkerPool;
 import junit.framework.Assert;
 import junit.framework.TestCase;
 import edu.uci.ics.jung.graph.DirectedGraph;
@@ -71,6 +73,15 @@ public class BetweennessCentralityTest extends TestCase {
             Assert.assertEquals(bc.get(6)/28.0,0.1666,.001);
             Assert.assertEquals(bc.get(7)/28.0,0.1428,.001);
             Assert.assertEquals(bc.get(8)/28.0,0.1666,.001);
+
+            AbstractDoubleColumn ec = AbstractDoubleColumn.getColumn(
+                    graph.getEdgeTable(), 
+                    BetweennessCentrality.CENTRALITY_COLUMN);
+            Assert.assertEquals(ec.get(graph.getEdge(0,1)),10.66666,.001);
+            Assert.assertEquals(ec.get(graph.getEdge(0,6)),9.33333,.001);
+            Assert.assertEquals(ec.get(graph.getEdge(1,2)),6.5,.001);
+            Assert.assertEquals(ec.get(graph.getEdge(4,5)),10.66666,.001);
+            Assert.assertEquals(ec.get(graph.getEdge(6,7)),8.0,.001);
 //
 //            Assert.assertEquals(bc.getEdgeRankScore(graph.findEdge(0,1)),
 //                    10.66666,.001);
@@ -112,4 +123,61 @@ public class BetweennessCentralityTest extends TestCase {
 //            Assert.assertEquals(bc.getEdgeRankScore(graph.findEdge(3,1)),2,.001);
 //            Assert.assertEquals(bc.getEdgeRankScore(graph.findEdge(4,2)),1,.001);
         }
+
+        static BetweennessCentrality compute(DefaultGraph graph, AbstractDoubleColumn weights, int samples) {
+            BetweennessCentrality bc = new BetweennessCentrality(graph, "bc");
+            bc.setWeightColumn(weights);
+            bc.setSampleCount(samples);
+            assertTrue(bc.compute());
+            return bc;
+        }
+
+        public void testParallelWeighted() {
+            DefaultGraph graph = new DefaultGraph(false);
+            java.util.Random random = new java.util.Random(1);
+            for (int i = 0; i < 300; i++) {
+                graph.addVertex();
+            }
+            AbstractDoubleColumn weights = DoubleColumn.findColumn(graph.getEdgeTable(), "weight");
+            for (int i = 0; i < 1200; i++) {
+                int e = graph.addEdge(random.nextInt(300), random.nextInt(300));
+                weights.setExtend(e, 2);
+            }
+            WorkerPool pool = WorkerPool.getInstance();
+            WorkerPool.setInstance(new WorkerPool(1));
+            BetweennessCentrality serial;
+            try {
+                serial = compute(graph, null, 0);
+            }
+            finally {
+                WorkerPool.setInstance(pool);
+            }
+            BetweennessCentrality parallel = compute(graph, null, 0);
+            // constant weights give the same shortest paths
+            BetweennessCentrality weighted = compute(graph, weights, 0);
+            // sampling all the vertices is exact
+            BetweennessCentrality sampled = compute(graph, null, 300);
+            for (int v = 0; v < 300; v++) {
+                assertEquals(serial.get(v), parallel.get(v), 1e-6);
+                assertEquals(serial.get(v), weighted.get(v), 1e-6);
+                assertEquals(serial.get(v), sampled.get(v), 1e-6);
+            }
+            BetweennessCentrality approx = compute(graph, null, 100);
+            assertEquals(300, approx.size());
+
+            // a heavy edge is avoided
+            DefaultGraph square = new DefaultGraph(false);
+            for (int i = 0; i < 4; i++) {
+                square.addVertex();
+            }
+            AbstractDoubleColumn w = DoubleColumn.findColumn(square.getEdgeTable(), "weight");
+            w.setExtend(square.addEdge(0, 1), 1);
+            w.setExtend(square.addEdge(1, 2), 1);
+            w.setExtend(square.addEdge(2, 3), 1);
+            w.setExtend(square.addEdge(3, 0), 10);
+            BetweennessCentrality bc = compute(square, w, 0);
+            Assert.assertEquals(bc.get(1), 2, .001);
+            Assert.assertEquals(bc.get(2), 2, .001);
+            Assert.assertEquals(bc.get(0), 0, .001);
+        }
     }
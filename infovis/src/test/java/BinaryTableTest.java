@@ -0,0 +1,216 @@
+import infovis.Column;
+import infovis.Graph;
+import infovis.Table;
+import infovis.column.BooleanColumn;
+import infovis.column.CategoricalColumn;
+import infovis.column.DoubleColumn;
+import infovis.column.FloatColumn;
+import infovis.column.IntColumn;
+import infovis.column.LongColumn;
+import infovis.column.MappedDoubleColumn;
+import infovis.column.MappedFloatColumn;
+import infovis.column.MappedIntColumn;
+import infovis.column.ReadOnlyColumnException;
+import infovis.column.StringColumn;
+import infovis.graph.DefaultGraph;
+import infovis.graph.io.GraphReaderFactory;
+import infovis.table.DefaultTable;
+import infovis.table.io.BinaryTableWriter;
+import infovis.table.io.TableReaderFactory;
+import infovis.tree.DefaultTree;
+import infovis.tree.io.TreeReaderFactory;
+import infovis.utils.RowIterator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+
+/**
+ * Class BinaryTableTest
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class BinaryTableTest extends TestCase {
+    public BinaryTableTest(String name) {
+        super(name);
+    }
+
+    static File write(BinaryTableWriter writer, File file) throws IOException {
+        assertTrue(writer.write());
+        writer.getOut().close();
+        return file;
+    }
+
+    static File tmpFile() throws IOException {
+        File file = File.createTempFile("BinaryTableTest", ".ivb");
+        file.deleteOnExit();
+        return file;
+    }
+
+    static void assertSameColumn(Column expected, Column c, int[] rows) {
+        assertNotNull(c);
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals(
+                    expected.isValueUndefined(rows[i]),
+                    c.isValueUndefined(i));
+            if (! c.isValueUndefined(i)) {
+                assertEquals(expected.getValueAt(rows[i]), c.getValueAt(i));
+            }
+        }
+    }
+
+    public void testTable() throws IOException {
+        DefaultTable table = new DefaultTable();
+        IntColumn ints = new IntColumn("int");
+        FloatColumn floats = new FloatColumn("float");
+        DoubleColumn doubles = new DoubleColumn("double");
+        LongColumn longs = new LongColumn("long");
+        BooleanColumn booleans = new BooleanColumn("boolean");
+        StringColumn strings = new StringColumn("string");
+        CategoricalColumn cats = new CategoricalColumn("cat");
+        for (int i = 0; i < 1000; i++) {
+            ints.setExtend(i, i * 7);
+            floats.setExtend(i, i / 3f);
+            doubles.setExtend(i, i / 7.0);
+            longs.setExtend(i, i * 10000000000L);
+            booleans.setExtend(i, i % 3 == 0);
+            strings.setExtend(i, i % 5 == 0 ? null : "sé"+i);
+            cats.setExtend(i, cats.findCategory("c"+(i % 4)));
+        }
+        ints.setValueUndefined(3, true);
+        doubles.setValueUndefined(5, true);
+        table.addColumn(ints);
+        table.addColumn(floats);
+        table.addColumn(doubles);
+        table.addColumn(longs);
+        table.addColumn(booleans);
+        table.addColumn(strings);
+        table.addColumn(cats);
+        table.getMetadata().addAttribute("title", "test");
+        ints.getMetadata().addAttribute("unit", "m");
+
+        File file = tmpFile();
+        write(new BinaryTableWriter(
+                new FileOutputStream(file), file.getPath(), table), file);
+        DefaultTable read = new DefaultTable();
+        assertTrue(TableReaderFactory.readTable(file.getPath(), read));
+        assertEquals(1000, read.getRowCount());
+        assertEquals("test", read.getMetadata().getAttribute("title"));
+        assertTrue(read.getColumn("int") instanceof MappedIntColumn);
+        assertTrue(read.getColumn("float") instanceof MappedFloatColumn);
+        assertTrue(read.getColumn("double") instanceof MappedDoubleColumn);
+        assertEquals("m", read.getColumn("int").getMetadata().getAttribute("unit"));
+        int[] rows = new int[1000];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            Column c = table.getColumnAt(i);
+            assertSameColumn(c, read.getColumn(c.getName()), rows);
+        }
+        CategoricalColumn readCats = (CategoricalColumn)read.getColumn("cat");
+        assertEquals(4, readCats.getCategoryCount());
+        assertEquals(cats.getCategory("c2"), readCats.getCategory("c2"));
+        try {
+            ((MappedIntColumn)read.getColumn("int")).set(0, 1);
+            fail("Mapped columns are read-only");
+        }
+        catch(ReadOnlyColumnException e) {
+            // expected
+        }
+    }
+
+    public void testTree() throws IOException {
+        DefaultTree tree = new DefaultTree();
+        StringColumn names = StringColumn.findColumn(tree, "name");
+        names.setExtend(DefaultTree.ROOT, "root");
+        int a = tree.addNode(DefaultTree.ROOT);
+        int b = tree.addNode(DefaultTree.ROOT);
+        int c = tree.addNode(a);
+        int d = tree.addNode(b);
+        int e = tree.addNode(a);
+        tree.reparent(d, c);
+        names.setExtend(a, "a");
+        names.setExtend(b, "b");
+        names.setExtend(c, "c");
+        names.setExtend(d, "d");
+        names.setExtend(e, "e");
+
+        File file = tmpFile();
+        write(new BinaryTableWriter(
+                new FileOutputStream(file), file.getPath(), tree), file);
+        DefaultTree read = new DefaultTree();
+        assertTrue(TreeReaderFactory.readTree(file.getPath(), read));
+        assertEquals(tree.getNodeCount(), read.getNodeCount());
+        StringColumn readNames = StringColumn.getColumn(read, "name");
+        // depth-first order
+        String[] expected = { "root", "a", "c", "d", "e", "b" };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], readNames.get(i));
+        }
+        assertEquals(0, read.getParent(1));
+        assertEquals(2, read.getParent(3));
+        assertEquals(2, read.getChildCount(1));
+        assertEquals(0, read.getChildCount(5));
+    }
+
+    public void testGraph() throws IOException {
+        DefaultGraph graph = new DefaultGraph();
+        IntColumn weights = IntColumn.findColumn(graph.getEdgeTable(), "weight");
+        StringColumn labels = StringColumn.findColumn(graph.getVertexTable(), "label");
+        for (int v = 0; v < 50; v++) {
+            graph.addVertex();
+            labels.setExtend(v, "v"+v);
+        }
+        for (int i = 0; i < 200; i++) {
+            int e = graph.addEdge(i % 50, (i * 7) % 50);
+            weights.setExtend(e, i);
+        }
+        graph.removeVertex(10);
+        graph.removeEdge(3);
+
+        File file = tmpFile();
+        write(new BinaryTableWriter(
+                new FileOutputStream(file), file.getPath(), (Graph)graph), file);
+        DefaultGraph read = new DefaultGraph();
+        assertTrue(GraphReaderFactory.readGraph(file.getPath(), read));
+        assertEquals(graph.getVerticesCount(), read.getVerticesCount());
+        assertEquals(graph.getEdgesCount(), read.getEdgesCount());
+        Table readEdges = read.getEdgeTable();
+        assertTrue(readEdges.getColumn("weight") instanceof MappedIntColumn);
+        StringColumn readLabels = StringColumn.getColumn(read.getVertexTable(), "label");
+        IntColumn vertexRows = new IntColumn("rows");
+        for (RowIterator it = graph.vertexIterator(); it.hasNext(); ) {
+            vertexRows.add(it.nextRow());
+        }
+        int e = 0;
+        for (RowIterator it = graph.edgeIterator(); it.hasNext(); e++) {
+            int edge = it.nextRow();
+            assertEquals(
+                    weights.get(edge),
+                    ((MappedIntColumn)readEdges.getColumn("weight")).get(e));
+            assertEquals(
+                    labels.get(graph.getFirstVertex(edge)),
+                    readLabels.get(read.getFirstVertex(e)));
+            assertEquals(
+                    labels.get(graph.getSecondVertex(edge)),
+                    readLabels.get(read.getSecondVertex(e)));
+        }
+        for (int v = 0; v < vertexRows.size(); v++) {
+            assertEquals(
+                    graph.getOutDegree(vertexRows.get(v)),
+                    read.getOutDegree(v));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import infovis.column.PagedIntColumn;
+import infovis.utils.ByteBufferPool;
+import infovis.utils.MappedByteBufferPool;
+import junit.framework.TestCase;
+
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+
+/**
+ * Class ByteBufferPoolTest
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class ByteBufferPoolTest extends TestCase {
+    static final int PAGES = 10;
+    
+    public ByteBufferPoolTest(String name) {
+        super(name);
+    }
+
+    static PagedIntColumn fill(ByteBufferPool pool) {
+        PagedIntColumn column = new PagedIntColumn("paged", 0, pool);
+        for (int i = 0; i < PAGES * ByteBufferPool.CHUNK_SIZE; i++) {
+            column.setExtend(i, i * 3);
+        }
+        return column;
+    }
+
+    static void check(final PagedIntColumn column) throws InterruptedException {
+        final int n = column.size();
+        final int[] errors = new int[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int start = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = start; i < n; i += 7) {
+                        if (column.get(i) != i * 3) {
+                            synchronized(errors) {
+                                errors[0]++;
+                            }
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+        assertEquals(0, errors[0]);
+    }
+
+    public void testClock() throws InterruptedException {
+        ByteBufferPool pool = new ByteBufferPool(3 * ByteBufferPool.CHUNK_SIZE);
+        PagedIntColumn column = fill(pool);
+        assertEquals(3, pool.size());
+        assertTrue(pool.getPageOutCount() >= PAGES - 3);
+        for (int i = 0; i < column.size(); i++) {
+            assertEquals(i * 3, column.get(i));
+        }
+        assertTrue(pool.getPageInCount() > 0);
+        assertTrue(pool.getHitCount() > pool.getMissCount());
+        check(column);
+
+        pool.resetCounts();
+        pool.setMaxMemory(PAGES * ByteBufferPool.CHUNK_SIZE);
+        column.swapin();
+        assertEquals(PAGES - 3, pool.getMissCount());
+        check(column);
+        assertEquals(PAGES - 3, pool.getMissCount());
+        
+        pool.setMaxMemory(2 * ByteBufferPool.CHUNK_SIZE);
+        assertEquals(2, pool.size());
+        check(column);
+        column.clear();
+        assertEquals(0, pool.size());
+    }
+    
+    public void testDirect() throws InterruptedException {
+        ByteBufferPool pool = new ByteBufferPool(4 * ByteBufferPool.CHUNK_SIZE, true);
+        check(fill(pool));
+    }
+
+    public void testMapped() throws InterruptedException {
+        MappedByteBufferPool pool = new MappedByteBufferPool(ByteBufferPool.CHUNK_SIZE);
+        PagedIntColumn column = fill(pool);
+        assertEquals(PAGES, pool.size());
+        assertEquals(PAGES, pool.getMissCount());
+        assertEquals(1, pool.getRegionCount());
+        check(column);
+        assertEquals(PAGES, pool.getMissCount());
+        column.clear();
+        assertEquals(0, pool.size());
+        // reused pages are cleared
+        column = new PagedIntColumn("paged", 0, pool);
+        column.setSize(10);
+        assertEquals(0, column.get(5));
+    }
+
+    public void testReuse() throws InterruptedException {
+        ByteBufferPool pool = new ByteBufferPool(2 * ByteBufferPool.CHUNK_SIZE, true);
+        final PagedIntColumn[] columns = new PagedIntColumn[2];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = new PagedIntColumn("paged"+c, 0, pool);
+            columns[c].setSize(PAGES * ByteBufferPool.CHUNK_SIZE);
+        }
+        // each thread writes its column, paging out the other's pages
+        Thread[] threads = new Thread[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            final PagedIntColumn column = columns[c];
+            final int k = c + 2;
+            threads[c] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < column.size(); i += 61) {
+                        column.set(i, i * k);
+                    }
+                }
+            };
+            threads[c].start();
+        }
+        for (int c = 0; c < threads.length; c++) {
+            threads[c].join();
+        }
+        assertTrue(pool.getPageOutCount() > 0);
+        assertEquals(2, pool.getAllocateCount());
+        for (int c = 0; c < columns.length; c++) {
+            for (int i = 0; i < columns[c].size(); i++) {
+                int expected = (i % 61) == 0 ? i * (c + 2) : 0;
+                assertEquals(expected, columns[c].get(i));
+            }
+        }
+        assertEquals(2, pool.getAllocateCount());
+    }
+}
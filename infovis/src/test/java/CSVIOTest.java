@@ -1,4 +1,9 @@
+import infovis.Column;
+import infovis.column.FloatColumn;
+import infovis.column.IntColumn;
+import infovis.column.StringColumn;
 import infovis.io.AbstractReader;
+import infovis.utils.WorkerPool;
 import infovis.table.DefaultTable;
 import infovis.table.io.*;
 
@@ -38,4 +43,82 @@ public class CSVIOTest extends TestCase {
         assertTrue("Table not equal", table2.equals(table));
     }
 
+    public void testGuessTypes() {
+        String csv = "s;i;f;l\n"
+            + "\"a;b\";;1;12\n"
+            + "\"x\"\"y\"\"\";-12;2.5;\n"
+            + "#comment\n"
+            + "\n"
+            + "3;7;-0.125;-7\n";
+        DefaultTable table = new DefaultTable();
+        CSVTableReader reader = new CSVTableReader(
+                new ByteArrayInputStream(csv.getBytes()), table);
+        reader.setTypeLinePresent(false);
+        assertTrue("Loading string", reader.load());
+        assertEquals(3, table.getRowCount());
+        IntColumn i = (IntColumn) table.getColumn("i");
+        assertTrue(i.isValueUndefined(0));
+        assertEquals(-12, i.get(1));
+        assertEquals(7, i.get(2));
+        FloatColumn f = (FloatColumn) table.getColumn("f");
+        assertEquals(1, f.get(0), 0);
+        assertEquals(2.5, f.get(1), 0);
+        assertEquals(-0.125, f.get(2), 0);
+        StringColumn str = (StringColumn) table.getColumn("s");
+        assertEquals("a;b", str.get(0));
+        assertEquals("x\"y\"", str.get(1));
+        assertEquals("3", str.get(2));
+        IntColumn l = (IntColumn) table.getColumn("l");
+        assertEquals(12, l.get(0));
+        assertTrue(l.isValueUndefined(1));
+        assertEquals(-7, l.get(2));
+    }
+
+    public void testParallel() {
+        StringBuffer csv = new StringBuffer("i;s;f\n");
+        for (int r = 0; r < 2000; r++) {
+            csv.append(r);
+            csv.append(r % 7 == 0 ? ";\"line\r\n\"\"" + r + "\"\"\";" : ";x" + r + ";");
+            csv.append(r % 11 == 0 ? "" : Double.toString(r / 8.0));
+            csv.append(r % 13 == 0 ? ";extra\r\n" : "\n");
+        }
+        DefaultTable sequential = new DefaultTable();
+        CSVTableReader reader = new CSVTableReader(
+                new ByteArrayInputStream(csv.toString().getBytes()), sequential);
+        reader.setTypeLinePresent(false);
+        assertTrue("Loading sequentially", reader.load());
+
+        // windows of 12000 and 12 characters, the later grown
+        // to hold the records
+        int[] chunkSizes = { 1000, 1 };
+        for (int k = 0; k < chunkSizes.length; k++) {
+            WorkerPool pool = WorkerPool.getInstance();
+            WorkerPool.setInstance(new WorkerPool(3));
+            DefaultTable parallel = new DefaultTable();
+            try {
+                reader = new CSVTableReader(
+                        new ByteArrayInputStream(csv.toString().getBytes()), parallel);
+                reader.setTypeLinePresent(false);
+                reader.setParallel(true);
+                reader.setChunkSize(chunkSizes[k]);
+                assertTrue("Loading in parallel", reader.load());
+            }
+            finally {
+                WorkerPool.setInstance(pool);
+            }
+            assertEquals(2000, parallel.getRowCount());
+            assertEquals(sequential.getColumnCount(), parallel.getColumnCount());
+            for (int c = 0; c < sequential.getColumnCount(); c++) {
+                Column col1 = sequential.getColumnAt(c);
+                Column col2 = parallel.getColumn(col1.getName());
+                assertEquals(col1.getClass(), col2.getClass());
+                assertEquals(col1.size(), col2.size());
+                for (int r = 0; r < col1.size(); r++) {
+                    assertEquals(col1.isValueUndefined(r), col2.isValueUndefined(r));
+                    assertEquals(col1.getValueAt(r), col2.getValueAt(r));
+                }
+            }
+            assertEquals("line\n\"7\"", parallel.getColumn("s").getValueAt(7));
+        }
+    }
 }
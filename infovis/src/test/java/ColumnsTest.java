@@ -4,11 +4,14 @@ import infovis.column.format.CategoricalFormat;
 import infovis.data.DoubleInterval;
 import infovis.data.Interval;
 import infovis.data.IntervalColumn;
+import infovis.panel.DynamicQuery;
 import infovis.utils.IntIntSortedMap;
+import infovis.utils.TableIterator;
 
 import java.io.*;
 import java.text.ParseException;
 
+import javax.swing.JComponent;
 import javax.swing.text.MutableAttributeSet;
 
 import junit.framework.TestCase;
@@ -389,4 +392,110 @@ public class ColumnsTest extends TestCase {
         assertEquals(3, column.getMinIndex());
         assertEquals(4, column.getMaxIndex());
     }
+    
+    static class ModuloQuery implements DynamicQuery {
+        int modulo;
+        FilterColumn filter;
+        
+        ModuloQuery(int modulo) {
+            this.modulo = modulo;
+        }
+        public Column getColumn() {
+            return null;
+        }
+        public FilterColumn getFilterColumn() {
+            return filter;
+        }
+        public void setFilterColumn(FilterColumn filter) {
+            this.filter = filter;
+        }
+        public boolean isFiltered(int row) {
+            return (row % modulo) == 0;
+        }
+        public void apply() {
+        }
+        public JComponent getComponent() {
+            return null;
+        }
+    }
+    
+    public void testFilterColumn() {
+        FilterColumn column = new FilterColumn("#filter");
+        ModuloQuery q2 = new ModuloQuery(2);
+        ModuloQuery q3 = new ModuloQuery(3);
+        column.applyDynamicQuery(q2, new TableIterator(0, 100));
+        column.applyDynamicQuery(q3, new TableIterator(0, 100));
+        assertEquals(0, column.getDynamicQueryIndex(q2));
+        assertEquals(1, column.getDynamicQueryIndex(q3));
+        for (int i = 0; i < 100; i++) {
+            boolean f = (i % 2) == 0 || (i % 3) == 0;
+            assertEquals(f, column.isFiltered(i));
+            assertEquals((i % 3) == 0, column.get(i).get(1));
+        }
+        assertEquals(67, column.getFilteredCount());
+        assertEquals(1, column.nextUnfilteredRow(0));
+        assertEquals(5, column.nextUnfilteredRow(2));
+        assertEquals(-1, column.nextUnfilteredRow(100));
+        // re-applying an unchanged query keeps its rows filtered
+        column.applyDynamicQuery(q2, new TableIterator(0, 100));
+        column.applyDynamicQuery(q2, new TableIterator(0, 100));
+        column.applyDynamicQuery(q3, new TableIterator(0, 100));
+        for (int i = 0; i < 100; i++) {
+            boolean f = (i % 2) == 0 || (i % 3) == 0;
+            assertEquals(f, column.isFiltered(i));
+        }
+        assertEquals(67, column.getFilteredCount());
+        testSerializeColumn(column);
+        
+        column.removeDynamicQuery(q2);
+        assertNull(q2.getFilterColumn());
+        for (int i = 0; i < 100; i++) {
+            assertEquals((i % 3) == 0, column.isFiltered(i));
+        }
+        column.clearBit(3, 1);
+        assertTrue(! column.isFiltered(3));
+        column.setBit(150, 0);
+        assertTrue(column.isFiltered(150));
+        assertEquals(151, column.size());
+        assertEquals(0, column.addDynamicQuery(q2));
+        column.clear();
+        assertEquals(0, column.size());
+        assertTrue(! column.isFiltered(0));
+    }
+
+    public void testHistogramColumn() {
+        IntColumn column = new IntColumn("#values");
+        for (int i = 0; i < 100; i++) {
+            column.add(i % 10);
+        }
+        HistogramColumn hist = new HistogramColumn(column, 10);
+        assertEquals(10, hist.get(3));
+        column.addChangeListener(new javax.swing.event.ChangeListener() {
+            public void stateChanged(javax.swing.event.ChangeEvent e) { }
+        });
+        // min and max are maintained, the histogram is updated in place
+        column.setIntAt(3, 4);
+        assertEquals(0, column.getMinIndex());
+        assertEquals(9, column.getMaxIndex());
+        assertEquals(9, hist.get(3));
+        assertEquals(11, hist.get(4));
+        column.setValueUndefined(13, true);
+        assertEquals(8, hist.get(3));
+        // changing the extremum recomputes the range
+        column.setIntAt(9, 20);
+        assertEquals(20, column.getIntAt(column.getMaxIndex()));
+        assertEquals(100 - 1, sum(hist));
+        column.setIntAt(9, 9);
+        assertEquals(9, column.getIntAt(column.getMaxIndex()));
+        assertEquals(10, hist.get(9));
+        assertEquals(100 - 1, sum(hist));
+    }
+    
+    static int sum(IntColumn c) {
+        int s = 0;
+        for (int i = 0; i < c.size(); i++) {
+            s += c.get(i);
+        }
+        return s;
+    }
 }
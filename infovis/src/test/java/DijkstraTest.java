@@ -1,6 +1,8 @@
 import cern.colt.matrix.DoubleMatrix2D;
 import infovis.Graph;
+import infovis.column.DoubleColumn;
 import infovis.graph.DefaultGraph;
+import infovis.graph.algorithm.AllShortestPaths;
 import infovis.graph.algorithm.DijkstraShortestPath;
 import junit.framework.TestCase;
 
@@ -290,4 +292,63 @@ public class DijkstraTest extends TestCase {
         testDijkstra("g3", g3VertexCount, g3Edges, g3Dist);
     }
 
+    public void testAllShortestPaths() {
+        DefaultGraph g = new DefaultGraph(false);
+        java.util.Random random = new java.util.Random(1);
+        int n = 100;
+        for (int i = 0; i < n; i++) {
+            g.addVertex();
+        }
+        DoubleColumn weights = new DoubleColumn("weight");
+        for (int i = 0; i < 300; i++) {
+            int e = g.addEdge(random.nextInt(n), random.nextInt(n));
+            weights.setExtend(e, 1 + random.nextInt(10));
+        }
+        DijkstraShortestPath dsp = new DijkstraShortestPath(g, weights, true);
+        DoubleMatrix2D mat = DijkstraShortestPath.allShortestPaths(g, weights, null);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                DijkstraShortestPath.Predecessor p = dsp.shortestPath(i, j);
+                double d = p == null ? Double.POSITIVE_INFINITY : p.getWeight();
+                assertEquals("dist("+i+","+j+")", d, mat.getQuick(i, j), 0);
+            }
+        }
+
+        // rows streamed to a sink
+        final double[] sum = new double[n];
+        final int[] rows = new int[1];
+        AllShortestPaths asp = new AllShortestPaths(g, weights);
+        assertTrue(asp.compute(new AllShortestPaths.Sink() {
+            public synchronized void row(int source, double[] distances) {
+                rows[0]++;
+                for (int j = 0; j < distances.length; j++) {
+                    if (distances[j] != Double.POSITIVE_INFINITY) {
+                        sum[source] += distances[j];
+                    }
+                }
+            }
+        }));
+        assertEquals(n, rows[0]);
+        for (int i = 0; i < n; i++) {
+            double expected = 0;
+            for (int j = 0; j < n; j++) {
+                if (mat.getQuick(i, j) != Double.POSITIVE_INFINITY) {
+                    expected += mat.getQuick(i, j);
+                }
+            }
+            assertEquals(expected, sum[i], 1e-9);
+        }
+
+        // directed graphs follow the outgoing edges
+        DefaultGraph dg = new DefaultGraph(true);
+        for (int i = 0; i < 3; i++) {
+            dg.addVertex();
+        }
+        dg.addEdge(0, 1);
+        dg.addEdge(1, 2);
+        mat = new AllShortestPaths(dg).compute();
+        assertEquals(2, mat.getQuick(0, 2), 0);
+        assertEquals(Double.POSITIVE_INFINITY, mat.getQuick(2, 0), 0);
+    }
+
 }
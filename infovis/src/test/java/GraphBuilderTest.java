@@ -0,0 +1,165 @@
+import infovis.Graph;
+import infovis.graph.DefaultGraph;
+import infovis.graph.GraphBuilder;
+import infovis.graph.DefaultGraph.DefaultIntColumnFactory;
+import infovis.graph.event.GraphChangedEvent;
+import infovis.graph.event.GraphChangedListener;
+import infovis.graph.io.GraphMLReader;
+import infovis.utils.RowIterator;
+import infovis.utils.StringIntMap;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.TestCase;
+import cern.jet.random.Uniform;
+
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+
+/**
+ * Class GraphBuilderTest
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class GraphBuilderTest extends TestCase {
+    public GraphBuilderTest(String name) {
+        super(name);
+    }
+
+    static void assertSameIterator(RowIterator expected, RowIterator it) {
+        while (expected.hasNext()) {
+            assertTrue(it.hasNext());
+            assertEquals(expected.nextRow(), it.nextRow());
+        }
+        assertTrue(!it.hasNext());
+    }
+
+    static void assertSameGraph(Graph expected, Graph g) {
+        assertEquals(expected.getVerticesCount(), g.getVerticesCount());
+        assertEquals(expected.getEdgesCount(), g.getEdgesCount());
+        for (RowIterator it = expected.edgeIterator(); it.hasNext();) {
+            int e = it.nextRow();
+            assertEquals(expected.getFirstVertex(e), g.getFirstVertex(e));
+            assertEquals(expected.getSecondVertex(e), g.getSecondVertex(e));
+        }
+        for (RowIterator it = expected.vertexIterator(); it.hasNext();) {
+            int v = it.nextRow();
+            assertEquals(expected.getOutDegree(v), g.getOutDegree(v));
+            assertEquals(expected.getInDegree(v), g.getInDegree(v));
+            assertSameIterator(
+                    expected.outEdgeIterator(v),
+                    g.outEdgeIterator(v));
+            assertSameIterator(
+                    expected.inEdgeIterator(v),
+                    g.inEdgeIterator(v));
+            assertSameIterator(
+                    expected.edgeIterator(v),
+                    g.edgeIterator(v));
+        }
+    }
+
+    void testBuilder(DefaultGraph expected, DefaultGraph g) {
+        int n = 200;
+        for (int i = 0; i < n; i++) {
+            expected.addVertex();
+        }
+        GraphBuilder builder = new GraphBuilder(g, 100);
+        assertEquals(0, builder.addVertices(n));
+        // edges added before the builder
+        for (int i = 0; i < 50; i++) {
+            int v1 = Uniform.staticNextIntFromTo(0, n-1);
+            int v2 = Uniform.staticNextIntFromTo(0, n-1);
+            expected.addEdge(v1, v2);
+            g.addEdge(v1, v2);
+        }
+        for (int i = 0; i < 1000; i++) {
+            int v1 = Uniform.staticNextIntFromTo(0, n-1);
+            int v2 = Uniform.staticNextIntFromTo(0, n-1);
+            int e = expected.addEdge(v1, v2);
+            assertEquals(e, builder.addEdge(v1, v2));
+        }
+        builder.flush();
+        assertEquals(0, builder.getBufferedCount());
+        assertSameGraph(expected, g);
+
+        // removing edges keeps the lists consistent
+        for (int e = 0; e < 1050; e += 7) {
+            expected.removeEdge(e);
+            g.removeEdge(e);
+        }
+        assertSameGraph(expected, g);
+    }
+
+    public void testGraphBuilder() {
+        testBuilder(new DefaultGraph(), new DefaultGraph());
+        testBuilder(new DefaultGraph(false), new DefaultGraph(false));
+        testBuilder(
+                new DefaultGraph(true, true, DefaultIntColumnFactory.INSTANCE),
+                new DefaultGraph(true, true, DefaultIntColumnFactory.INSTANCE));
+    }
+
+    public void testListeners() {
+        DefaultGraph g = new DefaultGraph();
+        final int[] added = new int[1];
+        g.addGraphChangedListener(new GraphChangedListener() {
+            public void graphChanged(GraphChangedEvent e) {
+                if (e.getType() == GraphChangedEvent.GRAPH_EDGE_ADDED) {
+                    added[0]++;
+                }
+            }
+        });
+        int v0 = g.addVertices(10);
+        assertEquals(10, g.getVerticesCount());
+        int[] first = new int[20];
+        int[] second = new int[20];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = v0 + i % 10;
+            second[i] = v0 + (i * 3) % 10;
+        }
+        assertEquals(0, g.addEdges(first, second, first.length));
+        assertEquals(20, added[0]);
+        assertEquals(20, g.getEdgesCount());
+        assertEquals(2, g.getOutDegree(v0));
+    }
+
+    public void testGraphMLError() {
+        String xml = "<graphml><graph edgedefault=\"directed\">"
+            + "<node id=\"a\"/><node id=\"b\"/><node id=\"c\"/>"
+            + "<edge source=\"a\" target=\"b\"/>"
+            + "<edge source=\"b\" target=\"c\"/>"
+            + "<edge source=\"c\" target=\"a\"/>"
+            + "</graph";
+        DefaultGraph g = new DefaultGraph();
+        GraphMLReader reader = new GraphMLReader(
+                new ByteArrayInputStream(xml.getBytes()), "truncated", g);
+        assertFalse(reader.load());
+        // the edges read before the error are added
+        assertEquals(3, g.getVerticesCount());
+        assertEquals(3, g.getEdgesCount());
+        assertEquals(1, g.getOutDegree(2));
+        assertEquals(0, g.getSecondVertex(g.outEdgeIterator(2).nextRow()));
+    }
+
+    public void testStringIntMap() {
+        StringIntMap map = new StringIntMap();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(map.put("n"+i, i));
+        }
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get("n"+i, -1));
+        }
+        assertEquals(-1, map.get("missing", -1));
+        assertTrue(! map.put("n0", 10));
+        assertEquals(10, map.get("n0", -1));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertTrue(! map.containsKey("n1"));
+    }
+}
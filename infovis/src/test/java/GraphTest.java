@@ -1,6 +1,7 @@
 import infovis.DynamicTable;
 import infovis.Graph;
 import infovis.Table;
+import infovis.graph.CompressedGraph;
 import infovis.graph.DefaultGraph;
 import infovis.graph.Edge;
 import infovis.graph.Vertex;
@@ -412,6 +413,97 @@ public class GraphTest extends TestCase {
 //        }        
 //    }
 //    
+    public void testAdjacencyIndex() {
+        DefaultGraph graph = new DefaultGraph(true);
+        graph.setAdjacencyIndexed(true);
+        assertTrue(graph.isAdjacencyIndexed());
+        for (int i = 0; i < 50; i++) {
+            graph.addVertex();
+        }
+        IntArrayList edges = new IntArrayList();
+        for (int i = 0; i < 1000; i++) {
+            int from = Uniform.staticNextIntFromTo(0, 49);
+            int to = Uniform.staticNextIntFromTo(0, 49);
+            edges.add(graph.addEdge(from, to));
+        }
+        edges.shuffle();
+        for (int i = 0; i < 400; i++) {
+            graph.removeEdge(edges.get(i));
+        }
+        graph.removeVertex(7);
+        checkAdjacency(graph);
+        graph.setAdjacencyIndexed(false);
+        checkAdjacency(graph);
+        graph.setAdjacencyIndexed(true);
+        checkAdjacency(graph);
+    }
+    
+    static void checkAdjacency(DefaultGraph graph) {
+        for (RowIterator vi = graph.vertexIterator(); vi.hasNext(); ) {
+            int v1 = vi.nextRow();
+            int out = 0;
+            for (RowIterator ei = graph.outEdgeIterator(v1); ei.hasNext(); ) {
+                int e = ei.nextRow();
+                assertEquals(e, graph.getOutEdgeAt(v1, out));
+                out++;
+            }
+            assertEquals(out, graph.getOutDegree(v1));
+            int in = 0;
+            for (RowIterator ei = graph.inEdgeIterator(v1); ei.hasNext(); ei.nextRow()) {
+                in++;
+            }
+            assertEquals(in, graph.getInDegree(v1));
+            for (RowIterator vj = graph.vertexIterator(); vj.hasNext(); ) {
+                int v2 = vj.nextRow();
+                int expected = Graph.NIL;
+                for (RowIterator ei = graph.outEdgeIterator(v1); ei.hasNext(); ) {
+                    int e = ei.nextRow();
+                    if (graph.getSecondVertex(e) == v2) {
+                        expected = e;
+                        break;
+                    }
+                }
+                assertEquals(expected, graph.getEdge(v1, v2));
+            }
+        }
+    }
+
+    public void testCompressedGraph() {
+        DefaultGraph graph = new DefaultGraph(true);
+        for (int i = 0; i < 30; i++) {
+            graph.addVertex();
+        }
+        for (int i = 0; i < 200; i++) {
+            graph.addEdge(
+                    Uniform.staticNextIntFromTo(0, 29),
+                    Uniform.staticNextIntFromTo(0, 29));
+        }
+        graph.removeVertex(3);
+        CompressedGraph csr = CompressedGraph.get(graph);
+        assertSame(csr, CompressedGraph.get(graph));
+        checkCompressed(graph, csr);
+        graph.addEdge(1, 2);
+        assertTrue(csr != CompressedGraph.get(graph));
+        checkCompressed(graph, CompressedGraph.get(graph));
+    }
+    
+    static void checkCompressed(Graph graph, CompressedGraph csr) {
+        assertEquals(graph.getVerticesCount(), csr.getVerticesCount());
+        assertEquals(graph.getEdgesCount(), csr.getEdgesCount());
+        CompressedGraph.Adjacency adj = csr.getIncident();
+        for (RowIterator vi = graph.vertexIterator(); vi.hasNext(); ) {
+            int v = vi.nextRow();
+            int pos = adj.getStart(v);
+            for (RowIterator ei = graph.edgeIterator(v); ei.hasNext(); pos++) {
+                int e = ei.nextRow();
+                assertEquals(e, adj.getEdge(pos));
+                assertEquals(graph.getOtherVertex(e, v), adj.getVertex(pos));
+            }
+            assertEquals(adj.getEnd(v), pos);
+            assertEquals(graph.getOutDegree(v), csr.getOut().getDegree(v));
+        }
+    }
+
     public void testDijkstra() {
         final DefaultGraph g = new DefaultGraph();
         final int v1 = g.addVertex();
@@ -0,0 +1,100 @@
+import infovis.utils.LabelCache;
+import infovis.visualization.render.VisualLabel;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+
+/**
+ * Class LabelCacheTest
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class LabelCacheTest extends TestCase {
+    public LabelCacheTest(String name) {
+        super(name);
+    }
+
+    public void testBounds() {
+        LabelCache cache = new LabelCache(2);
+        Font font = new Font("Dialog", Font.PLAIN, 10);
+        FontRenderContext frc = new FontRenderContext(null, false, false);
+        Rectangle2D b = cache.getStringBounds(font, frc, "hello");
+        assertEquals(font.getStringBounds("hello", frc), b);
+        assertSame(b, cache.getStringBounds(font, frc, "hello"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        // the transform of the context is ignored
+        FontRenderContext scaled = new FontRenderContext(
+                java.awt.geom.AffineTransform.getScaleInstance(2, 2),
+                false,
+                false);
+        assertSame(b, cache.getStringBounds(font, scaled, "hello"));
+        cache.getStringBounds(font, frc, "world");
+        cache.getStringBounds(font.deriveFont(12f), frc, "hello");
+        assertEquals(2, cache.size());
+        cache.getStringBounds(font, frc, "hello");
+        assertEquals(4, cache.getMissCount());
+    }
+
+    static BufferedImage draw(String s, boolean cached) {
+        BufferedImage image = new BufferedImage(100, 20, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setFont(new Font("Dialog", Font.PLAIN, 10));
+        g.setColor(Color.BLACK);
+        if (cached) {
+            new LabelCache(10).drawString(g, s, 2, 15);
+        }
+        else {
+            g.drawString(s, 2, 15);
+        }
+        g.dispose();
+        return image;
+    }
+
+    public void testDraw() {
+        String s = "Label 42";
+        BufferedImage i1 = draw(s, false);
+        BufferedImage i2 = draw(s, true);
+        for (int y = 0; y < i1.getHeight(); y++) {
+            for (int x = 0; x < i1.getWidth(); x++) {
+                assertEquals(i1.getRGB(x, y), i2.getRGB(x, y));
+            }
+        }
+        // Strings requiring a bidirectional layout are not laid out
+        assertNull(new LabelCache(10).getGlyphVector(
+                new Font("Dialog", Font.PLAIN, 10),
+                new FontRenderContext(null, false, false),
+                "abc \u05d0\u05d1"));
+    }
+
+    public void testVisibility() {
+        VisualLabel label = new VisualLabel();
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        Rectangle2D item = new Rectangle2D.Float(0, 0, 50, 20);
+        label.install(g);
+        assertTrue(label.isLabelVisible(item));
+        assertFalse(label.isLabelVisible(new Rectangle2D.Float(0, 0, 50, 2)));
+        label.uninstall(g);
+        g.scale(0.2, 0.2);
+        label.install(g);
+        assertFalse(label.isLabelVisible(item));
+        label.uninstall(g);
+        g.dispose();
+    }
+}
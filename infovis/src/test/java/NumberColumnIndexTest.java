@@ -0,0 +1,132 @@
+import infovis.column.FilterColumn;
+import infovis.column.IntColumn;
+import infovis.column.NumberColumnIndex;
+import infovis.panel.dqinter.NumberColumnBoundedRangeModel;
+import junit.framework.TestCase;
+import cern.jet.random.Uniform;
+
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+
+/**
+ * Class NumberColumnIndexTest
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class NumberColumnIndexTest extends TestCase {
+    public NumberColumnIndexTest(String name) {
+        super(name);
+    }
+
+    public void testIndex() {
+        IntColumn column = new IntColumn("values");
+        for (int i = 0; i < 1000; i++) {
+            column.add(Uniform.staticNextIntFromTo(0, 100));
+        }
+        column.setValueUndefined(10, true);
+        NumberColumnIndex index = NumberColumnIndex.get(column);
+        assertSame(index, NumberColumnIndex.get(column));
+        assertEquals(999, index.size());
+        for (int i = 1; i < index.size(); i++) {
+            assertTrue(index.getValueAt(i-1) <= index.getValueAt(i));
+        }
+        int low = index.lowerBound(20);
+        int high = index.upperBound(30);
+        int count = 0;
+        for (int row = 0; row < column.size(); row++) {
+            if (column.isValueUndefined(row)) continue;
+            int v = column.get(row);
+            if (v >= 20 && v <= 30) count++;
+        }
+        assertEquals(count, high - low);
+        int version = index.getVersion();
+        column.set(0, 1000);
+        assertTrue(version != index.getVersion());
+        assertEquals(0, index.getRowAt(index.size()-1));
+    }
+
+    public void testRangeModel() {
+        IntColumn column = new IntColumn("values");
+        for (int i = 0; i < 1000; i++) {
+            column.add(Uniform.staticNextIntFromTo(0, 100));
+        }
+        FilterColumn filter = new FilterColumn("#filter");
+        NumberColumnBoundedRangeModel model =
+            new NumberColumnBoundedRangeModel(column);
+        model.setFilterColumn(filter);
+        for (int k = 0; k < 50; k++) {
+            double min = Uniform.staticNextIntFromTo(0, 100);
+            double max = Uniform.staticNextIntFromTo(0, 100);
+            if (min > max) {
+                double tmp = min;
+                min = max;
+                max = tmp;
+            }
+            model.setRangeProperties(min, max - min, 0, 100, false);
+            if (k == 25) {
+                column.set(0, 50);
+            }
+            for (int row = 0; row < column.size(); row++) {
+                assertEquals(
+                        model.isFiltered(row),
+                        filter.isFiltered(row));
+            }
+        }
+    }
+
+    static void assertFiltered(
+            NumberColumnBoundedRangeModel model,
+            NumberColumnBoundedRangeModel other,
+            FilterColumn filter,
+            IntColumn column) {
+        for (int row = 0; row < column.size(); row++) {
+            assertEquals(
+                    model.isFiltered(row) || other.isFiltered(row),
+                    filter.isFiltered(row));
+        }
+    }
+
+    public void testRangeReset() {
+        IntColumn column = new IntColumn("values");
+        for (int i = 0; i < 1000; i++) {
+            column.add(Uniform.staticNextIntFromTo(0, 100));
+        }
+        for (int k = 0; k < 2; k++) {
+            FilterColumn filter = new FilterColumn("#filter");
+            NumberColumnBoundedRangeModel model =
+                new NumberColumnBoundedRangeModel(column);
+            NumberColumnBoundedRangeModel other =
+                new NumberColumnBoundedRangeModel(column);
+            // without the index, each change applies the query to all the rows
+            model.setIndexed(k == 0);
+            model.setFilterColumn(filter);
+            other.setFilterColumn(filter);
+            for (int v = 0; v <= 40; v += 10) {
+                model.setRangeProperties(v, 100 - 2 * v, 0, 100, false);
+                assertFiltered(model, other, filter, column);
+            }
+            // modifying the column resets the range
+            column.set(0, column.get(0));
+            assertEquals(100, model.getExtentDouble(), 0);
+            assertFiltered(model, other, filter, column);
+            model.setRangeProperties(20, 60, 0, 100, false);
+            assertFiltered(model, other, filter, column);
+            // re-applying the query does not change its result
+            model.apply();
+            assertFiltered(model, other, filter, column);
+            // the filtered rows are recomputed from the query masks
+            other.setRangeProperties(5, 90, 0, 100, false);
+            assertFiltered(model, other, filter, column);
+            model.setRangeProperties(25, 60, 0, 100, false);
+            assertFiltered(model, other, filter, column);
+            other.setRangeProperties(0, 100, 0, 100, false);
+            assertFiltered(model, other, filter, column);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import infovis.column.IntColumn;
+import infovis.table.DefaultTable;
+import infovis.table.Item;
+import infovis.visualization.DefaultVisualization;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+
+/**
+ * Class PickingBufferTest
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class PickingBufferTest extends TestCase {
+    public PickingBufferTest(String name) {
+        super(name);
+    }
+
+    static int pickTop(DefaultVisualization vis, double x, double y, Rectangle2D bounds) {
+        Item item = vis.pickTop(x, y, bounds);
+        return item == null ? -1 : item.getId();
+    }
+
+    static void checkPicks(DefaultVisualization vis, Rectangle2D bounds) {
+        assertEquals(0, pickTop(vis, 20, 20, bounds));
+        assertEquals(1, pickTop(vis, 40, 40, bounds));
+        assertEquals(2, pickTop(vis, 85, 85, bounds));
+        assertEquals(-1, pickTop(vis, 5, 5, bounds));
+        assertEquals(-1, pickTop(vis, 60, 20, bounds));
+        assertEquals(-1, pickTop(vis, 150, 150, bounds));
+        ArrayList pick = vis.pickAll(
+                new Rectangle2D.Float(25, 25, 20, 20), bounds, (ArrayList)null);
+        assertEquals(2, pick.size());
+        assertEquals(0, ((Item)pick.get(0)).getId());
+        assertEquals(1, ((Item)pick.get(1)).getId());
+    }
+
+    public void testPickingBuffer() {
+        DefaultTable table = new DefaultTable();
+        IntColumn col = new IntColumn("value");
+        for (int i = 0; i < 3; i++) {
+            col.add(i);
+        }
+        table.addColumn(col);
+        DefaultVisualization vis = new DefaultVisualization(table);
+        Rectangle2D bounds = new Rectangle2D.Float(0, 0, 100, 100);
+        vis.validateShapes(bounds);
+        vis.setShapeAt(0, new Rectangle2D.Float(10, 10, 40, 40));
+        vis.setShapeAt(1, new Rectangle2D.Float(30, 30, 40, 40));
+        vis.setShapeAt(2, new Rectangle2D.Float(80, 80, 10, 10));
+
+        checkPicks(vis, bounds);
+        vis.setPickingBufferEnabled(true);
+        checkPicks(vis, bounds);
+        assertNotNull(vis.getPickingBuffer());
+        assertEquals(1, vis.getPickingBuffer().getRowAt(40, 40));
+
+        // moving a shape refreshes the buffer
+        vis.setShapeAt(2, new Rectangle2D.Float(0, 0, 8, 8));
+        assertEquals(2, pickTop(vis, 5, 5, bounds));
+        assertEquals(-1, pickTop(vis, 85, 85, bounds));
+
+        vis.setPickingBufferEnabled(false);
+        assertNull(vis.getPickingBuffer());
+        assertEquals(2, pickTop(vis, 5, 5, bounds));
+    }
+}
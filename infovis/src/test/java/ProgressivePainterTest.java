@@ -0,0 +1,182 @@
+import infovis.Visualization;
+import infovis.column.IntColumn;
+import infovis.table.DefaultTable;
+import infovis.tree.DefaultTree;
+import infovis.tree.visualization.NodeLinkTreeVisualization;
+import infovis.utils.RowIterator;
+import infovis.visualization.AbstractLayout;
+import infovis.visualization.DefaultVisualization;
+import infovis.visualization.Layout;
+import infovis.visualization.ProgressivePainter;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JPanel;
+
+import junit.framework.TestCase;
+
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+
+/**
+ * Class ProgressivePainterTest
+ * 
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class ProgressivePainterTest extends TestCase {
+    public ProgressivePainterTest(String name) {
+        super(name);
+    }
+
+    public void testProgressive() {
+        DefaultTable table = new DefaultTable();
+        IntColumn col = new IntColumn("value");
+        for (int i = 0; i < 2000; i++) {
+            col.add(i);
+        }
+        table.addColumn(col);
+        DefaultVisualization vis = new DefaultVisualization(table);
+        vis.setProgressive(true);
+        ProgressivePainter painter = vis.getProgressivePainter();
+        painter.setBudget(0);
+        painter.setSampleSize(100);
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        Rectangle2D bounds = new Rectangle2D.Float(0, 0, 100, 100);
+        int frames = 0;
+        float progress = 0;
+        while (! painter.isComplete()) {
+            vis.paint(g, bounds);
+            assertTrue(painter.getProgress() > progress);
+            progress = painter.getProgress();
+            frames++;
+        }
+        assertTrue(frames > 1);
+        assertEquals(1, painter.getProgress(), 0);
+        vis.repaint();
+        assertEquals(0, painter.getProgress(), 0);
+        vis.paint(g, new Rectangle2D.Float(0, 0, 50, 50));
+        assertTrue(painter.getProgress() < 1);
+        vis.setProgressive(false);
+        assertNull(vis.getProgressivePainter());
+        vis.paint(g, bounds);
+        g.dispose();
+    }
+
+    static BufferedImage paint(DefaultVisualization vis, Rectangle2D bounds, boolean print) {
+        BufferedImage image = new BufferedImage(
+                (int)bounds.getWidth(), (int)bounds.getHeight(),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        if (print) {
+            vis.print(g, bounds);
+        }
+        else {
+            do {
+                vis.paint(g, bounds);
+            }
+            while (! vis.getProgressivePainter().isComplete());
+        }
+        g.dispose();
+        return image;
+    }
+
+    static void assertSameImage(BufferedImage expected, BufferedImage image) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(
+                        "pixel "+x+","+y,
+                        expected.getRGB(x, y), image.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testPaintedItems() {
+        DefaultTree tree = new DefaultTree();
+        for (int i = 0; i < 300; i++) {
+            tree.addNode(i / 3);
+        }
+        NodeLinkTreeVisualization vis = new NodeLinkTreeVisualization(tree);
+        vis.setParent(new JPanel());
+        vis.setProgressive(true);
+        ProgressivePainter painter = vis.getProgressivePainter();
+        painter.setBudget(0);
+        painter.setSampleSize(50);
+        Rectangle2D bounds = new Rectangle2D.Float(0, 0, 400, 300);
+        // links and nodes are painted in the same order
+        BufferedImage image = paint(vis, bounds, false);
+        assertSameImage(paint(vis, bounds, true), image);
+
+        // moving a node lays out the links again
+        vis.setShapeAt(200, new Rectangle2D.Float(10, 10, 20, 20));
+        vis.paint(image.createGraphics(), bounds);
+        assertTrue(painter.getProgress() < 1);
+        image = paint(vis, bounds, false);
+        assertSameImage(paint(vis, bounds, true), image);
+    }
+
+    static class GridLayout extends AbstractLayout {
+        public String getName() {
+            return "Grid";
+        }
+
+        public Visualization getVisualization() {
+            return null;
+        }
+
+        public void invalidate(Visualization vis) {
+        }
+
+        public void computeShapes(Rectangle2D bounds, Visualization vis) {
+            for (RowIterator iter = vis.iterator(); iter.hasNext(); ) {
+                int row = iter.nextRow();
+                vis.setShapeAt(row, new Rectangle2D.Float(
+                        (row % 50) * 2, (row / 50) * 2, 3, 3));
+            }
+        }
+    }
+
+    public void testDirtyArea() {
+        DefaultTable table = new DefaultTable();
+        IntColumn col = new IntColumn("value");
+        for (int i = 0; i < 2000; i++) {
+            col.add(i);
+        }
+        table.addColumn(col);
+        final Layout layout = new GridLayout();
+        DefaultVisualization vis = new DefaultVisualization(table) {
+            public Layout getLayout() {
+                return layout;
+            }
+        };
+        vis.setParent(new JPanel());
+        vis.setProgressive(true);
+        ProgressivePainter painter = vis.getProgressivePainter();
+        painter.setBudget(0);
+        painter.setSampleSize(100);
+        Rectangle2D bounds = new Rectangle2D.Float(0, 0, 100, 100);
+        BufferedImage image = paint(vis, bounds, false);
+        assertSameImage(paint(vis, bounds, true), image);
+
+        // only the items over the old and new areas are painted again
+        int row = 1234;
+        Rectangle2D old = vis.getShapeAt(row).getBounds2D();
+        vis.setShapeAt(row, new Rectangle2D.Float(40, 95, 10, 4));
+        vis.repaint(old);
+        vis.repaint(row);
+        assertTrue(painter.isComplete());
+        Graphics2D g = image.createGraphics();
+        vis.paint(g, bounds);
+        g.dispose();
+        assertTrue(painter.isComplete());
+        assertSameImage(paint(vis, bounds, true), image);
+    }
+}
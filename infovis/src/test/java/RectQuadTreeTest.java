@@ -0,0 +1,133 @@
+import infovis.utils.RectQuadTree;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+
+import junit.framework.TestCase;
+import cern.colt.list.IntArrayList;
+import cern.jet.random.Uniform;
+
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+
+/**
+ * Class RectQuadTreeTest
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class RectQuadTreeTest extends TestCase {
+    public RectQuadTreeTest(String name) {
+        super(name);
+    }
+
+    public void testRectQuadTree() {
+        RectQuadTree tree = new RectQuadTree(
+                new Rectangle2D.Float(0, 0, 1000, 1000));
+        Rectangle2D.Float[] rects = new Rectangle2D.Float[2000];
+        for (int i = 0; i < rects.length; i++) {
+            rects[i] = new Rectangle2D.Float(
+                    (float)Uniform.staticNextDoubleFromTo(0, 990),
+                    (float)Uniform.staticNextDoubleFromTo(0, 990),
+                    (float)Uniform.staticNextDoubleFromTo(0, 10),
+                    (float)Uniform.staticNextDoubleFromTo(0, 10));
+            tree.put(i, rects[i]);
+        }
+        assertEquals(rects.length, tree.size());
+        // move some rectangles, some of them outside of the root bounds
+        for (int i = 0; i < rects.length; i += 3) {
+            rects[i].x += 500;
+            tree.put(i, rects[i]);
+        }
+        for (int i = 1; i < rects.length; i += 7) {
+            tree.remove(i);
+            rects[i] = null;
+        }
+        IntArrayList result = new IntArrayList();
+        for (int k = 0; k < 100; k++) {
+            Rectangle2D.Float query = new Rectangle2D.Float(
+                    (float)Uniform.staticNextDoubleFromTo(0, 1500),
+                    (float)Uniform.staticNextDoubleFromTo(0, 1000),
+                    (float)Uniform.staticNextDoubleFromTo(0, 200),
+                    (float)Uniform.staticNextDoubleFromTo(0, 200));
+            result.clear();
+            tree.query(query, result);
+            int expected = 0;
+            for (int i = 0; i < rects.length; i++) {
+                Rectangle2D.Float r = rects[i];
+                if (r == null) continue;
+                if (r.x <= query.getMaxX() && r.getMaxX() >= query.x
+                        && r.y <= query.getMaxY() && r.getMaxY() >= query.y) {
+                    expected++;
+                    assertTrue("Missing row "+i, result.contains(i));
+                }
+            }
+            assertEquals(expected, result.size());
+        }
+    }
+
+    public void testNearest() {
+        RectQuadTree tree = new RectQuadTree(
+                new Rectangle2D.Float(0, 0, 1000, 1000));
+        Rectangle2D.Float[] rects = new Rectangle2D.Float[3000];
+        for (int i = 0; i < rects.length; i++) {
+            rects[i] = new Rectangle2D.Float(
+                    (float)Uniform.staticNextDoubleFromTo(0, 1100),
+                    (float)Uniform.staticNextDoubleFromTo(0, 990),
+                    (float)Uniform.staticNextDoubleFromTo(0, 10),
+                    (float)Uniform.staticNextDoubleFromTo(0, 10));
+            tree.put(i, rects[i]);
+        }
+        IntArrayList result = new IntArrayList();
+        for (int n = 0; n < 100; n++) {
+            Rectangle2D.Float query = new Rectangle2D.Float(
+                    (float)Uniform.staticNextDoubleFromTo(0, 1000),
+                    (float)Uniform.staticNextDoubleFromTo(0, 1000),
+                    (float)Uniform.staticNextDoubleFromTo(0, 200),
+                    (float)Uniform.staticNextDoubleFromTo(0, 200));
+            double x = query.getCenterX();
+            double y = query.getCenterY();
+            result.clear();
+            tree.nearest(query, x, y, 10, result);
+            int inside = tree.query(query, null).size();
+            assertEquals(Math.min(10, inside), result.size());
+            double last = 0;
+            for (int j = 0; j < result.size(); j++) {
+                double d = rects[result.get(j)].getBounds2D().getCenterX() - x;
+                double e = rects[result.get(j)].getBounds2D().getCenterY() - y;
+                assertTrue(d * d + e * e >= last);
+                last = d * d + e * e;
+            }
+            // no row outside the result is closer than the last one
+            for (int i = 0; i < rects.length; i++) {
+                Rectangle2D.Float r = rects[i];
+                if (result.contains(i) || !r.intersects(query)) continue;
+                double d = r.getCenterX() - x;
+                double e = r.getCenterY() - y;
+                assertTrue("Missed row "+i, d * d + e * e >= last);
+            }
+        }
+    }
+
+    public void testDegenerate() {
+        RectQuadTree tree = new RectQuadTree(
+                new Rectangle2D.Float(0, 0, 100, 100));
+        tree.put(0, new Line2D.Float(10, 10, 10, 90));
+        tree.put(1, new Line2D.Float(20, 50, 80, 50));
+        IntArrayList result = tree.query(
+                new Rectangle2D.Float(9, 40, 2, 2), null);
+        assertEquals(1, result.size());
+        assertEquals(0, result.get(0));
+        result = tree.query(new Rectangle2D.Float(50, 50, 0, 0), null);
+        assertEquals(1, result.size());
+        assertEquals(1, result.get(0));
+        tree.put(1, null);
+        assertTrue(!tree.contains(1));
+        assertEquals(1, tree.size());
+    }
+}
@@ -45,6 +45,17 @@ public class RunAllUnitTests {
         suite.addTest(new TestSuite(IntervalTest.class));
 //        suite.addTest(new TestSuite(OrderingTest.class));
         suite.addTest(new TestSuite(CuthillMcKeeTest.class));
+        suite.addTest(new TestSuite(RectQuadTreeTest.class));
+        suite.addTest(new TestSuite(SpringLayoutTest.class));
+        suite.addTest(new TestSuite(NumberColumnIndexTest.class));
+        suite.addTest(new TestSuite(ProgressivePainterTest.class));
+        suite.addTest(new TestSuite(BackgroundLayoutTest.class));
+        suite.addTest(new TestSuite(PickingBufferTest.class));
+        suite.addTest(new TestSuite(LabelCacheTest.class));
+        suite.addTest(new TestSuite(VisualFisheyeTest.class));
+        suite.addTest(new TestSuite(GraphBuilderTest.class));
+        suite.addTest(new TestSuite(ByteBufferPoolTest.class));
+        suite.addTest(new TestSuite(BinaryTableTest.class));
 
         return suite;
     }
@@ -0,0 +1,162 @@
+import infovis.graph.DefaultGraph;
+import infovis.graph.visualization.NodeLinkGraphVisualization;
+import infovis.graph.visualization.layout.FRLayout;
+import infovis.utils.WorkerPool;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+
+/**
+ * Class SpringLayoutTest
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class SpringLayoutTest extends TestCase {
+    static final Rectangle2D BOUNDS = new Rectangle2D.Double(0, 0, 1000, 1000);
+
+    public SpringLayoutTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Exposes the repulsion forces computed by the layout.
+     */
+    static class ForceLayout extends FRLayout {
+        void prepare(NodeLinkGraphVisualization vis) {
+            setVisualization(vis);
+            bounds = BOUNDS;
+            initializeLayout(BOUNDS);
+            // keeps the vertices away from the randomized borders
+            temperature = 10;
+        }
+
+        boolean runsInParallel() {
+            return isParallelRun();
+        }
+
+        float[] iterate(int count) {
+            for (int i = 0; i < count; i++) {
+                incrementLayout(BOUNDS);
+            }
+            int n = getGraphVisualization().getVerticesCount();
+            float[] pos = new float[2 * n];
+            for (int v = 0; v < n; v++) {
+                pos[2 * v] = getX(v);
+                pos[2 * v + 1] = getY(v);
+            }
+            return pos;
+        }
+
+        double[][] repulsion(boolean approximate) {
+            int n = getGraphVisualization().getVerticesCount();
+            double[][] forces = new double[n][2];
+            repulsionTree = approximate ? buildRepulsionTree() : null;
+            try {
+                for (int v = 0; v < n; v++) {
+                    repulsionForce(v, forces[v]);
+                }
+            }
+            finally {
+                repulsionTree = null;
+            }
+            return forces;
+        }
+    }
+
+    static NodeLinkGraphVisualization createVisualization(
+            int vertices, int edges, long seed) {
+        DefaultGraph graph = new DefaultGraph();
+        Random random = new Random(seed);
+        NodeLinkGraphVisualization vis = new NodeLinkGraphVisualization(graph);
+        for (int v = 0; v < vertices; v++) {
+            graph.addVertex();
+            // a few clusters so that cells of all sizes are opened
+            double cx = 200 + (v % 4) * 200;
+            double cy = 200 + (v % 3) * 300;
+            vis.setShapeAt(v, new Rectangle2D.Float(
+                    (float)(cx + random.nextDouble() * 160 - 80),
+                    (float)(cy + random.nextDouble() * 160 - 80),
+                    1, 1));
+        }
+        for (int i = 0; i < edges; i++) {
+            int v = random.nextInt(vertices);
+            int u = random.nextInt(vertices);
+            if (v != u) {
+                graph.addEdge(v, u);
+            }
+        }
+        return vis;
+    }
+
+    public void testBarnesHut() {
+        NodeLinkGraphVisualization vis = createVisualization(300, 0, 42);
+        ForceLayout layout = new ForceLayout();
+        layout.prepare(vis);
+        double[][] exact = layout.repulsion(false);
+
+        // theta = 0 opens every cell, summing the same pairwise forces
+        layout.setTheta(0);
+        double[][] tree = layout.repulsion(true);
+        for (int v = 0; v < exact.length; v++) {
+            // only the summation order differs
+            double norm = Math.abs(exact[v][0]) + Math.abs(exact[v][1]);
+            assertEquals(exact[v][0], tree[v][0], norm * 1e-12);
+            assertEquals(exact[v][1], tree[v][1], norm * 1e-12);
+        }
+
+        layout.setTheta(0.5);
+        double[][] approx = layout.repulsion(true);
+        double error = 0;
+        double total = 0;
+        for (int v = 0; v < exact.length; v++) {
+            double dx = approx[v][0] - exact[v][0];
+            double dy = approx[v][1] - exact[v][1];
+            error += dx * dx + dy * dy;
+            total += exact[v][0] * exact[v][0] + exact[v][1] * exact[v][1];
+            // each force keeps its direction
+            assertTrue(approx[v][0] * exact[v][0] + approx[v][1] * exact[v][1] > 0);
+        }
+        assertTrue("cells are approximated", error > 0);
+        assertTrue(
+                "relative error "+Math.sqrt(error / total),
+                Math.sqrt(error / total) < 0.02);
+    }
+
+    public void testParallel() {
+        WorkerPool pool = WorkerPool.getInstance();
+        WorkerPool.setInstance(new WorkerPool(4));
+        try {
+            ForceLayout serial = new ForceLayout();
+            serial.prepare(createVisualization(1200, 3000, 7));
+            float[] initial = serial.iterate(0);
+            float[] expected = serial.iterate(3);
+            assertFalse(serial.runsInParallel());
+
+            ForceLayout parallel = new ForceLayout();
+            parallel.setParallel(true);
+            parallel.prepare(createVisualization(1200, 3000, 7));
+            assertTrue(parallel.runsInParallel());
+            float[] pos = parallel.iterate(3);
+            boolean moved = false;
+            for (int i = 0; i < pos.length; i++) {
+                assertEquals(expected[i], pos[i], 1e-3);
+                moved |= initial[i] != pos[i];
+            }
+            assertTrue(moved);
+        }
+        finally {
+            WorkerPool.setInstance(pool);
+        }
+    }
+}
@@ -1,5 +1,22 @@
 import infovis.Tree;
+import infovis.column.DoubleColumn;
+import infovis.column.IntColumn;
+import infovis.column.NumberColumn;
+import infovis.metadata.AdditiveAggregation;
+import infovis.metadata.MinAggregation;
+import infovis.tree.BreadthFirst;
 import infovis.tree.DefaultTree;
+import infovis.tree.DepthFirst;
+import infovis.tree.TreeProxy;
+import infovis.tree.TreeIntervals;
+import infovis.tree.property.LeafCountColumn;
+import infovis.tree.visualization.NodeLinkTreeLayout;
+import infovis.tree.visualization.NodeLinkTreeVisualization;
+import infovis.tree.visualization.nodelink.DendrogramTreeLayout;
+import infovis.tree.visualization.nodelink.RTLayout;
+
+import java.awt.geom.Rectangle2D;
+
 import junit.framework.TestCase;
 
 /*****************************************************************************
@@ -44,6 +61,240 @@ public class TreeTest extends TestCase {
         assertEquals(1, tree.addNode(Tree.ROOT));
     }
 
+    static void checkTree(DefaultTree tree) {
+        for (infovis.utils.RowIterator it = tree.iterator(); it.hasNext(); ) {
+            int node = it.nextRow();
+            assertEquals(tree.computeDepth(node), tree.getDepth(node));
+            assertEquals(tree.computeDegree(node), tree.getChildCount(node));
+            int i = 0;
+            for (int c = tree.getFirstChild(node); c != Tree.NIL; c = tree.getNextSibling(c)) {
+                assertEquals(c, tree.getChild(node, i++));
+            }
+            assertEquals(Tree.NIL, tree.getChild(node, i));
+        }
+    }
+
+    public void testDepthAndDegree() {
+        DefaultTree tree = new DefaultTree();
+        java.util.Random random = new java.util.Random(1);
+        for (int i = 0; i < 500; i++) {
+            int par = random.nextInt(tree.getLastRow() + 1);
+            if (tree.isRowValid(par)) {
+                tree.addNode(par);
+            }
+        }
+        checkTree(tree);
+        for (int i = 0; i < 100; i++) {
+            int node = 1 + random.nextInt(tree.getLastRow());
+            int par = random.nextInt(tree.getLastRow() + 1);
+            if (tree.isRowValid(node) && tree.isRowValid(par)
+                    && ! tree.isAncestor(par, node)) {
+                tree.reparent(node, par);
+            }
+        }
+        checkTree(tree);
+        for (int i = 0; i < 20; i++) {
+            int node = 1 + random.nextInt(tree.getLastRow());
+            tree.removeNode(node);
+        }
+        checkTree(tree);
+        for (int i = 0; i < 100; i++) {
+            int par = random.nextInt(tree.getLastRow() + 1);
+            if (tree.isRowValid(par)) {
+                tree.addNode(par);
+            }
+        }
+        checkTree(tree);
+        tree.clear();
+        assertEquals(0, tree.getChildCount(Tree.ROOT));
+        assertEquals(Tree.NIL, tree.getChild(Tree.ROOT, 0));
+    }
+
+    static boolean walkAncestor(Tree tree, int node, int par) {
+        for (; node != Tree.NIL; node = tree.getParent(node)) {
+            if (node == par) return true;
+        }
+        return false;
+    }
+
+    public void testIntervals() {
+        DefaultTree tree = new DefaultTree();
+        java.util.Random random = new java.util.Random(2);
+        for (int i = 0; i < 200; i++) {
+            tree.addNode(random.nextInt(tree.getLastRow() + 1));
+        }
+        for (int round = 0; round < 2; round++) {
+            TreeIntervals intervals = TreeIntervals.get(tree);
+            assertSame(intervals, TreeIntervals.get(tree));
+            assertEquals(tree.getNodeCount(), intervals.getNodeCount());
+            for (int node = 0; node <= tree.getLastRow(); node++) {
+                if (! tree.isRowValid(node)) continue;
+                int size = 0;
+                for (infovis.utils.RowIterator it = intervals.subtreeIterator(node); it.hasNext(); ) {
+                    int n = it.nextRow();
+                    assertTrue(walkAncestor(tree, n, node));
+                    size++;
+                }
+                assertEquals(size, intervals.getSubtreeSize(node));
+                for (int par = 0; par <= tree.getLastRow(); par += 7) {
+                    if (! tree.isRowValid(par)) continue;
+                    assertEquals(
+                            walkAncestor(tree, node, par),
+                            tree.isAncestor(node, par));
+                }
+            }
+            if (! tree.isAncestor(150 + round, 5)) {
+                tree.reparent(5, 150 + round);
+            }
+            tree.removeNode(20 + round);
+            tree.addNode(Tree.ROOT);
+            assertNotSame(intervals, TreeIntervals.get(tree));
+        }
+    }
+
+    static int countLeaves(Tree tree, int node) {
+        if (tree.isLeaf(node)) return 1;
+        int count = 0;
+        for (infovis.utils.RowIterator it = tree.childrenIterator(node); it.hasNext(); ) {
+            count += countLeaves(tree, it.nextRow());
+        }
+        return count;
+    }
+
+    public void testAggregation() {
+        DefaultTree tree = new DefaultTree();
+        java.util.Random random = new java.util.Random(3);
+        DoubleColumn values = new DoubleColumn("values");
+        for (int i = 0; i < 300; i++) {
+            tree.addNode(random.nextInt(tree.getLastRow() + 1));
+        }
+        for (int node = 0; node <= tree.getLastRow(); node++) {
+            values.setExtend(node, 1 + random.nextInt(10));
+        }
+        LeafCountColumn leaves = LeafCountColumn.findColumn(tree);
+        NumberColumn weights = AdditiveAggregation.buildAdditiveWeight(
+                values, tree, null, null, null);
+        for (int node = 0; node <= tree.getLastRow(); node++) {
+            assertEquals(countLeaves(tree, node), leaves.getIntAt(node));
+            if (tree.isLeaf(node)) {
+                assertEquals(values.get(node), weights.getDoubleAt(node), 0);
+                continue;
+            }
+            double sum = 0;
+            for (infovis.utils.RowIterator it = tree.childrenIterator(node); it.hasNext(); ) {
+                sum += weights.getDoubleAt(it.nextRow());
+            }
+            assertEquals(sum, weights.getDoubleAt(node), 0);
+        }
+    }
+
+    static int minLeaf(Tree tree, int node, IntColumn values) {
+        int min = values.get(node);
+        for (infovis.utils.RowIterator it = tree.childrenIterator(node); it.hasNext(); ) {
+            min = Math.min(min, minLeaf(tree, it.nextRow(), values));
+        }
+        return min;
+    }
+
+    public void testMinAggregation() {
+        DefaultTree tree = new DefaultTree();
+        java.util.Random random = new java.util.Random(4);
+        IntColumn values = new IntColumn("values");
+        for (int i = 0; i < 300; i++) {
+            tree.addNode(random.nextInt(tree.getLastRow() + 1));
+        }
+        for (int node = 0; node <= tree.getLastRow(); node++) {
+            values.setExtend(node, tree.isLeaf(node) ? random.nextInt(50) : 100);
+        }
+        IntColumn mins = new IntColumn("mins");
+        for (int node = 0; node <= tree.getLastRow(); node++) {
+            mins.setExtend(node, minLeaf(tree, node, values));
+        }
+        MinAggregation min = new MinAggregation();
+        assertTrue(min.isAggregating(mins, tree));
+        assertFalse(min.isAggregating(values, tree));
+        DoubleColumn aggregated = new DoubleColumn("aggregated");
+        min.aggregate(mins, tree, aggregated);
+        for (int node = 0; node <= tree.getLastRow(); node++) {
+            assertEquals(mins.get(node), aggregated.get(node), 0);
+        }
+    }
+
+    static void layout(Tree tree, NodeLinkTreeLayout layout, int leaf) {
+        NodeLinkTreeVisualization vis = new NodeLinkTreeVisualization(tree);
+        vis.setLayout(layout);
+        vis.computeShapes(new Rectangle2D.Float(0, 0, 800, 600));
+        // the nodes of the chain are placed at increasing depths
+        double y = Double.NEGATIVE_INFINITY;
+        for (int node = leaf; node != Tree.NIL; node = tree.getParent(node)) {
+            double d = vis.getShapeAt(node).getBounds2D().getY();
+            assertTrue(d < y || y == Double.NEGATIVE_INFINITY);
+            y = d;
+        }
+    }
+
+    public void testDeepLayouts() {
+        // deep trees do not overflow the stack
+        DefaultTree tree = new DefaultTree();
+        tree.addNode(Tree.ROOT);
+        int node = tree.addNode(Tree.ROOT);
+        for (int i = 1; i < 50000; i++) {
+            node = tree.addNode(node);
+        }
+        layout(tree, new RTLayout(), node);
+        layout(tree, new DendrogramTreeLayout(), node);
+    }
+
+    static String traverse(Tree tree) {
+        final StringBuffer buf = new StringBuffer();
+        DepthFirst.visit(tree, new DepthFirst.Visitor() {
+            public boolean preorder(int node) {
+                buf.append('(').append(node);
+                return node != 3;
+            }
+            public void postorder(int node) {
+                buf.append(')');
+            }
+        });
+        BreadthFirst.visit(tree, new BreadthFirst.Visitor() {
+            public boolean discover(int node) {
+                return true;
+            }
+            public void examine(int node) {
+                buf.append(' ').append(node);
+            }
+            public void finish(int node) {
+            }
+        }, Tree.ROOT);
+        return buf.toString();
+    }
+
+    public void testTraversal() {
+        DefaultTree tree = new DefaultTree();
+        int a = tree.addNode(Tree.ROOT);
+        int b = tree.addNode(Tree.ROOT);
+        tree.addNode(a);
+        tree.addNode(b);
+        tree.addNode(a);
+        tree.addNode(3);
+        String expected = "(0(1(3(5))(2(4))) 0 1 2 3 5 4 6";
+        assertEquals(expected, traverse(tree));
+        assertEquals(expected, traverse(new TreeProxy(tree)));
+
+        // deep trees do not overflow the stack
+        int n = 300000;
+        int top = tree.addNode(Tree.ROOT);
+        int node = top;
+        for (int i = 1; i < n; i++) {
+            node = tree.addNode(node);
+        }
+        assertEquals(n, TreeIntervals.get(tree).getSubtreeSize(top));
+        assertTrue(tree.isAncestor(node, top));
+        assertEquals(n, tree.getDepth(node));
+        tree.removeNode(top);
+        assertEquals(7, tree.getNodeCount());
+    }
+
 //    private static void testClear(Tree tree) {
 //        int count = tree.getColumnCount();
 //        tree.clear();
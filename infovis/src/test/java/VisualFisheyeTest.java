@@ -0,0 +1,113 @@
+import infovis.column.IntColumn;
+import infovis.table.DefaultTable;
+import infovis.visualization.DefaultVisualization;
+import infovis.visualization.magicLens.DefaultFisheye;
+import infovis.visualization.render.VisualFisheye;
+
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/*****************************************************************************
+ * Copyright (C) 2003-2005 Jean-Daniel Fekete and INRIA, France              *
+ * ------------------------------------------------------------------------- *
+ * This software is published under the terms of the X11 Software License    *
+ * a copy of which has been included with this distribution in the           *
+ * license-infovis.txt file.                                                 *
+ *****************************************************************************/
+
+/**
+ * Class VisualFisheyeTest
+ *
+ * @author Jean-Daniel Fekete
+ * @version $Revision: 1.1 $
+ */
+public class VisualFisheyeTest extends TestCase {
+    public VisualFisheyeTest(String name) {
+        super(name);
+    }
+
+    static class CountingFisheye extends DefaultFisheye {
+        int count;
+
+        public Shape transform(Shape s) {
+            count++;
+            return super.transform(s);
+        }
+    }
+
+    static BufferedImage paint(DefaultVisualization vis, Rectangle2D bounds) {
+        BufferedImage image = new BufferedImage(
+                (int)bounds.getWidth(),
+                (int)bounds.getHeight(),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        vis.paint(g, bounds);
+        g.dispose();
+        return image;
+    }
+
+    static void assertSameImage(BufferedImage i1, BufferedImage i2) {
+        for (int y = 0; y < i1.getHeight(); y++) {
+            for (int x = 0; x < i1.getWidth(); x++) {
+                assertEquals(i1.getRGB(x, y), i2.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testCachedFisheye() {
+        DefaultTable table = new DefaultTable();
+        IntColumn col = new IntColumn("value");
+        for (int i = 0; i < 100; i++) {
+            col.add(i);
+        }
+        table.addColumn(col);
+        DefaultVisualization vis = new DefaultVisualization(table);
+        Rectangle2D bounds = new Rectangle2D.Float(0, 0, 200, 200);
+        vis.validateShapes(bounds);
+        for (int i = 0; i < 100; i++) {
+            vis.setShapeAt(i, new Rectangle2D.Float(
+                    (i % 10) * 20 + 2, (i / 10) * 20 + 2, 16, 16));
+        }
+        CountingFisheye fisheye = new CountingFisheye();
+        fisheye.setLensRadius(30);
+        fisheye.setLens(100, 100);
+        fisheye.setEnabled(true);
+        vis.setFisheye(fisheye);
+        VisualFisheye vf = VisualFisheye.get(vis);
+        assertNotNull(vf);
+        BufferedImage expected = paint(vis, bounds);
+        int transformed = fisheye.count;
+        assertEquals(100, transformed);
+
+        vf.setCached(true);
+        vf.setAnchorSize(0);
+        assertSameImage(expected, paint(vis, bounds));
+        int underLens = fisheye.count - transformed;
+        assertTrue(underLens > 0 && underLens < 100);
+        // unchanged lens: the shapes come from the cache
+        transformed = fisheye.count;
+        assertSameImage(expected, paint(vis, bounds));
+        assertEquals(transformed, fisheye.count);
+
+        // moving a shape only transforms it again
+        vis.setShapeAt(0, new Rectangle2D.Float(95, 95, 16, 16));
+        paint(vis, bounds);
+        assertEquals(transformed + 1, fisheye.count);
+
+        // moving the lens invalidates the cache
+        fisheye.setLens(50, 50);
+        transformed = fisheye.count;
+        paint(vis, bounds);
+        assertTrue(fisheye.count > transformed);
+
+        // small rectangles are transformed through their corners
+        vf.setAnchorSize(16);
+        transformed = fisheye.count;
+        paint(vis, bounds);
+        assertEquals(transformed, fisheye.count);
+    }
+}
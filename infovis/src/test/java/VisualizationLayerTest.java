@@ -1,8 +1,14 @@
 import infovis.Table;
 import infovis.Visualization;
+import infovis.panel.TileCache;
+import infovis.panel.VisualizationPanel;
 import infovis.table.DefaultTable;
 import infovis.visualization.DefaultVisualization;
 import infovis.visualization.VisualizationLayers;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
 import junit.framework.TestCase;
 
 /*****************************************************************************
@@ -33,4 +39,31 @@ public class VisualizationLayerTest extends TestCase {
         
     }
 
+    public void testTiledPanel() {
+        Table table = new DefaultTable();
+        DefaultVisualization vis = new DefaultVisualization(table);
+        DefaultVisualization drag = new DefaultVisualization(table);
+        VisualizationLayers layer = new VisualizationLayers(vis);
+        layer.add(drag, VisualizationLayers.DRAG_LAYER);
+        VisualizationPanel panel = new VisualizationPanel(layer);
+        panel.setSize(512, 512);
+        panel.setTiled(true);
+        BufferedImage image = new BufferedImage(512, 512, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        panel.paint(g);
+        TileCache cache = panel.getTileCache();
+        assertEquals(16, cache.getTileCount());
+        assertTrue(! cache.isInvalid());
+        drag.repaint();
+        assertTrue("Overlay invalidated the tiles", ! cache.isInvalid());
+        vis.repaint(new Rectangle2D.Float(10, 10, 5, 5));
+        assertEquals(1, cache.getInvalidCount());
+        assertTrue(cache.isInvalid(0, 0));
+        panel.paint(g);
+        assertTrue(! cache.isInvalid());
+        vis.repaint();
+        assertEquals(16, cache.getInvalidCount());
+        g.dispose();
+    }
+
 }